@@ -15,15 +15,23 @@
  */
 package org.bytesoft.bytejta;
 
+import org.bytesoft.bytejta.logging.TransactionEventRing;
+import org.bytesoft.bytejta.statistic.TransactionStatisticImpl;
+import org.bytesoft.bytejta.statistic.XAResourceStatisticImpl;
 import org.bytesoft.transaction.TransactionBeanFactory;
 import org.bytesoft.transaction.TransactionLock;
 import org.bytesoft.transaction.TransactionManager;
 import org.bytesoft.transaction.TransactionRecovery;
 import org.bytesoft.transaction.TransactionRepository;
+import org.bytesoft.transaction.internal.TransactionListenerDispatcher;
 import org.bytesoft.transaction.logging.ArchiveDeserializer;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.logging.TransactionLogger;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
+import org.bytesoft.transaction.supports.TransactionAdmission;
+import org.bytesoft.transaction.supports.TransactionStatistic;
 import org.bytesoft.transaction.supports.TransactionTimer;
+import org.bytesoft.transaction.supports.resource.XAResourceStatistic;
 import org.bytesoft.transaction.supports.rpc.TransactionInterceptor;
 import org.bytesoft.transaction.supports.serialize.XAResourceDeserializer;
 import org.bytesoft.transaction.xa.XidFactory;
@@ -43,6 +51,11 @@ public class TransactionBeanFactoryImpl implements TransactionBeanFactory {
 
 	private ArchiveDeserializer archiveDeserializer;
 	private XAResourceDeserializer resourceDeserializer;
+	private TransactionEventRecorder transactionEventRecorder = new TransactionEventRing();
+	private TransactionStatistic transactionStatistic = new TransactionStatisticImpl();
+	private XAResourceStatistic resourceStatistic = new XAResourceStatisticImpl();
+	private TransactionListenerDispatcher transactionListenerDispatcher;
+	private TransactionAdmission transactionAdmission;
 
 	private TransactionBeanFactoryImpl() {
 		if (instance != null) {
@@ -142,4 +155,44 @@ public class TransactionBeanFactoryImpl implements TransactionBeanFactory {
 		this.resourceDeserializer = resourceDeserializer;
 	}
 
+	public TransactionEventRecorder getTransactionEventRecorder() {
+		return transactionEventRecorder;
+	}
+
+	public void setTransactionEventRecorder(TransactionEventRecorder transactionEventRecorder) {
+		this.transactionEventRecorder = transactionEventRecorder;
+	}
+
+	public TransactionStatistic getTransactionStatistic() {
+		return transactionStatistic;
+	}
+
+	public void setTransactionStatistic(TransactionStatistic transactionStatistic) {
+		this.transactionStatistic = transactionStatistic;
+	}
+
+	public XAResourceStatistic getResourceStatistic() {
+		return resourceStatistic;
+	}
+
+	public void setResourceStatistic(XAResourceStatistic resourceStatistic) {
+		this.resourceStatistic = resourceStatistic;
+	}
+
+	public TransactionListenerDispatcher getTransactionListenerDispatcher() {
+		return transactionListenerDispatcher;
+	}
+
+	public void setTransactionListenerDispatcher(TransactionListenerDispatcher transactionListenerDispatcher) {
+		this.transactionListenerDispatcher = transactionListenerDispatcher;
+	}
+
+	public TransactionAdmission getTransactionAdmission() {
+		return transactionAdmission;
+	}
+
+	public void setTransactionAdmission(TransactionAdmission transactionAdmission) {
+		this.transactionAdmission = transactionAdmission;
+	}
+
 }
@@ -16,7 +16,9 @@
 package org.bytesoft.bytejta;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -38,12 +40,16 @@ import org.bytesoft.transaction.TransactionBeanFactory;
 import org.bytesoft.transaction.TransactionContext;
 import org.bytesoft.transaction.TransactionException;
 import org.bytesoft.transaction.TransactionManager;
+import org.bytesoft.transaction.TransactionRecovery;
 import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.aware.TransactionBeanFactoryAware;
 import org.bytesoft.transaction.aware.TransactionEndpointAware;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteNode;
+import org.bytesoft.transaction.supports.TransactionAdmission;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
@@ -72,7 +78,9 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 			throw new XAException(XAException.XAER_PROTO);
 		}
 
+		// a branch in the tx-log has been prepared and is never started again, no need to wait for the replay
 		TransactionXid globalXid = (TransactionXid) transactionContext.getXid();
+
 		Transaction transaction = null;
 		try {
 			transaction = transactionRepository.getTransaction(globalXid);
@@ -81,8 +89,19 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		}
 
 		if (transaction == null) {
-			transaction = new TransactionImpl(transactionContext);
-			((TransactionImpl) transaction).setBeanFactory(this.beanFactory);
+			TransactionAdmission transactionAdmission = this.beanFactory.getTransactionAdmission();
+			String application = CommonUtils.getApplication(String.valueOf(transactionContext.getPropagatedBy()));
+			if (transactionAdmission != null && transactionAdmission.admitTransaction(application) == false) {
+				logger.warn("{}> participant is rejected, too many transactions in flight.",
+						globalXid.getGlobalTransactionIdString());
+				throw new XAException(XAException.XAER_RMFAIL);
+			} // end-if (transactionAdmission != null && ...)
+
+			Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_BEGIN);
+			TransactionImpl transactionImpl = new TransactionImpl(transactionContext);
+			transactionImpl.setBeanFactory(this.beanFactory);
+			transactionImpl.setAdmitted(transactionAdmission != null);
+			transaction = transactionImpl;
 
 			long expired = transactionContext.getExpiredTime();
 			long current = System.currentTimeMillis();
@@ -90,11 +109,14 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 			transaction.setTransactionTimeout((int) timeoutMillis);
 
 			transactionRepository.putTransaction(globalXid, transaction);
-			logger.info("{}> begin-participant", ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()));
+			transactionImpl.getTransactionStatistic().fireBeginTransaction(transactionImpl);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BEGIN_PARTICIPANT, globalXid, 0)) {
+				logger.info("{}> begin-participant", globalXid.getGlobalTransactionIdString());
+			}
+			TransactionFlightRecorder.commit(event, globalXid, null);
 		}
 
 		transactionManager.associateThread(transaction);
-		// this.transactionStatistic.fireBeginTransaction(transaction);
 
 		return transaction;
 	}
@@ -120,6 +142,7 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 
 		TransactionXid branchXid = (TransactionXid) xid;
 		TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+		this.recoverIfNecessary(globalXid);
 
 		Transaction transaction = null;
 		try {
@@ -163,6 +186,8 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		XidFactory xidFactory = this.beanFactory.getXidFactory();
 		TransactionXid branchXid = (TransactionXid) xid;
 		TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+		this.recoverIfNecessary(globalXid);
+
 		TransactionRepository repository = beanFactory.getTransactionRepository();
 		Transaction transaction = null;
 		try {
@@ -297,6 +322,8 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		XidFactory xidFactory = this.beanFactory.getXidFactory();
 		TransactionXid branchXid = (TransactionXid) xid;
 		TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+		this.recoverIfNecessary(globalXid);
+
 		TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
 		Transaction transaction = null;
 		try {
@@ -336,6 +363,8 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		XidFactory xidFactory = this.beanFactory.getXidFactory();
 		TransactionXid branchXid = (TransactionXid) xid;
 		TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+		this.recoverIfNecessary(globalXid);
+
 		TransactionRepository repository = beanFactory.getTransactionRepository();
 		Transaction transaction = null;
 		try {
@@ -372,6 +401,7 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		} finally {
 			if (participantVote == XAResource.XA_RDONLY) {
 				transaction.fireAfterTransactionCompletion();
+				transaction.forgetQuietly(); // the coordinator sends neither commit nor forget to a read-only branch
 			} // end-if (participantVote == XAResource.XA_RDONLY)
 		}
 
@@ -381,6 +411,13 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 	public Xid[] recover(int flag) throws XAException {
 		this.checkParticipantReadyIfNecessary();
 
+		TransactionRecovery transactionRecovery = this.beanFactory.getTransactionRecovery();
+		if (transactionRecovery.isIndexed() == false) {
+			throw new XAException(XAException.XAER_RMFAIL); // tx-log is still being indexed
+		} // end-if (transactionRecovery.isIndexed() == false)
+
+		// read ahead of the repository, a recovered transaction is put there before it leaves this list
+		List<TransactionXid> recoveredXidList = transactionRecovery.getRecoveredXidList();
 		TransactionRepository repository = beanFactory.getTransactionRepository();
 		List<Transaction> allTransactionList = repository.getActiveTransactionList();
 
@@ -397,13 +434,66 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 			}
 		}
 
-		TransactionXid[] xidArray = new TransactionXid[transactions.size()];
+		Set<TransactionXid> xids = new LinkedHashSet<TransactionXid>();
 		for (int i = 0; i < transactions.size(); i++) {
 			Transaction transaction = transactions.get(i);
-			xidArray[i] = transaction.getTransactionContext().getXid();
+			xids.add(transaction.getTransactionContext().getXid());
 		}
+		xids.addAll(recoveredXidList); // may have been promoted in the meantime
 
-		return xidArray;
+		return xids.toArray(new TransactionXid[xids.size()]);
+	}
+
+	public int[] getTransactionStatus(Xid[] xids) throws XAException {
+		this.checkParticipantReadyIfNecessary();
+
+		TransactionRecovery transactionRecovery = this.beanFactory.getTransactionRecovery();
+		if (transactionRecovery.isIndexed() == false) {
+			throw new XAException(XAException.XAER_RMFAIL); // tx-log is still being indexed
+		} // end-if (transactionRecovery.isIndexed() == false)
+
+		XidFactory xidFactory = this.beanFactory.getXidFactory();
+		TransactionRepository repository = beanFactory.getTransactionRepository();
+		int[] statusArray = new int[xids == null ? 0 : xids.length];
+		for (int i = 0; i < statusArray.length; i++) {
+			TransactionXid globalXid = xidFactory.createGlobalXid(xids[i].getGlobalTransactionId());
+			if (transactionRecovery.recoverIfNecessary(globalXid) == false) {
+				statusArray[i] = Status.STATUS_UNKNOWN;
+				continue;
+			} // end-if (transactionRecovery.recoverIfNecessary(globalXid) == false)
+
+			Transaction transaction = null;
+			try {
+				transaction = repository.getTransaction(globalXid);
+			} catch (TransactionException tex) {
+				throw new XAException(XAException.XAER_RMERR);
+			}
+
+			if (transaction == null) {
+				statusArray[i] = Status.STATUS_UNKNOWN; // may have been committed and forgotten, no presumed abort
+			} else if (transaction.getTransactionContext().isCoordinator() == false) {
+				statusArray[i] = Status.STATUS_UNKNOWN; // not decided here
+			} else if (TransactionImpl.class.isInstance(transaction) == false) {
+				statusArray[i] = Status.STATUS_UNKNOWN;
+			} else {
+				statusArray[i] = this.getTransactionOutcome(((TransactionImpl) transaction).getDecidedStatus());
+			}
+		}
+		return statusArray;
+	}
+
+	/** the outcome is definite only once the transaction is committing or rolling back. */
+	private int getTransactionOutcome(int transactionStatus) {
+		switch (transactionStatus) {
+		case Status.STATUS_COMMITTING:
+		case Status.STATUS_COMMITTED:
+			return Status.STATUS_COMMITTED;
+		case Status.STATUS_ROLLING_BACK:
+		case Status.STATUS_ROLLEDBACK:
+			return Status.STATUS_ROLLEDBACK;
+		default:
+			return Status.STATUS_UNKNOWN;
+		}
 	}
 
 	public void rollback(Xid xid) throws XAException {
@@ -412,6 +502,8 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		XidFactory xidFactory = this.beanFactory.getXidFactory();
 		TransactionXid branchXid = (TransactionXid) xid;
 		TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+		this.recoverIfNecessary(globalXid);
+
 		TransactionRepository repository = beanFactory.getTransactionRepository();
 		Transaction transaction = null;
 		try {
@@ -471,6 +563,15 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		}
 	}
 
+	private void recoverIfNecessary(TransactionXid globalXid) throws XAException {
+		TransactionRecovery transactionRecovery = this.beanFactory.getTransactionRecovery();
+		if (transactionRecovery.recoverIfNecessary(globalXid) == false) {
+			logger.warn("{}> transaction has not been recovered from the tx-log yet.",
+					globalXid.getGlobalTransactionIdString());
+			throw new XAException(XAException.XAER_RMFAIL);
+		} // end-if (transactionRecovery.recoverIfNecessary(globalXid) == false)
+	}
+
 	private void checkParticipantReadyIfNecessary() throws XAException {
 		if (this.ready == false) {
 			this.checkParticipantReady();
@@ -516,6 +617,15 @@ public class TransactionCoordinator implements RemoteCoordinator, TransactionBea
 		return CommonUtils.getApplication(this.endpoint);
 	}
 
+	private boolean recordEvent(int event, Xid xid, int value) {
+		TransactionEventRecorder recorder = this.beanFactory == null ? null : this.beanFactory.getTransactionEventRecorder();
+		if (recorder == null) {
+			return true;
+		}
+		recorder.recordEvent(event, xid, value);
+		return recorder.isVerbose();
+	}
+
 	public TransactionBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
@@ -17,9 +17,13 @@ package org.bytesoft.bytejta;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.transaction.HeuristicCommitException;
 import javax.transaction.HeuristicMixedException;
@@ -35,6 +39,7 @@ import javax.transaction.xa.Xid;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.resource.XATerminatorImpl;
 import org.bytesoft.bytejta.resource.XATerminatorOptd;
+import org.bytesoft.bytejta.statistic.VacantTransactionStatistic;
 import org.bytesoft.bytejta.strategy.CommonTransactionStrategy;
 import org.bytesoft.bytejta.strategy.LastResourceOptimizeStrategy;
 import org.bytesoft.bytejta.strategy.SimpleTransactionStrategy;
@@ -51,18 +56,26 @@ import org.bytesoft.transaction.RollbackRequiredException;
 import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.TransactionBeanFactory;
 import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.TransactionManager;
 import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.archive.TransactionArchive;
 import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.internal.InlineArrayList;
+import org.bytesoft.transaction.internal.InlineArrayMap;
 import org.bytesoft.transaction.internal.SynchronizationList;
 import org.bytesoft.transaction.internal.TransactionListenerList;
 import org.bytesoft.transaction.internal.TransactionResourceListenerList;
+import org.bytesoft.transaction.internal.TransactionStateMachine;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.logging.TransactionLogger;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteSvc;
+import org.bytesoft.transaction.supports.TransactionAdmission;
 import org.bytesoft.transaction.supports.TransactionExtra;
 import org.bytesoft.transaction.supports.TransactionListener;
 import org.bytesoft.transaction.supports.TransactionResourceListener;
+import org.bytesoft.transaction.supports.TransactionStatistic;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
 import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
@@ -72,12 +85,13 @@ import org.slf4j.LoggerFactory;
 public class TransactionImpl implements Transaction {
 	static final Logger logger = LoggerFactory.getLogger(TransactionImpl.class);
 
-	private transient boolean timing = true;
+	private transient volatile boolean timing = true;
 	private TransactionBeanFactory beanFactory;
 
 	private TransactionStrategy transactionStrategy;
 
-	private int transactionStatus;
+	private final TransactionStateMachine stateMachine = new TransactionStateMachine();
+	private final Lock resourceLock = new ReentrantLock();
 	private int transactionTimeout;
 	private int transactionVote;
 	private TransactionExtra transactionalExtra;
@@ -85,146 +99,222 @@ public class TransactionImpl implements Transaction {
 
 	private final TransactionResourceListenerList resourceListenerList = new TransactionResourceListenerList();
 
-	private final Map<RemoteSvc, XAResourceArchive> remoteParticipantMap = new HashMap<RemoteSvc, XAResourceArchive>();
-	private final Map<String, XAResourceArchive> nativeParticipantMap = new HashMap<String, XAResourceArchive>();
+	private final Map<RemoteSvc, XAResourceArchive> remoteParticipantMap = new InlineArrayMap<RemoteSvc, XAResourceArchive>();
+	private final Map<String, XAResourceArchive> nativeParticipantMap = new InlineArrayMap<String, XAResourceArchive>();
 	private XAResourceArchive participant; // last resource
-	private final List<XAResourceArchive> participantList = new ArrayList<XAResourceArchive>();
-	private final List<XAResourceArchive> nativeParticipantList = new ArrayList<XAResourceArchive>();
-	private final List<XAResourceArchive> remoteParticipantList = new ArrayList<XAResourceArchive>();
+	private final List<XAResourceArchive> participantList = new InlineArrayList<XAResourceArchive>();
+	private final List<XAResourceArchive> nativeParticipantList = new InlineArrayList<XAResourceArchive>();
+	private final List<XAResourceArchive> remoteParticipantList = new InlineArrayList<XAResourceArchive>();
 
 	private final SynchronizationList synchronizationList = new SynchronizationList();
-	private final TransactionListenerList transactionListenerList = new TransactionListenerList();
+	private final TransactionListenerList transactionListenerList = new StatisticTransactionListenerList();
 
 	private transient Exception createdAt;
+	private transient Executor completionExecutor;
+	private transient volatile boolean completionDeferred;
+	private final AtomicBoolean deferredCompletionArrived = new AtomicBoolean();
+	private transient boolean readOnlyPrepared;
+	private transient volatile boolean materialized = true;
+	private transient long statisticFlags; // see TransactionStatistic
+	private transient long statisticBeginTime;
+	private transient long statisticPhaseTime;
+	private transient boolean admitted; // see TransactionAdmission
+	private transient List<String> admittedParticipants;
 
 	public TransactionImpl(TransactionContext txContext) {
 		this.transactionContext = txContext;
 	}
 
-	public synchronized int participantPrepare() throws RollbackRequiredException, CommitRequiredException {
-
-		if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
-			throw new RollbackRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) {
-			throw new RollbackRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLING_BACK) {
-			throw new RollbackRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_UNKNOWN) {
-			throw new RollbackRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_NO_TRANSACTION) {
-			// it's impossible
-			throw new RollbackRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_PREPARED) {
-			throw new CommitRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTING) {
-			throw new CommitRequiredException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) {
-			throw new CommitRequiredException();
-		} /* else active, preparing {} */
-
-		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
-		TransactionXid xid = this.transactionContext.getXid();
-
-		this.transactionStatus = Status.STATUS_PREPARING;
-		TransactionArchive archive = this.getTransactionArchive();
-		transactionLogger.createTransaction(archive);
-		this.transactionListenerList.onPrepareStart(xid);
-		logger.info("{}> prepare-participant start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+	public int participantPrepare() throws RollbackRequiredException, CommitRequiredException {
+		boolean acquired = this.acquireCompletion();
 		try {
-			TransactionStrategy currentStrategy = this.getTransactionStrategy();
-			int vote = currentStrategy.prepare(xid);
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+				throw new RollbackRequiredException();
+			} else if (transactionStatus == Status.STATUS_ROLLEDBACK) {
+				throw new RollbackRequiredException();
+			} else if (transactionStatus == Status.STATUS_ROLLING_BACK) {
+				throw new RollbackRequiredException();
+			} else if (transactionStatus == Status.STATUS_UNKNOWN) {
+				throw new RollbackRequiredException();
+			} else if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
+				// it's impossible
+				throw new RollbackRequiredException();
+			} else if (transactionStatus == Status.STATUS_PREPARED) {
+				throw new CommitRequiredException();
+			} else if (transactionStatus == Status.STATUS_COMMITTING) {
+				throw new CommitRequiredException();
+			} else if (transactionStatus == Status.STATUS_COMMITTED) {
+				throw new CommitRequiredException();
+			} /* else active, preparing {} */
+
+			if (this.stateMachine.decideCommit() == false) {
+				this.stateMachine.compareAndSet(Status.STATUS_ACTIVE, Status.STATUS_MARKED_ROLLBACK);
+				throw new RollbackRequiredException(); // rollback-only requested by another thread
+			} // end-if (this.stateMachine.decideCommit() == false)
+
+			TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
+			TransactionXid xid = this.transactionContext.getXid();
+
+			boolean readOnlyCandidate = this.isReadOnlyParticipant();
+
+			this.stateMachine.transferTo(Status.STATUS_PREPARING);
+			TransactionArchive archive = this.getTransactionArchive();
+			if (readOnlyCandidate == false) {
+				transactionLogger.createTransaction(archive);
+			} // end-if (readOnlyCandidate == false)
+			this.transactionListenerList.onPrepareStart(xid);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_START, xid, 0)) {
+				logger.info("{}> prepare-participant start", xid.getGlobalTransactionIdString());
+			}
+			try {
+				TransactionStrategy currentStrategy = this.getTransactionStrategy();
+				int vote = currentStrategy.prepare(xid);
+
+				this.stateMachine.transferTo(Status.STATUS_PREPARED);
+				archive.setStatus(this.stateMachine.getStatus());
+				this.transactionVote = vote;
+				archive.setVote(vote);
+
+				this.transactionListenerList.onPrepareSuccess(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_SUCCESS, xid, 0)) {
+					logger.info("{}> prepare-participant complete successfully",
+							xid.getGlobalTransactionIdString());
+				}
 
-			this.transactionStatus = Status.STATUS_PREPARED;
-			archive.setStatus(this.transactionStatus);
-			this.transactionVote = vote;
-			archive.setVote(vote);
+				return vote;
+			} catch (CommitRequiredException crex) {
+				this.transactionVote = XAResource.XA_OK;
+				archive.setVote(this.transactionVote);
 
-			this.transactionListenerList.onPrepareSuccess(xid);
-			logger.info("{}> prepare-participant complete successfully",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				this.stateMachine.transferTo(Status.STATUS_COMMITTING);
+				archive.setStatus(this.stateMachine.getStatus());
 
-			return vote;
-		} catch (CommitRequiredException crex) {
-			this.transactionVote = XAResource.XA_OK;
-			archive.setVote(this.transactionVote);
+				this.transactionListenerList.onPrepareSuccess(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_SUCCESS, xid, 0)) {
+					logger.info("{}> prepare-participant complete successfully",
+							xid.getGlobalTransactionIdString());
+				}
 
-			this.transactionStatus = Status.STATUS_COMMITTING;
-			archive.setStatus(this.transactionStatus);
+				throw crex;
+			} catch (RollbackRequiredException rrex) {
+				this.stateMachine.transferTo(Status.STATUS_ROLLING_BACK);
+				archive.setStatus(this.stateMachine.getStatus());
 
-			this.transactionListenerList.onPrepareSuccess(xid);
-			logger.info("{}> prepare-participant complete successfully",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				this.transactionListenerList.onPrepareFailure(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_FAILURE, xid, 0)) {
+					logger.info("{}> prepare-participant failed", xid.getGlobalTransactionIdString());
+				}
 
-			throw crex;
-		} catch (RollbackRequiredException rrex) {
-			this.transactionStatus = Status.STATUS_ROLLING_BACK;
-			archive.setStatus(this.transactionStatus);
+				throw rrex;
+			} catch (RuntimeException xaex) {
+				this.stateMachine.transferTo(Status.STATUS_ROLLING_BACK);
+				archive.setStatus(this.stateMachine.getStatus());
 
-			this.transactionListenerList.onPrepareFailure(xid);
-			logger.info("{}> prepare-participant failed", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				this.transactionListenerList.onPrepareFailure(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_FAILURE, xid, 0)) {
+					logger.info("{}> prepare-participant failed", xid.getGlobalTransactionIdString());
+				}
 
-			throw rrex;
-		} catch (RuntimeException xaex) {
-			this.transactionStatus = Status.STATUS_ROLLING_BACK;
-			archive.setStatus(this.transactionStatus);
+				RollbackRequiredException rrex = new RollbackRequiredException();
+				rrex.initCause(xaex);
+				throw rrex;
+			} finally {
+				boolean readOnlyVote = archive.getVote() == XAResource.XA_RDONLY
+						&& this.stateMachine.getStatus() == Status.STATUS_PREPARED;
+				if (readOnlyCandidate && readOnlyVote) {
+					this.readOnlyPrepared = true; // nothing to recover, phase two will not arrive
+				} else if (readOnlyCandidate) {
+					transactionLogger.createTransaction(archive);
+				} else {
+					transactionLogger.updateTransaction(archive);
+				}
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
+		}
+	}
 
-			this.transactionListenerList.onPrepareFailure(xid);
-			logger.info("{}> prepare-participant failed", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+	private boolean isReadOnlyParticipant() {
+		if (this.remoteParticipantList.isEmpty() == false) {
+			return false;
+		}
 
-			RollbackRequiredException rrex = new RollbackRequiredException();
-			rrex.initCause(xaex);
-			throw rrex;
-		} finally {
-			transactionLogger.updateTransaction(archive);
+		for (int i = 0; i < this.participantList.size(); i++) {
+			XAResourceArchive archive = this.participantList.get(i);
+			XAResourceDescriptor descriptor = archive.getDescriptor();
+			XAResource delegate = descriptor == null ? null : descriptor.getDelegate();
+			if (LocalXAResource.class.isInstance(delegate) == false) {
+				return false;
+			} else if (((LocalXAResource) delegate).isReadOnly() == false) {
+				return false;
+			}
 		}
+
+		return true;
 	}
 
-	public synchronized void recoveryCommit() throws CommitRequiredException, SystemException {
-		TransactionXid xid = this.transactionContext.getXid();
+	public void recoveryCommit() throws CommitRequiredException, SystemException {
+		boolean acquired = this.acquireCompletion();
 		try {
-			this.recoverIfNecessary(); // Recover if transaction is recovered from tx-log.
+			TransactionXid xid = this.transactionContext.getXid();
+			try {
+				this.recoverIfNecessary(); // Recover if transaction is recovered from tx-log.
 
-			this.transactionContext.setRecoveredTimes(this.transactionContext.getRecoveredTimes() + 1);
-			this.transactionContext.setCreatedTime(System.currentTimeMillis());
+				this.transactionContext.setRecoveredTimes(this.transactionContext.getRecoveredTimes() + 1);
+				this.transactionContext.setCreatedTime(System.currentTimeMillis());
 
-			this.invokeParticipantCommit(false);
-		} catch (HeuristicMixedException ex) {
-			logger.error("{}> recover: branch={}, status= mixed, message= {}",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
-			SystemException sysEx = new SystemException();
-			sysEx.initCause(ex);
-			throw sysEx;
-		} catch (HeuristicRollbackException ex) {
-			logger.error("{}> recover: branch={}, status= rolledback",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex);
-			SystemException sysEx = new SystemException();
-			sysEx.initCause(ex);
-			throw sysEx;
+				if (this.stateMachine.getStatus() != Status.STATUS_COMMITTED) {
+					this.invokeParticipantCommit(false);
+				} // end-if (this.stateMachine.getStatus() != Status.STATUS_COMMITTED)
+			} catch (HeuristicMixedException ex) {
+				logger.error("{}> recover: branch={}, status= mixed, message= {}",
+						xid.getGlobalTransactionIdString(),
+						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+				SystemException sysEx = new SystemException();
+				sysEx.initCause(ex);
+				throw sysEx;
+			} catch (HeuristicRollbackException ex) {
+				logger.error("{}> recover: branch={}, status= rolledback",
+						xid.getGlobalTransactionIdString(),
+						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex);
+				SystemException sysEx = new SystemException();
+				sysEx.initCause(ex);
+				throw sysEx;
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
 	}
 
 	/* opc: true, compensable-transaction & remote-coordinator; false, remote-coordinator */
-	public synchronized void participantCommit(boolean opc) throws RollbackException, HeuristicMixedException,
+	public void participantCommit(boolean opc) throws RollbackException, HeuristicMixedException,
 			HeuristicRollbackException, SecurityException, IllegalStateException, CommitRequiredException, SystemException {
-		if (this.transactionContext.isRecoveried()) {
-			this.recover(); // Execute recoveryInit if transaction is recovered from tx-log.
-			this.invokeParticipantCommit(opc);
-			return;
-		} // end-if (this.transactionContext.isRecoveried())
-
-		Transaction transaction = //
-				Transaction.class.isInstance(this.transactionalExtra) ? (Transaction) this.transactionalExtra : null;
-		TransactionContext transactionContext = transaction == null ? null : transaction.getTransactionContext();
-		TransactionXid transactionXid = transactionContext == null ? null : transactionContext.getXid();
-		boolean compensable = transactionXid != null && XidFactory.TCC_FORMAT_ID == transactionXid.getFormatId();
-		if (compensable) {
-			this.compensableOnePhaseCommit();
-		} else if (opc) {
-			this.participantOnePhaseCommit();
-		} else {
-			this.participantTwoPhaseCommit();
+		boolean acquired = this.acquireCompletion();
+		try {
+			if (this.transactionContext.isRecoveried()) {
+				this.recover(); // Execute recoveryInit if transaction is recovered from tx-log.
+				if (this.stateMachine.getStatus() != Status.STATUS_COMMITTED) {
+					this.decideParticipantCommit();
+					this.invokeParticipantCommit(opc);
+				}
+				return;
+			} // end-if (this.transactionContext.isRecoveried())
+
+			Transaction transaction = //
+					Transaction.class.isInstance(this.transactionalExtra) ? (Transaction) this.transactionalExtra : null;
+			TransactionContext transactionContext = transaction == null ? null : transaction.getTransactionContext();
+			TransactionXid transactionXid = transactionContext == null ? null : transactionContext.getXid();
+			boolean compensable = transactionXid != null && XidFactory.TCC_FORMAT_ID == transactionXid.getFormatId();
+			if (compensable) {
+				this.compensableOnePhaseCommit();
+			} else if (opc) {
+				this.participantOnePhaseCommit();
+			} else {
+				this.participantTwoPhaseCommit();
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
 	}
 
@@ -243,40 +333,55 @@ public class TransactionImpl implements Transaction {
 
 	}
 
+	/* rolls back instead if a rollback-only request has been made before the commit is decided */
+	private void decideParticipantCommit() throws HeuristicRollbackException, SystemException {
+		if (this.stateMachine.decideCommit() == false) {
+			this.participantRollback();
+			throw new HeuristicRollbackException();
+		} // end-if (this.stateMachine.decideCommit() == false)
+	}
+
 	private void compensableOnePhaseCommit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
 			SecurityException, IllegalStateException, CommitRequiredException, SystemException {
 		this.checkForTransactionExtraIfNecessary();
 
-		if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+		int transactionStatus = this.stateMachine.getStatus();
+		if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
 			this.participantRollback();
 			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLING_BACK) {
+		} else if (transactionStatus == Status.STATUS_ROLLING_BACK) {
 			throw new HeuristicMixedException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) {
+		} else if (transactionStatus == Status.STATUS_ROLLEDBACK) {
 			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_UNKNOWN) {
+		} else if (transactionStatus == Status.STATUS_UNKNOWN) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_NO_TRANSACTION) {
+		} else if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) {
+		} else if (transactionStatus == Status.STATUS_COMMITTED) {
 			return;
 		} /* else active, preparing, prepared, committing {} */
 
+		this.decideParticipantCommit();
+
 		TransactionXid xid = this.transactionContext.getXid();
 		try {
-			this.transactionStatus = Status.STATUS_COMMITTING;
+			this.stateMachine.transferTo(Status.STATUS_COMMITTING);
 			TransactionArchive archive = this.getTransactionArchive();
 			this.transactionListenerList.onCommitStart(xid);
-			logger.info("{}> commit-participant start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+			if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_START, xid, 0)) {
+				logger.info("{}> commit-participant start", xid.getGlobalTransactionIdString());
+			}
 			// transactionLogger.updateTransaction(archive); // unneccessary
 			TransactionStrategy currentStrategy = this.getTransactionStrategy();
 			currentStrategy.commit(xid, true);
 
-			this.transactionStatus = Status.STATUS_COMMITTED; // Status.STATUS_COMMITTED;
-			archive.setStatus(this.transactionStatus);
+			this.stateMachine.transferTo(Status.STATUS_COMMITTED); // Status.STATUS_COMMITTED;
+			archive.setStatus(this.stateMachine.getStatus());
 			this.transactionListenerList.onCommitSuccess(xid);
-			logger.info("{}> commit-participant complete successfully",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+			if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_SUCCESS, xid, 0)) {
+				logger.info("{}> commit-participant complete successfully",
+						xid.getGlobalTransactionIdString());
+			}
 
 			// transactionLogger.updateTransaction(archive); // unneccessary
 		} catch (HeuristicMixedException ex) {
@@ -301,27 +406,32 @@ public class TransactionImpl implements Transaction {
 
 		this.checkForTransactionExtraIfNecessary();
 
-		if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+		int transactionStatus = this.stateMachine.getStatus();
+		if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
 			this.participantRollback();
 			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLING_BACK) {
+		} else if (transactionStatus == Status.STATUS_ROLLING_BACK) {
 			throw new HeuristicMixedException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) {
+		} else if (transactionStatus == Status.STATUS_ROLLEDBACK) {
 			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_UNKNOWN) {
+		} else if (transactionStatus == Status.STATUS_UNKNOWN) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_NO_TRANSACTION) {
+		} else if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) {
+		} else if (transactionStatus == Status.STATUS_COMMITTED) {
 			return;
 		} /* else active, preparing, prepared, committing {} */
 
+		this.decideParticipantCommit();
+
 		try {
-			try {
-				this.invokeParticipantPrepare();
-			} catch (CommitRequiredException crex) {
-				/* some RMs has already been committed. */
-			}
+			if (transactionStatus == Status.STATUS_ACTIVE || transactionStatus == Status.STATUS_PREPARING) {
+				try {
+					this.invokeParticipantPrepare();
+				} catch (CommitRequiredException crex) {
+					/* some RMs has already been committed. */
+				}
+			} // end-if (transactionStatus == Status.STATUS_ACTIVE || transactionStatus == Status.STATUS_PREPARING)
 
 			this.invokeParticipantCommit(true);
 		} catch (RollbackRequiredException rrex) {
@@ -346,23 +456,26 @@ public class TransactionImpl implements Transaction {
 	private void participantTwoPhaseCommit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
 			SecurityException, IllegalStateException, CommitRequiredException, SystemException {
 
-		if (this.transactionStatus == Status.STATUS_ACTIVE) {
+		int transactionStatus = this.stateMachine.getStatus();
+		if (transactionStatus == Status.STATUS_ACTIVE) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+		} else if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
 			this.participantRollback();
 			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLING_BACK) {
+		} else if (transactionStatus == Status.STATUS_ROLLING_BACK) {
 			throw new HeuristicMixedException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) {
+		} else if (transactionStatus == Status.STATUS_ROLLEDBACK) {
 			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_UNKNOWN) {
+		} else if (transactionStatus == Status.STATUS_UNKNOWN) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_NO_TRANSACTION) {
+		} else if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
 			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) {
+		} else if (transactionStatus == Status.STATUS_COMMITTED) {
 			return;
 		} /* else preparing, prepared, committing {} */
 
+		this.decideParticipantCommit();
+
 		try {
 			this.invokeParticipantCommit(false);
 		} catch (RollbackRequiredException rrex) {
@@ -387,9 +500,11 @@ public class TransactionImpl implements Transaction {
 	private void invokeParticipantPrepare() throws RollbackRequiredException, CommitRequiredException {
 		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
 		TransactionXid xid = this.transactionContext.getXid();
-		logger.info("{}> prepare-participant start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_START, xid, 0)) {
+			logger.info("{}> prepare-participant start", xid.getGlobalTransactionIdString());
+		}
 
-		this.transactionStatus = Status.STATUS_PREPARING;
+		this.stateMachine.transferTo(Status.STATUS_PREPARING);
 		TransactionArchive archive = this.getTransactionArchive();
 		this.transactionListenerList.onPrepareStart(xid);
 		transactionLogger.createTransaction(archive); // transactionLogger.updateTransaction(archive);
@@ -402,19 +517,25 @@ public class TransactionImpl implements Transaction {
 			commitRequired = ex;
 		} catch (RollbackRequiredException ex) {
 			this.transactionListenerList.onPrepareFailure(xid);
-			logger.info("{}> prepare-participant failed", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+			if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_FAILURE, xid, 0)) {
+				logger.info("{}> prepare-participant failed", xid.getGlobalTransactionIdString());
+			}
 			throw ex;
 		} catch (RuntimeException ex) {
 			this.transactionListenerList.onPrepareFailure(xid);
-			logger.info("{}> prepare-participant failed", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+			if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_FAILURE, xid, 0)) {
+				logger.info("{}> prepare-participant failed", xid.getGlobalTransactionIdString());
+			}
 			throw ex;
 		}
 
-		this.transactionStatus = Status.STATUS_PREPARED;
-		archive.setStatus(this.transactionStatus);
+		this.stateMachine.transferTo(Status.STATUS_PREPARED);
+		archive.setStatus(this.stateMachine.getStatus());
 		this.transactionListenerList.onPrepareSuccess(xid);
 		transactionLogger.updateTransaction(archive);
-		logger.info("{}> prepare-participant complete successfully", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_SUCCESS, xid, 0)) {
+			logger.info("{}> prepare-participant complete successfully", xid.getGlobalTransactionIdString());
+		}
 
 		if (commitRequired != null) {
 			throw commitRequired;
@@ -426,12 +547,14 @@ public class TransactionImpl implements Transaction {
 			throws HeuristicMixedException, HeuristicRollbackException, SystemException {
 		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
 		TransactionXid xid = this.transactionContext.getXid();
-		logger.info("{}> commit-participant start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_START, xid, 0)) {
+			logger.info("{}> commit-participant start", xid.getGlobalTransactionIdString());
+		}
 
-		this.transactionStatus = Status.STATUS_COMMITTING;
+		this.stateMachine.transferTo(Status.STATUS_COMMITTING);
 		TransactionArchive archive = this.getTransactionArchive();
 		this.transactionListenerList.onCommitStart(xid);
-		transactionLogger.updateTransaction(archive);
+		this.logCommitDecision(transactionLogger, archive);
 
 		boolean unFinishExists = true;
 		try {
@@ -453,208 +576,348 @@ public class TransactionImpl implements Transaction {
 			throw ex;
 		} finally {
 			if (unFinishExists == false) {
-				this.transactionStatus = Status.STATUS_COMMITTED; // Status.STATUS_COMMITTED;
-				archive.setStatus(this.transactionStatus);
+				this.stateMachine.transferTo(Status.STATUS_COMMITTED); // Status.STATUS_COMMITTED;
+				archive.setStatus(this.stateMachine.getStatus());
 				this.transactionListenerList.onCommitSuccess(xid);
 				transactionLogger.updateTransaction(archive);
 
-				logger.info("{}> commit-participant complete successfully",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_SUCCESS, xid, 0)) {
+					logger.info("{}> commit-participant complete successfully",
+							xid.getGlobalTransactionIdString());
+				}
 			}
 		}
 	}
 
-	public synchronized void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
+	public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
 			SecurityException, IllegalStateException, CommitRequiredException, SystemException {
-
-		if (this.transactionStatus == Status.STATUS_ACTIVE) {
-			this.fireCommit();
-		} else if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
-			this.fireRollback();
-			throw new HeuristicRollbackException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) /* should never happen */ {
-			throw new RollbackException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) /* should never happen */ {
-			logger.debug("Current transaction has already been committed.");
-		} else {
-			throw new IllegalStateException();
+		boolean acquired = this.acquireCompletion();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_ACTIVE && this.stateMachine.isRollbackRequested()) {
+				this.fireRequestedRollback();
+			} else if (transactionStatus == Status.STATUS_ACTIVE && this.materialized == false) {
+				if (this.stateMachine.decideCommit() == false) {
+					this.fireRequestedRollback();
+				} // end-if (this.stateMachine.decideCommit() == false)
+				TransactionStatistic transactionStatistic = this.getTransactionStatistic();
+				transactionStatistic.fireCommittingTransaction(this);
+				this.stateMachine.transferTo(Status.STATUS_COMMITTED); // nothing has been enlisted or propagated
+				transactionStatistic.fireCommittedTransaction(this);
+			} else if (transactionStatus == Status.STATUS_ACTIVE) {
+				this.fireCommit();
+			} else if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+				this.fireRollback();
+				throw new HeuristicRollbackException();
+			} else if (transactionStatus == Status.STATUS_ROLLEDBACK) /* should never happen */ {
+				throw new RollbackException();
+			} else if (transactionStatus == Status.STATUS_COMMITTED) /* should never happen */ {
+				logger.debug("Current transaction has already been committed.");
+			} else {
+				throw new IllegalStateException();
+			}
+		} finally {
+			this.releaseCompletion(acquired);
 		}
-
 	}
 
 	private void fireCommit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SecurityException,
 			IllegalStateException, CommitRequiredException, SystemException {
 		TransactionXid xid = this.transactionContext.getXid();
-		logger.info("{}> commit-transaction start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_START, xid, 0)) {
+			logger.info("{}> commit-transaction start", xid.getGlobalTransactionIdString());
+		}
 
 		if (this.participantList.size() == 0) {
+			if (this.stateMachine.decideCommit() == false) {
+				this.fireRequestedRollback();
+			} // end-if (this.stateMachine.decideCommit() == false)
 			this.skipOnePhaseCommit();
 		} else if (this.participantList.size() == 1 && (this.nativeParticipantList.size() == 1 || this.participant != null)) {
+			if (this.stateMachine.decideCommit() == false) {
+				this.fireRequestedRollback();
+			} // end-if (this.stateMachine.decideCommit() == false)
 			this.fireOnePhaseCommit();
 		} else {
 			this.fireTwoPhaseCommit();
 		}
 
-		logger.info("{}> commit-transaction complete successfully", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.completionDeferred) {
+			if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_DEFERRED, xid, 0)) {
+				logger.info("{}> commit-transaction decided, phase-two is deferred",
+						xid.getGlobalTransactionIdString());
+			}
+		} else {
+			if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_SUCCESS, xid, 0)) {
+				logger.info("{}> commit-transaction complete successfully",
+						xid.getGlobalTransactionIdString());
+			}
+		}
 	}
 
-	public synchronized void skipOnePhaseCommit()
+	public void skipOnePhaseCommit()
 			throws HeuristicRollbackException, HeuristicMixedException, CommitRequiredException, SystemException {
-		TransactionXid xid = this.transactionContext.getXid();
-		this.transactionListenerList.onCommitStart(xid);
-		this.transactionListenerList.onCommitSuccess(xid);
+		boolean acquired = this.acquireCompletion();
+		try {
+			TransactionXid xid = this.transactionContext.getXid();
+			this.transactionListenerList.onCommitStart(xid);
+			this.transactionListenerList.onCommitSuccess(xid);
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
+		}
 	}
 
-	public synchronized void fireOnePhaseCommit()
+	public void fireOnePhaseCommit()
 			throws HeuristicRollbackException, HeuristicMixedException, CommitRequiredException, SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			XAResourceArchive archive = null;
+			if (this.nativeParticipantList.size() > 0) {
+				archive = this.nativeParticipantList.get(0);
+			} else if (this.remoteParticipantList.size() > 0) {
+				archive = this.remoteParticipantList.get(0);
+			} else {
+				archive = this.participant;
+			}
 
-		XAResourceArchive archive = null;
-		if (this.nativeParticipantList.size() > 0) {
-			archive = this.nativeParticipantList.get(0);
-		} else if (this.remoteParticipantList.size() > 0) {
-			archive = this.remoteParticipantList.get(0);
-		} else {
-			archive = this.participant;
+			TransactionXid xid = this.transactionContext.getXid();
+			try {
+				this.transactionListenerList.onCommitStart(xid);
+				archive.commit(xid, true);
+				this.transactionListenerList.onCommitSuccess(xid);
+			} catch (XAException xaex) {
+				switch (xaex.errorCode) {
+				case XAException.XA_HEURMIX:
+					this.transactionListenerList.onCommitHeuristicMixed(xid);
+					HeuristicMixedException hmex = new HeuristicMixedException();
+					hmex.initCause(xaex);
+					throw hmex;
+				case XAException.XA_HEURCOM:
+					this.transactionListenerList.onCommitSuccess(xid);
+					break;
+				case XAException.XA_HEURRB:
+					this.transactionListenerList.onCommitHeuristicRolledback(xid);
+					HeuristicRollbackException hrex = new HeuristicRollbackException();
+					hrex.initCause(xaex);
+					throw hrex;
+				default:
+					this.transactionListenerList.onCommitFailure(xid);
+					SystemException ex = new SystemException();
+					ex.initCause(xaex);
+					throw ex;
+				}
+			} catch (RuntimeException rex) {
+				this.transactionListenerList.onCommitFailure(xid);
+				SystemException sysEx = new SystemException();
+				sysEx.initCause(rex);
+				throw sysEx;
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
+	}
 
-		TransactionXid xid = this.transactionContext.getXid();
+	public void fireTwoPhaseCommit()
+			throws HeuristicRollbackException, HeuristicMixedException, CommitRequiredException, SystemException {
+		boolean acquired = this.acquireCompletion();
 		try {
-			this.transactionListenerList.onCommitStart(xid);
-			archive.commit(xid, true);
-			this.transactionListenerList.onCommitSuccess(xid);
-		} catch (XAException xaex) {
-			switch (xaex.errorCode) {
-			case XAException.XA_HEURMIX:
-				this.transactionListenerList.onCommitHeuristicMixed(xid);
-				HeuristicMixedException hmex = new HeuristicMixedException();
-				hmex.initCause(xaex);
-				throw hmex;
-			case XAException.XA_HEURCOM:
-				this.transactionListenerList.onCommitSuccess(xid);
-				break;
-			case XAException.XA_HEURRB:
-				this.transactionListenerList.onCommitHeuristicRolledback(xid);
+			TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
+
+			TransactionXid xid = this.transactionContext.getXid();
+			if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_START, xid, 0)) {
+				logger.info("{}> prepare-participant start", xid.getGlobalTransactionIdString());
+			}
+
+			this.stateMachine.transferTo(Status.STATUS_PREPARING);// .setStatusPreparing();
+
+			TransactionArchive archive = this.getTransactionArchive();// new TransactionArchive();
+			transactionLogger.createTransaction(archive);
+
+			this.transactionListenerList.onPrepareStart(xid);
+
+			TransactionStrategy currentStrategy = this.getTransactionStrategy();
+			int vote = XAResource.XA_RDONLY;
+			try {
+				vote = currentStrategy.prepare(xid);
+			} catch (RollbackRequiredException xaex) {
+				this.transactionListenerList.onPrepareFailure(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_FAILURE, xid, 0)) {
+					logger.info("{}> prepare-participant failed", xid.getGlobalTransactionIdString());
+				}
+
+				this.invokeParticipantRollback(); // this.fireRollback();
 				HeuristicRollbackException hrex = new HeuristicRollbackException();
 				hrex.initCause(xaex);
 				throw hrex;
-			default:
-				this.transactionListenerList.onCommitFailure(xid);
-				SystemException ex = new SystemException();
-				ex.initCause(xaex);
-				throw ex;
+			} catch (CommitRequiredException xaex) {
+				vote = XAResource.XA_OK;
+				// committed = true;
+			} catch (RuntimeException rex) {
+				this.transactionListenerList.onPrepareFailure(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_FAILURE, xid, 0)) {
+					logger.info("{}> prepare-participant failed", xid.getGlobalTransactionIdString());
+				}
+
+				this.invokeParticipantRollback(); // this.fireRollback();
+				HeuristicRollbackException hrex = new HeuristicRollbackException();
+				hrex.initCause(rex);
+				throw hrex;
 			}
-		} catch (RuntimeException rex) {
-			this.transactionListenerList.onCommitFailure(xid);
-			SystemException sysEx = new SystemException();
-			sysEx.initCause(rex);
-			throw sysEx;
-		}
-	}
 
-	public synchronized void fireTwoPhaseCommit()
-			throws HeuristicRollbackException, HeuristicMixedException, CommitRequiredException, SystemException {
-		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
+			this.transactionListenerList.onPrepareSuccess(xid);
 
-		TransactionXid xid = this.transactionContext.getXid();
-		logger.info("{}> prepare-participant start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+			if (vote != XAResource.XA_RDONLY && this.stateMachine.decideCommit() == false) {
+				this.fireRequestedRollback(); // marked rollback-only by another thread during the prepare phase
+			} // end-if (vote != XAResource.XA_RDONLY && this.stateMachine.decideCommit() == false)
 
-		this.transactionStatus = Status.STATUS_PREPARING;// .setStatusPreparing();
+			if (vote == XAResource.XA_RDONLY) {
+				this.stateMachine.transferTo(Status.STATUS_PREPARED);// .setStatusPrepared();
+				this.transactionVote = XAResource.XA_RDONLY;
+				archive.setVote(XAResource.XA_RDONLY);
+				archive.setStatus(this.stateMachine.getStatus());
+				this.transactionListenerList.onCommitStart(xid);
+				this.transactionListenerList.onCommitSuccess(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_SUCCESS, xid, 0)) {
+					logger.info("{}> prepare-participant & commit-participant complete successfully",
+							xid.getGlobalTransactionIdString());
+				}
 
-		TransactionArchive archive = this.getTransactionArchive();// new TransactionArchive();
-		transactionLogger.createTransaction(archive);
+				transactionLogger.updateTransaction(archive);
+			} else {
+				// this.transactionStatus = Status.STATUS_PREPARED;// .setStatusPrepared();
 
-		this.transactionListenerList.onPrepareStart(xid);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_SUCCESS, xid, 0)) {
+					logger.info("{}> prepare-participant complete successfully, and commit-participant start",
+							xid.getGlobalTransactionIdString());
+				}
 
-		TransactionStrategy currentStrategy = this.getTransactionStrategy();
-		int vote = XAResource.XA_RDONLY;
-		try {
-			vote = currentStrategy.prepare(xid);
-		} catch (RollbackRequiredException xaex) {
-			this.transactionListenerList.onPrepareFailure(xid);
-			logger.info("{}> prepare-participant failed", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				this.stateMachine.transferTo(Status.STATUS_COMMITTING);// .setStatusCommiting();
+				this.transactionVote = XAResource.XA_OK;
+				archive.setVote(this.transactionVote);
+				archive.setStatus(this.stateMachine.getStatus());
+				this.transactionListenerList.onCommitStart(xid);
+				this.logCommitDecision(transactionLogger, archive);
 
-			this.invokeParticipantRollback(); // this.fireRollback();
-			HeuristicRollbackException hrex = new HeuristicRollbackException();
-			hrex.initCause(xaex);
-			throw hrex;
-		} catch (CommitRequiredException xaex) {
-			vote = XAResource.XA_OK;
-			// committed = true;
-		} catch (RuntimeException rex) {
-			this.transactionListenerList.onPrepareFailure(xid);
-			logger.info("{}> prepare-participant failed", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				if (this.completionExecutor != null) {
+					this.completionDeferred = true; // see releaseCompletion(boolean)
+					return;
+				} // end-if (this.completionExecutor != null)
 
-			this.invokeParticipantRollback(); // this.fireRollback();
-			HeuristicRollbackException hrex = new HeuristicRollbackException();
-			hrex.initCause(rex);
-			throw hrex;
-		}
+				try {
+					currentStrategy.commit(xid, false);
+				} catch (HeuristicMixedException ex) {
+					this.transactionListenerList.onCommitHeuristicMixed(xid);
+					throw ex;
+				} catch (HeuristicRollbackException ex) {
+					this.transactionListenerList.onCommitHeuristicRolledback(xid);
+					throw ex;
+				} catch (SystemException ex) {
+					this.transactionListenerList.onCommitFailure(xid);
+					throw ex;
+				} catch (RuntimeException ex) {
+					this.transactionListenerList.onCommitFailure(xid);
+					throw ex;
+				}
 
-		this.transactionListenerList.onPrepareSuccess(xid);
+				this.stateMachine.transferTo(Status.STATUS_COMMITTED); // Status.STATUS_COMMITTED;
+				archive.setStatus(this.stateMachine.getStatus());
+				this.transactionListenerList.onCommitSuccess(xid);
+				transactionLogger.updateTransaction(archive);
 
-		if (vote == XAResource.XA_RDONLY) {
-			this.transactionStatus = Status.STATUS_PREPARED;// .setStatusPrepared();
-			this.transactionVote = XAResource.XA_RDONLY;
-			archive.setVote(XAResource.XA_RDONLY);
-			archive.setStatus(this.transactionStatus);
-			this.transactionListenerList.onCommitStart(xid);
-			this.transactionListenerList.onCommitSuccess(xid);
-			logger.info("{}> prepare-participant & commit-participant complete successfully",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+				if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_SUCCESS, xid, 0)) {
+					logger.info("{}> commit-participant complete successfully",
+							xid.getGlobalTransactionIdString());
+				}
+			} // end-else-if (vote == XAResource.XA_RDONLY)
+		} finally {
+			this.releaseCompletion(acquired);
+		}
+	}
 
+	private void logCommitDecision(TransactionLogger transactionLogger, TransactionArchive archive) {
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_DECISION);
+		try {
 			transactionLogger.updateTransaction(archive);
-		} else {
-			// this.transactionStatus = Status.STATUS_PREPARED;// .setStatusPrepared();
+		} finally {
+			TransactionFlightRecorder.commit(event, archive.getXid(), null);
+		}
+	}
 
-			logger.info("{}> prepare-participant complete successfully, and commit-participant start",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+	private void fireDeferredCommit() {
+		TransactionRepository repository = this.beanFactory.getTransactionRepository();
+		TransactionLogger transactionLogger = this.beanFactory.getTransactionLogger();
+		TransactionXid xid = this.transactionContext.getXid();
 
-			this.transactionStatus = Status.STATUS_COMMITTING;// .setStatusCommiting();
-			this.transactionVote = XAResource.XA_OK;
-			archive.setVote(this.transactionVote);
-			archive.setStatus(this.transactionStatus);
-			this.transactionListenerList.onCommitStart(xid);
-			transactionLogger.updateTransaction(archive);
+		boolean acquired = false;
+		boolean forgetRequired = false;
+		try {
+			acquired = this.acquireCompletion();
 
-			try {
-				currentStrategy.commit(xid, false);
-			} catch (HeuristicMixedException ex) {
-				this.transactionListenerList.onCommitHeuristicMixed(xid);
-				throw ex;
-			} catch (HeuristicRollbackException ex) {
-				this.transactionListenerList.onCommitHeuristicRolledback(xid);
-				throw ex;
-			} catch (SystemException ex) {
-				this.transactionListenerList.onCommitFailure(xid);
-				throw ex;
-			} catch (RuntimeException ex) {
-				this.transactionListenerList.onCommitFailure(xid);
-				throw ex;
-			}
+			TransactionArchive archive = this.getTransactionArchive();
+			TransactionStrategy currentStrategy = this.getTransactionStrategy();
+			currentStrategy.commit(xid, false);
 
-			this.transactionStatus = Status.STATUS_COMMITTED; // Status.STATUS_COMMITTED;
-			archive.setStatus(this.transactionStatus);
+			this.stateMachine.transferTo(Status.STATUS_COMMITTED);
+			archive.setStatus(this.stateMachine.getStatus());
 			this.transactionListenerList.onCommitSuccess(xid);
 			transactionLogger.updateTransaction(archive);
 
-			logger.info("{}> commit-participant complete successfully",
-					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
-		} // end-else-if (vote == XAResource.XA_RDONLY)
+			if (this.recordEvent(TransactionEventRecorder.EVENT_COMMIT_PARTICIPANT_SUCCESS, xid, 0)) {
+				logger.info("{}> commit-participant complete successfully",
+						xid.getGlobalTransactionIdString());
+			}
+			forgetRequired = true;
+		} catch (HeuristicMixedException ex) {
+			this.transactionListenerList.onCommitHeuristicMixed(xid);
+			logger.error("{}> Error occurred while committing transaction.",
+					xid.getGlobalTransactionIdString(), ex);
+			forgetRequired = true;
+		} catch (HeuristicRollbackException ex) {
+			this.transactionListenerList.onCommitHeuristicRolledback(xid);
+			logger.error("{}> Error occurred while committing transaction.",
+					xid.getGlobalTransactionIdString(), ex);
+			forgetRequired = true;
+		} catch (SystemException ex) {
+			this.transactionListenerList.onCommitFailure(xid);
+			logger.error("{}> Error occurred while committing transaction, handed over to recovery.",
+					xid.getGlobalTransactionIdString(), ex);
+			repository.putErrorTransaction(xid, this);
+		} catch (RuntimeException ex) {
+			this.transactionListenerList.onCommitFailure(xid);
+			logger.error("{}> Error occurred while committing transaction, handed over to recovery.",
+					xid.getGlobalTransactionIdString(), ex);
+			repository.putErrorTransaction(xid, this);
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
+		}
+
+		if (this.deferredCompletionArrived.compareAndSet(false, true) == false) {
+			this.synchronizationList.afterCompletion(this.stateMachine.getStatus());
+		} // end-if (this.deferredCompletionArrived.compareAndSet(false, true) == false)
 
+		if (forgetRequired) {
+			this.forgetQuietly();
+		} // end-if (forgetRequired)
 	}
 
-	public synchronized boolean delistResource(XAResource xaRes, int flag) throws IllegalStateException, SystemException {
-		if (this.transactionStatus != Status.STATUS_ACTIVE && this.transactionStatus != Status.STATUS_MARKED_ROLLBACK) {
-			throw new IllegalStateException();
-		}
+	public boolean delistResource(XAResource xaRes, int flag) throws IllegalStateException, SystemException {
+		this.lockResources();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus != Status.STATUS_ACTIVE && transactionStatus != Status.STATUS_MARKED_ROLLBACK) {
+				throw new IllegalStateException();
+			}
 
-		if (XAResourceDescriptor.class.isInstance(xaRes)) {
-			return this.delistResource((XAResourceDescriptor) xaRes, flag);
-		} else {
-			XAResourceDescriptor descriptor = new UnidentifiedResourceDescriptor();
-			((UnidentifiedResourceDescriptor) descriptor).setDelegate(xaRes);
-			((UnidentifiedResourceDescriptor) descriptor).setIdentifier("");
-			return this.delistResource(descriptor, flag);
+			if (XAResourceDescriptor.class.isInstance(xaRes)) {
+				return this.delistResource((XAResourceDescriptor) xaRes, flag);
+			} else {
+				XAResourceDescriptor descriptor = new UnidentifiedResourceDescriptor();
+				((UnidentifiedResourceDescriptor) descriptor).setDelegate(xaRes);
+				((UnidentifiedResourceDescriptor) descriptor).setIdentifier("");
+				return this.delistResource(descriptor, flag);
+			}
+		} finally {
+			this.resourceLock.unlock();
 		}
 	}
 
@@ -689,9 +952,11 @@ public class TransactionImpl implements Transaction {
 		try {
 			Xid branchXid = archive.getXid();
 
-			logger.info("{}> delist: xares= {}, branch= {}, flags= {}",
-					ByteUtils.byteArrayToString(branchXid.getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(branchXid.getBranchQualifier()), flag);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_DELIST, branchXid, flag)) {
+				logger.info("{}> delist: xares= {}, branch= {}, flags= {}",
+						ByteUtils.byteArrayToString(branchXid.getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(branchXid.getBranchQualifier()), flag);
+			}
 
 			switch (flag) {
 			case XAResource.TMSUSPEND:
@@ -735,28 +1000,32 @@ public class TransactionImpl implements Transaction {
 		}
 	}
 
-	public synchronized boolean enlistResource(XAResource xaRes)
+	public boolean enlistResource(XAResource xaRes)
 			throws RollbackException, IllegalStateException, SystemException {
+		this.lockResources();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+				// When a RollbackException is received, DBCP treats the state as STATUS_ROLLEDBACK,
+				// but the actual state is still STATUS_MARKED_ROLLBACK.
+				throw new IllegalStateException(); // throw new RollbackException();
+			} else if (transactionStatus != Status.STATUS_ACTIVE) {
+				throw new IllegalStateException();
+			}
 
-		if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
-			// When a RollbackException is received, DBCP treats the state as STATUS_ROLLEDBACK,
-			// but the actual state is still STATUS_MARKED_ROLLBACK.
-			throw new IllegalStateException(); // throw new RollbackException();
-		} else if (this.transactionStatus != Status.STATUS_ACTIVE) {
-			throw new IllegalStateException();
-		}
-
-		if (XAResourceDescriptor.class.isInstance(xaRes)) {
-			return this.enlistResource((XAResourceDescriptor) xaRes);
-		} else if (XAResourceDescriptor.class.isInstance(xaRes) == false && this.transactionContext.isCoordinator()) {
-			XAResourceDescriptor descriptor = new UnidentifiedResourceDescriptor();
-			((UnidentifiedResourceDescriptor) descriptor).setIdentifier("");
-			((UnidentifiedResourceDescriptor) descriptor).setDelegate(xaRes);
-			return this.enlistResource(descriptor);
-		} else {
-			throw new SystemException("Unknown xa resource!");
+			if (XAResourceDescriptor.class.isInstance(xaRes)) {
+				return this.enlistResource((XAResourceDescriptor) xaRes);
+			} else if (XAResourceDescriptor.class.isInstance(xaRes) == false && this.transactionContext.isCoordinator()) {
+				XAResourceDescriptor descriptor = new UnidentifiedResourceDescriptor();
+				((UnidentifiedResourceDescriptor) descriptor).setIdentifier("");
+				((UnidentifiedResourceDescriptor) descriptor).setDelegate(xaRes);
+				return this.enlistResource(descriptor);
+			} else {
+				throw new SystemException("Unknown xa resource!");
+			}
+		} finally {
+			this.resourceLock.unlock();
 		}
-
 	}
 
 	private XAResourceArchive getEnlistedResourceArchive(XAResourceDescriptor descriptor) {
@@ -781,6 +1050,8 @@ public class TransactionImpl implements Transaction {
 
 	public boolean enlistResource(XAResourceDescriptor descriptor)
 			throws RollbackException, IllegalStateException, SystemException {
+		this.materializeIfNecessary();
+
 		XAResourceArchive archive = null;
 
 		XAResourceArchive enlisted = this.getEnlistedResourceArchive(descriptor);
@@ -798,6 +1069,7 @@ public class TransactionImpl implements Transaction {
 			archive = new XAResourceArchive();
 			archive.setDescriptor(descriptor);
 			archive.setIdentified(true);
+			archive.setResourceStatistic(this.beanFactory.getResourceStatistic());
 
 			if (this.transactionalExtra != null && this.transactionalExtra.getTransactionXid() != null) {
 				archive.setXid(this.transactionalExtra.getTransactionXid());
@@ -829,6 +1101,8 @@ public class TransactionImpl implements Transaction {
 			}
 		}
 
+		String participantKey = flags == XAResource.TMNOFLAGS ? this.admitParticipant(descriptor) : null;
+
 		boolean success = false;
 		try {
 			Boolean enlistValue = this.enlistResource(archive, flags);
@@ -852,10 +1126,12 @@ public class TransactionImpl implements Transaction {
 					boolean parentFlag = StringUtils.equalsIgnoreCase(remoteSvc.getServiceKey(), parentSvc.getServiceKey());
 					if (nativeFlag || parentFlag) {
 						logger.warn("Endpoint {} can not be its own remote branch!", identifier);
+						this.releaseParticipant(participantKey);
 						return false;
 					}
 
 					this.remoteParticipantList.add(archive);
+					this.registerAdmittedParticipant(participantKey);
 					this.putEnlistedResourceArchive(archive);
 				} else if (this.participant == null) {
 					// this.participant = this.participant == null ? archive : this.participant;
@@ -870,6 +1146,8 @@ public class TransactionImpl implements Transaction {
 
 					this.resourceListenerList.onEnlistResource(archive.getXid(), descriptor);
 				} // end-if (resourceValid)
+			} else {
+				this.releaseParticipant(participantKey);
 			}
 		}
 
@@ -880,11 +1158,14 @@ public class TransactionImpl implements Transaction {
 	// 2) false, success(resource has already been added to archive list);
 	// 3) null, failure.
 	private Boolean enlistResource(XAResourceArchive archive, int flag) throws SystemException {
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_ENLIST);
 		try {
 			Xid branchXid = archive.getXid();
-			logger.info("{}> enlist: xares= {}, branch= {}, flags: {}",
-					ByteUtils.byteArrayToString(branchXid.getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(branchXid.getBranchQualifier()), flag);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_ENLIST, branchXid, flag)) {
+				logger.info("{}> enlist: xares= {}, branch= {}, flags: {}",
+						ByteUtils.byteArrayToString(branchXid.getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(branchXid.getBranchQualifier()), flag);
+			}
 
 			switch (flag) {
 			case XAResource.TMNOFLAGS:
@@ -942,89 +1223,134 @@ public class TransactionImpl implements Transaction {
 		} catch (RuntimeException ex) {
 			logger.error("XATerminatorImpl.enlistResource(XAResourceArchive, int)", ex);
 			throw new SystemException();
+		} finally {
+			TransactionFlightRecorder.commit(event, archive.getXid(), archive.getDescriptor());
 		}
 
 	}
 
 	public int getStatus() /* throws SystemException */ {
-		return this.transactionStatus;
+		return this.stateMachine.getStatus();
 	}
 
-	public synchronized void registerSynchronization(Synchronization sync)
+	public void registerSynchronization(Synchronization sync)
 			throws RollbackException, IllegalStateException, SystemException {
-
-		if (this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
-			throw new RollbackException();
-		} else if (this.transactionStatus == Status.STATUS_ACTIVE) {
-			this.synchronizationList.registerSynchronizationQuietly(sync);
-			logger.debug("{}> register-sync: sync= {}"//
-					, ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), sync);
-		} else {
-			throw new IllegalStateException();
+		this.lockResources();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
+				throw new RollbackException();
+			} else if (transactionStatus == Status.STATUS_ACTIVE) {
+				this.synchronizationList.registerSynchronizationQuietly(sync);
+				if (this.materialized) {
+					logger.debug("{}> register-sync: sync= {}"//
+							, ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), sync);
+				} // end-if (this.materialized)
+			} else {
+				throw new IllegalStateException();
+			}
+		} finally {
+			this.resourceLock.unlock();
 		}
-
 	}
 
-	public synchronized void rollback() throws IllegalStateException, RollbackRequiredException, SystemException {
-		if (this.transactionStatus == Status.STATUS_UNKNOWN) {
-			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_NO_TRANSACTION) {
-			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) /* should never happen */ {
-			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) /* should never happen */ {
-			logger.debug("Current transaction has already been rolled back.");
-		} else {
-			this.fireRollback();
+	public void rollback() throws IllegalStateException, RollbackRequiredException, SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_UNKNOWN) {
+				throw new IllegalStateException();
+			} else if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
+				throw new IllegalStateException();
+			} else if (transactionStatus == Status.STATUS_COMMITTED) /* should never happen */ {
+				throw new IllegalStateException();
+			} else if (transactionStatus == Status.STATUS_ROLLEDBACK) /* should never happen */ {
+				logger.debug("Current transaction has already been rolled back.");
+			} else if (this.materialized == false) {
+				TransactionStatistic transactionStatistic = this.getTransactionStatistic();
+				transactionStatistic.fireRollingBackTransaction(this);
+				this.stateMachine.transferTo(Status.STATUS_ROLLING_BACK);
+				this.stateMachine.transferTo(Status.STATUS_ROLLEDBACK);
+				transactionStatistic.fireRolledbackTransaction(this);
+			} else {
+				this.fireRollback();
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
 	}
 
+	private void fireRequestedRollback() throws HeuristicRollbackException, SystemException {
+		this.transactionContext.setRollbackOnly(true);
+		this.rollback();
+		throw new HeuristicRollbackException();
+	}
+
 	private void fireRollback() throws IllegalStateException, RollbackRequiredException, SystemException {
 		TransactionXid xid = this.transactionContext.getXid();
-		logger.info("{}> rollback-transaction start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_ROLLBACK_START, xid, 0)) {
+			logger.info("{}> rollback-transaction start", xid.getGlobalTransactionIdString());
+		}
 
 		this.invokeParticipantRollback();
 
-		logger.info("{}> rollback-transaction complete successfully",
-				ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_ROLLBACK_SUCCESS, xid, 0)) {
+			logger.info("{}> rollback-transaction complete successfully",
+					xid.getGlobalTransactionIdString());
+		}
 	}
 
-	public synchronized void recoveryRollback() throws RollbackRequiredException, SystemException {
-		this.recoverIfNecessary(); // Recover if transaction is recovered from tx-log.
+	public void recoveryRollback() throws RollbackRequiredException, SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			this.recoverIfNecessary(); // Recover if transaction is recovered from tx-log.
 
-		this.transactionContext.setRecoveredTimes(this.transactionContext.getRecoveredTimes() + 1);
-		this.transactionContext.setCreatedTime(System.currentTimeMillis());
+			this.transactionContext.setRecoveredTimes(this.transactionContext.getRecoveredTimes() + 1);
+			this.transactionContext.setCreatedTime(System.currentTimeMillis());
 
-		this.invokeParticipantRollback();
+			if (this.stateMachine.getStatus() != Status.STATUS_ROLLEDBACK) {
+				this.invokeParticipantRollback();
+			} // end-if (this.stateMachine.getStatus() != Status.STATUS_ROLLEDBACK)
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
+		}
 	}
 
-	public synchronized void participantRollback() throws IllegalStateException, RollbackRequiredException, SystemException {
-
-		if (this.transactionStatus == Status.STATUS_UNKNOWN) {
-			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_NO_TRANSACTION) {
-			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_COMMITTED) {
-			throw new IllegalStateException();
-		} else if (this.transactionStatus == Status.STATUS_ROLLEDBACK) {
-			return;
-		}
+	public void participantRollback() throws IllegalStateException, RollbackRequiredException, SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_UNKNOWN) {
+				throw new IllegalStateException();
+			} else if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
+				throw new IllegalStateException();
+			} else if (transactionStatus == Status.STATUS_COMMITTED) {
+				throw new IllegalStateException();
+			} else if (transactionStatus == Status.STATUS_ROLLEDBACK) {
+				return;
+			}
 
-		if (this.transactionContext.isRecoveried()) {
-			this.recover(); // Execute recoveryInit if transaction is recovered from tx-log.
-			this.invokeParticipantRollback();
-		} else {
-			this.invokeParticipantRollback();
+			if (this.transactionContext.isRecoveried()) {
+				this.recover(); // Execute recoveryInit if transaction is recovered from tx-log.
+				if (this.stateMachine.getStatus() != Status.STATUS_ROLLEDBACK) {
+					this.invokeParticipantRollback();
+				}
+			} else {
+				this.invokeParticipantRollback();
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
-
 	}
 
 	private void invokeParticipantRollback() throws SystemException {
 		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
 		TransactionXid xid = this.transactionContext.getXid();
-		logger.info("{}> rollback-participant start", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_ROLLBACK_PARTICIPANT_START, xid, 0)) {
+			logger.info("{}> rollback-participant start", xid.getGlobalTransactionIdString());
+		}
 
-		this.transactionStatus = Status.STATUS_ROLLING_BACK;
+		this.stateMachine.transferTo(Status.STATUS_ROLLING_BACK);
 		TransactionArchive archive = this.getTransactionArchive();
 		this.transactionListenerList.onRollbackStart(xid);
 		transactionLogger.updateTransaction(archive); // don't create!
@@ -1052,13 +1378,15 @@ public class TransactionImpl implements Transaction {
 			throw sysEx;
 		}
 
-		this.transactionStatus = Status.STATUS_ROLLEDBACK; // Status.STATUS_ROLLEDBACK;
-		archive.setStatus(this.transactionStatus);
+		this.stateMachine.transferTo(Status.STATUS_ROLLEDBACK); // Status.STATUS_ROLLEDBACK;
+		archive.setStatus(this.stateMachine.getStatus());
 		this.transactionListenerList.onRollbackSuccess(xid);
 		transactionLogger.updateTransaction(archive);
 
-		logger.info("{}> rollback-participant complete successfully",
-				ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_ROLLBACK_PARTICIPANT_SUCCESS, xid, 0)) {
+			logger.info("{}> rollback-participant complete successfully",
+					xid.getGlobalTransactionIdString());
+		}
 	}
 
 	public void suspend() throws RollbackRequiredException, SystemException {
@@ -1111,18 +1439,21 @@ public class TransactionImpl implements Transaction {
 
 	}
 
-	public synchronized void fireBeforeTransactionCompletionQuietly() {
+	public void fireBeforeTransactionCompletionQuietly() {
 		this.synchronizationList.beforeCompletion();
 		this.delistAllResourceQuietly();
 	}
 
-	public synchronized void fireBeforeTransactionCompletion() throws RollbackRequiredException, SystemException {
+	public void fireBeforeTransactionCompletion() throws RollbackRequiredException, SystemException {
 		this.synchronizationList.beforeCompletion();
 		this.delistAllResource();
 	}
 
-	public synchronized void fireAfterTransactionCompletion() {
-		this.synchronizationList.afterCompletion(this.transactionStatus);
+	public void fireAfterTransactionCompletion() {
+		if (this.completionDeferred && this.deferredCompletionArrived.compareAndSet(false, true)) {
+			return; // reported once the deferred phase-two has finished, see fireDeferredCommit()
+		} // end-if (this.completionDeferred && this.deferredCompletionArrived.compareAndSet(false, true))
+		this.synchronizationList.afterCompletion(this.stateMachine.getStatus());
 	}
 
 	public void delistAllResourceQuietly() {
@@ -1180,12 +1511,71 @@ public class TransactionImpl implements Transaction {
 		}
 	}
 
-	public synchronized void setRollbackOnly() throws IllegalStateException, SystemException {
-		if (this.transactionStatus == Status.STATUS_ACTIVE || this.transactionStatus == Status.STATUS_MARKED_ROLLBACK) {
-			this.transactionContext.setRollbackOnly(true);
-			this.transactionStatus = Status.STATUS_MARKED_ROLLBACK;
-		} else {
+	public void setRollbackOnly() throws IllegalStateException, SystemException {
+		if (this.stateMachine.markRollbackOnly() == false) {
 			throw new IllegalStateException();
+		} // the completion owner, if any, rolls back at its commit decision
+		this.transactionContext.setRollbackOnly(true);
+	}
+
+	/**
+	 * The status of a transaction which is committing/rolling back or completed, read while holding the completion
+	 * ownership. STATUS_UNKNOWN if it is not decided yet, or is being completed by another thread.
+	 */
+	public int getDecidedStatus() {
+		int transactionStatus = this.stateMachine.getStatus();
+		if (transactionStatus != Status.STATUS_COMMITTING && transactionStatus != Status.STATUS_COMMITTED
+				&& transactionStatus != Status.STATUS_ROLLING_BACK && transactionStatus != Status.STATUS_ROLLEDBACK) {
+			return Status.STATUS_UNKNOWN;
+		} // end-if (transactionStatus != Status.STATUS_COMMITTING && ...)
+
+		boolean acquired = false;
+		try {
+			acquired = this.stateMachine.acquireCompletion();
+		} catch (IllegalStateException ex) {
+			return Status.STATUS_UNKNOWN;
+		}
+
+		try {
+			return this.stateMachine.getStatus();
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
+		}
+	}
+
+	private boolean acquireCompletion() throws IllegalStateException {
+		boolean acquired = this.stateMachine.acquireCompletion();
+		if (acquired && this.resourceLock.tryLock() == false) {
+			this.stateMachine.releaseCompletion(acquired);
+			throw new IllegalStateException("The resources of the transaction are being enlisted/delisted by another thread!");
+		} else if (acquired) {
+			this.resourceLock.unlock();
+		}
+		return acquired;
+	}
+
+	private void releaseCompletion(boolean acquired) {
+		this.stateMachine.releaseCompletion(acquired);
+		if (acquired == false || this.completionDeferred == false) {
+			return;
+		} // end-if (acquired == false || this.completionDeferred == false)
+
+		try {
+			this.completionExecutor.execute(new Runnable() {
+				public void run() {
+					fireDeferredCommit();
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			this.fireDeferredCommit(); // completion executor is saturated
+		}
+	}
+
+	private void lockResources() throws IllegalStateException {
+		this.resourceLock.lock();
+		if (this.stateMachine.isCompletingByOtherThread()) {
+			this.resourceLock.unlock();
+			throw new IllegalStateException("The transaction is being completed by another thread!");
 		}
 	}
 
@@ -1195,13 +1585,19 @@ public class TransactionImpl implements Transaction {
 		}
 	}
 
-	public synchronized void recover() throws SystemException {
-		if (transactionStatus == Status.STATUS_PREPARING) {
-			this.recover4PreparingStatus();
-		} else if (transactionStatus == Status.STATUS_COMMITTING) {
-			this.recover4CommittingStatus();
-		} else if (transactionStatus == Status.STATUS_ROLLING_BACK) {
-			this.recover4RollingBackStatus();
+	public void recover() throws SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			int transactionStatus = this.stateMachine.getStatus();
+			if (transactionStatus == Status.STATUS_PREPARING) {
+				this.recover4PreparingStatus();
+			} else if (transactionStatus == Status.STATUS_COMMITTING) {
+				this.recover4CommittingStatus();
+			} else if (transactionStatus == Status.STATUS_ROLLING_BACK) {
+				this.recover4RollingBackStatus();
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
 	}
 
@@ -1227,7 +1623,7 @@ public class TransactionImpl implements Transaction {
 		}
 
 		if (unPrepareExists == false) {
-			this.transactionStatus = Status.STATUS_PREPARED;
+			this.stateMachine.transferTo(Status.STATUS_PREPARED);
 
 			TransactionArchive archive = this.getTransactionArchive();
 			transactionLogger.updateTransaction(archive);
@@ -1269,12 +1665,12 @@ public class TransactionImpl implements Transaction {
 		}
 
 		if (rollbackExists) {
-			this.transactionStatus = Status.STATUS_ROLLING_BACK;
+			this.stateMachine.transferTo(Status.STATUS_ROLLING_BACK);
 
 			TransactionArchive archive = this.getTransactionArchive();
 			transactionLogger.updateTransaction(archive);
 		} else if (unCommitExists == false) {
-			this.transactionStatus = Status.STATUS_COMMITTED;
+			this.stateMachine.transferTo(Status.STATUS_COMMITTED);
 
 			TransactionArchive archive = this.getTransactionArchive();
 			transactionLogger.updateTransaction(archive);
@@ -1301,7 +1697,7 @@ public class TransactionImpl implements Transaction {
 		}
 
 		if (unRollbackExists == false) {
-			this.transactionStatus = Status.STATUS_ROLLEDBACK;
+			this.stateMachine.transferTo(Status.STATUS_ROLLEDBACK);
 
 			TransactionArchive archive = this.getTransactionArchive();
 			transactionLogger.updateTransaction(archive);
@@ -1318,7 +1714,19 @@ public class TransactionImpl implements Transaction {
 		XAResource delegate = descriptor.getDelegate();
 		boolean nativeFlag = LocalXAResource.class.isInstance(delegate);
 		boolean remoteFlag = RemoteCoordinator.class.isInstance(delegate);
-		if (nativeFlag) {
+		XAResourceRecoveryScan recoveryScan = XAResourceRecoveryScan.getCurrent();
+		if (recoveryScan != null && recoveryScan.isScannable(archive)) {
+			try {
+				xidRecovered = recoveryScan.recoverable(archive, remoteFlag);
+			} catch (XAException ex) {
+				logger.error("{}> recover-resource failed. branch= {}",
+						globalXid.getGlobalTransactionIdString(),
+						ByteUtils.byteArrayToString(globalXid.getBranchQualifier()), ex);
+				SystemException sysEx = new SystemException();
+				sysEx.initCause(ex);
+				throw sysEx;
+			}
+		} else if (nativeFlag) {
 			try {
 				((LocalXAResource) delegate).recoverable(archive.getXid());
 				xidRecovered = true;
@@ -1328,7 +1736,7 @@ public class TransactionImpl implements Transaction {
 					break;
 				default:
 					logger.error("{}> recover-resource failed. branch= {}",
-							ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()),
+							globalXid.getGlobalTransactionIdString(),
 							ByteUtils.byteArrayToString(globalXid.getBranchQualifier()), ex);
 					throw new SystemException();
 				}
@@ -1350,7 +1758,7 @@ public class TransactionImpl implements Transaction {
 				}
 			} catch (Exception ex) {
 				logger.error("{}> recover-resource failed. branch= {}",
-						ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()),
+						globalXid.getGlobalTransactionIdString(),
 						ByteUtils.byteArrayToString(globalXid.getBranchQualifier()), ex);
 				throw new SystemException();
 			}
@@ -1361,7 +1769,7 @@ public class TransactionImpl implements Transaction {
 		return xidRecovered;
 	}
 
-	public synchronized void forgetQuietly() {
+	public void forgetQuietly() {
 		TransactionXid xid = this.transactionContext.getXid();
 		try {
 			this.forget();
@@ -1374,64 +1782,81 @@ public class TransactionImpl implements Transaction {
 		}
 	}
 
-	public synchronized void forget() throws SystemException {
-		TransactionRepository repository = beanFactory.getTransactionRepository();
-		TransactionLogger transactionLogger = this.beanFactory.getTransactionLogger();
+	public void forget() throws SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			this.getTransactionStatistic().fireCleanupTransaction(this);
+			this.releaseAdmission();
+			if (this.materialized == false) {
+				return; // neither registered nor logged
+			} // end-if (this.materialized == false)
 
-		TransactionXid xid = this.transactionContext.getXid();
+			TransactionRepository repository = beanFactory.getTransactionRepository();
+			TransactionLogger transactionLogger = this.beanFactory.getTransactionLogger();
 
-		this.cleanup(); // forget branch-transaction has been hueristic completed.
+			TransactionXid xid = this.transactionContext.getXid();
 
-		repository.removeErrorTransaction(xid);
-		repository.removeTransaction(xid);
+			this.cleanup(); // forget branch-transaction has been hueristic completed.
 
-		transactionLogger.deleteTransaction(this.getTransactionArchive());
-	}
+			repository.removeErrorTransaction(xid);
+			repository.removeTransaction(xid);
 
-	public synchronized void cleanup() throws SystemException {
-		boolean unFinishExists = false;
+			if (this.readOnlyPrepared == false) {
+				transactionLogger.deleteTransaction(this.getTransactionArchive());
+			} // end-if (this.readOnlyPrepared == false)
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
+		}
+	}
 
-		for (int i = 0; i < this.participantList.size(); i++) {
-			XAResourceArchive archive = this.participantList.get(i);
-			Xid currentXid = archive.getXid();
-			if (archive.isHeuristic()) {
-				try {
-					Xid branchXid = archive.getXid();
-					archive.forget(branchXid);
-				} catch (XAException xae) {
-					// Possible exception values are XAER_RMERR, XAER_RMFAIL
-					// , XAER_NOTA, XAER_INVAL, or XAER_PROTO.
-					switch (xae.errorCode) {
-					case XAException.XAER_RMERR:
-						unFinishExists = true;
-						logger.error("{}> forget: xares= {}, branch={}, error= {}",
-								ByteUtils.byteArrayToString(currentXid.getGlobalTransactionId()), archive,
-								ByteUtils.byteArrayToString(currentXid.getBranchQualifier()), xae.errorCode);
-						break;
-					case XAException.XAER_RMFAIL:
-						unFinishExists = true;
-						logger.error("{}> forget: xares= {}, branch={}, error= {}",
-								ByteUtils.byteArrayToString(currentXid.getGlobalTransactionId()), archive,
-								ByteUtils.byteArrayToString(currentXid.getBranchQualifier()), xae.errorCode);
-						break;
-					case XAException.XAER_NOTA:
-					case XAException.XAER_INVAL:
-					case XAException.XAER_PROTO:
-						break;
-					default:
-						unFinishExists = true;
-						logger.error("{}> forget: xares= {}, branch={}, error= {}",
-								ByteUtils.byteArrayToString(currentXid.getGlobalTransactionId()), archive,
-								ByteUtils.byteArrayToString(currentXid.getBranchQualifier()), xae.errorCode);
+	public void cleanup() throws SystemException {
+		boolean acquired = this.acquireCompletion();
+		try {
+			boolean unFinishExists = false;
+
+			for (int i = 0; i < this.participantList.size(); i++) {
+				XAResourceArchive archive = this.participantList.get(i);
+				Xid currentXid = archive.getXid();
+				if (archive.isHeuristic()) {
+					try {
+						Xid branchXid = archive.getXid();
+						archive.forget(branchXid);
+					} catch (XAException xae) {
+						// Possible exception values are XAER_RMERR, XAER_RMFAIL
+						// , XAER_NOTA, XAER_INVAL, or XAER_PROTO.
+						switch (xae.errorCode) {
+						case XAException.XAER_RMERR:
+							unFinishExists = true;
+							logger.error("{}> forget: xares= {}, branch={}, error= {}",
+									ByteUtils.byteArrayToString(currentXid.getGlobalTransactionId()), archive,
+									ByteUtils.byteArrayToString(currentXid.getBranchQualifier()), xae.errorCode);
+							break;
+						case XAException.XAER_RMFAIL:
+							unFinishExists = true;
+							logger.error("{}> forget: xares= {}, branch={}, error= {}",
+									ByteUtils.byteArrayToString(currentXid.getGlobalTransactionId()), archive,
+									ByteUtils.byteArrayToString(currentXid.getBranchQualifier()), xae.errorCode);
+							break;
+						case XAException.XAER_NOTA:
+						case XAException.XAER_INVAL:
+						case XAException.XAER_PROTO:
+							break;
+						default:
+							unFinishExists = true;
+							logger.error("{}> forget: xares= {}, branch={}, error= {}",
+									ByteUtils.byteArrayToString(currentXid.getGlobalTransactionId()), archive,
+									ByteUtils.byteArrayToString(currentXid.getBranchQualifier()), xae.errorCode);
+						}
 					}
-				}
-			} // end-if
-		} // end-for
+				} // end-if
+			} // end-for
 
-		if (unFinishExists) {
-			throw new SystemException("Error occurred while cleaning branch transaction!");
+			if (unFinishExists) {
+				throw new SystemException("Error occurred while cleaning branch transaction!");
+			}
+		} finally {
+			this.stateMachine.releaseCompletion(acquired);
 		}
-
 	}
 
 	public TransactionArchive getTransactionArchive() {
@@ -1442,7 +1867,7 @@ public class TransactionImpl implements Transaction {
 		transactionArchive.setOptimizedResource(this.participant);
 		transactionArchive.getNativeResources().addAll(this.nativeParticipantList);
 		transactionArchive.getRemoteResources().addAll(this.remoteParticipantList);
-		transactionArchive.setStatus(this.transactionStatus);
+		transactionArchive.setStatus(this.stateMachine.getStatus());
 		// transactionArchive.setPropagated(this.transactionContext.isPropagated());
 		transactionArchive.setPropagatedBy(this.transactionContext.getPropagatedBy());
 
@@ -1488,11 +1913,11 @@ public class TransactionImpl implements Transaction {
 		this.resourceListenerList.registerTransactionResourceListener(listener);
 	}
 
-	public synchronized void stopTiming() {
+	public void stopTiming() {
 		this.setTiming(false);
 	}
 
-	public synchronized void changeTransactionTimeout(int timeout) {
+	public void changeTransactionTimeout(int timeout) {
 		long created = this.transactionContext.getCreatedTime();
 		transactionContext.setExpiredTime(created + timeout);
 	}
@@ -1500,7 +1925,8 @@ public class TransactionImpl implements Transaction {
 	public TransactionStrategy getTransactionStrategy() {
 		TransactionStrategy strategy = //
 				this.transactionStrategy == null ? this.initGetTransactionStrategy() : this.transactionStrategy;
-		if (Status.STATUS_ACTIVE == this.transactionStatus || Status.STATUS_MARKED_ROLLBACK == this.transactionStatus) {
+		int transactionStatus = this.stateMachine.getStatus();
+		if (Status.STATUS_ACTIVE == transactionStatus || Status.STATUS_MARKED_ROLLBACK == transactionStatus) {
 			return strategy;
 		} else {
 			return this.transactionStrategy = this.transactionStrategy == null ? strategy : this.transactionStrategy;
@@ -1515,13 +1941,11 @@ public class TransactionImpl implements Transaction {
 		if (this.participantList.isEmpty()) {
 			transactionStrategy = new VacantTransactionStrategy();
 		} else if (this.participant == null) /* TODO: LRO */ {
-			XATerminatorImpl nativeTerminator = new XATerminatorImpl();
+			XATerminatorImpl nativeTerminator = new XATerminatorImpl(this.nativeParticipantList);
 			nativeTerminator.setBeanFactory(this.beanFactory);
-			nativeTerminator.getResourceArchives().addAll(this.nativeParticipantList);
 
-			XATerminatorImpl remoteTerminator = new XATerminatorImpl();
+			XATerminatorImpl remoteTerminator = new XATerminatorImpl(this.remoteParticipantList);
 			remoteTerminator.setBeanFactory(this.beanFactory);
-			remoteTerminator.getResourceArchives().addAll(this.remoteParticipantList);
 
 			if (nativeResNum == 0) {
 				transactionStrategy = new SimpleTransactionStrategy(remoteTerminator);
@@ -1536,10 +1960,9 @@ public class TransactionImpl implements Transaction {
 			terminatorOne.setBeanFactory(this.beanFactory);
 			terminatorOne.getResourceArchives().add(this.participant);
 
-			XATerminatorImpl terminatorTwo = new XATerminatorImpl();
+			XATerminatorImpl terminatorTwo = new XATerminatorImpl(
+					InlineArrayList.concat(this.nativeParticipantList, this.remoteParticipantList));
 			terminatorTwo.setBeanFactory(this.beanFactory);
-			terminatorTwo.getResourceArchives().addAll(this.nativeParticipantList);
-			terminatorTwo.getResourceArchives().addAll(this.remoteParticipantList);
 
 			int resNumber = nativeResNum + remoteResNum;
 			if (resNumber == 0) {
@@ -1556,13 +1979,11 @@ public class TransactionImpl implements Transaction {
 		int nativeResNum = this.nativeParticipantList.size();
 		int remoteResNum = this.remoteParticipantList.size();
 
-		XATerminatorImpl nativeTerminator = new XATerminatorImpl();
+		XATerminatorImpl nativeTerminator = new XATerminatorImpl(this.nativeParticipantList);
 		nativeTerminator.setBeanFactory(this.beanFactory);
-		nativeTerminator.getResourceArchives().addAll(this.nativeParticipantList);
 
-		XATerminatorImpl remoteTerminator = new XATerminatorImpl();
+		XATerminatorImpl remoteTerminator = new XATerminatorImpl(this.remoteParticipantList);
 		remoteTerminator.setBeanFactory(this.beanFactory);
-		remoteTerminator.getResourceArchives().addAll(this.remoteParticipantList);
 
 		if (TransactionStrategy.TRANSACTION_STRATEGY_COMMON == transactionStrategyType) {
 			if (this.participant != null) {
@@ -1600,10 +2021,9 @@ public class TransactionImpl implements Transaction {
 			terminatorOne.setBeanFactory(this.beanFactory);
 			terminatorOne.getResourceArchives().add(this.participant);
 
-			XATerminatorImpl terminatorTwo = new XATerminatorImpl();
+			XATerminatorImpl terminatorTwo = new XATerminatorImpl(
+					InlineArrayList.concat(this.nativeParticipantList, this.remoteParticipantList));
 			terminatorTwo.setBeanFactory(this.beanFactory);
-			terminatorTwo.getResourceArchives().addAll(this.nativeParticipantList);
-			terminatorTwo.getResourceArchives().addAll(this.remoteParticipantList);
 
 			this.transactionStrategy = new LastResourceOptimizeStrategy(terminatorOne, terminatorTwo);
 		} else {
@@ -1632,12 +2052,18 @@ public class TransactionImpl implements Transaction {
 		return archive == null ? null : archive.getDescriptor();
 	}
 
-	public TransactionXid getTransactionXid() {
-		throw new IllegalStateException();
+	private boolean recordEvent(int event, Xid xid, int value) {
+		TransactionEventRecorder recorder = this.beanFactory == null ? null : this.beanFactory.getTransactionEventRecorder();
+		if (recorder == null) {
+			return true;
+		}
+		recorder.recordEvent(event, xid, value);
+		return recorder.isVerbose();
 	}
 
 	public void setBeanFactory(TransactionBeanFactory tbf) {
 		this.beanFactory = tbf;
+		this.transactionListenerList.setDispatcher(tbf == null ? null : tbf.getTransactionListenerDispatcher());
 	}
 
 	public boolean isLocalTransaction() {
@@ -1665,9 +2091,167 @@ public class TransactionImpl implements Transaction {
 	}
 
 	public TransactionContext getTransactionContext() {
+		this.materializeIfNecessary(); // the context is about to be propagated or inspected
+		return transactionContext;
+	}
+
+	/** used by the transaction manager, it does not materialize a lazily begun transaction. */
+	TransactionContext getTransactionContextQuietly() {
 		return transactionContext;
 	}
 
+	/** the global xid, null if it has not been materialized yet; unlike getTransactionContext(), it does not materialize. */
+	public TransactionXid getTransactionXid() {
+		return this.transactionContext.getXid();
+	}
+
+	/** generates the xid of a lazily begun transaction and registers it, on its first enlistment or propagation. */
+	public void materializeIfNecessary() {
+		if (this.materialized) {
+			return;
+		}
+
+		Object event = null;
+		TransactionXid globalXid = null;
+		this.resourceLock.lock();
+		try {
+			if (this.materialized) {
+				return;
+			} // end-if (this.materialized)
+
+			event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_BEGIN);
+			XidFactory xidFactory = this.beanFactory.getXidFactory();
+			globalXid = xidFactory.createGlobalXid();
+			this.transactionContext.setXid(globalXid);
+			this.materialized = true;
+
+			TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
+			transactionRepository.putTransaction(globalXid, this);
+
+			TransactionManager transactionManager = this.beanFactory.getTransactionManager();
+			if (transactionManager.getTransactionQuietly() == this) {
+				transactionManager.associateThread(this); // index current transaction by its xid
+			} // end-if (transactionManager.getTransactionQuietly() == this)
+
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BEGIN, globalXid, 0)) {
+				logger.info("{}> begin-transaction", globalXid.getGlobalTransactionIdString());
+			}
+		} finally {
+			this.resourceLock.unlock();
+			TransactionFlightRecorder.commit(event, globalXid, null);
+		}
+	}
+
+	public TransactionStatistic getTransactionStatistic() {
+		TransactionStatistic transactionStatistic = this.beanFactory.getTransactionStatistic();
+		return transactionStatistic == null ? VacantTransactionStatistic.INSTANCE : transactionStatistic;
+	}
+
+	private String admitParticipant(XAResourceDescriptor descriptor) throws SystemException {
+		TransactionAdmission admission = this.beanFactory.getTransactionAdmission();
+		if (admission == null || RemoteResourceDescriptor.class.isInstance(descriptor) == false) {
+			return null;
+		}
+
+		RemoteSvc remoteSvc = ((RemoteResourceDescriptor) descriptor).getRemoteSvc();
+		String serviceKey = remoteSvc == null ? descriptor.getIdentifier() : remoteSvc.getServiceKey();
+		if (admission.admitParticipant(serviceKey) == false) {
+			throw new SystemException(String.format("Too many participants in flight on remote coordinator %s.", serviceKey));
+		}
+		return serviceKey;
+	}
+
+	private void registerAdmittedParticipant(String serviceKey) {
+		if (serviceKey == null) {
+			return;
+		} else if (this.admittedParticipants == null) {
+			this.admittedParticipants = new ArrayList<String>(2);
+		}
+		this.admittedParticipants.add(serviceKey);
+	}
+
+	private void releaseParticipant(String serviceKey) {
+		TransactionAdmission admission = this.beanFactory.getTransactionAdmission();
+		if (serviceKey != null && admission != null) {
+			admission.releaseParticipant(serviceKey);
+		} // end-if (serviceKey != null && admission != null)
+	}
+
+	/** the slots are held until the transaction is forgotten, error transactions keep throttling new ones. */
+	private void releaseAdmission() {
+		TransactionAdmission admission = this.beanFactory.getTransactionAdmission();
+		if (admission == null) {
+			return;
+		}
+
+		if (this.admitted) {
+			this.admitted = false;
+			admission.releaseTransaction();
+		} // end-if (this.admitted)
+
+		List<String> participants = this.admittedParticipants;
+		this.admittedParticipants = null;
+		for (int i = 0; participants != null && i < participants.size(); i++) {
+			admission.releaseParticipant(participants.get(i));
+		}
+	}
+
+	public boolean isAdmitted() {
+		return admitted;
+	}
+
+	public void setAdmitted(boolean admitted) {
+		this.admitted = admitted;
+	}
+
+	public long getStatisticFlags() {
+		return statisticFlags;
+	}
+
+	public void setStatisticFlags(long statisticFlags) {
+		this.statisticFlags = statisticFlags;
+	}
+
+	public long getStatisticBeginTime() {
+		return statisticBeginTime;
+	}
+
+	public void setStatisticBeginTime(long statisticBeginTime) {
+		this.statisticBeginTime = statisticBeginTime;
+	}
+
+	public long getStatisticPhaseTime() {
+		return statisticPhaseTime;
+	}
+
+	public void setStatisticPhaseTime(long statisticPhaseTime) {
+		this.statisticPhaseTime = statisticPhaseTime;
+	}
+
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
+	public void setMaterialized(boolean materialized) {
+		this.materialized = materialized;
+	}
+
+	public Executor getCompletionExecutor() {
+		return completionExecutor;
+	}
+
+	public void setCompletionExecutor(Executor completionExecutor) {
+		this.completionExecutor = completionExecutor;
+	}
+
+	public boolean isCompletionDeferred() {
+		return completionDeferred;
+	}
+
+	public boolean isCompletingByOtherThread() {
+		return this.stateMachine.isCompletingByOtherThread();
+	}
+
 	public boolean isTiming() {
 		return timing;
 	}
@@ -1677,11 +2261,11 @@ public class TransactionImpl implements Transaction {
 	}
 
 	public int getTransactionStatus() {
-		return transactionStatus;
+		return this.stateMachine.getStatus();
 	}
 
 	public void setTransactionStatus(int transactionStatus) {
-		this.transactionStatus = transactionStatus;
+		this.stateMachine.setStatus(transactionStatus);
 	}
 
 	public int getTransactionTimeout() {
@@ -1720,4 +2304,63 @@ public class TransactionImpl implements Transaction {
 		return remoteParticipantList;
 	}
 
+	/** forwards the status transitions to the transaction statistic as well. */
+	private class StatisticTransactionListenerList extends TransactionListenerList {
+
+		public void onPrepareStart(TransactionXid xid) {
+			getTransactionStatistic().firePreparingTransaction(TransactionImpl.this);
+			super.onPrepareStart(xid);
+		}
+
+		public void onPrepareSuccess(TransactionXid xid) {
+			getTransactionStatistic().firePreparedTransaction(TransactionImpl.this);
+			super.onPrepareSuccess(xid);
+		}
+
+		public void onPrepareFailure(TransactionXid xid) {
+			getTransactionStatistic().fireCompleteFailure(TransactionImpl.this);
+			super.onPrepareFailure(xid);
+		}
+
+		public void onCommitStart(TransactionXid xid) {
+			getTransactionStatistic().fireCommittingTransaction(TransactionImpl.this);
+			super.onCommitStart(xid);
+		}
+
+		public void onCommitSuccess(TransactionXid xid) {
+			getTransactionStatistic().fireCommittedTransaction(TransactionImpl.this);
+			super.onCommitSuccess(xid);
+		}
+
+		public void onCommitFailure(TransactionXid xid) {
+			getTransactionStatistic().fireCompleteFailure(TransactionImpl.this);
+			super.onCommitFailure(xid);
+		}
+
+		public void onCommitHeuristicMixed(TransactionXid xid) {
+			getTransactionStatistic().fireCompleteFailure(TransactionImpl.this);
+			super.onCommitHeuristicMixed(xid);
+		}
+
+		public void onCommitHeuristicRolledback(TransactionXid xid) {
+			getTransactionStatistic().fireCompleteFailure(TransactionImpl.this);
+			super.onCommitHeuristicRolledback(xid);
+		}
+
+		public void onRollbackStart(TransactionXid xid) {
+			getTransactionStatistic().fireRollingBackTransaction(TransactionImpl.this);
+			super.onRollbackStart(xid);
+		}
+
+		public void onRollbackSuccess(TransactionXid xid) {
+			getTransactionStatistic().fireRolledbackTransaction(TransactionImpl.this);
+			super.onRollbackSuccess(xid);
+		}
+
+		public void onRollbackFailure(TransactionXid xid) {
+			getTransactionStatistic().fireCompleteFailure(TransactionImpl.this);
+			super.onRollbackFailure(xid);
+		}
+	}
+
 }
@@ -19,7 +19,13 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
@@ -30,7 +36,6 @@ import javax.transaction.Status;
 import javax.transaction.SystemException;
 import javax.transaction.xa.Xid;
 
-import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.transaction.RollbackRequiredException;
 import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.TransactionBeanFactory;
@@ -39,8 +44,11 @@ import org.bytesoft.transaction.TransactionManager;
 import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.aware.TransactionBeanFactoryAware;
 import org.bytesoft.transaction.aware.TransactionDebuggable;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
+import org.bytesoft.transaction.supports.TransactionAdmission;
 import org.bytesoft.transaction.supports.TransactionTimer;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
@@ -56,12 +64,20 @@ public class TransactionManagerImpl
 	private final Map<Thread, Transaction> thread2txMap = new ConcurrentHashMap<Thread, Transaction>();
 	private final Map<Xid, Transaction> xid2txMap = new ConcurrentHashMap<Xid, Transaction>();
 	private boolean debuggingEnabled;
+	private boolean lazyMaterializationEnabled;
+	private boolean asyncCompletionEnabled;
+	private int completionThreads = 4;
+	private int completionQueueSize = 1024;
+	private long completionShutdownMillis = 15000L;
+	private volatile ExecutorService completionExecutor;
+	private boolean completionExecutorCreated;
 
 	public void begin() throws NotSupportedException, SystemException {
 		if (this.getTransaction() != null) {
 			throw new NotSupportedException();
 		}
 
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_BEGIN);
 		XidFactory xidFactory = this.beanFactory.getXidFactory();
 		RemoteCoordinator transactionCoordinator = (RemoteCoordinator) this.beanFactory.getNativeParticipant();
 
@@ -75,23 +91,62 @@ public class TransactionManagerImpl
 		transactionContext.setCreatedTime(createdTime);
 		transactionContext.setExpiredTime(expiredTime);
 
-		TransactionXid globalXid = xidFactory.createGlobalXid();
-		transactionContext.setXid(globalXid);
+		TransactionAdmission transactionAdmission = this.beanFactory.getTransactionAdmission();
+		if (transactionAdmission != null
+				&& transactionAdmission.admitTransaction(transactionCoordinator.getApplication()) == false) {
+			TransactionFlightRecorder.commit(event, null, null); // the rejected begin
+			throw new SystemException("Too many transactions in flight, the transaction is rejected.");
+		} // end-if (transactionAdmission != null && ...)
 
-		TransactionImpl transaction = new TransactionImpl(transactionContext);
-		transaction.setBeanFactory(this.beanFactory);
-		transaction.setTransactionTimeout(this.timeoutSeconds);
+		TransactionImpl transaction = null;
+		TransactionXid globalXid = null;
+		boolean registered = false;
+		try {
+			transaction = new TransactionImpl(transactionContext);
+			transaction.setBeanFactory(this.beanFactory);
+			transaction.setTransactionTimeout(this.timeoutSeconds);
+
+			if (this.debuggingEnabled) {
+				transaction.setCreatedAt(new Exception());
+			} // end-if (this.debuggingEnabled)
+
+			if (this.asyncCompletionEnabled) {
+				transaction.setCompletionExecutor(this.getCompletionExecutor());
+			} // end-if (this.asyncCompletionEnabled)
+
+			if (this.lazyMaterializationEnabled) {
+				transaction.setMaterialized(false); // xid is generated on first enlistment or propagation
+				this.associateThread(transaction);
+			} else {
+				globalXid = xidFactory.createGlobalXid();
+				transactionContext.setXid(globalXid);
+
+				this.associateThread(transaction);
+				TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
+				transactionRepository.putTransaction(globalXid, transaction);
+			}
 
-		if (this.debuggingEnabled) {
-			transaction.setCreatedAt(new Exception());
-		} // end-if (this.debuggingEnabled)
+			transaction.setAdmitted(transactionAdmission != null); // the slot is released with the transaction from now on
+			registered = true;
+		} finally {
+			if (registered == false) {
+				this.desociateThread();
+				if (transactionAdmission != null) {
+					transactionAdmission.releaseTransaction();
+				} // end-if (transactionAdmission != null)
+				TransactionFlightRecorder.commit(event, globalXid, null);
+			} // end-if (registered == false)
+		}
 
-		this.associateThread(transaction);
-		TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
-		transactionRepository.putTransaction(globalXid, transaction);
-		// this.transactionStatistic.fireBeginTransaction(transaction);
+		transaction.getTransactionStatistic().fireBeginTransaction(transaction);
+		if (this.lazyMaterializationEnabled) {
+			return; // the begin event is emitted on materialization
+		} // end-if (this.lazyMaterializationEnabled)
 
-		logger.info("{}> begin-transaction", ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()));
+		if (this.recordEvent(TransactionEventRecorder.EVENT_BEGIN, globalXid, 0)) {
+			logger.info("{}> begin-transaction", globalXid.getGlobalTransactionIdString());
+		}
+		TransactionFlightRecorder.commit(event, globalXid, null);
 	}
 
 	public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SecurityException,
@@ -112,10 +167,6 @@ public class TransactionManagerImpl
 			throw new IllegalStateException();
 		}
 
-		TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
-		TransactionContext transactionContext = transaction.getTransactionContext();
-		TransactionXid transactionXid = transactionContext.getXid();
-
 		boolean beforeCompletionFailure = true;
 		try {
 			transaction.fireBeforeTransactionCompletion();
@@ -153,14 +204,20 @@ public class TransactionManagerImpl
 
 		try {
 			transaction.commit();
-			transaction.forgetQuietly(); // forget transaction
+			if (this.isCompletionDeferred(transaction) == false) {
+				transaction.forgetQuietly(); // forget transaction
+			} // end-if (this.isCompletionDeferred(transaction) == false)
 		} catch (IllegalStateException ex) {
 			logger.error("Error occurred while committing transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			if (this.isCompletingByOtherThread(transaction) == false) {
+				this.putErrorTransaction(transaction);
+			} // end-if (this.isCompletingByOtherThread(transaction) == false)
 			throw ex;
 		} catch (SecurityException ex) {
 			logger.error("Error occurred while committing transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw ex;
 		} catch (RollbackException rex) {
 			logger.error("Error occurred while committing transaction.", rex);
@@ -176,11 +233,13 @@ public class TransactionManagerImpl
 			throw hrex;
 		} catch (SystemException ex) {
 			logger.error("Error occurred while committing transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw ex;
 		} catch (RuntimeException rex) {
 			logger.error("Error occurred while committing transaction.", rex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw rex;
 		} finally {
 			transaction.fireAfterTransactionCompletion();
@@ -204,10 +263,6 @@ public class TransactionManagerImpl
 	}
 
 	protected void rollback(Transaction transaction) throws IllegalStateException, SecurityException, SystemException {
-		TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
-		TransactionContext transactionContext = transaction.getTransactionContext();
-		TransactionXid transactionXid = transactionContext.getXid();
-
 		try {
 			transaction.fireBeforeTransactionCompletionQuietly();
 			this.desociateThread();
@@ -218,19 +273,23 @@ public class TransactionManagerImpl
 			transaction.forgetQuietly();
 		} catch (IllegalStateException ex) {
 			logger.error("Error occurred while rolling back transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw ex;
 		} catch (SecurityException ex) {
 			logger.error("Error occurred while rolling back transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw ex;
 		} catch (SystemException ex) {
 			logger.error("Error occurred while rolling back transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw ex;
 		} catch (RuntimeException ex) {
 			logger.error("Error occurred while rolling back transaction.", ex);
-			transactionRepository.putErrorTransaction(transactionXid, transaction);
+			this.dumpTransactionEvents(transaction);
+			this.putErrorTransaction(transaction);
 			throw ex;
 		} finally {
 			transaction.fireAfterTransactionCompletion();
@@ -238,9 +297,10 @@ public class TransactionManagerImpl
 	}
 
 	public void associateThread(Transaction transaction) {
-		TransactionContext transactionContext = transaction.getTransactionContext();
-		TransactionXid transactionXid = transactionContext.getXid();
-		this.xid2txMap.put(transactionXid, transaction);
+		TransactionXid transactionXid = transaction.getTransactionXid();
+		if (transactionXid != null) {
+			this.xid2txMap.put(transactionXid, transaction);
+		} // end-if (transactionXid != null)
 		this.thread2txMap.put(Thread.currentThread(), transaction);
 	}
 
@@ -250,8 +310,10 @@ public class TransactionManagerImpl
 			return null;
 		}
 
-		TransactionContext transactionContext = transaction.getTransactionContext();
-		this.xid2txMap.remove(transactionContext.getXid());
+		TransactionXid transactionXid = transaction.getTransactionXid();
+		if (transactionXid != null) {
+			this.xid2txMap.remove(transactionXid);
+		} // end-if (transactionXid != null)
 		return transaction;
 	}
 
@@ -347,7 +409,7 @@ public class TransactionManagerImpl
 		while (activeItr.hasNext()) {
 			Transaction transaction = activeItr.next();
 			if (transaction.isTiming()) {
-				TransactionContext transactionContext = transaction.getTransactionContext();
+				TransactionContext transactionContext = this.getTransactionContextQuietly(transaction);
 				if (transactionContext.getExpiredTime() <= current) {
 					expiredTransactions.add(transaction);
 				}
@@ -355,7 +417,7 @@ public class TransactionManagerImpl
 		}
 
 		Iterator<Transaction> expiredItr = expiredTransactions.iterator();
-		while (activeItr.hasNext()) {
+		while (expiredItr.hasNext()) {
 			Transaction transaction = expiredItr.next();
 			if (transaction.getTransactionStatus() == Status.STATUS_ACTIVE
 					|| transaction.getTransactionStatus() == Status.STATUS_MARKED_ROLLBACK) {
@@ -366,10 +428,7 @@ public class TransactionManagerImpl
 	}
 
 	private void timingRollback(Transaction transaction) {
-		TransactionContext transactionContext = transaction.getTransactionContext();
-		TransactionXid globalXid = transactionContext.getXid();
-		TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
-
+		boolean completing = false;
 		try {
 			this.associateThread(transaction);
 			transaction.fireBeforeTransactionCompletionQuietly();
@@ -377,19 +436,145 @@ public class TransactionManagerImpl
 
 			transaction.rollback();
 			transaction.forgetQuietly(); // forget transaction
+		} catch (IllegalStateException ex) {
+			if (this.isCompletingByOtherThread(transaction) == false) {
+				this.putErrorTransaction(transaction);
+				return;
+			} // end-if (this.isCompletingByOtherThread(transaction) == false)
+
+			completing = true;
+			transaction.setRollbackOnlyQuietly(); // honored by the completing thread at its commit decision
+			TransactionXid globalXid = transaction.getTransactionXid(); // null if it has never been materialized
+			logger.debug("{}> timing-rollback deferred: {}",
+					globalXid == null ? null : globalXid.getGlobalTransactionIdString(), ex.getMessage());
 		} catch (Exception ex) {
-			transactionRepository.putErrorTransaction(globalXid, transaction);
+			this.putErrorTransaction(transaction);
 		} finally {
-			transaction.fireAfterTransactionCompletion();
+			if (completing == false) {
+				transaction.fireAfterTransactionCompletion();
+			}
 		}
 	}
 
+	private TransactionContext getTransactionContextQuietly(Transaction transaction) {
+		return TransactionImpl.class.isInstance(transaction) ? ((TransactionImpl) transaction).getTransactionContextQuietly()
+				: transaction.getTransactionContext();
+	}
+
+	private boolean isCompletingByOtherThread(Transaction transaction) {
+		return TransactionImpl.class.isInstance(transaction) && ((TransactionImpl) transaction).isCompletingByOtherThread();
+	}
+
+	private boolean isCompletionDeferred(Transaction transaction) {
+		return TransactionImpl.class.isInstance(transaction) && ((TransactionImpl) transaction).isCompletionDeferred();
+	}
+
 	public void stopTiming(Transaction transaction) {
 		if (TransactionImpl.class.isInstance(transaction)) {
 			((TransactionImpl) transaction).stopTiming();
 		}
 	}
 
+	public ExecutorService getCompletionExecutor() {
+		ExecutorService executor = this.completionExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.completionExecutor;
+				if (executor == null) {
+					executor = this.completionExecutor = this.createCompletionExecutor();
+					this.completionExecutorCreated = true;
+				}
+			}
+		}
+		return executor;
+	}
+
+	private ExecutorService createCompletionExecutor() {
+		final AtomicInteger counter = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "bytejta-completion-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		return new ThreadPoolExecutor(this.completionThreads, this.completionThreads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(this.completionQueueSize), threadFactory);
+	}
+
+	/**
+	 * Stops the completion executor created by this transaction manager, letting the deferred phase-two commits finish
+	 * within completionShutdownMillis. Commits still pending after that are left to the recovery, their commit decision
+	 * has been logged already. Later deferred commits fall back to the completing thread.
+	 */
+	public void shutdown() {
+		ExecutorService executor = null;
+		synchronized (this) {
+			executor = this.completionExecutorCreated ? this.completionExecutor : null;
+		}
+
+		if (executor == null) {
+			return;
+		} // end-if (executor == null)
+
+		executor.shutdown();
+		try {
+			if (executor.awaitTermination(this.completionShutdownMillis, TimeUnit.MILLISECONDS) == false) {
+				List<Runnable> pendingTasks = executor.shutdownNow();
+				logger.warn("Completion executor did not stop in {} ms, {} deferred commit(s) are left to the recovery.",
+						this.completionShutdownMillis, pendingTasks.size());
+			}
+		} catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public synchronized void setCompletionExecutor(ExecutorService completionExecutor) {
+		this.completionExecutor = completionExecutor;
+		this.completionExecutorCreated = false;
+	}
+
+	public boolean isAsyncCompletionEnabled() {
+		return asyncCompletionEnabled;
+	}
+
+	public void setAsyncCompletionEnabled(boolean asyncCompletionEnabled) {
+		this.asyncCompletionEnabled = asyncCompletionEnabled;
+	}
+
+	public int getCompletionThreads() {
+		return completionThreads;
+	}
+
+	public void setCompletionThreads(int completionThreads) {
+		this.completionThreads = completionThreads;
+	}
+
+	public int getCompletionQueueSize() {
+		return completionQueueSize;
+	}
+
+	public void setCompletionQueueSize(int completionQueueSize) {
+		this.completionQueueSize = completionQueueSize;
+	}
+
+	public long getCompletionShutdownMillis() {
+		return completionShutdownMillis;
+	}
+
+	public void setCompletionShutdownMillis(long completionShutdownMillis) {
+		this.completionShutdownMillis = completionShutdownMillis;
+	}
+
+	public boolean isLazyMaterializationEnabled() {
+		return lazyMaterializationEnabled;
+	}
+
+	public void setLazyMaterializationEnabled(boolean lazyMaterializationEnabled) {
+		this.lazyMaterializationEnabled = lazyMaterializationEnabled;
+	}
+
 	public boolean isDebuggingEnabled() {
 		return debuggingEnabled;
 	}
@@ -406,6 +591,31 @@ public class TransactionManagerImpl
 		this.timeoutSeconds = timeoutSeconds;
 	}
 
+	private void putErrorTransaction(Transaction transaction) {
+		TransactionXid globalXid = transaction.getTransactionXid();
+		if (globalXid != null) {
+			TransactionRepository transactionRepository = this.beanFactory.getTransactionRepository();
+			transactionRepository.putErrorTransaction(globalXid, transaction);
+		} // end-if (globalXid != null), a transaction that has never been materialized has nothing to recover
+	}
+
+	private void dumpTransactionEvents(Transaction transaction) {
+		TransactionEventRecorder recorder = this.beanFactory.getTransactionEventRecorder();
+		TransactionXid globalXid = transaction.getTransactionXid();
+		if (recorder != null && globalXid != null) {
+			recorder.dump(globalXid);
+		}
+	}
+
+	private boolean recordEvent(int event, Xid xid, int value) {
+		TransactionEventRecorder recorder = this.beanFactory == null ? null : this.beanFactory.getTransactionEventRecorder();
+		if (recorder == null) {
+			return true;
+		}
+		recorder.recordEvent(event, xid, value);
+		return recorder.isVerbose();
+	}
+
 	public TransactionBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
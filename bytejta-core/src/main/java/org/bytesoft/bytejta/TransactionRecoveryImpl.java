@@ -15,12 +15,32 @@
  */
 package org.bytesoft.bytejta;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.Status;
 import javax.transaction.SystemException;
+import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
 
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
@@ -31,16 +51,23 @@ import org.bytesoft.transaction.RollbackRequiredException;
 import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.TransactionBeanFactory;
 import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.TransactionParticipant;
 import org.bytesoft.transaction.TransactionRecovery;
 import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.archive.TransactionArchive;
 import org.bytesoft.transaction.archive.XAResourceArchive;
 import org.bytesoft.transaction.aware.TransactionBeanFactoryAware;
+import org.bytesoft.transaction.logging.ArchiveDeserializer;
 import org.bytesoft.transaction.logging.TransactionLogger;
 import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+import org.bytesoft.transaction.recovery.TransactionRecoveryIndexCallback;
 import org.bytesoft.transaction.recovery.TransactionRecoveryListener;
+import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteSvc;
+import org.bytesoft.transaction.supports.RecoveryAdmission;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
 import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+import org.bytesoft.transaction.supports.serialize.XAResourceDeserializer;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
@@ -55,45 +82,445 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 	private TransactionBeanFactory beanFactory;
 	private volatile boolean initialized;
 
-	public synchronized void timingRecover() {
+	private boolean lazyRecovery;
+	private long lazyRecoveryTimeoutMillis = SECOND_MILLIS * 30L;
+	private long lazyRecoveryRetryMillis = SECOND_MILLIS;
+	private long lazyRecoveryMaxRetryMillis = SECOND_MILLIS * 60L;
+	private volatile boolean replayCompleted;
+	private final Object replayLock = new Object(); // guards the fields below
+	private final Set<TransactionXid> unreplayedSet = new HashSet<TransactionXid>();
+	private final Map<TransactionXid, ArchiveStub> replayedMap = new HashMap<TransactionXid, ArchiveStub>();
+	private boolean replaying;
+	private boolean indexed;
+	private int pendingArchives; // taken from replayedMap, not registered yet
+
+	private final ConcurrentMap<TransactionXid, ArchiveStub> archiveMap = new ConcurrentHashMap<TransactionXid, ArchiveStub>();
+	private final PriorityQueue<ScheduledArchive> archiveSchedule = new PriorityQueue<ScheduledArchive>();
+	private long archiveSequence; // guarded by archiveSchedule
+
+	private long baseDelayMillis = SECOND_MILLIS * 60L;
+	private long maxDelayMillis = SECOND_MILLIS * 60L * 1024L;
+	private double jitter = 0.1D;
+
+	private RecoveryAdmission recoveryAdmission;
+	private int branchRecoverBatchSize = 100;
+
+	private int recoveryThreads = 1; // serial recovery on the transaction work thread
+	private int maxConcurrencyPerResource = 4;
+	private volatile ExecutorService recoveryExecutor;
+	private boolean recoveryExecutorCreated; // guarded by pendingList
+	private long recoveryShutdownMillis = SECOND_MILLIS * 10L;
+	private final ConcurrentMap<TransactionXid, Transaction> recoveringMap = new ConcurrentHashMap<TransactionXid, Transaction>();
+	private final LinkedList<RecoveryTask> pendingList = new LinkedList<RecoveryTask>(); // guards the fields below
+	private final Map<String, Integer> resourceConcurrency = new HashMap<String, Integer>();
+	private int runningCount;
+	private final AtomicInteger dispatchRequests = new AtomicInteger();
+	private final AtomicBoolean timing = new AtomicBoolean();
+
+	/** a cycle started while the previous one is still running is skipped, the due transactions wait for the next. */
+	public void timingRecover() {
+		if (this.timing.compareAndSet(false, true) == false) {
+			logger.debug("[transaction-recovery] the previous cycle is still running, skipped.");
+			return;
+		} // end-if (this.timing.compareAndSet(false, true) == false)
+
+		try {
+			this.recoverDueTransactions();
+		} finally {
+			this.timing.set(false);
+		}
+	}
+
+	private void recoverDueTransactions() {
 		TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
-		List<Transaction> transactions = transactionRepository.getErrorTransactionList();
-		int total = transactions == null ? 0 : transactions.size(), value = 0;
-		for (int i = 0; transactions != null && i < transactions.size(); i++) {
+		long currentMillis = System.currentTimeMillis();
+		this.promoteDueTransactions(currentMillis);
+
+		List<Transaction> dueList = transactionRepository.getDueErrorTransactionList(currentMillis);
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		for (int i = 0; i < dueList.size(); i++) {
+			Transaction transaction = dueList.get(i);
+			long recoverMillis = this.getNextRecoveryMillis(transaction);
+			if (currentMillis < recoverMillis) {
+				transactionRepository.scheduleErrorTransaction(transaction.getTransactionContext().getXid(), recoverMillis);
+			} else {
+				transactions.add(transaction);
+			}
+		}
+
+		this.updateBacklog(transactions);
+
+		XAResourceRecoveryScan recoveryScan = new XAResourceRecoveryScan(); // shared by the transactions of this cycle
+		recoveryScan.register(transactions);
+		boolean parallel = this.recoveryThreads > 1 || this.recoveryExecutor != null;
+		int total = transactions.size(), value = 0;
+		for (int i = 0; i < transactions.size(); i++) {
 			Transaction transaction = transactions.get(i);
-			TransactionContext transactionContext = transaction.getTransactionContext();
-			TransactionXid xid = transactionContext.getXid();
-			int recoveredTimes = transactionContext.getRecoveredTimes() > 10 ? 10 : transactionContext.getRecoveredTimes();
-			long recoverMillis = transactionContext.getCreatedTime() + SECOND_MILLIS * 60L * (long) Math.pow(2, recoveredTimes);
+			TransactionXid xid = transaction.getTransactionContext().getXid();
+			if (parallel) {
+				// keep it out of the due list while it is pending, the task reschedules it when it finishes
+				transactionRepository.scheduleErrorTransaction(xid, currentMillis + this.baseDelayMillis);
+				value += this.scheduleRecovery(transaction, recoveryScan) ? 1 : 0;
+			} else {
+				value += this.recoverTransactionQuietly(transaction, recoveryScan) ? 1 : 0;
+				transactionRepository.scheduleErrorTransaction(xid, this.getNextRecoveryMillis(transaction));
+			}
+		}
+
+		if (parallel) {
+			this.dispatchRecovery();
+			logger.debug("[transaction-recovery] due= {}, scheduled= {}", total, value);
+		} else {
+			logger.debug("[transaction-recovery] due= {}, success= {}, scanned-resources= {}", total, value,
+					recoveryScan.getScannedResources());
+		}
+	}
+
+	/**
+	 * baseDelayMillis * 2^recoveredTimes after the last attempt, at most maxDelayMillis, plus up to jitter of it. The
+	 * jitter is derived from the xid, so a transaction keeps its attempt time while the ones failed together spread out.
+	 */
+	private long getNextRecoveryMillis(Transaction transaction) {
+		TransactionContext transactionContext = transaction.getTransactionContext();
+		return this.getNextRecoveryMillis(transactionContext.getXid(), transactionContext.getCreatedTime(),
+				transactionContext.getRecoveredTimes());
+	}
+
+	private long getNextRecoveryMillis(TransactionXid globalXid, long createdTime, int times) {
+		int recoveredTimes = Math.min(Math.max(0, times), 30);
+		long delayMillis = Math.min(this.maxDelayMillis, this.baseDelayMillis << recoveredTimes);
+		if (this.jitter > 0) {
+			int hash = globalXid.hashCode() * 31 + recoveredTimes;
+			hash ^= (hash >>> 16);
+			double random = (hash & 0xFFFF) / (double) 0x10000;
+			delayMillis += (long) (delayMillis * this.jitter * random);
+		} // end-if (this.jitter > 0)
+		return createdTime + delayMillis;
+	}
 
-			if (System.currentTimeMillis() < recoverMillis) {
+	private boolean recoverTransactionQuietly(Transaction transaction, XAResourceRecoveryScan recoveryScan) {
+		TransactionXid xid = transaction.getTransactionContext().getXid();
+		List<String> remoteKeys = new ArrayList<String>();
+		List<String> resourceKeys = this.getResourceKeys(transaction, remoteKeys);
+		RecoveryAdmission admission = this.recoveryAdmission;
+		if (admission != null && admission.admitRecovery(resourceKeys, remoteKeys) == false) {
+			logger.debug("{}> recover: branch={}, message= skipped, resources are throttled or suspended",
+					xid.getGlobalTransactionIdString(), ByteUtils.byteArrayToString(xid.getBranchQualifier()));
+			return false;
+		} // end-if (admission != null && admission.admitRecovery(resourceKeys, remoteKeys) == false)
+
+		boolean success = false;
+		XAResourceRecoveryScan original = recoveryScan.associate();
+		try {
+			this.recoverTransaction(transaction);
+			success = true;
+			return true;
+		} catch (CommitRequiredException ex) {
+			logger.debug("{}> recover: branch={}, message= commit-required", xid.getGlobalTransactionIdString(),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex);
+		} catch (RollbackRequiredException ex) {
+			logger.debug("{}> recover: branch={}, message= rollback-required", xid.getGlobalTransactionIdString(),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex);
+		} catch (SystemException ex) {
+			logger.debug("{}> recover: branch={}, message= {}", xid.getGlobalTransactionIdString(),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+		} catch (RuntimeException ex) {
+			logger.debug("{}> recover: branch={}, message= {}", xid.getGlobalTransactionIdString(),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+		} finally {
+			XAResourceRecoveryScan.restore(original);
+			if (admission != null) {
+				admission.releaseRecovery(resourceKeys, success ? new ArrayList<String>() : this.getFailedKeys(transaction));
+			} // end-if (admission != null)
+		}
+		return false;
+	}
+
+	/** only a resource which has rejected the commit/rollback of its branch is taken as failed. */
+	private List<String> getFailedKeys(Transaction transaction) {
+		List<String> failedKeys = new ArrayList<String>();
+		if (TransactionImpl.class.isInstance(transaction) == false) {
+			return failedKeys;
+		} // end-if (TransactionImpl.class.isInstance(transaction) == false)
+
+		List<XAResourceArchive> participants = ((TransactionImpl) transaction).getParticipantList();
+		for (int i = 0; i < participants.size(); i++) {
+			XAResourceArchive participant = participants.get(i);
+			if (participant.isFailed() == false) {
 				continue;
-			} // end-if (System.currentTimeMillis() < recoverMillis)
+			} // end-if (participant.isFailed() == false)
 
+			String resourceKey = this.getResourceKey(participant.getDescriptor());
+			if (resourceKey != null && failedKeys.contains(resourceKey) == false) {
+				failedKeys.add(resourceKey);
+			} // end-if (resourceKey != null && failedKeys.contains(resourceKey) == false)
+		}
+		return failedKeys;
+	}
+
+	/** a transaction is queued at most once, until its recovery attempt finishes. */
+	private boolean scheduleRecovery(Transaction transaction, XAResourceRecoveryScan recoveryScan) {
+		TransactionXid xid = transaction.getTransactionContext().getXid();
+		if (this.recoveringMap.putIfAbsent(xid, transaction) != null) {
+			return false;
+		}
+
+		synchronized (this.pendingList) {
+			this.pendingList.add(new RecoveryTask(transaction, recoveryScan));
+		}
+		return true;
+	}
+
+	/**
+	 * one thread dispatches at a time. A request arriving meanwhile, from a finishing worker or from a task executed
+	 * inline, is taken over by that thread, which dispatches once more before it returns.
+	 */
+	private void dispatchRecovery() {
+		if (this.dispatchRequests.getAndIncrement() > 0) {
+			return;
+		} // end-if (this.dispatchRequests.getAndIncrement() > 0)
+
+		int requests = 1;
+		do {
+			while (this.dispatchRecoveryOnce() > 0) {
+				// dispatch until no worker is free or every pending transaction waits for its resources
+			}
+			requests = this.dispatchRequests.addAndGet(-requests);
+		} while (requests > 0);
+	}
+
+	/**
+	 * hands the pending transactions to the workers, in order, skipping the ones whose resources or remote coordinators
+	 * already have maxConcurrencyPerResource recoveries running.
+	 */
+	private int dispatchRecoveryOnce() {
+		Executor executor = this.initializeRecoveryExecutorIfNecessary();
+		int threads = Math.max(1, this.recoveryThreads);
+		List<RecoveryTask> tasks = new ArrayList<RecoveryTask>();
+		synchronized (this.pendingList) {
+			Iterator<RecoveryTask> itr = this.pendingList.iterator();
+			while (this.runningCount < threads && itr.hasNext()) {
+				RecoveryTask task = itr.next();
+				List<String> resourceKeys = this.getResourceKeys(task.transaction);
+				if (this.acquireResources(resourceKeys)) {
+					itr.remove();
+					this.runningCount++;
+					task.resourceKeys = resourceKeys;
+					tasks.add(task);
+				} // end-if (this.acquireResources(resourceKeys))
+			}
+		}
+
+		for (int i = 0; i < tasks.size(); i++) {
+			RecoveryTask task = tasks.get(i);
 			try {
-				this.recoverTransaction(transaction);
-				value++;
-			} catch (CommitRequiredException ex) {
-				logger.debug("{}> recover: branch={}, message= commit-required",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex);
-				continue;
-			} catch (RollbackRequiredException ex) {
-				logger.debug("{}> recover: branch={}, message= rollback-required",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex);
-				continue;
-			} catch (SystemException ex) {
-				logger.debug("{}> recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
-				continue;
-			} catch (RuntimeException ex) {
-				logger.debug("{}> recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+				executor.execute(task);
+			} catch (RejectedExecutionException ex) {
+				synchronized (this.pendingList) {
+					for (int j = tasks.size() - 1; j >= i; j--) {
+						RecoveryTask rejected = tasks.get(j);
+						this.runningCount--;
+						this.releaseResources(rejected.resourceKeys);
+						this.pendingList.addFirst(rejected);
+					}
+					logger.warn("Recovery executor is saturated, {} transactions are pending.", this.pendingList.size());
+				}
+				return 0;
+			}
+		}
+		return tasks.size();
+	}
+
+	private List<String> getResourceKeys(Transaction transaction) {
+		return this.getResourceKeys(transaction, null);
+	}
+
+	/** remoteKeys: collects the keys of the remote coordinators as well, if not null. */
+	private List<String> getResourceKeys(Transaction transaction, List<String> remoteKeys) {
+		List<String> resourceKeys = new ArrayList<String>();
+		if (TransactionImpl.class.isInstance(transaction) == false) {
+			return resourceKeys;
+		} // end-if (TransactionImpl.class.isInstance(transaction) == false)
+
+		List<XAResourceArchive> participants = ((TransactionImpl) transaction).getParticipantList();
+		for (int i = 0; i < participants.size(); i++) {
+			XAResourceDescriptor descriptor = participants.get(i).getDescriptor();
+			String identifier = this.getResourceKey(descriptor);
+			if (identifier == null || resourceKeys.contains(identifier)) {
 				continue;
+			} // end-if (identifier == null || resourceKeys.contains(identifier))
+
+			resourceKeys.add(identifier);
+			if (remoteKeys != null && RemoteResourceDescriptor.class.isInstance(descriptor)) {
+				remoteKeys.add(identifier);
+			} // end-if (remoteKeys != null && RemoteResourceDescriptor.class.isInstance(descriptor))
+		}
+		return resourceKeys;
+	}
+
+	private String getResourceKey(XAResourceDescriptor descriptor) {
+		String identifier = descriptor == null ? null : StringUtils.trimToEmpty(descriptor.getIdentifier());
+		if (identifier != null && RemoteResourceDescriptor.class.isInstance(descriptor)) {
+			RemoteSvc remoteSvc = CommonUtils.getRemoteSvc(identifier);
+			return remoteSvc == null || remoteSvc.getServiceKey() == null ? identifier : remoteSvc.getServiceKey();
+		}
+		return identifier;
+	}
+
+	private void updateBacklog(List<Transaction> transactions) {
+		RecoveryAdmission admission = this.recoveryAdmission;
+		if (admission == null) {
+			return;
+		} // end-if (admission == null)
+
+		Map<String, Integer> backlog = new HashMap<String, Integer>();
+		for (int i = 0; i < transactions.size(); i++) {
+			List<String> resourceKeys = this.getResourceKeys(transactions.get(i));
+			for (int j = 0; j < resourceKeys.size(); j++) {
+				Integer value = backlog.get(resourceKeys.get(j));
+				backlog.put(resourceKeys.get(j), value == null ? 1 : value + 1);
+			}
+		}
+		admission.updateBacklog(backlog);
+	}
+
+	private boolean acquireResources(List<String> resourceKeys) {
+		for (int i = 0; i < resourceKeys.size(); i++) {
+			Integer running = this.resourceConcurrency.get(resourceKeys.get(i));
+			if (running != null && running >= this.maxConcurrencyPerResource) {
+				return false;
+			} // end-if (running != null && running >= this.maxConcurrencyPerResource)
+		}
+
+		for (int i = 0; i < resourceKeys.size(); i++) {
+			String resourceKey = resourceKeys.get(i);
+			Integer running = this.resourceConcurrency.get(resourceKey);
+			this.resourceConcurrency.put(resourceKey, running == null ? 1 : running + 1);
+		}
+		return true;
+	}
+
+	private void releaseResources(List<String> resourceKeys) {
+		for (int i = 0; i < resourceKeys.size(); i++) {
+			String resourceKey = resourceKeys.get(i);
+			Integer running = this.resourceConcurrency.get(resourceKey);
+			if (running == null || running <= 1) {
+				this.resourceConcurrency.remove(resourceKey);
+			} else {
+				this.resourceConcurrency.put(resourceKey, running - 1);
+			}
+		}
+	}
+
+	private Executor initializeRecoveryExecutorIfNecessary() {
+		if (this.recoveryExecutor != null) {
+			return this.recoveryExecutor;
+		}
+
+		synchronized (this.pendingList) {
+			if (this.recoveryExecutor == null) {
+				final AtomicInteger counter = new AtomicInteger();
+				this.recoveryExecutor = Executors.newFixedThreadPool(Math.max(1, this.recoveryThreads), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, String.format("bytejta-recovery-%s", counter.incrementAndGet()));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				this.recoveryExecutorCreated = true;
+			} // end-if (this.recoveryExecutor == null)
+			return this.recoveryExecutor;
+		}
+	}
+
+	/**
+	 * Stops the recovery executor created by this instance, letting the running recoveries finish within
+	 * recoveryShutdownMillis. The pending transactions stay in the repository for the next start.
+	 */
+	public void shutdown() {
+		ExecutorService executor = null;
+		synchronized (this.pendingList) {
+			executor = this.recoveryExecutorCreated ? this.recoveryExecutor : null;
+		}
+
+		if (executor == null) {
+			return;
+		} // end-if (executor == null)
+
+		executor.shutdown();
+		try {
+			if (executor.awaitTermination(this.recoveryShutdownMillis, TimeUnit.MILLISECONDS) == false) {
+				executor.shutdownNow();
+				logger.warn("Recovery executor did not stop in {} ms.", this.recoveryShutdownMillis);
+			}
+		} catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static class ScheduledArchive implements Comparable<ScheduledArchive> {
+		private final TransactionXid xid;
+		private final long recoverMillis;
+		private final long sequence;
+
+		ScheduledArchive(TransactionXid xid, long recoverMillis, long sequence) {
+			this.xid = xid;
+			this.recoverMillis = recoverMillis;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(ScheduledArchive that) {
+			int value = Long.compare(this.recoverMillis, that.recoverMillis);
+			return value != 0 ? value : Long.compare(this.sequence, that.sequence);
+		}
+	}
+
+	/**
+	 * immutable, the branches and their resource identifiers are kept in the records only, as read from the tx-log: the
+	 * archive record followed by the updates of its branches. Its monitor guards the promotion of the transaction.
+	 */
+	static final class ArchiveStub {
+		private final TransactionXid xid;
+		private final int status;
+		private final boolean coordinator;
+		private final long recoverMillis;
+		private final byte[][] records;
+
+		ArchiveStub(TransactionXid xid, TransactionArchive archive, long recoverMillis, byte[][] records) {
+			this.xid = xid;
+			this.status = archive.getStatus();
+			this.coordinator = archive.isCoordinator();
+			this.recoverMillis = recoverMillis;
+			this.records = records;
+		}
+	}
+
+	class RecoveryTask implements Runnable {
+		private final Transaction transaction;
+		private final XAResourceRecoveryScan recoveryScan;
+		private List<String> resourceKeys; // guarded by pendingList
+
+		RecoveryTask(Transaction transaction, XAResourceRecoveryScan recoveryScan) {
+			this.transaction = transaction;
+			this.recoveryScan = recoveryScan;
+		}
+
+		public void run() {
+			try {
+				recoverTransactionQuietly(this.transaction, this.recoveryScan);
+			} finally {
+				synchronized (pendingList) {
+					runningCount--;
+					releaseResources(this.resourceKeys);
+				}
+				TransactionXid xid = this.transaction.getTransactionContext().getXid();
+				TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
+				transactionRepository.scheduleErrorTransaction(xid, getNextRecoveryMillis(this.transaction));
+				recoveringMap.remove(xid);
+				dispatchRecovery();
 			}
 		}
-		logger.debug("[transaction-recovery] total= {}, success= {}", total, value);
 	}
 
 	public void recoverTransaction(Transaction transaction)
@@ -101,12 +528,20 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 
 		TransactionContext transactionContext = transaction.getTransactionContext();
 		boolean coordinator = transactionContext.isCoordinator();
-		if (coordinator) {
-			transaction.recover();
-			this.recoverCoordinator(transaction);
-		} else {
-			transaction.recover();
-			this.recoverParticipant(transaction);
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_RECOVERY);
+		if (TransactionImpl.class.isInstance(transaction)) {
+			((TransactionImpl) transaction).getTransactionStatistic().fireRecoverTransaction((TransactionImpl) transaction);
+		} // end-if (TransactionImpl.class.isInstance(transaction))
+		try {
+			if (coordinator) {
+				transaction.recover();
+				this.recoverCoordinator(transaction);
+			} else {
+				transaction.recover();
+				this.recoverParticipant(transaction);
+			}
+		} finally {
+			TransactionFlightRecorder.commit(event, transactionContext.getXid(), null);
 		}
 
 	}
@@ -143,7 +578,10 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 		TransactionImpl transactionImpl = (TransactionImpl) transaction;
 		switch (transaction.getTransactionStatus()) {
 		case Status.STATUS_PREPARED:
+			break; // in doubt, see branchRecover()
 		case Status.STATUS_COMMITTING:
+			transactionImpl.recoveryCommit(); // decided by its coordinator already
+			transactionImpl.forgetQuietly();
 			break;
 		case Status.STATUS_COMMITTED:
 		case Status.STATUS_ROLLEDBACK:
@@ -160,23 +598,22 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 	}
 
 	public synchronized void startRecovery() {
-		final TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
+		if (this.lazyRecovery) {
+			this.startLazyRecovery();
+			return;
+		} // end-if (this.lazyRecovery)
+
 		final TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
 		transactionLogger.recover(new TransactionRecoveryCallback() {
 			public void recover(TransactionArchive archive) {
-				try {
-					TransactionImpl transaction = (TransactionImpl) reconstruct(archive);
-					if (listener != null) {
-						listener.onRecovery(transaction);
-					}
-					TransactionContext transactionContext = transaction.getTransactionContext();
-					TransactionXid globalXid = transactionContext.getXid();
-					transactionRepository.putTransaction(globalXid, transaction);
-					transactionRepository.putErrorTransaction(globalXid, transaction);
-				} catch (IllegalStateException ex) {
-					transactionLogger.deleteTransaction(archive);
-				}
+				this.recover(archive, null);
+			}
 
+			public void recover(TransactionArchive archive, List<byte[]> records) {
+				ArchiveStub stub = createArchiveStub(archive, records);
+				if (stub != null) {
+					recoverArchive(stub);
+				} // end-if (stub != null)
 			}
 		});
 
@@ -186,6 +623,318 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 		this.initialized = true; // timingRecovery should be executed after initialization
 	}
 
+	/**
+	 * A recovered transaction is kept as a stub, i.e. the records of its archive as read from the tx-log, until it is
+	 * due for recovery or a call for it arrives. Only then the records are read again, which resolves the resource
+	 * descriptors, and the transaction is reconstructed and registered in the repository. The archive is serialized
+	 * here only if the logger does not provide its records. Null if the transaction has completed as read-only.
+	 */
+	private ArchiveStub createArchiveStub(TransactionArchive archive, List<byte[]> records) {
+		if (archive.getVote() == XAResource.XA_RDONLY) {
+			TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
+			transactionLogger.deleteTransaction(archive);
+			return null;
+		} // end-if (archive.getVote() == XAResource.XA_RDONLY)
+
+		XidFactory xidFactory = this.beanFactory.getXidFactory();
+		TransactionXid globalXid = xidFactory.createGlobalXid(archive.getXid().getGlobalTransactionId());
+		long recoverMillis = this.getNextRecoveryMillis(globalXid, archive.getRecoveredAt(), archive.getRecoveredTimes());
+		if (records == null || records.isEmpty()) {
+			ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+			return new ArchiveStub(globalXid, archive, recoverMillis,
+					new byte[][] { deserializer.serialize(globalXid, archive) });
+		} // end-if (records == null || records.isEmpty())
+		return new ArchiveStub(globalXid, archive, recoverMillis, records.toArray(new byte[records.size()][]));
+	}
+
+	private void recoverArchive(ArchiveStub stub) {
+		TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
+		if (transactionRepository.getTransaction(stub.xid) != null) {
+			return; // read again by a retried replay
+		} else if (this.archiveMap.putIfAbsent(stub.xid, stub) != null) {
+			return;
+		}
+		this.scheduleArchive(stub.xid, stub.recoverMillis);
+	}
+
+	private void scheduleArchive(TransactionXid globalXid, long recoverMillis) {
+		synchronized (this.archiveSchedule) {
+			this.archiveSchedule.add(new ScheduledArchive(globalXid, recoverMillis, this.archiveSequence++));
+		}
+	}
+
+	private TransactionArchive readArchive(ArchiveStub stub) {
+		ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+		TransactionArchive archive = (TransactionArchive) deserializer.deserialize(stub.xid, stub.records[0]);
+		for (int i = 1; i < stub.records.length; i++) {
+			XAResourceArchive resourceArchive = (XAResourceArchive) deserializer.deserialize(stub.xid, stub.records[i]);
+			archive.replaceResource(resourceArchive); // matched by the logger already
+		}
+		return archive;
+	}
+
+	private void promoteDueTransactions(long currentMillis) {
+		List<TransactionXid> dueList = new ArrayList<TransactionXid>();
+		synchronized (this.archiveSchedule) {
+			while (this.archiveSchedule.isEmpty() == false && this.archiveSchedule.peek().recoverMillis <= currentMillis) {
+				dueList.add(this.archiveSchedule.poll().xid);
+			}
+		}
+
+		for (int i = 0; i < dueList.size(); i++) {
+			this.promoteIfNecessary(dueList.get(i));
+		}
+	}
+
+	/**
+	 * the stub is removed only once the transaction is in the repository, so a concurrent caller never misses it. A
+	 * stub which fails to be promoted is kept, and is promoted again when it is due or a call for it arrives.
+	 */
+	private void promoteIfNecessary(TransactionXid globalXid) {
+		ArchiveStub stub = this.archiveMap.get(globalXid);
+		if (stub == null) {
+			return;
+		} // end-if (stub == null)
+
+		TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
+		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
+		synchronized (stub) {
+			if (this.archiveMap.get(globalXid) != stub) {
+				return; // promoted by another thread
+			} // end-if (this.archiveMap.get(globalXid) != stub)
+
+			boolean completed = true;
+			TransactionArchive archive = null;
+			try {
+				archive = this.readArchive(stub);
+				TransactionImpl transaction = (TransactionImpl) reconstruct(archive);
+				if (listener != null) {
+					listener.onRecovery(transaction);
+				}
+				transactionRepository.putTransaction(globalXid, transaction);
+				transactionRepository.putErrorTransaction(globalXid, transaction);
+			} catch (IllegalStateException ex) {
+				if (archive != null) {
+					transactionLogger.deleteTransaction(archive);
+				} // end-if (archive != null)
+			} catch (RuntimeException rex) {
+				completed = false;
+				logger.error("Error occurred while recovering transaction(xid= {}), retry later.", globalXid, rex);
+				this.scheduleArchive(globalXid, System.currentTimeMillis() + this.baseDelayMillis);
+			} finally {
+				if (completed) {
+					this.archiveMap.remove(globalXid);
+				} // end-if (completed)
+			}
+		}
+	}
+
+	/** while the tx-log is being replayed, the xids indexed but not replayed yet are included. */
+	public List<TransactionXid> getRecoveredXidList() {
+		Set<TransactionXid> xids = new LinkedHashSet<TransactionXid>();
+		if (this.lazyRecovery && this.replayCompleted == false) {
+			synchronized (this.replayLock) {
+				xids.addAll(this.unreplayedSet); // read ahead of the stubs, an xid leaves it once its stub is there
+			}
+		} // end-if (this.lazyRecovery && this.replayCompleted == false)
+		xids.addAll(this.archiveMap.keySet());
+		return new ArrayList<TransactionXid>(xids);
+	}
+
+	/** the xids of the tx-log are known once it has been indexed, their archives are replayed lazily. */
+	public boolean isIndexed() {
+		if (this.lazyRecovery == false || this.replayCompleted) {
+			return this.initialized;
+		} // end-if (this.lazyRecovery == false || this.replayCompleted)
+
+		synchronized (this.replayLock) {
+			return this.indexed;
+		}
+	}
+
+	/**
+	 * The participant is marked ready at once and the tx-log is replayed by a background thread. A call for a
+	 * transaction which has not been replayed yet waits until its archive has been read, at most
+	 * lazyRecoveryTimeoutMillis, and then recovers that transaction ahead of the others. A failed replay is retried,
+	 * the delay doubles from lazyRecoveryRetryMillis up to lazyRecoveryMaxRetryMillis.
+	 */
+	private void startLazyRecovery() {
+		synchronized (this.replayLock) {
+			this.replaying = true;
+			this.indexed = false;
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				replayTransactionLog();
+			}
+		}, "bytejta-recovery-replay");
+		thread.setDaemon(true);
+		thread.start();
+
+		TransactionCoordinator transactionCoordinator = //
+				(TransactionCoordinator) this.beanFactory.getNativeParticipant();
+		transactionCoordinator.markParticipantReady();
+	}
+
+	private void replayTransactionLog() {
+		long retryMillis = this.lazyRecoveryRetryMillis;
+		while (this.replayTransactionLogOnce() == false) {
+			logger.warn("The tx-log will be replayed again in {} ms.", retryMillis);
+			try {
+				Thread.sleep(retryMillis);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			retryMillis = Math.min(retryMillis * 2L, this.lazyRecoveryMaxRetryMillis);
+
+			synchronized (this.replayLock) {
+				this.unreplayedSet.clear();
+				this.replayedMap.clear();
+				this.indexed = false;
+				this.replaying = true;
+			}
+		}
+		this.initialized = true;
+	}
+
+	private boolean replayTransactionLogOnce() {
+		final XidFactory xidFactory = this.beanFactory.getXidFactory();
+		TransactionLogger transactionLogger = beanFactory.getTransactionLogger();
+		boolean success = false;
+		try {
+			transactionLogger.recover(new TransactionRecoveryIndexCallback() {
+				public void index(Set<TransactionXid> xids) {
+					synchronized (replayLock) {
+						unreplayedSet.addAll(xids);
+						indexed = true;
+						replayLock.notifyAll();
+					}
+				}
+
+				public void recover(TransactionArchive archive) {
+					this.recover(archive, null);
+				}
+
+				public void recover(TransactionArchive archive, List<byte[]> records) {
+					ArchiveStub stub = createArchiveStub(archive, records);
+					TransactionXid xid = (TransactionXid) archive.getXid();
+					synchronized (replayLock) {
+						TransactionXid globalXid = xidFactory.createGlobalXid(xid.getGlobalTransactionId());
+						if (stub == null) {
+							unreplayedSet.remove(globalXid); // read-only, completed already
+						} else {
+							replayedMap.put(globalXid, stub);
+						}
+						replayLock.notifyAll();
+					}
+				}
+			});
+
+			while (true) {
+				ArchiveStub stub = null;
+				synchronized (this.replayLock) {
+					Iterator<ArchiveStub> itr = this.replayedMap.values().iterator();
+					if (itr.hasNext() == false) {
+						break;
+					} // end-if (itr.hasNext() == false)
+					stub = itr.next();
+					itr.remove();
+					this.pendingArchives++;
+				}
+				this.recoverReplayedArchive(stub);
+			}
+			this.awaitPendingArchives(); // the ones taken ahead by callers
+			success = true;
+		} catch (RuntimeException rex) {
+			logger.error("Error occurred while replaying the tx-log.", rex);
+		} finally {
+			synchronized (this.replayLock) {
+				if (success) {
+					this.unreplayedSet.clear();
+					this.indexed = true;
+					this.replayCompleted = true;
+				} // end-if (success)
+				this.replaying = false; // callers fail fast until the replay is retried
+				this.replayLock.notifyAll();
+			}
+		}
+		return success;
+	}
+
+	public boolean recoverIfNecessary(TransactionXid globalXid) {
+		if (this.awaitReplayed(globalXid) == false) {
+			return false;
+		} // end-if (this.awaitReplayed(globalXid) == false)
+
+		this.promoteIfNecessary(globalXid);
+		return true;
+	}
+
+	private boolean awaitReplayed(TransactionXid globalXid) {
+		if (this.lazyRecovery == false || this.replayCompleted) {
+			return true;
+		} // end-if (this.lazyRecovery == false || this.replayCompleted)
+
+		long deadline = System.currentTimeMillis() + this.lazyRecoveryTimeoutMillis;
+		ArchiveStub stub = null;
+		synchronized (this.replayLock) {
+			while (true) {
+				stub = this.replayedMap.remove(globalXid);
+				if (stub != null) {
+					this.pendingArchives++;
+					break;
+				} else if (this.indexed && this.unreplayedSet.contains(globalXid) == false) {
+					return true;
+				} else if (this.replaying == false) {
+					return false; // replay failed
+				}
+
+				long waitingMillis = deadline - System.currentTimeMillis();
+				if (waitingMillis <= 0) {
+					return false;
+				} // end-if (waitingMillis <= 0)
+
+				try {
+					this.replayLock.wait(waitingMillis);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+
+		this.recoverReplayedArchive(stub); // ahead of the others
+		return true;
+	}
+
+	/** registers the stub outside the replayLock; its xid stays unreplayed until then, so callers keep waiting. */
+	private void recoverReplayedArchive(ArchiveStub stub) {
+		try {
+			this.recoverArchive(stub);
+		} finally {
+			synchronized (this.replayLock) {
+				this.pendingArchives--;
+				this.unreplayedSet.remove(stub.xid);
+				this.replayLock.notifyAll();
+			}
+		}
+	}
+
+	private void awaitPendingArchives() {
+		synchronized (this.replayLock) {
+			while (this.pendingArchives > 0) {
+				try {
+					this.replayLock.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
 	public org.bytesoft.transaction.Transaction reconstruct(TransactionArchive archive) throws IllegalStateException {
 		XidFactory xidFactory = this.beanFactory.getXidFactory();
 		TransactionContext transactionContext = new TransactionContext();
@@ -256,15 +1005,160 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 		return transaction;
 	}
 
+	/**
+	 * Completes the in-doubt branches of this participant without waiting for their coordinators to recover them: the
+	 * outcome of the prepared ones is asked from each coordinator for up to branchRecoverBatchSize transactions in one
+	 * call, and applied as if the coordinator had sent it. A committing branch is committed by timingRecover() when it
+	 * is due, like any other error transaction.
+	 */
 	public synchronized void branchRecover() {
 		// For a completed global transaction, if its branch receives a business request again, it will be rolled back by the
 		// RM's timeout mechanism, there is no need to deal with it.
+		this.promoteBranchTransactions();
+
+		TransactionRepository transactionRepository = beanFactory.getTransactionRepository();
+		List<Transaction> transactions = transactionRepository.getErrorTransactionList();
+		Map<String, List<TransactionXid>> preparedMap = new HashMap<String, List<TransactionXid>>();
+		int total = 0;
+		for (int i = 0; i < transactions.size(); i++) {
+			Transaction transaction = transactions.get(i);
+			TransactionContext transactionContext = transaction.getTransactionContext();
+			TransactionXid globalXid = transactionContext.getXid();
+			int transactionStatus = transaction.getTransactionStatus();
+			if (transactionContext.isCoordinator() || this.recoveringMap.containsKey(globalXid)) {
+				continue;
+			} else if (transactionStatus == Status.STATUS_PREPARED && transactionContext.getPropagatedBy() != null) {
+				String coordinator = String.valueOf(transactionContext.getPropagatedBy());
+				List<TransactionXid> xidList = preparedMap.get(coordinator);
+				if (xidList == null) {
+					xidList = new ArrayList<TransactionXid>();
+					preparedMap.put(coordinator, xidList);
+				} // end-if (xidList == null)
+				xidList.add(globalXid);
+			}
+		}
+
+		int completed = 0;
+		for (Iterator<Map.Entry<String, List<TransactionXid>>> itr = preparedMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, List<TransactionXid>> entry = itr.next();
+			total += entry.getValue().size();
+			completed += this.branchRecover(entry.getKey(), entry.getValue());
+		}
+
+		if (total > 0) {
+			logger.debug("[branch-recovery] in-doubt= {}, completed= {}, coordinators= {}", total, completed,
+					preparedMap.size());
+		} // end-if (total > 0)
+	}
+
+	/** the recovered branches which are in doubt must not wait until they are due, they hold locks. */
+	private void promoteBranchTransactions() {
+		List<TransactionXid> xidList = new ArrayList<TransactionXid>();
+		for (Iterator<ArchiveStub> itr = this.archiveMap.values().iterator(); itr.hasNext();) {
+			ArchiveStub stub = itr.next();
+			if (stub.coordinator == false
+					&& (stub.status == Status.STATUS_PREPARED || stub.status == Status.STATUS_COMMITTING)) {
+				xidList.add(stub.xid);
+			} // end-if (stub.coordinator == false && ...)
+		}
+
+		for (int i = 0; i < xidList.size(); i++) {
+			this.promoteIfNecessary(xidList.get(i));
+		}
+	}
+
+	private int branchRecover(String coordinator, List<TransactionXid> xidList) {
+		XAResourceDeserializer resourceDeserializer = this.beanFactory.getResourceDeserializer();
+		XAResourceDescriptor descriptor = resourceDeserializer == null ? null : resourceDeserializer.deserialize(coordinator);
+		RemoteCoordinator remoteCoordinator = RemoteResourceDescriptor.class.isInstance(descriptor)
+				? ((RemoteResourceDescriptor) descriptor).getDelegate() : null;
+		if (remoteCoordinator == null) {
+			logger.debug("[branch-recovery] coordinator {} is not available.", coordinator);
+			return 0;
+		} // end-if (remoteCoordinator == null)
+
+		int completed = 0;
+		int batchSize = Math.max(1, this.branchRecoverBatchSize);
+		for (int i = 0; i < xidList.size(); i += batchSize) {
+			List<TransactionXid> batch = xidList.subList(i, Math.min(xidList.size(), i + batchSize));
+			int[] statusArray = null;
+			try {
+				statusArray = remoteCoordinator.getTransactionStatus(batch.toArray(new Xid[batch.size()]));
+			} catch (XAException ex) {
+				logger.debug("[branch-recovery] coordinator {} is not available, code= {}.", coordinator, ex.errorCode, ex);
+				return completed;
+			} catch (RuntimeException ex) {
+				logger.debug("[branch-recovery] coordinator {} is not available.", coordinator, ex);
+				return completed;
+			}
+
+			for (int j = 0; statusArray != null && j < batch.size() && j < statusArray.length; j++) {
+				if (statusArray[j] == Status.STATUS_COMMITTED) {
+					completed += this.completeBranchQuietly(batch.get(j), true) ? 1 : 0;
+				} else if (statusArray[j] == Status.STATUS_ROLLEDBACK) {
+					completed += this.completeBranchQuietly(batch.get(j), false) ? 1 : 0;
+				} // end-if (statusArray[j] == Status.STATUS_COMMITTED)
+			}
+		}
+		return completed;
+	}
+
+	/** completes the branch through the native participant, exactly as a commit/rollback of its coordinator would. */
+	private boolean completeBranchQuietly(TransactionXid globalXid, boolean commit) {
+		TransactionParticipant nativeParticipant = this.beanFactory.getNativeParticipant();
+		try {
+			if (commit) {
+				nativeParticipant.commit(globalXid, false);
+			} else {
+				nativeParticipant.rollback(globalXid);
+			}
+			return true;
+		} catch (XAException ex) {
+			logger.debug("{}> branch-recover: commit= {}, code= {}", globalXid.getGlobalTransactionIdString(), commit,
+					ex.errorCode, ex);
+		} catch (RuntimeException ex) {
+			logger.debug("{}> branch-recover: commit= {}, message= {}", globalXid.getGlobalTransactionIdString(), commit,
+					ex.getMessage(), ex);
+		}
+		return false;
 	}
 
 	public boolean isInitialized() {
 		return initialized;
 	}
 
+	public boolean isLazyRecovery() {
+		return lazyRecovery;
+	}
+
+	public void setLazyRecovery(boolean lazyRecovery) {
+		this.lazyRecovery = lazyRecovery;
+	}
+
+	public long getLazyRecoveryTimeoutMillis() {
+		return lazyRecoveryTimeoutMillis;
+	}
+
+	public void setLazyRecoveryTimeoutMillis(long lazyRecoveryTimeoutMillis) {
+		this.lazyRecoveryTimeoutMillis = lazyRecoveryTimeoutMillis;
+	}
+
+	public long getLazyRecoveryRetryMillis() {
+		return lazyRecoveryRetryMillis;
+	}
+
+	public void setLazyRecoveryRetryMillis(long lazyRecoveryRetryMillis) {
+		this.lazyRecoveryRetryMillis = lazyRecoveryRetryMillis;
+	}
+
+	public long getLazyRecoveryMaxRetryMillis() {
+		return lazyRecoveryMaxRetryMillis;
+	}
+
+	public void setLazyRecoveryMaxRetryMillis(long lazyRecoveryMaxRetryMillis) {
+		this.lazyRecoveryMaxRetryMillis = lazyRecoveryMaxRetryMillis;
+	}
+
 	public TransactionBeanFactory getBeanFactory() {
 		return beanFactory;
 	}
@@ -273,6 +1167,81 @@ public class TransactionRecoveryImpl implements TransactionRecovery, Transaction
 		this.beanFactory = tbf;
 	}
 
+	public long getBaseDelayMillis() {
+		return baseDelayMillis;
+	}
+
+	public void setBaseDelayMillis(long baseDelayMillis) {
+		this.baseDelayMillis = baseDelayMillis;
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	public void setMaxDelayMillis(long maxDelayMillis) {
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	public double getJitter() {
+		return jitter;
+	}
+
+	public void setJitter(double jitter) {
+		this.jitter = jitter;
+	}
+
+	public int getRecoveryThreads() {
+		return recoveryThreads;
+	}
+
+	public void setRecoveryThreads(int recoveryThreads) {
+		this.recoveryThreads = recoveryThreads;
+	}
+
+	public int getMaxConcurrencyPerResource() {
+		return maxConcurrencyPerResource;
+	}
+
+	public void setMaxConcurrencyPerResource(int maxConcurrencyPerResource) {
+		this.maxConcurrencyPerResource = maxConcurrencyPerResource;
+	}
+
+	public int getBranchRecoverBatchSize() {
+		return branchRecoverBatchSize;
+	}
+
+	public void setBranchRecoverBatchSize(int branchRecoverBatchSize) {
+		this.branchRecoverBatchSize = branchRecoverBatchSize;
+	}
+
+	public RecoveryAdmission getRecoveryAdmission() {
+		return recoveryAdmission;
+	}
+
+	public void setRecoveryAdmission(RecoveryAdmission recoveryAdmission) {
+		this.recoveryAdmission = recoveryAdmission;
+	}
+
+	public ExecutorService getRecoveryExecutor() {
+		return recoveryExecutor;
+	}
+
+	public void setRecoveryExecutor(ExecutorService recoveryExecutor) {
+		synchronized (this.pendingList) {
+			this.recoveryExecutor = recoveryExecutor;
+			this.recoveryExecutorCreated = false;
+		}
+	}
+
+	public long getRecoveryShutdownMillis() {
+		return recoveryShutdownMillis;
+	}
+
+	public void setRecoveryShutdownMillis(long recoveryShutdownMillis) {
+		this.recoveryShutdownMillis = recoveryShutdownMillis;
+	}
+
 	public TransactionRecoveryListener getListener() {
 		return listener;
 	}
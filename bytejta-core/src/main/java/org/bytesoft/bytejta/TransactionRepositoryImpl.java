@@ -16,18 +16,31 @@
 package org.bytesoft.bytejta;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.bytesoft.transaction.Transaction;
 import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.xa.TransactionXid;
 
+/**
+ * Error transactions are also kept ordered by the time of their next recovery attempt, so the recovery only has to look
+ * at the head of the schedule. A new error transaction is scheduled at its created time, the recovery works out the
+ * actual attempt time and reschedules it.
+ */
 public class TransactionRepositoryImpl implements TransactionRepository {
 	private final Map<TransactionXid, Transaction> xidToTxMap = new ConcurrentHashMap<TransactionXid, Transaction>();
 	private final Map<TransactionXid, Transaction> xidToErrTxMap = new ConcurrentHashMap<TransactionXid, Transaction>();
 
+	private final TreeSet<ScheduledEntry> errorSchedule = new TreeSet<ScheduledEntry>(new ScheduledEntryComparator());
+	private final Map<TransactionXid, ScheduledEntry> xidToScheduleMap = new HashMap<TransactionXid, ScheduledEntry>();
+	private long sequence; // guarded by errorSchedule
+
 	public void putTransaction(TransactionXid globalXid, Transaction transaction) {
 		this.xidToTxMap.put(globalXid, transaction);
 	}
@@ -42,6 +55,11 @@ public class TransactionRepositoryImpl implements TransactionRepository {
 
 	public void putErrorTransaction(TransactionXid globalXid, Transaction transaction) {
 		this.xidToErrTxMap.put(globalXid, transaction);
+		synchronized (this.errorSchedule) {
+			if (this.xidToScheduleMap.containsKey(globalXid) == false) {
+				this.schedule(globalXid, transaction.getTransactionContext().getCreatedTime());
+			} // end-if (this.xidToScheduleMap.containsKey(globalXid) == false)
+		}
 	}
 
 	public Transaction getErrorTransaction(TransactionXid globalXid) {
@@ -49,7 +67,56 @@ public class TransactionRepositoryImpl implements TransactionRepository {
 	}
 
 	public Transaction removeErrorTransaction(TransactionXid globalXid) {
-		return this.xidToErrTxMap.remove(globalXid);
+		Transaction transaction = this.xidToErrTxMap.remove(globalXid);
+		synchronized (this.errorSchedule) {
+			ScheduledEntry entry = this.xidToScheduleMap.remove(globalXid);
+			if (entry != null) {
+				this.errorSchedule.remove(entry);
+			} // end-if (entry != null)
+		}
+		return transaction;
+	}
+
+	public void scheduleErrorTransaction(TransactionXid globalXid, long recoverMillis) {
+		synchronized (this.errorSchedule) {
+			if (this.xidToErrTxMap.containsKey(globalXid) == false) {
+				return; // completed in the meantime
+			} // end-if (this.xidToErrTxMap.containsKey(globalXid) == false)
+
+			ScheduledEntry entry = this.xidToScheduleMap.remove(globalXid);
+			if (entry != null) {
+				this.errorSchedule.remove(entry);
+			} // end-if (entry != null)
+			this.schedule(globalXid, recoverMillis);
+		}
+	}
+
+	private void schedule(TransactionXid globalXid, long recoverMillis) {
+		ScheduledEntry entry = new ScheduledEntry(globalXid, recoverMillis, this.sequence++);
+		this.errorSchedule.add(entry);
+		this.xidToScheduleMap.put(globalXid, entry);
+	}
+
+	/** the due transactions stay in the schedule until they are rescheduled or removed. */
+	public List<Transaction> getDueErrorTransactionList(long currentMillis) {
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		synchronized (this.errorSchedule) {
+			for (Iterator<ScheduledEntry> itr = this.errorSchedule.iterator(); itr.hasNext();) {
+				ScheduledEntry entry = itr.next();
+				if (entry.recoverMillis > currentMillis) {
+					break;
+				} // end-if (entry.recoverMillis > currentMillis)
+
+				Transaction transaction = this.xidToErrTxMap.get(entry.xid);
+				if (transaction == null) {
+					itr.remove();
+					this.xidToScheduleMap.remove(entry.xid);
+				} else {
+					transactions.add(transaction);
+				}
+			}
+		}
+		return transactions;
 	}
 
 	public List<Transaction> getErrorTransactionList() {
@@ -60,4 +127,23 @@ public class TransactionRepositoryImpl implements TransactionRepository {
 		return new ArrayList<Transaction>(this.xidToTxMap.values());
 	}
 
+	static class ScheduledEntry {
+		final TransactionXid xid;
+		final long recoverMillis;
+		final long sequence;
+
+		ScheduledEntry(TransactionXid xid, long recoverMillis, long sequence) {
+			this.xid = xid;
+			this.recoverMillis = recoverMillis;
+			this.sequence = sequence;
+		}
+	}
+
+	static class ScheduledEntryComparator implements Comparator<ScheduledEntry> {
+		public int compare(ScheduledEntry o1, ScheduledEntry o2) {
+			int value = Long.compare(o1.recoverMillis, o2.recoverMillis);
+			return value != 0 ? value : Long.compare(o1.sequence, o2.sequence);
+		}
+	}
+
 }
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.bytejta.supports.jdbc.LocalXAResource;
+import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+
+/**
+ * The in-doubt branches of every resource manager, scanned once by XAResource.recover(TMSTARTRSCAN|TMENDRSCAN) and
+ * shared by all the transactions recovered in the same cycle. A failed scan is kept as well, so an unavailable
+ * resource manager is not asked again by each of its transactions.
+ * <p>
+ * The local resources are not scanned as a whole: the branches of the transactions registered for the cycle are
+ * checked by batched 'xid in (...)' lookups, so the size of the bytejta table does not matter.
+ * <p>
+ * A scan is only visible to the thread which recovers a transaction on behalf of the cycle, see {@link #associate}; any
+ * other caller still asks the resource directly.
+ */
+public class XAResourceRecoveryScan {
+	private static final ThreadLocal<XAResourceRecoveryScan> current = new ThreadLocal<XAResourceRecoveryScan>();
+
+	private final ConcurrentMap<String, ScannedResource> resources = new ConcurrentHashMap<String, ScannedResource>();
+	private final Map<String, Set<Xid>> candidates = new HashMap<String, Set<Xid>>(); // read-only once registered
+
+	public static XAResourceRecoveryScan getCurrent() {
+		return current.get();
+	}
+
+	/** binds this scan to the current thread, the returned scan should be passed to {@link #restore} afterwards. */
+	public XAResourceRecoveryScan associate() {
+		XAResourceRecoveryScan original = current.get();
+		current.set(this);
+		return original;
+	}
+
+	public static void restore(XAResourceRecoveryScan original) {
+		if (original == null) {
+			current.remove();
+		} else {
+			current.set(original);
+		}
+	}
+
+	/** collects the local branches of the transactions to be recovered, before the scan is shared. */
+	public void register(List<Transaction> transactions) {
+		for (int i = 0; transactions != null && i < transactions.size(); i++) {
+			Transaction transaction = transactions.get(i);
+			if (TransactionImpl.class.isInstance(transaction) == false) {
+				continue;
+			} // end-if (TransactionImpl.class.isInstance(transaction) == false)
+
+			List<XAResourceArchive> participants = ((TransactionImpl) transaction).getParticipantList();
+			for (int j = 0; j < participants.size(); j++) {
+				XAResourceArchive archive = participants.get(j);
+				XAResourceDescriptor descriptor = archive.getDescriptor();
+				if (descriptor == null || RecoveredResource.class.isInstance(descriptor.getDelegate()) == false) {
+					continue;
+				} else if (StringUtils.isBlank(descriptor.getIdentifier()) || archive.getXid() == null) {
+					continue;
+				}
+
+				String identifier = StringUtils.trimToEmpty(descriptor.getIdentifier());
+				Set<Xid> xids = this.candidates.get(identifier);
+				if (xids == null) {
+					xids = new HashSet<Xid>();
+					this.candidates.put(identifier, xids);
+				} // end-if (xids == null)
+				xids.add(archive.getXid());
+			}
+		}
+	}
+
+	public boolean isScannable(XAResourceArchive archive) {
+		XAResourceDescriptor descriptor = archive.getDescriptor();
+		if (descriptor == null || StringUtils.isBlank(descriptor.getIdentifier())) {
+			return false;
+		} else if (RecoveredResource.class.isInstance(descriptor.getDelegate())) {
+			return true;
+		} else if (LocalXAResource.class.isInstance(descriptor.getDelegate())) {
+			return false; // bound to the connection of a live transaction
+		}
+		return archive.isIdentified();
+	}
+
+	/** the remote coordinators report the global xid only, so the branch qualifier is not compared for them. */
+	public boolean recoverable(XAResourceArchive archive, boolean remoteFlag) throws XAException {
+		XAResourceDescriptor descriptor = archive.getDescriptor();
+		String identifier = StringUtils.trimToEmpty(descriptor.getIdentifier());
+		Set<Xid> registered = this.candidates.get(identifier);
+		if (RecoveredResource.class.isInstance(descriptor.getDelegate())
+				&& (registered == null || registered.contains(archive.getXid()) == false)) {
+			return this.recoverable((RecoveredResource) descriptor.getDelegate(), archive.getXid());
+		} // end-if (RecoveredResource.class.isInstance(descriptor.getDelegate()) && ...)
+
+		ScannedResource resource = this.resources.get(identifier);
+		if (resource == null) {
+			ScannedResource created = new ScannedResource();
+			ScannedResource existed = this.resources.putIfAbsent(identifier, created);
+			resource = existed == null ? created : existed;
+		} // end-if (resource == null)
+
+		Xid[] xidArray = resource.scan(archive, registered);
+
+		Xid thisXid = archive.getXid();
+		for (int i = 0; xidArray != null && i < xidArray.length; i++) {
+			Xid thatXid = xidArray[i];
+			boolean formatIdEquals = thisXid.getFormatId() == thatXid.getFormatId();
+			boolean transactionIdEquals = Arrays.equals(thisXid.getGlobalTransactionId(), thatXid.getGlobalTransactionId());
+			if (formatIdEquals && transactionIdEquals
+					&& (remoteFlag || this.isQualifierEquals(thisXid.getBranchQualifier(), thatXid.getBranchQualifier()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean recoverable(RecoveredResource resource, Xid xid) throws XAException {
+		try {
+			resource.recoverable(xid);
+			return true;
+		} catch (XAException ex) {
+			if (ex.errorCode == XAException.XAER_NOTA) {
+				return false;
+			}
+			throw ex;
+		}
+	}
+
+	private boolean isQualifierEquals(byte[] thisBranchQualifier, byte[] thatBranchQualifier) {
+		byte[] thisValue = thisBranchQualifier == null ? new byte[0] : thisBranchQualifier;
+		byte[] thatValue = thatBranchQualifier == null ? new byte[0] : thatBranchQualifier;
+		return Arrays.equals(thisValue, thatValue);
+	}
+
+	public int getScannedResources() {
+		return this.resources.size();
+	}
+
+	static class ScannedResource {
+		private Xid[] xidArray;
+		private XAException error;
+		private boolean scanned;
+
+		synchronized Xid[] scan(XAResourceArchive archive, Set<Xid> registered) throws XAException {
+			if (this.scanned == false) {
+				try {
+					XAResource delegate = archive.getDescriptor().getDelegate();
+					if (registered != null && RecoveredResource.class.isInstance(delegate)) {
+						List<Xid> xidList = ((RecoveredResource) delegate).recoverable(new ArrayList<Xid>(registered));
+						this.xidArray = xidList.toArray(new Xid[xidList.size()]);
+					} else {
+						this.xidArray = archive.recover(XAResource.TMSTARTRSCAN | XAResource.TMENDRSCAN);
+					}
+				} catch (XAException ex) {
+					this.error = ex;
+				} catch (RuntimeException ex) {
+					XAException xaex = new XAException(XAException.XAER_RMERR);
+					xaex.initCause(ex);
+					this.error = xaex;
+				} finally {
+					this.scanned = true;
+				}
+			} // end-if (this.scanned == false)
+
+			if (this.error != null) {
+				XAException xaex = new XAException(this.error.errorCode); // the cached one is shared by every caller
+				xaex.initCause(this.error);
+				throw xaex;
+			}
+			return this.xidArray;
+		}
+	}
+
+}
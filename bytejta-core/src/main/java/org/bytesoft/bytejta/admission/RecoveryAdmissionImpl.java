@@ -0,0 +1,341 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.admission;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.bytesoft.transaction.supports.RecoveryAdmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Paces the recovery traffic per resource and per remote coordinator.
+ * <p>
+ * Every resource has a token bucket of permitsPerSecond (remotePermitsPerSecond for a remote coordinator) holding at
+ * most burstPermits; an attempt waits at most throttleTimeoutMillis for the tokens of all its resources, else it is
+ * skipped until the next cycle. A resource which failed failureThreshold attempts in a row is open for openMillis, the
+ * attempts touching it are skipped; after that a single probe is let through (half-open), its outcome closes or reopens
+ * the breaker.
+ * <p>
+ * The defaults do not limit the rate, only the breakers are in effect.
+ */
+public class RecoveryAdmissionImpl implements RecoveryAdmission, RecoveryAdmissionImplMBean {
+	static final Logger logger = LoggerFactory.getLogger(RecoveryAdmissionImpl.class);
+	static final String DEFAULT_DOMAIN = "org.bytesoft.bytejta";
+
+	static final int STATE_CLOSED = 0;
+	static final int STATE_OPEN = 1;
+	static final int STATE_HALF_OPEN = 2;
+
+	private volatile double permitsPerSecond = 0; // unlimited
+	private volatile double remotePermitsPerSecond = 0; // unlimited
+	private volatile double burstPermits = 1;
+	private volatile long throttleTimeoutMillis = 5000L;
+	private volatile int failureThreshold = 5;
+	private volatile long openMillis = 30000L;
+	private String domain = DEFAULT_DOMAIN;
+
+	private final Map<String, ResourceState> resources = new HashMap<String, ResourceState>(); // guarded by this
+	private final LongAdder admittedCount = new LongAdder();
+	private final LongAdder throttledCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+
+	public boolean admitRecovery(List<String> resourceKeys, List<String> remoteKeys) {
+		if (resourceKeys.isEmpty()) {
+			return true;
+		} // end-if (resourceKeys.isEmpty())
+
+		long deadline = System.currentTimeMillis() + this.throttleTimeoutMillis;
+		while (true) {
+			long waitNanos = 0;
+			synchronized (this) {
+				List<ResourceState> states = new ArrayList<ResourceState>();
+				for (int i = 0; i < resourceKeys.size(); i++) {
+					String resourceKey = resourceKeys.get(i);
+					ResourceState state = this.getResourceState(resourceKey, remoteKeys.contains(resourceKey));
+					if (state.isPermitted() == false) {
+						state.rejectedCount++;
+						this.rejectedCount.increment();
+						return false;
+					} // end-if (state.isPermitted() == false)
+					states.add(state);
+				}
+
+				long now = System.nanoTime();
+				for (int i = 0; i < states.size(); i++) {
+					waitNanos = Math.max(waitNanos, states.get(i).refill(now));
+				}
+
+				if (waitNanos == 0) {
+					for (int i = 0; i < states.size(); i++) {
+						states.get(i).acquire();
+					}
+					this.admittedCount.increment();
+					return true;
+				} // end-if (waitNanos == 0)
+			}
+
+			long remainMillis = deadline - System.currentTimeMillis();
+			if (remainMillis <= 0) {
+				this.throttle(resourceKeys);
+				return false;
+			} // end-if (remainMillis <= 0)
+
+			try {
+				TimeUnit.NANOSECONDS.sleep(Math.min(waitNanos, TimeUnit.MILLISECONDS.toNanos(remainMillis)));
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				this.throttle(resourceKeys);
+				return false;
+			}
+		}
+	}
+
+	private synchronized void throttle(List<String> resourceKeys) {
+		for (int i = 0; i < resourceKeys.size(); i++) {
+			ResourceState state = this.resources.get(resourceKeys.get(i));
+			if (state != null) {
+				state.throttledCount++;
+			} // end-if (state != null)
+		}
+		this.throttledCount.increment();
+	}
+
+	public synchronized void releaseRecovery(List<String> resourceKeys, List<String> failedKeys) {
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < resourceKeys.size(); i++) {
+			String resourceKey = resourceKeys.get(i);
+			ResourceState state = this.resources.get(resourceKey);
+			if (state == null) {
+				continue;
+			} else if (failedKeys.contains(resourceKey)) {
+				state.failedCount++;
+				state.failures++;
+				state.probing = false;
+				if (state.state == STATE_HALF_OPEN || state.failures >= this.failureThreshold) {
+					if (state.state != STATE_OPEN) {
+						logger.warn("Recovery of resource {} is suspended for {} ms after {} failures.", resourceKey,
+								this.openMillis, state.failures);
+					} // end-if (state.state != STATE_OPEN)
+					state.state = STATE_OPEN;
+					state.openedAt = now;
+				} // end-if (state.state == STATE_HALF_OPEN || state.failures >= this.failureThreshold)
+			} else {
+				state.succeededCount++;
+				state.failures = 0;
+				state.probing = false;
+				if (state.state != STATE_CLOSED) {
+					logger.info("Recovery of resource {} is resumed.", resourceKey);
+				} // end-if (state.state != STATE_CLOSED)
+				state.state = STATE_CLOSED;
+			}
+		}
+	}
+
+	public synchronized void updateBacklog(Map<String, Integer> backlog) {
+		for (Iterator<Map.Entry<String, ResourceState>> itr = this.resources.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, ResourceState> entry = itr.next();
+			Integer value = backlog.get(entry.getKey());
+			entry.getValue().backlog = value == null ? 0 : value;
+		}
+	}
+
+	private ResourceState getResourceState(String resourceKey, boolean remote) {
+		ResourceState state = this.resources.get(resourceKey);
+		if (state == null) {
+			state = new ResourceState(remote);
+			this.resources.put(resourceKey, state);
+		} // end-if (state == null)
+		return state;
+	}
+
+	public synchronized String[] getResourceSummaries() {
+		List<String> summaries = new ArrayList<String>();
+		String[] names = new String[] { "closed", "open", "half-open" };
+		for (Iterator<Map.Entry<String, ResourceState>> itr = this.resources.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, ResourceState> entry = itr.next();
+			ResourceState state = entry.getValue();
+			summaries.add(String.format("%s: state= %s, tokens= %.1f, backlog= %s, succeeded= %s, failed= %s, "
+					+ "throttled= %s, rejected= %s", entry.getKey(), names[state.state], state.tokens, state.backlog,
+					state.succeededCount, state.failedCount, state.throttledCount, state.rejectedCount));
+		}
+		return summaries.toArray(new String[summaries.size()]);
+	}
+
+	/** guarded by the admission. */
+	class ResourceState {
+		private final boolean remote;
+		private int state = STATE_CLOSED;
+		private int failures;
+		private long openedAt;
+		private boolean probing;
+		private double tokens = burstPermits;
+		private long refilledAt = System.nanoTime();
+
+		private int backlog;
+		private long succeededCount;
+		private long failedCount;
+		private long throttledCount;
+		private long rejectedCount;
+
+		ResourceState(boolean remote) {
+			this.remote = remote;
+		}
+
+		boolean isPermitted() {
+			if (this.state == STATE_CLOSED) {
+				return true;
+			} else if (this.state == STATE_OPEN && System.currentTimeMillis() - this.openedAt >= openMillis) {
+				this.state = STATE_HALF_OPEN;
+				this.probing = false;
+			}
+			return this.state == STATE_HALF_OPEN && this.probing == false;
+		}
+
+		/** @return the nanos to wait for a token, 0 if one is available. */
+		long refill(long now) {
+			double rate = this.remote ? remotePermitsPerSecond : permitsPerSecond;
+			if (rate <= 0) {
+				this.refilledAt = now;
+				return 0;
+			} // end-if (rate <= 0)
+
+			double burst = Math.max(1, burstPermits);
+			this.tokens = Math.min(burst, this.tokens + (now - this.refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+			this.refilledAt = now;
+			return this.tokens >= 1 ? 0 : (long) Math.ceil((1 - this.tokens) * TimeUnit.SECONDS.toNanos(1) / rate);
+		}
+
+		void acquire() {
+			double rate = this.remote ? remotePermitsPerSecond : permitsPerSecond;
+			if (rate > 0) {
+				this.tokens -= 1;
+			} // end-if (rate > 0)
+			if (this.state == STATE_HALF_OPEN) {
+				this.probing = true;
+			} // end-if (this.state == STATE_HALF_OPEN)
+		}
+	}
+
+	public void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = this.getObjectName();
+			server.registerMBean(this, objectName);
+		} catch (InstanceAlreadyExistsException ex) {
+			logger.warn("MBean of the recovery admission has already been registered.");
+		} catch (JMException ex) {
+			logger.error("Error occurred while registering recovery admission mbean.", ex);
+		}
+	}
+
+	public void unregisterMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = this.getObjectName();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException ex) {
+			logger.warn("Error occurred while unregistering recovery admission mbean.", ex);
+		}
+	}
+
+	private ObjectName getObjectName() throws JMException {
+		return new ObjectName(String.format("%s:type=RecoveryAdmission", this.domain));
+	}
+
+	public long getAdmittedCount() {
+		return this.admittedCount.sum();
+	}
+
+	public long getThrottledCount() {
+		return this.throttledCount.sum();
+	}
+
+	public long getRejectedCount() {
+		return this.rejectedCount.sum();
+	}
+
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	public void setPermitsPerSecond(double permitsPerSecond) {
+		this.permitsPerSecond = permitsPerSecond;
+	}
+
+	public double getRemotePermitsPerSecond() {
+		return remotePermitsPerSecond;
+	}
+
+	public void setRemotePermitsPerSecond(double remotePermitsPerSecond) {
+		this.remotePermitsPerSecond = remotePermitsPerSecond;
+	}
+
+	public double getBurstPermits() {
+		return burstPermits;
+	}
+
+	public void setBurstPermits(double burstPermits) {
+		this.burstPermits = burstPermits;
+	}
+
+	public long getThrottleTimeoutMillis() {
+		return throttleTimeoutMillis;
+	}
+
+	public void setThrottleTimeoutMillis(long throttleTimeoutMillis) {
+		this.throttleTimeoutMillis = throttleTimeoutMillis;
+	}
+
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	public long getOpenMillis() {
+		return openMillis;
+	}
+
+	public void setOpenMillis(long openMillis) {
+		this.openMillis = openMillis;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public void setDomain(String domain) {
+		this.domain = domain;
+	}
+
+}
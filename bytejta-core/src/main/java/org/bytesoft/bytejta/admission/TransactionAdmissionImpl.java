@@ -0,0 +1,292 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.admission;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.bytesoft.transaction.supports.TransactionAdmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caps the transactions in flight on this node and the participants in flight on every remote coordinator.
+ * <p>
+ * A transaction which can not be admitted waits in a FIFO queue for at most queueTimeoutMillis, at most
+ * maxQueuedTransactions of them, then it is rejected; queueTimeoutMillis=0 rejects immediately. The last
+ * reservedTransactions slots are kept for the prioritized applications, so they still get in while the others are
+ * throttled. Participants are never queued: a new branch on an overloaded remote coordinator is rejected at once,
+ * while the transaction still holds its own slot.
+ * <p>
+ * The defaults admit everything, only the counters are maintained.
+ */
+public class TransactionAdmissionImpl implements TransactionAdmission, TransactionAdmissionImplMBean {
+	static final Logger logger = LoggerFactory.getLogger(TransactionAdmissionImpl.class);
+	static final String DEFAULT_DOMAIN = "org.bytesoft.bytejta";
+
+	private volatile int maxActiveTransactions = Integer.MAX_VALUE;
+	private volatile int maxQueuedTransactions = Integer.MAX_VALUE;
+	private volatile long queueTimeoutMillis = 0L;
+	private volatile int reservedTransactions = 0;
+	private volatile int maxParticipantsPerRemote = Integer.MAX_VALUE;
+	private Set<String> prioritizedApplications = new HashSet<String>();
+	private String domain = DEFAULT_DOMAIN;
+
+	private final AtomicInteger activeTransactions = new AtomicInteger();
+	private final AtomicInteger queuedTransactions = new AtomicInteger();
+	private final LongAdder admittedCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder rejectedParticipantCount = new LongAdder();
+	private final ConcurrentMap<String, AtomicInteger> participants = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private final Lock lock = new ReentrantLock(true);
+	private final Condition released = this.lock.newCondition();
+
+	public boolean admitTransaction(String application) {
+		int limit = this.getTransactionLimit(application);
+		if (this.queuedTransactions.get() == 0 && this.tryAcquire(limit)) {
+			this.admittedCount.increment();
+			return true;
+		} // end-if (this.queuedTransactions.get() == 0 && this.tryAcquire(limit))
+
+		long timeoutMillis = this.queueTimeoutMillis;
+		if (timeoutMillis <= 0) {
+			return this.reject(application);
+		} else if (this.queuedTransactions.incrementAndGet() > this.maxQueuedTransactions) {
+			this.queuedTransactions.decrementAndGet();
+			return this.reject(application);
+		}
+
+		boolean admitted = false;
+		this.lock.lock();
+		try {
+			long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			while ((admitted = this.tryAcquire(limit)) == false && nanos > 0) {
+				nanos = this.released.awaitNanos(nanos);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this.queuedTransactions.decrementAndGet();
+			this.lock.unlock();
+		}
+
+		if (admitted) {
+			this.admittedCount.increment();
+			return true;
+		}
+		return this.reject(application);
+	}
+
+	private boolean reject(String application) {
+		this.rejectedCount.increment();
+		logger.warn("Transaction of application {} is rejected: active= {}, queued= {}.", application,
+				this.activeTransactions.get(), this.queuedTransactions.get());
+		return false;
+	}
+
+	private int getTransactionLimit(String application) {
+		int limit = this.maxActiveTransactions;
+		if (application != null && this.prioritizedApplications.contains(application)) {
+			return limit;
+		}
+		return Math.max(0, limit - this.reservedTransactions);
+	}
+
+	private boolean tryAcquire(int limit) {
+		int current = this.activeTransactions.get();
+		while (current < limit) {
+			if (this.activeTransactions.compareAndSet(current, current + 1)) {
+				return true;
+			}
+			current = this.activeTransactions.get();
+		}
+		return false;
+	}
+
+	public void releaseTransaction() {
+		this.activeTransactions.decrementAndGet();
+		if (this.queuedTransactions.get() > 0) {
+			this.lock.lock();
+			try {
+				this.released.signalAll(); // waiters of different priorities may be blocked by different limits
+			} finally {
+				this.lock.unlock();
+			}
+		} // end-if (this.queuedTransactions.get() > 0)
+	}
+
+	public boolean admitParticipant(String serviceKey) {
+		AtomicInteger counter = this.participants.get(serviceKey);
+		if (counter == null) {
+			AtomicInteger created = new AtomicInteger();
+			AtomicInteger existed = this.participants.putIfAbsent(serviceKey, created);
+			counter = existed == null ? created : existed;
+		} // end-if (counter == null)
+
+		int limit = this.maxParticipantsPerRemote;
+		int current = counter.get();
+		while (current < limit) {
+			if (counter.compareAndSet(current, current + 1)) {
+				return true;
+			}
+			current = counter.get();
+		}
+
+		this.rejectedParticipantCount.increment();
+		logger.warn("Participant of remote coordinator {} is rejected: active= {}.", serviceKey, current);
+		return false;
+	}
+
+	public void releaseParticipant(String serviceKey) {
+		AtomicInteger counter = this.participants.get(serviceKey);
+		if (counter != null) {
+			counter.decrementAndGet();
+		} // end-if (counter != null)
+	}
+
+	public String[] getParticipantSummaries() {
+		List<String> summaries = new ArrayList<String>();
+		for (Iterator<Map.Entry<String, AtomicInteger>> itr = this.participants.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, AtomicInteger> entry = itr.next();
+			summaries.add(String.format("%s: %s", entry.getKey(), entry.getValue().get()));
+		}
+		return summaries.toArray(new String[summaries.size()]);
+	}
+
+	public void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = this.getObjectName();
+			server.registerMBean(this, objectName);
+		} catch (InstanceAlreadyExistsException ex) {
+			logger.warn("MBean of the transaction admission has already been registered.");
+		} catch (JMException ex) {
+			logger.error("Error occurred while registering transaction admission mbean.", ex);
+		}
+	}
+
+	public void unregisterMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = this.getObjectName();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException ex) {
+			logger.warn("Error occurred while unregistering transaction admission mbean.", ex);
+		}
+	}
+
+	private ObjectName getObjectName() throws JMException {
+		return new ObjectName(String.format("%s:type=TransactionAdmission", this.domain));
+	}
+
+	public int getActiveTransactions() {
+		return this.activeTransactions.get();
+	}
+
+	public int getQueuedTransactions() {
+		return this.queuedTransactions.get();
+	}
+
+	public long getAdmittedCount() {
+		return this.admittedCount.sum();
+	}
+
+	public long getRejectedCount() {
+		return this.rejectedCount.sum();
+	}
+
+	public long getRejectedParticipantCount() {
+		return this.rejectedParticipantCount.sum();
+	}
+
+	public int getMaxActiveTransactions() {
+		return maxActiveTransactions;
+	}
+
+	public void setMaxActiveTransactions(int maxActiveTransactions) {
+		this.maxActiveTransactions = maxActiveTransactions;
+	}
+
+	public int getMaxQueuedTransactions() {
+		return maxQueuedTransactions;
+	}
+
+	public void setMaxQueuedTransactions(int maxQueuedTransactions) {
+		this.maxQueuedTransactions = maxQueuedTransactions;
+	}
+
+	public long getQueueTimeoutMillis() {
+		return queueTimeoutMillis;
+	}
+
+	public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+		this.queueTimeoutMillis = queueTimeoutMillis;
+	}
+
+	public int getReservedTransactions() {
+		return reservedTransactions;
+	}
+
+	public void setReservedTransactions(int reservedTransactions) {
+		this.reservedTransactions = reservedTransactions;
+	}
+
+	public int getMaxParticipantsPerRemote() {
+		return maxParticipantsPerRemote;
+	}
+
+	public void setMaxParticipantsPerRemote(int maxParticipantsPerRemote) {
+		this.maxParticipantsPerRemote = maxParticipantsPerRemote;
+	}
+
+	public Set<String> getPrioritizedApplications() {
+		return prioritizedApplications;
+	}
+
+	public void setPrioritizedApplications(Set<String> prioritizedApplications) {
+		this.prioritizedApplications = prioritizedApplications;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public void setDomain(String domain) {
+		this.domain = domain;
+	}
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.admission;
+
+public interface TransactionAdmissionImplMBean {
+
+	public int getActiveTransactions();
+
+	public int getQueuedTransactions();
+
+	public long getAdmittedCount();
+
+	public long getRejectedCount();
+
+	public long getRejectedParticipantCount();
+
+	/** one line per remote coordinator: participants in flight. */
+	public String[] getParticipantSummaries();
+
+	public int getMaxActiveTransactions();
+
+	public void setMaxActiveTransactions(int maxActiveTransactions);
+
+	public int getMaxQueuedTransactions();
+
+	public void setMaxQueuedTransactions(int maxQueuedTransactions);
+
+	public long getQueueTimeoutMillis();
+
+	public void setQueueTimeoutMillis(long queueTimeoutMillis);
+
+	public int getMaxParticipantsPerRemote();
+
+	public void setMaxParticipantsPerRemote(int maxParticipantsPerRemote);
+
+}
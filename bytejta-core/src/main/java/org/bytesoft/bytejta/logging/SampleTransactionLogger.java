@@ -15,13 +15,24 @@
  */
 package org.bytesoft.bytejta.logging;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
 
 import javax.annotation.PostConstruct;
 import javax.transaction.xa.Xid;
@@ -37,10 +48,12 @@ import org.bytesoft.transaction.aware.TransactionEndpointAware;
 import org.bytesoft.transaction.logging.ArchiveDeserializer;
 import org.bytesoft.transaction.logging.LoggingFlushable;
 import org.bytesoft.transaction.logging.TransactionLogger;
+import org.bytesoft.transaction.logging.store.VirtualLoggingKey;
 import org.bytesoft.transaction.logging.store.VirtualLoggingListener;
 import org.bytesoft.transaction.logging.store.VirtualLoggingRecord;
 import org.bytesoft.transaction.logging.store.VirtualLoggingSystem;
 import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+import org.bytesoft.transaction.recovery.TransactionRecoveryIndexCallback;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
@@ -49,6 +62,7 @@ import org.slf4j.LoggerFactory;
 public class SampleTransactionLogger extends VirtualLoggingSystemImpl
 		implements TransactionLogger, LoggingFlushable, TransactionBeanFactoryAware, TransactionEndpointAware {
 	static final Logger logger = LoggerFactory.getLogger(SampleTransactionLogger.class);
+	static final int CHECKPOINT_MAGIC = 0x424A4350;
 
 	@javax.inject.Inject
 	private TransactionBeanFactory beanFactory;
@@ -226,97 +240,266 @@ public class SampleTransactionLogger extends VirtualLoggingSystemImpl
 	public void recover(TransactionRecoveryCallback callback) {
 
 		final Map<Xid, TransactionArchive> xidMap = new HashMap<Xid, TransactionArchive>();
-		final ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+		final Map<Xid, List<byte[]>> recordMap = new HashMap<Xid, List<byte[]>>();
 		final XidFactory xidFactory = this.beanFactory.getXidFactory();
 
-		this.traversal(new VirtualLoggingListener() {
-			public void recvOperation(VirtualLoggingRecord action) {
-				Xid xid = action.getIdentifier();
-				int operator = action.getOperator();
-				if (VirtualLoggingSystem.OPERATOR_DELETE == operator) {
-					xidMap.remove(xid);
-				} else if (xidMap.containsKey(xid) == false) {
-					xidMap.put(xid, null);
+		Checkpoint checkpoint = this.loadCheckpoint();
+		if (checkpoint != null) {
+			xidMap.putAll(checkpoint.archives);
+			for (Iterator<Map.Entry<Xid, byte[]>> itr = checkpoint.contents.entrySet().iterator(); itr.hasNext();) {
+				Map.Entry<Xid, byte[]> entry = itr.next();
+				List<byte[]> records = new ArrayList<byte[]>();
+				records.add(entry.getValue());
+				recordMap.put(entry.getKey(), records);
+			}
+			this.replay(xidMap, recordMap, checkpoint.coveredIndex, this.getMasterEndIndex());
+			logger.info("Recovered {} transactions from checkpoint, covering {} bytes of the tx-log.",
+					checkpoint.archives.size(), checkpoint.coveredIndex);
+		} else {
+			this.traversal(new VirtualLoggingListener() {
+				public void recvOperation(VirtualLoggingRecord action) {
+					Xid xid = action.getIdentifier();
+					int operator = action.getOperator();
+					if (VirtualLoggingSystem.OPERATOR_DELETE == operator) {
+						xidMap.remove(xid);
+					} else if (xidMap.containsKey(xid) == false) {
+						xidMap.put(xid, null);
+					}
 				}
+			});
+		}
+
+		if (TransactionRecoveryIndexCallback.class.isInstance(callback)) {
+			Set<TransactionXid> xids = new HashSet<TransactionXid>();
+			for (Iterator<Xid> itr = xidMap.keySet().iterator(); itr.hasNext();) {
+				xids.add(xidFactory.createGlobalXid(itr.next().getGlobalTransactionId()));
 			}
-		});
+			((TransactionRecoveryIndexCallback) callback).index(xids);
+		} // end-if (TransactionRecoveryIndexCallback.class.isInstance(callback))
+
+		if (checkpoint == null) {
+			this.traversal(new VirtualLoggingListener() {
+				public void recvOperation(VirtualLoggingRecord action) {
+					Xid xid = action.getIdentifier();
+					if (xidMap.containsKey(xid)) {
+						applyRecord(xidMap, recordMap, action);
+					}
+				}
+			});
+		} // end-if (checkpoint == null)
 
+		for (Iterator<Map.Entry<Xid, TransactionArchive>> itr = xidMap.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<Xid, TransactionArchive> entry = itr.next();
+			TransactionArchive archive = entry.getValue();
+			if (archive == null) {
+				continue;
+			} else {
+				try {
+					callback.recover(archive, recordMap.get(entry.getKey()));
+				} catch (RuntimeException rex) {
+					logger.error("Error occurred while recovering transaction(xid= {}).", archive.getXid(), rex);
+				}
+			}
+		}
+
+	}
+
+	/** applies the records of the master in [startIndex, endIndex) in order, collecting them if recordMap is given. */
+	private void replay(final Map<Xid, TransactionArchive> xidMap, final Map<Xid, List<byte[]>> recordMap,
+			int startIndex, int endIndex) {
 		this.traversal(new VirtualLoggingListener() {
 			public void recvOperation(VirtualLoggingRecord action) {
-				Xid xid = action.getIdentifier();
-				if (xidMap.containsKey(xid)) {
-					this.execOperation(action);
+				if (VirtualLoggingSystem.OPERATOR_DELETE == action.getOperator()) {
+					xidMap.remove(action.getIdentifier());
+					if (recordMap != null) {
+						recordMap.remove(action.getIdentifier());
+					} // end-if (recordMap != null)
+				} else {
+					applyRecord(xidMap, recordMap, action);
 				}
 			}
+		}, startIndex, endIndex);
+	}
 
-			public void execOperation(VirtualLoggingRecord action) {
-				Xid identifier = action.getIdentifier();
+	/** recordMap: collects the records an archive is made of, since its last archive record, if not null. */
+	private void applyRecord(Map<Xid, TransactionArchive> xidMap, Map<Xid, List<byte[]>> recordMap,
+			VirtualLoggingRecord action) {
+		ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+		XidFactory xidFactory = this.beanFactory.getXidFactory();
 
-				TransactionXid xid = xidFactory.createGlobalXid(identifier.getGlobalTransactionId());
+		Xid identifier = action.getIdentifier();
+
+		TransactionXid xid = xidFactory.createGlobalXid(identifier.getGlobalTransactionId());
+
+		Object obj = deserializer.deserialize(xid, action.getValue());
+		if (TransactionArchive.class.isInstance(obj)) {
+			TransactionArchive archive = (TransactionArchive) obj;
+			xidMap.put(identifier, archive);
+			if (recordMap != null) {
+				List<byte[]> records = new ArrayList<byte[]>();
+				records.add(action.getValue());
+				recordMap.put(identifier, records);
+			} // end-if (recordMap != null)
+		} else if (XAResourceArchive.class.isInstance(obj)) {
+			TransactionArchive archive = xidMap.get(identifier);
+			if (archive == null) {
+				logger.error("Error occurred while recovering resource archive: {}", obj);
+				return;
+			}
 
-				Object obj = deserializer.deserialize(xid, action.getValue());
-				if (TransactionArchive.class.isInstance(obj)) {
-					TransactionArchive archive = (TransactionArchive) obj;
-					xidMap.put(identifier, archive);
-				} else if (XAResourceArchive.class.isInstance(obj)) {
-					TransactionArchive archive = xidMap.get(identifier);
-					if (archive == null) {
-						logger.error("Error occurred while recovering resource archive: {}", obj);
-						return;
-					}
+			if (archive.replaceResource((XAResourceArchive) obj) == false) {
+				logger.error("Error occurred while recovering resource archive: {}, invalid resoure!", obj);
+			} else if (recordMap != null && recordMap.containsKey(identifier)) {
+				recordMap.get(identifier).add(action.getValue());
+			}
 
-					XAResourceArchive resourceArchive = (XAResourceArchive) obj;
-					boolean matched = false;
+		}
 
-					List<XAResourceArchive> nativeResources = archive.getNativeResources();
-					for (int i = 0; matched == false && nativeResources != null && i < nativeResources.size(); i++) {
-						XAResourceArchive element = nativeResources.get(i);
-						if (resourceArchive.getXid().equals(element.getXid())) {
-							matched = true;
-							nativeResources.set(i, resourceArchive);
-						}
-					}
+	}
 
-					XAResourceArchive optimizedResource = archive.getOptimizedResource();
-					if (matched == false && optimizedResource != null) {
-						if (resourceArchive.getXid().equals(optimizedResource.getXid())) {
-							matched = true;
-							archive.setOptimizedResource(resourceArchive);
-						}
-					}
+	/**
+	 * Checkpoint = the transactions still in the tx-log, merged up to a position of the master, which is replayed from
+	 * there on at restart. A new checkpoint starts from the previous one, so only the records written since then are
+	 * read. The checkpoint is dropped before the master is switched.
+	 */
+	protected void checkpoint(int endIndex) {
+		Checkpoint previous = this.loadCheckpoint();
+		Map<Xid, TransactionArchive> xidMap = new HashMap<Xid, TransactionArchive>();
+		int startIndex = this.getMasterStartIndex();
+		if (previous != null) {
+			xidMap.putAll(previous.archives);
+			startIndex = previous.coveredIndex;
+		} // end-if (previous != null)
+
+		this.replay(xidMap, null, startIndex, endIndex);
 
-					List<XAResourceArchive> remoteResources = archive.getRemoteResources();
-					for (int i = 0; matched == false && remoteResources != null && i < remoteResources.size(); i++) {
-						XAResourceArchive element = remoteResources.get(i);
-						if (resourceArchive.getXid().equals(element.getXid())) {
-							matched = true;
-							remoteResources.set(i, resourceArchive);
-						}
-					}
+		ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+		XidFactory xidFactory = this.beanFactory.getXidFactory();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(baos);
+		try {
+			output.writeInt(CHECKPOINT_MAGIC);
+			output.writeUTF(this.getMasterFile().getName());
+			output.writeInt(endIndex);
+			output.writeInt(xidMap.size());
+			for (Iterator<Map.Entry<Xid, TransactionArchive>> itr = xidMap.entrySet().iterator(); itr.hasNext();) {
+				Map.Entry<Xid, TransactionArchive> entry = itr.next();
+				byte[] globalTransactionId = entry.getKey().getGlobalTransactionId();
+				TransactionXid xid = xidFactory.createGlobalXid(globalTransactionId);
+				byte[] byteArray = deserializer.serialize(xid, entry.getValue());
+				output.write(globalTransactionId);
+				output.writeInt(byteArray.length);
+				output.write(byteArray);
+			}
+			output.flush();
 
-					if (matched == false) {
-						logger.error("Error occurred while recovering resource archive: {}, invalid resoure!", obj);
-					}
+			CRC32 crc = new CRC32();
+			crc.update(baos.toByteArray());
+			output.writeLong(crc.getValue());
+			output.flush();
 
-				}
+			File directory = this.getDirectory();
+			File temporary = new File(directory, String.format("%scheckpoint.tmp", this.getLoggingFilePrefix()));
+			FileOutputStream fos = new FileOutputStream(temporary);
+			try {
+				fos.write(baos.toByteArray());
+				fos.getFD().sync();
+			} finally {
+				fos.close();
+			}
 
+			try {
+				Files.move(temporary.toPath(), this.getCheckpointFile().toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temporary.toPath(), this.getCheckpointFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
 			}
-		});
+		} catch (IOException ex) {
+			throw new IllegalStateException("Error occurred while writing the checkpoint of tx-log!", ex);
+		}
 
-		for (Iterator<Map.Entry<Xid, TransactionArchive>> itr = xidMap.entrySet().iterator(); itr.hasNext();) {
-			Map.Entry<Xid, TransactionArchive> entry = itr.next();
-			TransactionArchive archive = entry.getValue();
-			if (archive == null) {
-				continue;
-			} else {
-				try {
-					callback.recover(archive);
-				} catch (RuntimeException rex) {
-					logger.error("Error occurred while recovering transaction(xid= {}).", archive.getXid(), rex);
-				}
+		logger.debug("Checkpoint of tx-log: transactions= {}, covered= {}", xidMap.size(), endIndex);
+	}
+
+	protected boolean invalidateCheckpoint() {
+		File file = this.getCheckpointFile();
+		if (file.exists() && file.delete() == false) {
+			logger.error("Failed to delete checkpoint {}, the tx-log will not be switched!", file.getAbsolutePath());
+			return false;
+		}
+		return true;
+	}
+
+	/** the checkpoint is ignored, i.e. the whole tx-log is replayed, unless it is intact and bound to the master. */
+	private Checkpoint loadCheckpoint() {
+		File file = this.getCheckpointFile();
+		if (file.exists() == false) {
+			return null;
+		} // end-if (file.exists() == false)
+
+		ArchiveDeserializer deserializer = this.beanFactory.getArchiveDeserializer();
+		XidFactory xidFactory = this.beanFactory.getXidFactory();
+		try {
+			byte[] content = Files.readAllBytes(file.toPath());
+			if (content.length < 8) {
+				return null;
+			} // end-if (content.length < 8)
+
+			CRC32 crc = new CRC32();
+			crc.update(content, 0, content.length - 8);
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+			input.skipBytes(content.length - 8);
+			if (input.readLong() != crc.getValue()) {
+				logger.warn("Checkpoint {} is corrupted, the whole tx-log will be replayed.", file.getAbsolutePath());
+				return null;
+			} // end-if (input.readLong() != crc.getValue())
+
+			input = new DataInputStream(new ByteArrayInputStream(content, 0, content.length - 8));
+			if (input.readInt() != CHECKPOINT_MAGIC) {
+				return null;
+			} else if (StringUtils.equals(input.readUTF(), this.getMasterFile().getName()) == false) {
+				return null;
+			}
+
+			Checkpoint checkpoint = new Checkpoint();
+			checkpoint.coveredIndex = input.readInt();
+			if (checkpoint.coveredIndex < this.getMasterStartIndex() || checkpoint.coveredIndex > this.getMasterEndIndex()) {
+				return null;
+			} // end-if (checkpoint.coveredIndex < this.getMasterStartIndex() || ...)
+
+			int size = input.readInt();
+			for (int i = 0; i < size; i++) {
+				byte[] globalTransactionId = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH];
+				input.readFully(globalTransactionId);
+				byte[] byteArray = new byte[input.readInt()];
+				input.readFully(byteArray);
+
+				VirtualLoggingKey key = new VirtualLoggingKey();
+				key.setGlobalTransactionId(globalTransactionId);
+				TransactionXid xid = xidFactory.createGlobalXid(globalTransactionId);
+				checkpoint.archives.put(key, (TransactionArchive) deserializer.deserialize(xid, byteArray));
+				checkpoint.contents.put(key, byteArray);
 			}
+			return checkpoint;
+		} catch (IOException ex) {
+			logger.warn("Error occurred while reading checkpoint {}, the whole tx-log will be replayed.",
+					file.getAbsolutePath(), ex);
+			return null;
+		} catch (RuntimeException ex) {
+			logger.warn("Error occurred while reading checkpoint {}, the whole tx-log will be replayed.",
+					file.getAbsolutePath(), ex);
+			return null;
 		}
+	}
+
+	private File getCheckpointFile() {
+		return new File(this.getDirectory(), String.format("%scheckpoint.dat", this.getLoggingFilePrefix()));
+	}
 
+	static class Checkpoint {
+		private int coveredIndex;
+		private final Map<Xid, TransactionArchive> archives = new HashMap<Xid, TransactionArchive>();
+		private final Map<Xid, byte[]> contents = new HashMap<Xid, byte[]>();
 	}
 
 	public File getDefaultDirectory() {
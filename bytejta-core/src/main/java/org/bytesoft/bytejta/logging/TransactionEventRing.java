@@ -0,0 +1,212 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.logging;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
+import org.bytesoft.transaction.xa.CompactTransactionXid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixed-size in-memory ring of transaction events. Each event is stored as primitive fields in preallocated arrays: a
+ * writer claims a slot by incrementing a shared cursor and publishes it by writing the slot sequence, no lock is taken
+ * and nothing is allocated. The oldest events are overwritten; a slot being rewritten while it is dumped is skipped.
+ */
+public class TransactionEventRing implements TransactionEventRecorder {
+	static final Logger logger = LoggerFactory.getLogger(TransactionEventRing.class);
+	static final int DEFAULT_CAPACITY = 8192;
+	static final String[] EVENT_NAMES = new String[] { "unknown", "begin-transaction", "begin-participant", "enlist",
+			"delist", "commit-transaction start", "commit-transaction deferred", "commit-transaction complete",
+			"rollback-transaction start", "rollback-transaction complete", "prepare-participant start",
+			"prepare-participant complete", "prepare-participant failed", "commit-participant start",
+			"commit-participant complete", "rollback-participant start", "rollback-participant complete", "prepare",
+			"commit", "rollback" };
+
+	private final int mask;
+	private final AtomicLong cursor = new AtomicLong();
+	private final AtomicLongArray sequences;
+	private final long[] times;
+	private final long[] identifiers; // global-high, global-low, branch-high, branch-low
+	private final int[] events;
+	private final int[] values;
+
+	private boolean verbose;
+
+	public TransactionEventRing() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public TransactionEventRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = size - 1;
+		this.sequences = new AtomicLongArray(size);
+		this.times = new long[size];
+		this.identifiers = new long[size * 4];
+		this.events = new int[size];
+		this.values = new int[size];
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, -1L);
+		}
+	}
+
+	public void recordEvent(int event, Xid xid, int value) {
+		long sequence = this.cursor.getAndIncrement();
+		int slot = (int) (sequence & this.mask);
+
+		this.sequences.set(slot, -1L); // unpublished while being written
+		this.times[slot] = System.currentTimeMillis();
+		this.events[slot] = event;
+		this.values[slot] = value;
+
+		int offset = slot << 2;
+		if (CompactTransactionXid.class.isInstance(xid)) {
+			CompactTransactionXid compact = (CompactTransactionXid) xid;
+			this.identifiers[offset] = compact.getGlobalHighBits();
+			this.identifiers[offset + 1] = compact.getGlobalLowBits();
+			this.identifiers[offset + 2] = compact.getBranchHighBits();
+			this.identifiers[offset + 3] = compact.getBranchLowBits();
+		} else if (xid != null) {
+			byte[] global = xid.getGlobalTransactionId();
+			byte[] branch = xid.getBranchQualifier();
+			this.identifiers[offset] = toLong(global, 0);
+			this.identifiers[offset + 1] = toLong(global, 8);
+			this.identifiers[offset + 2] = toLong(branch, 0);
+			this.identifiers[offset + 3] = toLong(branch, 8);
+		} else {
+			this.identifiers[offset] = 0;
+			this.identifiers[offset + 1] = 0;
+			this.identifiers[offset + 2] = 0;
+			this.identifiers[offset + 3] = 0;
+		}
+
+		this.sequences.lazySet(slot, sequence);
+	}
+
+	public void dump(Xid globalXid) {
+		long globalHigh = 0;
+		long globalLow = 0;
+		if (CompactTransactionXid.class.isInstance(globalXid)) {
+			globalHigh = ((CompactTransactionXid) globalXid).getGlobalHighBits();
+			globalLow = ((CompactTransactionXid) globalXid).getGlobalLowBits();
+		} else if (globalXid != null) {
+			globalHigh = toLong(globalXid.getGlobalTransactionId(), 0);
+			globalLow = toLong(globalXid.getGlobalTransactionId(), 8);
+		}
+
+		long last = this.cursor.get();
+		long first = Math.max(0, last - this.mask - 1);
+		StringBuilder ber = new StringBuilder();
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		for (long sequence = first; sequence < last; sequence++) {
+			int slot = (int) (sequence & this.mask);
+			int offset = slot << 2;
+			if (globalXid != null
+					&& (this.identifiers[offset] != globalHigh || this.identifiers[offset + 1] != globalLow)) {
+				continue;
+			}
+			this.formatEvent(ber, format, sequence);
+		}
+
+		if (globalXid == null) {
+			logger.warn("transaction events(total= {}):{}", last, ber);
+		} else {
+			logger.warn("transaction events of {}:{}", toHex(globalHigh, globalLow), ber);
+		}
+	}
+
+	public void dump(File file) throws IOException {
+		long last = this.cursor.get();
+		long first = Math.max(0, last - this.mask - 1);
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			StringBuilder ber = new StringBuilder();
+			for (long sequence = first; sequence < last; sequence++) {
+				ber.setLength(0);
+				this.formatEvent(ber, format, sequence);
+				writer.write(ber.toString());
+			}
+			writer.write(System.getProperty("line.separator"));
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	private void formatEvent(StringBuilder ber, SimpleDateFormat format, long sequence) {
+		int slot = (int) (sequence & this.mask);
+		int offset = slot << 2;
+
+		if (this.sequences.get(slot) != sequence) {
+			return; // not published yet, or overwritten
+		}
+		long time = this.times[slot];
+		int event = this.events[slot];
+		int value = this.values[slot];
+		long globalHigh = this.identifiers[offset];
+		long globalLow = this.identifiers[offset + 1];
+		long branchHigh = this.identifiers[offset + 2];
+		long branchLow = this.identifiers[offset + 3];
+		if (this.sequences.get(slot) != sequence) {
+			return; // overwritten while being read
+		}
+
+		String name = event > 0 && event < EVENT_NAMES.length ? EVENT_NAMES[event] : EVENT_NAMES[0];
+		ber.append(System.getProperty("line.separator"));
+		ber.append(format.format(new Date(time))).append(' ');
+		ber.append(toHex(globalHigh, globalLow)).append("> ").append(name);
+		if (branchHigh != 0 || branchLow != 0) {
+			ber.append(": branch= ").append(toHex(branchHigh, branchLow));
+		}
+		ber.append(", value= ").append(value);
+	}
+
+	private static long toLong(byte[] bytes, int start) {
+		long value = 0;
+		for (int i = start; i < start + 8; i++) {
+			value = (value << 8) | (bytes != null && i < bytes.length ? bytes[i] & 0xff : 0);
+		}
+		return value;
+	}
+
+	private static String toHex(long high, long low) {
+		return String.format("%016x%016x", high, low);
+	}
+
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+}
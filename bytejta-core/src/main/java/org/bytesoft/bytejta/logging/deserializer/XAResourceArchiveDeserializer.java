@@ -91,6 +91,7 @@ public class XAResourceArchiveDeserializer implements ArchiveDeserializer, Trans
 		ByteBuffer buffer = ByteBuffer.wrap(array);
 
 		XAResourceArchive archive = new XAResourceArchive();
+		archive.setResourceStatistic(this.beanFactory.getResourceStatistic());
 
 		byte[] branchQualifier = new byte[XidFactory.BRANCH_QUALIFIER_LENGTH];
 		buffer.get(branchQualifier);
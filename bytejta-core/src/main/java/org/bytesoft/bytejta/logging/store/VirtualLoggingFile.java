@@ -18,6 +18,7 @@ package org.bytesoft.bytejta.logging.store;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.Arrays;
@@ -40,6 +41,7 @@ public class VirtualLoggingFile {
 	private MappedByteBuffer writable;
 
 	private RandomAccessFile raf;
+	private final File file;
 
 	private byte[] identifier;
 
@@ -63,6 +65,7 @@ public class VirtualLoggingFile {
 	public VirtualLoggingFile(File file, int major, int minor) throws IOException {
 		this.majorVersion = major;
 		this.minorVersion = minor;
+		this.file = file;
 
 		this.initialized = file.exists();
 		this.raf = new RandomAccessFile(file, "rw");
@@ -241,6 +244,25 @@ public class VirtualLoggingFile {
 		}
 	}
 
+	/** a view with its own position, for reading the committed records while the file is being written. */
+	public ByteBuffer createReadingView() {
+		return this.readable.duplicate();
+	}
+
+	public byte[] read(ByteBuffer view, int limit) {
+		if (view.position() < limit) {
+			int pos = view.position();
+			view.position(pos + XidFactory.GLOBAL_TRANSACTION_LENGTH + 1);
+			int size = view.getInt();
+			byte[] byteArray = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH + 1 + 4 + size];
+			view.position(pos);
+			view.get(byteArray);
+			return byteArray;
+		} else {
+			return new byte[0];
+		}
+	}
+
 	public void write(byte[] byteArray) {
 		if (this.writable.capacity() < this.endIndex + byteArray.length) {
 			this.resizeMappedByteBuffer(this.endIndex + INCREASE_SIZE);
@@ -291,6 +313,10 @@ public class VirtualLoggingFile {
 		}
 	}
 
+	public File getFile() {
+		return file;
+	}
+
 	public byte[] getIdentifier() {
 		return identifier;
 	}
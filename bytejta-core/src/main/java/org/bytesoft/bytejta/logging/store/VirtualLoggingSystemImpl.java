@@ -17,6 +17,7 @@ package org.bytesoft.bytejta.logging.store;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.bytesoft.transaction.logging.store.VirtualLoggingListener;
 import org.bytesoft.transaction.logging.store.VirtualLoggingRecord;
 import org.bytesoft.transaction.logging.store.VirtualLoggingSystem;
 import org.bytesoft.transaction.logging.store.VirtualLoggingTrigger;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +61,7 @@ public abstract class VirtualLoggingSystemImpl implements VirtualLoggingSystem,
 
 	private int switchThreshold = 1024 * 1024 * 8;
 	private int switchInterval = 60;
+	private int checkpointThreshold = 1024 * 1024;
 
 	public synchronized void construct() throws IOException {
 		if (this.initialized == false) {
@@ -138,6 +141,7 @@ public abstract class VirtualLoggingSystemImpl implements VirtualLoggingSystem,
 
 	public void run() {
 		int lastEndIndex = this.master.getEndIndex();
+		int lastCheckpointIndex = this.master.getStartIdx();
 		while (this.released == false) {
 			try {
 				this.timingLock.lock();
@@ -150,16 +154,46 @@ public abstract class VirtualLoggingSystemImpl implements VirtualLoggingSystem,
 
 			int increment = this.master.getEndIndex() - lastEndIndex;
 			if (increment < this.switchThreshold) {
+				lastCheckpointIndex = this.checkpointIfNecessary(lastCheckpointIndex);
 				continue;
 			} // end-if (increasement < this.switchThreshold)
 
+			if (this.invalidateCheckpoint() == false) {
+				continue; // a checkpoint must never be taken for the next master
+			} // end-if (this.invalidateCheckpoint() == false)
+
 			this.syncMasterAndSlaver();
 			this.swapMasterAndSlaver();
 
 			lastEndIndex = this.master.getEndIndex();
+			lastCheckpointIndex = this.master.getStartIdx();
+		}
+	}
+
+	private int checkpointIfNecessary(int lastCheckpointIndex) {
+		int endIndex = this.getMasterEndIndex();
+		if (this.checkpointThreshold <= 0 || endIndex - lastCheckpointIndex < this.checkpointThreshold) {
+			return lastCheckpointIndex;
+		} // end-if (this.checkpointThreshold <= 0 || ...)
+
+		try {
+			this.checkpoint(endIndex);
+			return endIndex;
+		} catch (RuntimeException rex) {
+			logger.error("Error occurred while taking a checkpoint of the tx-log.", rex);
+			return lastCheckpointIndex;
 		}
 	}
 
+	/** takes a snapshot of the records of the master before endIndex, the snapshot is bound to the current master. */
+	protected void checkpoint(int endIndex) {
+	}
+
+	/** drops the snapshot before the master is switched, false if it can not be dropped. */
+	protected boolean invalidateCheckpoint() {
+		return true;
+	}
+
 	public void fireSwapImmediately() {
 		try {
 			this.timingLock.lock();
@@ -203,6 +237,58 @@ public abstract class VirtualLoggingSystemImpl implements VirtualLoggingSystem,
 
 	}
 
+	/** reads the records of the master in [startIndex, endIndex), independently of the other readers. */
+	public void traversal(VirtualLoggingListener listener, int startIndex, int endIndex) {
+		ByteBuffer view = this.master.createReadingView();
+		view.position(startIndex);
+		while (true) {
+			byte[] byteArray = null;
+			try {
+				byteArray = this.master.read(view, endIndex);
+			} catch (RuntimeException rex) {
+				byteArray = new byte[0];
+			}
+
+			if (byteArray.length == 0) {
+				break;
+			}
+
+			byte[] keyByteArray = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH];
+			System.arraycopy(byteArray, 0, keyByteArray, 0, keyByteArray.length);
+			int operator = byteArray[keyByteArray.length];
+			byte[] valueByteArray = new byte[byteArray.length - XidFactory.GLOBAL_TRANSACTION_LENGTH - 1 - 4];
+			System.arraycopy(byteArray, XidFactory.GLOBAL_TRANSACTION_LENGTH + 1 + 4, valueByteArray, 0, valueByteArray.length);
+
+			VirtualLoggingKey xid = new VirtualLoggingKey();
+			xid.setGlobalTransactionId(keyByteArray);
+
+			VirtualLoggingRecord record = new VirtualLoggingRecord();
+			record.setIdentifier(xid);
+			record.setOperator(operator);
+			record.setContent(byteArray);
+			record.setValue(valueByteArray);
+
+			listener.recvOperation(record);
+		}
+	}
+
+	public int getMasterStartIndex() {
+		return this.master.getStartIdx();
+	}
+
+	public int getMasterEndIndex() {
+		try {
+			this.lock.lock();
+			return this.master.getEndIndex();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public File getMasterFile() {
+		return this.master.getFile();
+	}
+
 	public void create(Xid xid, byte[] textByteArray) {
 		byte[] keyByteArray = xid.getGlobalTransactionId();
 		byte[] sizeByteArray = ByteUtils.intToByteArray(textByteArray.length);
@@ -266,12 +352,17 @@ public abstract class VirtualLoggingSystemImpl implements VirtualLoggingSystem,
 	}
 
 	public void syncMasterAndSlaver() {
-		this.master.prepareForReading();
-		Map<Xid, Boolean> recordMap = this.syncStepOne();
-		this.master.prepareForReading();
-		this.syncStepTwo(recordMap, true);
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_COMPACTION);
+		try {
+			this.master.prepareForReading();
+			Map<Xid, Boolean> recordMap = this.syncStepOne();
+			this.master.prepareForReading();
+			this.syncStepTwo(recordMap, true);
 
-		this.flushSlaverIfNecessary();
+			this.flushSlaverIfNecessary();
+		} finally {
+			TransactionFlightRecorder.commit(event, null, this);
+		}
 	}
 
 	public Map<Xid, Boolean> syncStepOne() {
@@ -463,6 +554,14 @@ public abstract class VirtualLoggingSystemImpl implements VirtualLoggingSystem,
 		this.switchInterval = switchInterval;
 	}
 
+	public int getCheckpointThreshold() {
+		return checkpointThreshold;
+	}
+
+	public void setCheckpointThreshold(int checkpointThreshold) {
+		this.checkpointThreshold = checkpointThreshold;
+	}
+
 	public boolean isOptimized() {
 		return optimized;
 	}
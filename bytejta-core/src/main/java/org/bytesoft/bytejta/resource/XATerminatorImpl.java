@@ -25,6 +25,7 @@ import javax.transaction.xa.Xid;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.transaction.TransactionBeanFactory;
 import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.logging.TransactionLogger;
 import org.bytesoft.transaction.resource.XATerminator;
 import org.slf4j.Logger;
@@ -34,9 +35,18 @@ public class XATerminatorImpl implements XATerminator {
 	static final Logger logger = LoggerFactory.getLogger(XATerminatorImpl.class);
 
 	private TransactionBeanFactory beanFactory;
-	private final List<XAResourceArchive> resources = new ArrayList<XAResourceArchive>();
+	private final List<XAResourceArchive> resources;
 
-	public synchronized int prepare(Xid xid) throws XAException {
+	public XATerminatorImpl() {
+		this(new ArrayList<XAResourceArchive>());
+	}
+
+	/** the terminator works on the given participants directly, they are not copied. */
+	public XATerminatorImpl(List<XAResourceArchive> resources) {
+		this.resources = resources;
+	}
+
+	public int prepare(Xid xid) throws XAException {
 		TransactionLogger transactionLogger = this.beanFactory.getTransactionLogger();
 
 		int globalVote = XAResource.XA_RDONLY;
@@ -51,25 +61,26 @@ public class XATerminatorImpl implements XATerminator {
 				archive.setVote(branchVote);
 
 				if (branchVote == XAResource.XA_RDONLY) {
-					archive.setReadonly(true);
+					archive.setReadonly(true); // read-only branch has nothing to recover, vote is logged with the transaction
 					archive.setCompleted(true);
 				} else {
 					globalVote = XAResource.XA_OK;
+					transactionLogger.updateParticipant(archive);
 				}
-
-				transactionLogger.updateParticipant(archive);
 			}
 
-			logger.info("{}> prepare: xares= {}, branch= {}, vote= {}",
-					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), archive.getVote());
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_PREPARE, archive.getXid(), archive.getVote())) {
+				logger.info("{}> prepare: xares= {}, branch= {}, vote= {}",
+						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), archive.getVote());
+			}
 		}
 
 		return globalVote;
 	}
 
 	/** error: XA_HEURHAZ, XA_HEURMIX, XA_HEURCOM, XA_HEURRB, XA_RDONLY, XAER_RMERR */
-	public synchronized void commit(Xid xid, boolean onePhase) throws XAException {
+	public void commit(Xid xid, boolean onePhase) throws XAException {
 		if (onePhase) {
 			this.fireOnePhaseCommit(xid);
 		} else {
@@ -107,9 +118,11 @@ public class XATerminatorImpl implements XATerminator {
 			archive.setCommitted(true);
 			archive.setCompleted(true);
 
-			logger.info("{}> commit: xares= {}, branch= {}, opc= {}",
-					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), true);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_COMMIT, archive.getXid(), 1)) {
+				logger.info("{}> commit: xares= {}, branch= {}, opc= {}",
+						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), true);
+			}
 		} catch (XAException xaex) {
 			logger.error("{}> Error occurred while committing xa-resource: xares= {}, branch= {}, code= {}",
 					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
@@ -188,9 +201,11 @@ public class XATerminatorImpl implements XATerminator {
 				committedExists = true;
 				archive.setCommitted(true);
 				archive.setCompleted(true);
-				logger.info("{}> commit: xares= {}, branch= {}, onePhaseCommit= {}",
-						ByteUtils.byteArrayToString(branchXid.getGlobalTransactionId()), archive,
-						ByteUtils.byteArrayToString(branchXid.getBranchQualifier()), false);
+				if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_COMMIT, branchXid, 0)) {
+					logger.info("{}> commit: xares= {}, branch= {}, onePhaseCommit= {}",
+							ByteUtils.byteArrayToString(branchXid.getGlobalTransactionId()), archive,
+							ByteUtils.byteArrayToString(branchXid.getBranchQualifier()), false);
+				}
 			} catch (XAException xaex) {
 				logger.error("{}> Error occurred while committing xa-resource: xares= {}, branch= {}, code= {}",
 						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
@@ -360,7 +375,7 @@ public class XATerminatorImpl implements XATerminator {
 	}
 
 	/** error: XA_HEURHAZ, XA_HEURMIX, XA_HEURCOM, XA_HEURRB, XA_RDONLY, XAER_RMERR */
-	public synchronized void rollback(Xid xid) throws XAException {
+	public void rollback(Xid xid) throws XAException {
 		TransactionLogger transactionLogger = this.beanFactory.getTransactionLogger();
 
 		boolean committedExists = false;
@@ -390,9 +405,11 @@ public class XATerminatorImpl implements XATerminator {
 				rolledbackExists = true;
 				archive.setRolledback(true);
 				archive.setCompleted(true);
-				logger.info("{}> rollback: xares= {}, branch= {}",
-						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
-						ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()));
+				if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_ROLLBACK, archive.getXid(), 0)) {
+					logger.info("{}> rollback: xares= {}, branch= {}",
+							ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
+							ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()));
+				}
 			} catch (XAException xaex) {
 				logger.error("{}> Error occurred while rolling back xa-resource: xares= {}, branch= {}, code= {}",
 						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
@@ -597,6 +614,15 @@ public class XATerminatorImpl implements XATerminator {
 		return this.resources;
 	}
 
+	private boolean recordEvent(int event, Xid xid, int value) {
+		TransactionEventRecorder recorder = this.beanFactory == null ? null : this.beanFactory.getTransactionEventRecorder();
+		if (recorder == null) {
+			return true;
+		}
+		recorder.recordEvent(event, xid, value);
+		return recorder.isVerbose();
+	}
+
 	public TransactionBeanFactory getBeanFactory() {
 		return beanFactory;
 	}
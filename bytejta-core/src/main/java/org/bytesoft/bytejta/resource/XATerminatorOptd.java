@@ -27,6 +27,7 @@ import javax.transaction.xa.Xid;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.transaction.TransactionBeanFactory;
 import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.logging.TransactionLogger;
 import org.bytesoft.transaction.resource.XATerminator;
 import org.slf4j.Logger;
@@ -38,7 +39,7 @@ public class XATerminatorOptd implements XATerminator {
 	private TransactionBeanFactory beanFactory;
 	private XAResourceArchive archive;
 
-	public synchronized int prepare(Xid xid) throws XAException {
+	public int prepare(Xid xid) throws XAException {
 		if (this.archive == null) {
 			return XAResource.XA_RDONLY;
 		}
@@ -54,24 +55,25 @@ public class XATerminatorOptd implements XATerminator {
 			archive.setVote(globalVote);
 
 			if (globalVote == XAResource.XA_RDONLY) {
-				archive.setReadonly(true);
+				archive.setReadonly(true); // read-only branch has nothing to recover, vote is logged with the transaction
 				archive.setCompleted(true);
 			} else {
 				globalVote = XAResource.XA_OK;
+				transactionLogger.updateParticipant(archive);
 			}
-
-			transactionLogger.updateParticipant(archive);
 		}
 
-		logger.info("{}> prepare: xares= {}, branch= {}, vote= {}",
-				ByteUtils.byteArrayToString(this.archive.getXid().getGlobalTransactionId()), archive,
-				ByteUtils.byteArrayToString(this.archive.getXid().getBranchQualifier()), globalVote);
+		if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_PREPARE, this.archive.getXid(), globalVote)) {
+			logger.info("{}> prepare: xares= {}, branch= {}, vote= {}",
+					ByteUtils.byteArrayToString(this.archive.getXid().getGlobalTransactionId()), archive,
+					ByteUtils.byteArrayToString(this.archive.getXid().getBranchQualifier()), globalVote);
+		}
 
 		return globalVote;
 	}
 
 	/** error: XA_HEURHAZ, XA_HEURMIX, XA_HEURCOM, XA_HEURRB, XA_RDONLY, XAER_RMERR */
-	public synchronized void commit(Xid xid, boolean onePhase) throws XAException {
+	public void commit(Xid xid, boolean onePhase) throws XAException {
 		if (onePhase) {
 			this.fireOnePhaseCommit(xid);
 		} else {
@@ -98,9 +100,11 @@ public class XATerminatorOptd implements XATerminator {
 			archive.setCommitted(true);
 			archive.setCompleted(true);
 
-			logger.info("{}> commit: xares= {}, branch= {}, opc= {}",
-					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), false);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_COMMIT, archive.getXid(), 0)) {
+				logger.info("{}> commit: xares= {}, branch= {}, opc= {}",
+						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), false);
+			}
 		} catch (XAException xaex) {
 			switch (xaex.errorCode) {
 			case XAException.XA_HEURCOM:
@@ -182,9 +186,11 @@ public class XATerminatorOptd implements XATerminator {
 			archive.setCommitted(true);
 			archive.setCompleted(true);
 
-			logger.info("{}> commit: xares= {}, branch= {}, opc= {}",
-					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), false);
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_COMMIT, archive.getXid(), 0)) {
+				logger.info("{}> commit: xares= {}, branch= {}, opc= {}",
+						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()), false);
+			}
 		} catch (XAException xaex) {
 			// * @exception XAException An error has occurred. Possible XAExceptions
 			// * are XA_HEURHAZ, XA_HEURCOM, XA_HEURRB, XA_HEURMIX, XAER_RMERR,
@@ -274,7 +280,7 @@ public class XATerminatorOptd implements XATerminator {
 	}
 
 	/** error: XA_HEURHAZ, XA_HEURMIX, XA_HEURCOM, XA_HEURRB, XA_RDONLY, XAER_RMERR */
-	public synchronized void rollback(Xid xid) throws XAException {
+	public void rollback(Xid xid) throws XAException {
 		if (archive.isCommitted() && archive.isRolledback()) {
 			throw new XAException(XAException.XA_HEURMIX);
 		} else if (archive.isRolledback()) {
@@ -293,9 +299,11 @@ public class XATerminatorOptd implements XATerminator {
 			archive.setRolledback(true);
 			archive.setCompleted(true);
 
-			logger.info("{}> rollback: xares= {}, branch= {}",
-					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
-					ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()));
+			if (this.recordEvent(TransactionEventRecorder.EVENT_BRANCH_ROLLBACK, archive.getXid(), 0)) {
+				logger.info("{}> rollback: xares= {}, branch= {}",
+						ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
+						ByteUtils.byteArrayToString(archive.getXid().getBranchQualifier()));
+			}
 		} catch (XAException xaex) {
 			logger.error("{}> Error occurred while rolling back xa-resource: xares= {}, branch= {}, code= {}",
 					ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId()), archive,
@@ -575,6 +583,15 @@ public class XATerminatorOptd implements XATerminator {
 		};
 	}
 
+	private boolean recordEvent(int event, Xid xid, int value) {
+		TransactionEventRecorder recorder = this.beanFactory == null ? null : this.beanFactory.getTransactionEventRecorder();
+		if (recorder == null) {
+			return true;
+		}
+		recorder.recordEvent(event, xid, value);
+		return recorder.isVerbose();
+	}
+
 	public TransactionBeanFactory getBeanFactory() {
 		return beanFactory;
 	}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.statistic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with power-of-two microsecond buckets: bucket i counts the values in [2^(i-1), 2^i) us, the last
+ * one everything above. Recording is a few atomic increments, nothing is allocated. Percentiles are reported as the
+ * upper bound of the bucket they fall in, so they are exact within a factor of two.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+	static final int BUCKET_COUNT = 40; // 2^39 us, about six days
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000L);
+		int index = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+		this.buckets.incrementAndGet(index);
+		this.count.increment();
+		this.total.add(micros);
+
+		long current = this.max.get();
+		while (micros > current && this.max.compareAndSet(current, micros) == false) {
+			current = this.max.get();
+		}
+	}
+
+	public long getPercentile(double percentile) {
+		long[] values = new long[BUCKET_COUNT];
+		long amount = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			values[i] = this.buckets.get(i);
+			amount += values[i];
+		}
+		if (amount == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(amount * percentile);
+		long accumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			accumulated += values[i];
+			if (accumulated >= threshold) {
+				return Math.min(1L << i, this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getMean() {
+		long amount = this.count.sum();
+		return amount == 0 ? 0 : this.total.sum() / amount;
+	}
+
+	public long getMax() {
+		return this.max.get();
+	}
+
+	public long getMedian() {
+		return this.getPercentile(0.5);
+	}
+
+	public long get90thPercentile() {
+		return this.getPercentile(0.9);
+	}
+
+	public long get99thPercentile() {
+		return this.getPercentile(0.99);
+	}
+
+	public long get999thPercentile() {
+		return this.getPercentile(0.999);
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.buckets.set(i, 0);
+		}
+		this.count.reset();
+		this.total.reset();
+		this.max.set(0);
+	}
+
+}
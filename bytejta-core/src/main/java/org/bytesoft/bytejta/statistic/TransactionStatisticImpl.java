@@ -0,0 +1,313 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.statistic;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.bytesoft.bytejta.TransactionImpl;
+import org.bytesoft.transaction.supports.TransactionStatistic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the status transitions of transactions and records the latencies of their phases. The phase a transaction is
+ * in and the time it entered it are kept on the transaction itself, so nothing is allocated per transaction.
+ */
+public class TransactionStatisticImpl implements TransactionStatistic, TransactionStatisticImplMBean {
+	static final Logger logger = LoggerFactory.getLogger(TransactionStatisticImpl.class);
+	static final String DEFAULT_DOMAIN = "org.bytesoft.bytejta";
+
+	private final LongAdder begunCount = new LongAdder();
+	private final LongAdder preparingCount = new LongAdder();
+	private final LongAdder preparedCount = new LongAdder();
+	private final LongAdder committingCount = new LongAdder();
+	private final LongAdder committedCount = new LongAdder();
+	private final LongAdder rollingBackCount = new LongAdder();
+	private final LongAdder rolledbackCount = new LongAdder();
+	private final LongAdder failureCount = new LongAdder();
+	private final LongAdder recoveredCount = new LongAdder();
+	private final LongAdder cleanupCount = new LongAdder();
+
+	private final LongAdder activeTransactions = new LongAdder();
+	private final LongAdder preparingTransactions = new LongAdder();
+	private final LongAdder committingTransactions = new LongAdder();
+	private final LongAdder rollingBackTransactions = new LongAdder();
+	private final LongAdder recoveringTransactions = new LongAdder();
+
+	private final LatencyHistogram transactionLatency = new LatencyHistogram(); // begin -> committed/rolledback
+	private final LatencyHistogram prepareLatency = new LatencyHistogram();
+	private final LatencyHistogram commitLatency = new LatencyHistogram();
+	private final LatencyHistogram rollbackLatency = new LatencyHistogram();
+	private final LatencyHistogram recoveryLatency = new LatencyHistogram();
+
+	private String domain = DEFAULT_DOMAIN;
+
+	public void fireBeginTransaction(TransactionImpl transaction) {
+		transaction.setStatisticFlags(FLAGS_ACTIVE);
+		transaction.setStatisticBeginTime(System.nanoTime());
+		this.begunCount.increment();
+		this.activeTransactions.increment();
+	}
+
+	public void firePreparingTransaction(TransactionImpl transaction) {
+		this.enterPhase(transaction, FLAGS_PREPARING);
+		this.preparingCount.increment();
+		this.preparingTransactions.increment();
+	}
+
+	public void firePreparedTransaction(TransactionImpl transaction) {
+		long flags = transaction.getStatisticFlags();
+		if ((flags & FLAGS_PREPARING) != 0) {
+			this.preparingTransactions.decrement();
+			this.prepareLatency.record(System.nanoTime() - transaction.getStatisticPhaseTime());
+		} // end-if ((flags & FLAGS_PREPARING) != 0)
+		transaction.setStatisticFlags((flags & ~FLAGS_PREPARING) | FLAGS_PREPARED);
+		this.preparedCount.increment();
+	}
+
+	public void fireCommittingTransaction(TransactionImpl transaction) {
+		this.enterPhase(transaction, FLAGS_COMMITTING);
+		this.committingCount.increment();
+		this.committingTransactions.increment();
+	}
+
+	public void fireCommittedTransaction(TransactionImpl transaction) {
+		long flags = transaction.getStatisticFlags();
+		if ((flags & FLAGS_COMMITTING) != 0) {
+			this.committingTransactions.decrement();
+			LatencyHistogram histogram = (flags & FLAGS_RECOVERING) != 0 ? this.recoveryLatency : this.commitLatency;
+			histogram.record(System.nanoTime() - transaction.getStatisticPhaseTime());
+		} // end-if ((flags & FLAGS_COMMITTING) != 0)
+		this.fireCompleted(transaction, flags & ~FLAGS_COMMITTING, FLAGS_COMMITTED);
+		this.committedCount.increment();
+	}
+
+	public void fireRollingBackTransaction(TransactionImpl transaction) {
+		this.enterPhase(transaction, FLAGS_ROLLINGBACK);
+		this.rollingBackCount.increment();
+		this.rollingBackTransactions.increment();
+	}
+
+	public void fireRolledbackTransaction(TransactionImpl transaction) {
+		long flags = transaction.getStatisticFlags();
+		if ((flags & FLAGS_ROLLINGBACK) != 0) {
+			this.rollingBackTransactions.decrement();
+			LatencyHistogram histogram = (flags & FLAGS_RECOVERING) != 0 ? this.recoveryLatency : this.rollbackLatency;
+			histogram.record(System.nanoTime() - transaction.getStatisticPhaseTime());
+		} // end-if ((flags & FLAGS_ROLLINGBACK) != 0)
+		this.fireCompleted(transaction, flags & ~FLAGS_ROLLINGBACK, FLAGS_ROLEDBACK);
+		this.rolledbackCount.increment();
+	}
+
+	public void fireCompleteFailure(TransactionImpl transaction) {
+		long flags = this.leavePhases(transaction.getStatisticFlags());
+		if ((flags & FLAGS_RECOVERING) != 0) {
+			this.recoveringTransactions.decrement();
+		} // end-if ((flags & FLAGS_RECOVERING) != 0)
+		transaction.setStatisticFlags((flags & ~FLAGS_RECOVERING) | FLAGS_ERROR);
+		this.failureCount.increment();
+	}
+
+	public void fireCleanupTransaction(TransactionImpl transaction) {
+		long flags = this.leavePhases(transaction.getStatisticFlags());
+		if ((flags & FLAGS_RECOVERING) != 0) {
+			this.recoveringTransactions.decrement();
+		} // end-if ((flags & FLAGS_RECOVERING) != 0)
+		if ((flags & FLAGS_ACTIVE) != 0) {
+			this.activeTransactions.decrement();
+			this.cleanupCount.increment();
+		} // end-if ((flags & FLAGS_ACTIVE) != 0)
+		transaction.setStatisticFlags(0);
+	}
+
+	/** the latency of the recovery is the one of the commit/rollback which completes the transaction. */
+	public void fireRecoverTransaction(TransactionImpl transaction) {
+		long flags = transaction.getStatisticFlags();
+		if ((flags & FLAGS_RECOVERING) == 0) {
+			this.recoveringTransactions.increment();
+		} // end-if ((flags & FLAGS_RECOVERING) == 0)
+		transaction.setStatisticFlags(flags | FLAGS_RECOVERING);
+		this.recoveredCount.increment();
+	}
+
+	private void enterPhase(TransactionImpl transaction, long phase) {
+		long flags = this.leavePhases(transaction.getStatisticFlags());
+		transaction.setStatisticFlags(flags | phase);
+		transaction.setStatisticPhaseTime(System.nanoTime());
+	}
+
+	/** a phase which has been left without completion, e.g. by an exception, is closed without latency. */
+	private long leavePhases(long flags) {
+		if ((flags & FLAGS_PREPARING) != 0) {
+			this.preparingTransactions.decrement();
+		}
+		if ((flags & FLAGS_COMMITTING) != 0) {
+			this.committingTransactions.decrement();
+		}
+		if ((flags & FLAGS_ROLLINGBACK) != 0) {
+			this.rollingBackTransactions.decrement();
+		}
+		return flags & ~(FLAGS_PREPARING | FLAGS_COMMITTING | FLAGS_ROLLINGBACK);
+	}
+
+	private void fireCompleted(TransactionImpl transaction, long flags, long completion) {
+		if ((flags & FLAGS_RECOVERING) != 0) {
+			this.recoveringTransactions.decrement();
+		} else if ((flags & FLAGS_ACTIVE) != 0) {
+			this.transactionLatency.record(System.nanoTime() - transaction.getStatisticBeginTime());
+		}
+		transaction.setStatisticFlags((flags & ~FLAGS_RECOVERING) | completion);
+	}
+
+	public void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			this.registerMBean(server, this.getObjectName(null), this);
+			this.registerMBean(server, this.getObjectName("transaction"), this.transactionLatency);
+			this.registerMBean(server, this.getObjectName("prepare"), this.prepareLatency);
+			this.registerMBean(server, this.getObjectName("commit"), this.commitLatency);
+			this.registerMBean(server, this.getObjectName("rollback"), this.rollbackLatency);
+			this.registerMBean(server, this.getObjectName("recovery"), this.recoveryLatency);
+		} catch (JMException ex) {
+			logger.error("Error occurred while registering transaction statistic mbeans.", ex);
+		}
+	}
+
+	private void registerMBean(MBeanServer server, ObjectName objectName, Object mbean) throws JMException {
+		try {
+			server.registerMBean(mbean, objectName);
+		} catch (InstanceAlreadyExistsException ex) {
+			logger.warn("MBean {} has already been registered.", objectName);
+		}
+	}
+
+	public void unregisterMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		String[] phases = new String[] { null, "transaction", "prepare", "commit", "rollback", "recovery" };
+		for (int i = 0; i < phases.length; i++) {
+			try {
+				ObjectName objectName = this.getObjectName(phases[i]);
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+			} catch (JMException ex) {
+				logger.warn("Error occurred while unregistering transaction statistic mbeans.", ex);
+			}
+		}
+	}
+
+	private ObjectName getObjectName(String phase) throws JMException {
+		if (phase == null) {
+			return new ObjectName(String.format("%s:type=TransactionStatistic", this.domain));
+		}
+		return new ObjectName(String.format("%s:type=TransactionStatistic,latency=%s", this.domain, phase));
+	}
+
+	public long getBegunCount() {
+		return this.begunCount.sum();
+	}
+
+	public long getPreparingCount() {
+		return this.preparingCount.sum();
+	}
+
+	public long getPreparedCount() {
+		return this.preparedCount.sum();
+	}
+
+	public long getCommittingCount() {
+		return this.committingCount.sum();
+	}
+
+	public long getCommittedCount() {
+		return this.committedCount.sum();
+	}
+
+	public long getRollingBackCount() {
+		return this.rollingBackCount.sum();
+	}
+
+	public long getRolledbackCount() {
+		return this.rolledbackCount.sum();
+	}
+
+	public long getFailureCount() {
+		return this.failureCount.sum();
+	}
+
+	public long getRecoveredCount() {
+		return this.recoveredCount.sum();
+	}
+
+	public long getCleanupCount() {
+		return this.cleanupCount.sum();
+	}
+
+	public long getActiveTransactions() {
+		return this.activeTransactions.sum();
+	}
+
+	public long getPreparingTransactions() {
+		return this.preparingTransactions.sum();
+	}
+
+	public long getCommittingTransactions() {
+		return this.committingTransactions.sum();
+	}
+
+	public long getRollingBackTransactions() {
+		return this.rollingBackTransactions.sum();
+	}
+
+	public long getRecoveringTransactions() {
+		return this.recoveringTransactions.sum();
+	}
+
+	public LatencyHistogram getTransactionLatency() {
+		return transactionLatency;
+	}
+
+	public LatencyHistogram getPrepareLatency() {
+		return prepareLatency;
+	}
+
+	public LatencyHistogram getCommitLatency() {
+		return commitLatency;
+	}
+
+	public LatencyHistogram getRollbackLatency() {
+		return rollbackLatency;
+	}
+
+	public LatencyHistogram getRecoveryLatency() {
+		return recoveryLatency;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public void setDomain(String domain) {
+		this.domain = domain;
+	}
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.statistic;
+
+public interface TransactionStatisticImplMBean {
+
+	public long getBegunCount();
+
+	public long getPreparingCount();
+
+	public long getPreparedCount();
+
+	public long getCommittingCount();
+
+	public long getCommittedCount();
+
+	public long getRollingBackCount();
+
+	public long getRolledbackCount();
+
+	public long getFailureCount();
+
+	public long getRecoveredCount();
+
+	public long getCleanupCount();
+
+	public long getActiveTransactions();
+
+	public long getPreparingTransactions();
+
+	public long getCommittingTransactions();
+
+	public long getRollingBackTransactions();
+
+	public long getRecoveringTransactions();
+
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.statistic;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+import org.bytesoft.transaction.supports.resource.XAResourceStatistic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency, error and in-flight statistics of the branch operations, kept per resource identifier (the bean name of a
+ * datasource, host:app:port of a remote coordinator). Latencies are reported for the last completed window. A branch
+ * operation is reported as slow if it takes longer than slowMultiple times the moving average of the resource, and
+ * longer than slowThresholdMillis.
+ */
+public class XAResourceStatisticImpl implements XAResourceStatistic, XAResourceStatisticImplMBean {
+	static final Logger logger = LoggerFactory.getLogger(XAResourceStatisticImpl.class);
+	static final String DEFAULT_DOMAIN = "org.bytesoft.bytejta";
+	static final String UNIDENTIFIED = "unidentified";
+	static final String[] OPERATIONS = new String[] { "start", "prepare", "commit", "rollback", "forget" };
+	static final double BASELINE_WEIGHT = 0.02;
+
+	private final ConcurrentMap<String, ResourceMetrics> resources = new ConcurrentHashMap<String, ResourceMetrics>();
+	private final LongAdder slowBranchCount = new LongAdder();
+
+	private volatile double slowMultiple = 5.0;
+	private volatile long slowThresholdMillis = 100L;
+	private int warmupSamples = 100;
+	private long windowMillis = 60L * 1000L;
+	private String domain = DEFAULT_DOMAIN;
+
+	public void fireOperationStart(XAResourceDescriptor descriptor, int operation) {
+		this.getResourceMetrics(descriptor).inflight.increment();
+	}
+
+	public void fireOperationSuccess(XAResourceDescriptor descriptor, Xid xid, int operation, long nanos) {
+		ResourceMetrics metrics = this.getResourceMetrics(descriptor);
+		metrics.inflight.decrement();
+		this.fireOperationComplete(metrics, xid, operation, nanos);
+	}
+
+	public void fireOperationFailure(XAResourceDescriptor descriptor, Xid xid, int operation, long nanos, Throwable error) {
+		ResourceMetrics metrics = this.getResourceMetrics(descriptor);
+		metrics.inflight.decrement();
+		this.fireOperationComplete(metrics, xid, operation, nanos);
+
+		String errorName = getErrorName(error);
+		LongAdder counter = metrics.errors.get(errorName);
+		if (counter == null) {
+			LongAdder created = new LongAdder();
+			LongAdder existed = metrics.errors.putIfAbsent(errorName, created);
+			counter = existed == null ? created : existed;
+		} // end-if (counter == null)
+		counter.increment();
+	}
+
+	private void fireOperationComplete(ResourceMetrics metrics, Xid xid, int operation, long nanos) {
+		OperationMetrics operationMetrics = metrics.operations[operation];
+		operationMetrics.record(nanos, this.windowMillis);
+
+		double baseline = operationMetrics.getBaseline();
+		long samples = operationMetrics.updateBaseline(nanos);
+		if (samples <= this.warmupSamples) {
+			return;
+		} else if (nanos < this.slowThresholdMillis * 1000L * 1000L) {
+			return;
+		} else if (nanos <= baseline * this.slowMultiple) {
+			return;
+		}
+
+		this.slowBranchCount.increment();
+		operationMetrics.slowCount.increment();
+		logger.warn("{}> slow branch: resource= {}, operation= {}, branch= {}, elapsed= {} ms, baseline= {} ms",
+				xid == null ? null : ByteUtils.byteArrayToString(xid.getGlobalTransactionId()), metrics.identifier,
+				OPERATIONS[operation], xid == null ? null : ByteUtils.byteArrayToString(xid.getBranchQualifier()),
+				nanos / 1000000L, (long) (baseline / 1000000L));
+	}
+
+	private ResourceMetrics getResourceMetrics(XAResourceDescriptor descriptor) {
+		String identifier = descriptor == null ? null : descriptor.getIdentifier();
+		String key = identifier == null ? UNIDENTIFIED : identifier;
+		ResourceMetrics metrics = this.resources.get(key);
+		if (metrics == null) {
+			ResourceMetrics created = new ResourceMetrics(key);
+			ResourceMetrics existed = this.resources.putIfAbsent(key, created);
+			metrics = existed == null ? created : existed;
+		} // end-if (metrics == null)
+		return metrics;
+	}
+
+	static String getErrorName(Throwable error) {
+		if (XAException.class.isInstance(error) == false) {
+			return error == null ? "unknown" : error.getClass().getSimpleName();
+		}
+
+		int errorCode = ((XAException) error).errorCode;
+		switch (errorCode) {
+		case XAException.XA_HEURHAZ:
+			return "XA_HEURHAZ";
+		case XAException.XA_HEURCOM:
+			return "XA_HEURCOM";
+		case XAException.XA_HEURRB:
+			return "XA_HEURRB";
+		case XAException.XA_HEURMIX:
+			return "XA_HEURMIX";
+		case XAException.XA_RETRY:
+			return "XA_RETRY";
+		case XAException.XA_RDONLY:
+			return "XA_RDONLY";
+		case XAException.XAER_ASYNC:
+			return "XAER_ASYNC";
+		case XAException.XAER_RMERR:
+			return "XAER_RMERR";
+		case XAException.XAER_NOTA:
+			return "XAER_NOTA";
+		case XAException.XAER_INVAL:
+			return "XAER_INVAL";
+		case XAException.XAER_PROTO:
+			return "XAER_PROTO";
+		case XAException.XAER_RMFAIL:
+			return "XAER_RMFAIL";
+		case XAException.XAER_DUPID:
+			return "XAER_DUPID";
+		case XAException.XAER_OUTSIDE:
+			return "XAER_OUTSIDE";
+		default:
+			if (errorCode >= XAException.XA_RBBASE && errorCode <= XAException.XA_RBEND) {
+				return "XA_RB" + errorCode;
+			}
+			return "XA_" + errorCode;
+		}
+	}
+
+	public String[] getResources() {
+		return this.resources.keySet().toArray(new String[0]);
+	}
+
+	public String[] getResourceSummaries() {
+		List<String> summaries = new ArrayList<String>();
+		for (Iterator<ResourceMetrics> itr = this.resources.values().iterator(); itr.hasNext();) {
+			ResourceMetrics metrics = itr.next();
+			for (int i = 0; i < metrics.operations.length; i++) {
+				OperationMetrics operationMetrics = metrics.operations[i];
+				LatencyHistogram histogram = operationMetrics.getReportedHistogram();
+				if (histogram.getCount() == 0 && operationMetrics.samples.get() == 0) {
+					continue;
+				}
+				summaries.add(String.format(
+						"%s %s: count= %s, mean= %sus, p50= %sus, p99= %sus, max= %sus, baseline= %sus, slow= %s",
+						metrics.identifier, OPERATIONS[i], histogram.getCount(), histogram.getMean(),
+						histogram.getMedian(), histogram.get99thPercentile(), histogram.getMax(),
+						(long) (operationMetrics.getBaseline() / 1000L), operationMetrics.slowCount.sum()));
+			}
+
+			StringBuilder ber = new StringBuilder();
+			for (Iterator<Map.Entry<String, LongAdder>> errors = metrics.errors.entrySet().iterator(); errors.hasNext();) {
+				Map.Entry<String, LongAdder> entry = errors.next();
+				ber.append(ber.length() == 0 ? "" : ", ").append(entry.getKey()).append("= ").append(entry.getValue().sum());
+			}
+			summaries.add(String.format("%s: inflight= %s, errors= {%s}", metrics.identifier, metrics.inflight.sum(), ber));
+		}
+		return summaries.toArray(new String[summaries.size()]);
+	}
+
+	public long getInflightCount(String identifier) {
+		ResourceMetrics metrics = this.resources.get(identifier);
+		return metrics == null ? 0 : metrics.inflight.sum();
+	}
+
+	public long getErrorCount(String identifier, String errorName) {
+		ResourceMetrics metrics = this.resources.get(identifier);
+		LongAdder counter = metrics == null ? null : metrics.errors.get(errorName);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	public LatencyHistogram getLatencyHistogram(String identifier, int operation) {
+		ResourceMetrics metrics = this.resources.get(identifier);
+		return metrics == null ? null : metrics.operations[operation].getReportedHistogram();
+	}
+
+	public void reset() {
+		this.resources.clear();
+		this.slowBranchCount.reset();
+	}
+
+	public void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = this.getObjectName();
+			server.registerMBean(this, objectName);
+		} catch (InstanceAlreadyExistsException ex) {
+			logger.warn("MBean of the resource statistic has already been registered.");
+		} catch (JMException ex) {
+			logger.error("Error occurred while registering resource statistic mbean.", ex);
+		}
+	}
+
+	public void unregisterMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = this.getObjectName();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException ex) {
+			logger.warn("Error occurred while unregistering resource statistic mbean.", ex);
+		}
+	}
+
+	private ObjectName getObjectName() throws JMException {
+		return new ObjectName(String.format("%s:type=XAResourceStatistic", this.domain));
+	}
+
+	static class ResourceMetrics {
+		final String identifier;
+		final LongAdder inflight = new LongAdder();
+		final OperationMetrics[] operations = new OperationMetrics[OPERATIONS.length];
+		final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+		ResourceMetrics(String identifier) {
+			this.identifier = identifier;
+			for (int i = 0; i < this.operations.length; i++) {
+				this.operations[i] = new OperationMetrics();
+			}
+		}
+	}
+
+	static class OperationMetrics {
+		private volatile LatencyHistogram current = new LatencyHistogram();
+		private volatile LatencyHistogram previous = new LatencyHistogram();
+		private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+		private final AtomicLong baseline = new AtomicLong(Double.doubleToLongBits(0)); // moving average, nanos
+		private final AtomicLong samples = new AtomicLong();
+		private final LongAdder slowCount = new LongAdder();
+
+		void record(long nanos, long windowMillis) {
+			long now = System.currentTimeMillis();
+			long start = this.windowStart.get();
+			if (now - start >= windowMillis && this.windowStart.compareAndSet(start, now)) {
+				LatencyHistogram histogram = this.previous;
+				histogram.reset();
+				this.previous = this.current;
+				this.current = histogram;
+			} // end-if (now - start >= windowMillis && ...)
+			this.current.record(nanos);
+		}
+
+		/** the last completed window, or the current one before the first window is completed. */
+		LatencyHistogram getReportedHistogram() {
+			LatencyHistogram histogram = this.previous;
+			return histogram.getCount() > 0 ? histogram : this.current;
+		}
+
+		double getBaseline() {
+			return Double.longBitsToDouble(this.baseline.get());
+		}
+
+		long updateBaseline(long nanos) {
+			long count = this.samples.incrementAndGet();
+			double weight = Math.max(BASELINE_WEIGHT, 1.0 / count);
+			while (true) {
+				long bits = this.baseline.get();
+				double value = Double.longBitsToDouble(bits);
+				double updated = value + (nanos - value) * weight;
+				if (this.baseline.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+					return count;
+				}
+			}
+		}
+	}
+
+	public long getSlowBranchCount() {
+		return this.slowBranchCount.sum();
+	}
+
+	public double getSlowMultiple() {
+		return slowMultiple;
+	}
+
+	public void setSlowMultiple(double slowMultiple) {
+		this.slowMultiple = slowMultiple;
+	}
+
+	public long getSlowThresholdMillis() {
+		return slowThresholdMillis;
+	}
+
+	public void setSlowThresholdMillis(long slowThresholdMillis) {
+		this.slowThresholdMillis = slowThresholdMillis;
+	}
+
+	public int getWarmupSamples() {
+		return warmupSamples;
+	}
+
+	public void setWarmupSamples(int warmupSamples) {
+		this.warmupSamples = warmupSamples;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public void setDomain(String domain) {
+		this.domain = domain;
+	}
+
+}
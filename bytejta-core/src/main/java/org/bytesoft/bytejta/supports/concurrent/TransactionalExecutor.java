@@ -0,0 +1,269 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.concurrent;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.bytesoft.bytejta.TransactionBeanFactoryImpl;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionManager;
+import org.bytesoft.transaction.aware.TransactionBeanFactoryAware;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor which runs its tasks within the transaction of the submitting thread.
+ * <p>
+ * The transaction is captured when the task is submitted, associated with the worker thread before the task runs and
+ * desociated once it returns. Resources enlisted by the worker join the branches already started on the same resource
+ * manager. A task is refused if the transaction is no longer active, or is being completed, or if the worker thread is
+ * associated with another transaction. A task passed to execute() whose failure, or refusal, can not be observed by
+ * the submitter marks the transaction as rollback-only.
+ * <p>
+ * The tasks running within a transaction are tracked: its commit waits, in beforeCompletion, for them to return, at
+ * most completionTimeoutMillis, after which the transaction is marked rollback-only. Tasks which have not started yet
+ * by then are refused.
+ */
+public class TransactionalExecutor implements Executor, TransactionBeanFactoryAware {
+	static final Logger logger = LoggerFactory.getLogger(TransactionalExecutor.class);
+
+	@javax.inject.Inject
+	protected TransactionBeanFactory beanFactory;
+	private final Executor delegate;
+	/* by identity, the xid of a lazily materialized transaction is assigned later */
+	private final Map<Transaction, TaskTracker> trackers = new IdentityHashMap<Transaction, TaskTracker>();
+	private long completionTimeoutMillis = 30000L;
+
+	public TransactionalExecutor(Executor delegate) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("The delegate executor can not be null!");
+		}
+		this.delegate = delegate;
+	}
+
+	public void execute(Runnable command) {
+		this.delegate.execute(this.wrapRunnable(command, true));
+	}
+
+	protected Runnable wrapRunnable(Runnable task, boolean rollbackOnFailure) {
+		Transaction transaction = this.getTransactionManager().getTransactionQuietly();
+		return transaction == null ? task
+				: new TransactionalRunnable(task, transaction, this.getTaskTracker(transaction), rollbackOnFailure);
+	}
+
+	protected <T> Callable<T> wrapCallable(Callable<T> task) {
+		Transaction transaction = this.getTransactionManager().getTransactionQuietly();
+		return transaction == null ? task
+				: new TransactionalCallable<T>(task, transaction, this.getTaskTracker(transaction));
+	}
+
+	/** registers a tracker with the transaction on its first task, by the submitting thread. */
+	private TaskTracker getTaskTracker(Transaction transaction) {
+		TaskTracker created = null;
+		synchronized (this.trackers) {
+			TaskTracker tracker = this.trackers.get(transaction);
+			if (tracker != null) {
+				return tracker;
+			} // end-if (tracker != null)
+			created = new TaskTracker(transaction);
+			this.trackers.put(transaction, created);
+		}
+
+		try {
+			transaction.registerSynchronization(created);
+		} catch (Exception ex) {
+			this.releaseTaskTracker(transaction); // no longer active, its tasks will be refused
+		}
+		return created;
+	}
+
+	private void releaseTaskTracker(Transaction transaction) {
+		synchronized (this.trackers) {
+			this.trackers.remove(transaction);
+		}
+	}
+
+	protected <T> T callWithinTransaction(Transaction transaction, TaskTracker tracker, Callable<T> task,
+			boolean rollbackOnFailure) throws Exception {
+		TransactionManager transactionManager = this.getTransactionManager();
+		Transaction current = transactionManager.getTransactionQuietly();
+		if (current == transaction) {
+			return task.call(); // executed by the submitting thread, e.g. caller-runs
+		}
+
+		String refusal = null;
+		int transactionStatus = transaction.getTransactionStatus();
+		if (current != null) {
+			refusal = "The worker thread is already associated with another transaction!";
+		} else if (transactionStatus != Status.STATUS_ACTIVE && transactionStatus != Status.STATUS_MARKED_ROLLBACK) {
+			refusal = "The transaction is no longer active, the task can not join it!";
+		} else if (tracker.enter() == false) {
+			refusal = "The transaction is being completed, the task can not join it!";
+		}
+
+		if (refusal != null) {
+			if (rollbackOnFailure) {
+				transaction.setRollbackOnlyQuietly();
+			} // end-if (rollbackOnFailure)
+			throw new IllegalStateException(refusal);
+		} // end-if (refusal != null)
+
+		boolean success = false;
+		try {
+			transactionManager.associateThread(transaction);
+			T result = task.call();
+			success = true;
+			return result;
+		} finally {
+			transactionManager.desociateThread();
+			tracker.exit();
+			if (success == false && rollbackOnFailure) {
+				transaction.setRollbackOnlyQuietly();
+			} // end-if (success == false && rollbackOnFailure)
+		}
+	}
+
+	protected TransactionManager getTransactionManager() {
+		TransactionBeanFactory transactionBeanFactory = this.beanFactory;
+		if (transactionBeanFactory == null) {
+			transactionBeanFactory = TransactionBeanFactoryImpl.getInstance();
+		}
+		return transactionBeanFactory.getTransactionManager();
+	}
+
+	/** counts the tasks running within a transaction; closed, and waited for, once the commit begins. */
+	class TaskTracker implements Synchronization {
+		private final Transaction transaction;
+		private int runningTasks;
+		private boolean closed;
+
+		TaskTracker(Transaction transaction) {
+			this.transaction = transaction;
+		}
+
+		synchronized boolean enter() {
+			if (this.closed) {
+				return false;
+			} // end-if (this.closed)
+			this.runningTasks++;
+			return true;
+		}
+
+		synchronized void exit() {
+			if (--this.runningTasks == 0) {
+				this.notifyAll();
+			} // end-if (--this.runningTasks == 0)
+		}
+
+		public void beforeCompletion() {
+			long deadline = System.currentTimeMillis() + completionTimeoutMillis;
+			synchronized (this) {
+				this.closed = true;
+				long waitMillis = deadline - System.currentTimeMillis();
+				while (this.runningTasks > 0 && waitMillis > 0) {
+					try {
+						this.wait(waitMillis);
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+					waitMillis = deadline - System.currentTimeMillis();
+				}
+
+				if (this.runningTasks > 0) {
+					logger.warn("{} task(s) still running within the transaction, it is marked rollback-only.",
+							this.runningTasks);
+					this.transaction.setRollbackOnlyQuietly();
+				} // end-if (this.runningTasks > 0)
+			}
+		}
+
+		public void afterCompletion(int status) {
+			releaseTaskTracker(this.transaction);
+		}
+	}
+
+	class TransactionalRunnable implements Runnable {
+		private final Runnable task;
+		private final Transaction transaction;
+		private final TaskTracker tracker;
+		private final boolean rollbackOnFailure;
+
+		TransactionalRunnable(Runnable task, Transaction transaction, TaskTracker tracker, boolean rollbackOnFailure) {
+			this.task = task;
+			this.transaction = transaction;
+			this.tracker = tracker;
+			this.rollbackOnFailure = rollbackOnFailure;
+		}
+
+		public void run() {
+			try {
+				Callable<Object> callable = Executors.callable(this.task);
+				callWithinTransaction(this.transaction, this.tracker, callable, this.rollbackOnFailure);
+			} catch (RuntimeException rex) {
+				throw rex;
+			} catch (Exception ex) {
+				throw new IllegalStateException(ex); // never happens, a runnable throws no checked exception
+			}
+		}
+	}
+
+	class TransactionalCallable<T> implements Callable<T> {
+		private final Callable<T> task;
+		private final Transaction transaction;
+		private final TaskTracker tracker;
+
+		TransactionalCallable(Callable<T> task, Transaction transaction, TaskTracker tracker) {
+			this.task = task;
+			this.transaction = transaction;
+			this.tracker = tracker;
+		}
+
+		public T call() throws Exception {
+			// the failure is reported by the future
+			return callWithinTransaction(this.transaction, this.tracker, this.task, false);
+		}
+	}
+
+	public Executor getDelegate() {
+		return delegate;
+	}
+
+	public long getCompletionTimeoutMillis() {
+		return completionTimeoutMillis;
+	}
+
+	public void setCompletionTimeoutMillis(long completionTimeoutMillis) {
+		this.completionTimeoutMillis = completionTimeoutMillis;
+	}
+
+	public TransactionBeanFactory getBeanFactory() {
+		return beanFactory;
+	}
+
+	public void setBeanFactory(TransactionBeanFactory tbf) {
+		this.beanFactory = tbf;
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * ExecutorService which runs its tasks within the transaction of the submitting thread, see TransactionalExecutor.
+ * Shutting it down shuts the delegate down.
+ */
+public class TransactionalExecutorService extends TransactionalExecutor implements ExecutorService {
+
+	private final ExecutorService delegate;
+
+	public TransactionalExecutorService(ExecutorService delegate) {
+		super(delegate);
+		this.delegate = delegate;
+	}
+
+	public <T> Future<T> submit(Callable<T> task) {
+		return this.delegate.submit(this.wrapCallable(task));
+	}
+
+	public <T> Future<T> submit(Runnable task, T result) {
+		return this.delegate.submit(this.wrapRunnable(task, false), result);
+	}
+
+	public Future<?> submit(Runnable task) {
+		return this.delegate.submit(this.wrapRunnable(task, false));
+	}
+
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		return this.delegate.invokeAll(this.wrapCallables(tasks));
+	}
+
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return this.delegate.invokeAll(this.wrapCallables(tasks), timeout, unit);
+	}
+
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		return this.delegate.invokeAny(this.wrapCallables(tasks));
+	}
+
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return this.delegate.invokeAny(this.wrapCallables(tasks), timeout, unit);
+	}
+
+	private <T> List<Callable<T>> wrapCallables(Collection<? extends Callable<T>> tasks) {
+		List<Callable<T>> wrapped = new ArrayList<Callable<T>>(tasks.size());
+		for (Callable<T> task : tasks) {
+			wrapped.add(this.wrapCallable(task));
+		}
+		return wrapped;
+	}
+
+	public void shutdown() {
+		this.delegate.shutdown();
+	}
+
+	public List<Runnable> shutdownNow() {
+		return this.delegate.shutdownNow();
+	}
+
+	public boolean isShutdown() {
+		return this.delegate.isShutdown();
+	}
+
+	public boolean isTerminated() {
+		return this.delegate.isTerminated();
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.delegate.awaitTermination(timeout, unit);
+	}
+
+}
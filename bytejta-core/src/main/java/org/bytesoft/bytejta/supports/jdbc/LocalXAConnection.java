@@ -20,6 +20,7 @@ import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
@@ -32,6 +33,12 @@ import org.slf4j.LoggerFactory;
 
 public class LocalXAConnection implements XAConnection {
 	static final Logger logger = LoggerFactory.getLogger(LocalXAConnection.class);
+	static final Pattern QUERY_PATTERN = Pattern.compile("^\\s*(select|show|explain|desc|describe)\\b.*",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	/** locking reads, SELECT INTO, EXPLAIN ANALYZE and sequence calls: queries which still take locks or modify data. */
+	static final Pattern WRITING_PATTERN = Pattern.compile(".*\\b(for\\s+(update|share|no\\s+key\\s+update|key\\s+share)"
+			+ "|lock\\s+in\\s+share\\s+mode|updlock|xlock|holdlock|into|analyze|nextval|setval)\\b.*",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
 	private String resourceId;
 
@@ -40,6 +47,9 @@ public class LocalXAConnection implements XAConnection {
 	private boolean underlyingConCloseRequired = false;
 	private boolean physicalConnectionReleased = false;
 	private int physicalConnectionSharingCount = 0;
+	private volatile boolean writeActivityDetected = false;
+	private int statementOwnerCount = 0;
+	private boolean queryDetectionEnabled = false;
 
 	private final Set<ConnectionEventListener> listeners = new HashSet<ConnectionEventListener>();
 
@@ -92,9 +102,52 @@ public class LocalXAConnection implements XAConnection {
 		}
 	}
 
+	/**
+	 * Every statement is considered as writing unless queryDetectionEnabled, in which case a prepared plain query is not.
+	 * Statements without sql(Statement, CallableStatement) are always considered as writing. A query calling a function
+	 * that modifies data cannot be told apart: its branch votes read-only and the modification is committed at prepare,
+	 * outside of two-phase commit, so query detection must only be enabled for data sources that have no such functions.
+	 * Independent of this, a branch whose connection is read-only is always considered as read-only.
+	 * <p>
+	 * Writes are detected when a statement is created. As a statement may be executed again after the local transaction
+	 * is completed, the next one is considered as writing while a logical connection which created statements is open.
+	 */
+	public void detectWriteActivity(String sql) {
+		if (this.writeActivityDetected) {
+			return;
+		} else if (this.queryDetectionEnabled == false || sql == null) {
+			this.writeActivityDetected = true;
+		} else if (QUERY_PATTERN.matcher(sql).matches() == false) {
+			this.writeActivityDetected = true;
+		} else if (WRITING_PATTERN.matcher(sql).matches()) {
+			this.writeActivityDetected = true;
+		}
+	}
+
+	public void registerStatementOwner() {
+		this.statementOwnerCount++;
+	}
+
+	public void releaseStatementOwner() {
+		this.statementOwnerCount--;
+	}
+
+	public boolean isWriteActivityDetected() {
+		return writeActivityDetected;
+	}
+
+	public boolean isQueryDetectionEnabled() {
+		return queryDetectionEnabled;
+	}
+
+	public void setQueryDetectionEnabled(boolean queryDetectionEnabled) {
+		this.queryDetectionEnabled = queryDetectionEnabled;
+	}
+
 	public void commitLocalTransaction() throws SQLException {
 		try {
 			this.connection.commit();
+			this.writeActivityDetected = this.statementOwnerCount > 0;
 		} catch (SQLException ex) {
 			throw ex;
 		} catch (RuntimeException ex) {
@@ -105,6 +158,7 @@ public class LocalXAConnection implements XAConnection {
 	public void rollbackLocalTransaction() throws SQLException {
 		try {
 			this.connection.rollback();
+			this.writeActivityDetected = this.statementOwnerCount > 0;
 		} catch (SQLException ex) {
 			throw ex;
 		} catch (RuntimeException ex) {
@@ -67,7 +67,7 @@ public class LocalXAResource implements XAResource {
 		ResultSet rs = null;
 		try {
 			StringBuilder sql = new StringBuilder();
-			sql.append("select xid, gxid, bxid from bytejta where xid = ? gxid = ? and bxid = ? ");
+			sql.append("select xid, gxid, bxid from bytejta where xid = ? and gxid = ? and bxid = ? ");
 			stmt = connection.prepareStatement(sql.toString());
 			stmt.setString(1, identifier);
 			stmt.setString(2, gxid);
@@ -162,10 +162,10 @@ public class LocalXAResource implements XAResource {
 	}
 
 	public synchronized int prepare(Xid xid) {
-		Connection connection = this.managedConnection.getPhysicalConnection();
 		try {
-			if (connection.isReadOnly()) {
-				connection.setAutoCommit(originalAutoCommit);
+			if (this.isReadOnly()) {
+				this.managedConnection.commitLocalTransaction(); // release the locks held by queries
+				this.releasePhysicalConnection();
 				return XAResource.XA_RDONLY;
 			}
 		} catch (Exception ex) {
@@ -174,6 +174,23 @@ public class LocalXAResource implements XAResource {
 		return XAResource.XA_OK;
 	}
 
+	/** true if the branch is read-only, or no statement that may modify data has been issued by it. */
+	public boolean isReadOnly() {
+		if (this.managedConnection == null) {
+			return false;
+		} else if (this.managedConnection.isWriteActivityDetected() == false) {
+			return true;
+		}
+
+		Connection connection = this.managedConnection.getPhysicalConnection();
+		try {
+			return connection.isReadOnly();
+		} catch (Exception ex) {
+			logger.debug("Error occurred while checking local-xa-resource: {}", ex.getMessage());
+			return false;
+		}
+	}
+
 	public synchronized void commit(Xid xid, boolean loggingRequired) throws XAException {
 		try {
 			if (xid == null) {
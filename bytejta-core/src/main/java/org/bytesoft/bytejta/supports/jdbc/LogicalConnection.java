@@ -41,6 +41,7 @@ public class LogicalConnection implements Connection {
 	static final Logger logger = LoggerFactory.getLogger(LogicalConnection.class);
 
 	private boolean connectionClosed;
+	private boolean statementCreated;
 	private final LocalXAConnection managedConnection;
 	private final Connection delegateConnection;
 
@@ -61,16 +62,19 @@ public class LogicalConnection implements Connection {
 
 	public Statement createStatement() throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(null);
 		return delegateConnection.createStatement();
 	}
 
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(sql);
 		return delegateConnection.prepareStatement(sql);
 	}
 
 	public CallableStatement prepareCall(String sql) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(null);
 		return delegateConnection.prepareCall(sql);
 	}
 
@@ -103,10 +107,22 @@ public class LogicalConnection implements Connection {
 			logger.debug("Current connection has already been closed.");
 		} else {
 			this.connectionClosed = true;
+			if (this.statementCreated) {
+				managedConnection.releaseStatementOwner();
+			} // end-if (this.statementCreated)
 			managedConnection.closeLogicalConnection();
 		}
 	}
 
+	/* a statement may be executed again after the local transaction is completed, see LocalXAConnection */
+	private void detectWriteActivity(String sql) {
+		if (this.statementCreated == false) {
+			this.statementCreated = true;
+			this.managedConnection.registerStatementOwner();
+		} // end-if (this.statementCreated == false)
+		this.managedConnection.detectWriteActivity(sql);
+	}
+
 	public boolean isClosed() throws SQLException {
 		return this.connectionClosed;
 	}
@@ -158,16 +174,19 @@ public class LogicalConnection implements Connection {
 
 	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(null);
 		return delegateConnection.createStatement(resultSetType, resultSetConcurrency);
 	}
 
 	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(sql);
 		return delegateConnection.prepareStatement(sql, resultSetType, resultSetConcurrency);
 	}
 
 	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(null);
 		return delegateConnection.prepareCall(sql, resultSetType, resultSetConcurrency);
 	}
 
@@ -214,33 +233,39 @@ public class LogicalConnection implements Connection {
 	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
 			throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(null);
 		return delegateConnection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
 	}
 
 	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
 			throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(sql);
 		return delegateConnection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
 	}
 
 	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
 			throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(null);
 		return delegateConnection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
 	}
 
 	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(sql);
 		return delegateConnection.prepareStatement(sql, autoGeneratedKeys);
 	}
 
 	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(sql);
 		return delegateConnection.prepareStatement(sql, columnIndexes);
 	}
 
 	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
 		this.validateConnectionStatus();
+		this.detectWriteActivity(sql);
 		return delegateConnection.prepareStatement(sql, columnNames);
 	}
 
@@ -20,7 +20,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.sql.DataSource;
 import javax.transaction.xa.XAException;
@@ -34,10 +36,31 @@ import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Recovers the branches of a local resource from its bytejta table, which is expected to look like:
+ *
+ * <pre>
+ * create table bytejta (
+ *   xid   varchar(32) not null,
+ *   gxid  varchar(32),
+ *   bxid  varchar(32),
+ *   ctime bigint,
+ *   primary key (xid)
+ * );
+ * create index idx_bytejta_ctime on bytejta(ctime);
+ * </pre>
+ *
+ * The primary key serves both the keyset pages of recover() and the 'xid in (...)' lookups, the ctime index keeps
+ * the purge of old records by their created time cheap.
+ */
 public class RecoveredResource extends LocalXAResource implements XAResource {
 	static final Logger logger = LoggerFactory.getLogger(RecoveredResource.class);
 
 	private DataSource dataSource;
+	private int recoverPageSize = 1000;
+	private int recoverBatchSize = 100;
+	private boolean scanning;
+	private String scanKey;
 
 	public void recoverable(Xid xid) throws XAException {
 		byte[] globalTransactionId = xid.getGlobalTransactionId();
@@ -78,7 +101,100 @@ public class RecoveredResource extends LocalXAResource implements XAResource {
 		}
 	}
 
-	public Xid[] recover(int flags) throws XAException {
+	/**
+	 * returns the given xids which still have a record, recoverBatchSize of them are checked by one 'xid in (...)'
+	 * query, all over the same connection.
+	 */
+	public List<Xid> recoverable(List<Xid> xids) throws XAException {
+		List<Xid> xidList = new ArrayList<Xid>();
+		if (xids == null || xids.isEmpty()) {
+			return xidList;
+		} // end-if (xids == null || xids.isEmpty())
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = this.dataSource.getConnection();
+			int batchSize = Math.max(1, this.recoverBatchSize);
+			for (int start = 0; start < xids.size(); start += batchSize) {
+				int end = Math.min(xids.size(), start + batchSize);
+				Map<String, Xid> identifierMap = new HashMap<String, Xid>();
+				StringBuilder sql = new StringBuilder("select xid from bytejta where xid in (");
+				for (int i = start; i < end; i++) {
+					Xid xid = xids.get(i);
+					identifierMap.put(this.getIdentifier(xid.getGlobalTransactionId(), xid.getBranchQualifier()), xid);
+					sql.append(i == start ? "?" : ", ?");
+				}
+				sql.append(")");
+
+				stmt = conn.prepareStatement(sql.toString());
+				for (int i = start; i < end; i++) {
+					Xid xid = xids.get(i);
+					stmt.setString(i - start + 1, this.getIdentifier(xid.getGlobalTransactionId(), xid.getBranchQualifier()));
+				}
+				rs = stmt.executeQuery();
+				while (rs.next()) {
+					Xid xid = identifierMap.get(rs.getString(1));
+					if (xid != null) {
+						xidList.add(xid);
+					} // end-if (xid != null)
+				}
+
+				this.closeQuietly(rs);
+				this.closeQuietly(stmt);
+				rs = null;
+				stmt = null;
+			}
+		} catch (SQLException ex) {
+			try {
+				this.isTableExists(conn);
+			} catch (SQLException sqlEx) {
+				logger.warn("Error occurred while recovering local-xa-resource.", ex);
+				throw new XAException(XAException.XAER_RMFAIL);
+			} catch (RuntimeException rex) {
+				logger.warn("Error occurred while recovering local-xa-resource.", ex);
+				throw new XAException(XAException.XAER_RMFAIL);
+			}
+
+			throw new XAException(XAException.XAER_RMERR);
+		} catch (RuntimeException ex) {
+			logger.warn("Error occurred while recovering local-xa-resource.", ex);
+			throw new XAException(XAException.XAER_RMERR);
+		} finally {
+			this.closeQuietly(rs);
+			this.closeQuietly(stmt);
+			this.closeQuietly(conn);
+		}
+
+		return xidList;
+	}
+
+	/**
+	 * returns one page of the table per call, ordered by xid: TMSTARTRSCAN opens a scan at the first record, TMNOFLAGS
+	 * continues it after the last record returned and TMENDRSCAN closes it. An empty page means the scan is complete.
+	 */
+	public synchronized Xid[] recover(int flags) throws XAException {
+		boolean startFlag = (flags & XAResource.TMSTARTRSCAN) == XAResource.TMSTARTRSCAN;
+		boolean endFlag = (flags & XAResource.TMENDRSCAN) == XAResource.TMENDRSCAN;
+		if (startFlag) {
+			this.scanning = true;
+			this.scanKey = null;
+		} else if (this.scanning == false) {
+			throw new XAException(XAException.XAER_INVAL);
+		}
+
+		try {
+			return this.recoverPage();
+		} finally {
+			if (endFlag) {
+				this.scanning = false;
+				this.scanKey = null;
+			} // end-if (endFlag)
+		}
+	}
+
+	private Xid[] recoverPage() throws XAException {
 		List<Xid> xidList = new ArrayList<Xid>();
 
 		Connection conn = null;
@@ -86,11 +202,21 @@ public class RecoveredResource extends LocalXAResource implements XAResource {
 		ResultSet rs = null;
 		try {
 			conn = this.dataSource.getConnection();
-			stmt = conn.prepareStatement("select gxid, bxid from bytejta");
+			int pageSize = Math.max(1, this.recoverPageSize);
+			if (this.scanKey == null) {
+				stmt = conn.prepareStatement("select xid, gxid, bxid from bytejta order by xid");
+			} else {
+				stmt = conn.prepareStatement("select xid, gxid, bxid from bytejta where xid > ? order by xid");
+				stmt.setString(1, this.scanKey);
+			}
+			stmt.setMaxRows(pageSize);
+			stmt.setFetchSize(pageSize);
 			rs = stmt.executeQuery();
+			String lastKey = this.scanKey;
 			while (rs.next()) {
-				String gxid = rs.getString(1);
-				String bxid = rs.getString(2);
+				lastKey = rs.getString(1);
+				String gxid = rs.getString(2);
+				String bxid = rs.getString(3);
 				byte[] globalTransactionId = ByteUtils.stringToByteArray(gxid);
 				byte[] branchQualifier = ByteUtils.stringToByteArray(bxid);
 				TransactionXid xid = null;
@@ -101,6 +227,7 @@ public class RecoveredResource extends LocalXAResource implements XAResource {
 				}
 				xidList.add(xid);
 			}
+			this.scanKey = lastKey;
 		} catch (Exception ex) {
 			boolean tableExists = false;
 			try {
@@ -254,4 +381,20 @@ public class RecoveredResource extends LocalXAResource implements XAResource {
 		this.dataSource = dataSource;
 	}
 
+	public int getRecoverPageSize() {
+		return recoverPageSize;
+	}
+
+	public void setRecoverPageSize(int recoverPageSize) {
+		this.recoverPageSize = recoverPageSize;
+	}
+
+	public int getRecoverBatchSize() {
+		return recoverBatchSize;
+	}
+
+	public void setRecoverBatchSize(int recoverBatchSize) {
+		this.recoverBatchSize = recoverBatchSize;
+	}
+
 }
@@ -15,6 +15,20 @@
  */
 package org.bytesoft.bytejta.work;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import javax.resource.spi.work.Work;
 
 import org.bytesoft.transaction.TransactionBeanFactory;
@@ -24,6 +38,12 @@ import org.bytesoft.transaction.supports.TransactionTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Runs the timeout enforcement and the recovery as independently scheduled tasks: the timer has its own thread, so a
+ * slow recovery cycle never delays the rollback of expired transactions. The work thread itself only waits for
+ * {@link #release()}, which stops scheduling, lets the running tasks finish within delayOfStoping and then
+ * interrupts them. The run time and overruns of every task are available as a {@link TimedTaskMBean}.
+ */
 public class TransactionWork implements Work, TransactionBeanFactoryAware {
 	static final Logger logger = LoggerFactory.getLogger(TransactionWork.class);
 
@@ -31,13 +51,46 @@ public class TransactionWork implements Work, TransactionBeanFactoryAware {
 	private TransactionBeanFactory beanFactory;
 
 	static final long SECOND_MILLIS = 1000L;
-	private long stopTimeMillis = -1;
-	private long delayOfStoping = SECOND_MILLIS * 15;
+	static final String DEFAULT_DOMAIN = "org.bytesoft.bytejta";
+	private long timingInterval = SECOND_MILLIS;
 	private long recoveryInterval = SECOND_MILLIS * 60;
+	private long delayOfStoping = SECOND_MILLIS * 15;
+	private String domain = DEFAULT_DOMAIN;
 
-	public void run() {
+	private final TimedTask timingTask = new TimedTask("timing-execution") {
+		protected void execute() {
+			fireTimingExecution();
+		}
 
-		TransactionTimer transactionTimer = beanFactory.getTransactionTimer();
+		public long getInterval() {
+			return timingInterval;
+		}
+	};
+	private final TimedTask globalRecoveryTask = new TimedTask("global-recovery") {
+		protected void execute() {
+			fireGlobalRecovery();
+		}
+
+		public long getInterval() {
+			return recoveryInterval;
+		}
+	};
+	private final TimedTask branchRecoveryTask = new TimedTask("branch-recovery") {
+		protected void execute() {
+			fireBranchRecovery();
+		}
+
+		public long getInterval() {
+			return recoveryInterval;
+		}
+	};
+
+	private ScheduledExecutorService timingExecutor;
+	private ScheduledExecutorService recoveryExecutor;
+	private volatile boolean released;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	public void run() {
 		TransactionRecovery transactionRecovery = beanFactory.getTransactionRecovery();
 		try {
 			transactionRecovery.startRecovery();
@@ -48,30 +101,48 @@ public class TransactionWork implements Work, TransactionBeanFactoryAware {
 			logger.error("TransactionRecovery init failed!", rex);
 		}
 
-		long nextExecutionTime = 0;
-		long nextRecoveryTime = System.currentTimeMillis() + this.recoveryInterval;
-		while (this.currentActive()) {
+		synchronized (this) {
+			if (this.released) {
+				return;
+			} // end-if (this.released)
 
-			long current = System.currentTimeMillis();
-			if (current >= nextExecutionTime) {
-				nextExecutionTime = current + SECOND_MILLIS;
-				try {
-					transactionTimer.timingExecution();
-				} catch (RuntimeException rex) {
-					logger.error(rex.getMessage(), rex);
-				}
-			}
+			this.timingExecutor = this.createExecutor("bytejta-timer");
+			this.recoveryExecutor = this.createExecutor("bytejta-recovery");
 
-			if (current >= nextRecoveryTime) {
-				nextRecoveryTime = current + this.recoveryInterval;
+			this.timingExecutor.scheduleWithFixedDelay(this.timingTask, 0, this.timingInterval, TimeUnit.MILLISECONDS);
+			this.recoveryExecutor.scheduleWithFixedDelay(this.globalRecoveryTask, this.recoveryInterval,
+					this.recoveryInterval, TimeUnit.MILLISECONDS);
+			this.recoveryExecutor.scheduleWithFixedDelay(this.branchRecoveryTask, this.recoveryInterval,
+					this.recoveryInterval, TimeUnit.MILLISECONDS);
+		}
 
-				this.fireGlobalRecovery();
-				this.fireBranchRecovery();
-			}
+		try {
+			this.stopped.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
 
-			this.waitForMillis(100L);
+	private ScheduledExecutorService createExecutor(final String name) {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+		return executor;
+	}
 
-		} // end-while (this.currentActive())
+	private void fireTimingExecution() {
+		TransactionTimer transactionTimer = beanFactory.getTransactionTimer();
+		try {
+			transactionTimer.timingExecution();
+		} catch (RuntimeException rex) {
+			logger.error(rex.getMessage(), rex);
+		}
 	}
 
 	private void fireGlobalRecovery() {
@@ -96,28 +167,175 @@ public class TransactionWork implements Work, TransactionBeanFactoryAware {
 		}
 	}
 
-	private void waitForMillis(long millis) {
+	public void release() {
+		ScheduledExecutorService timing = null;
+		ScheduledExecutorService recovery = null;
+		synchronized (this) {
+			if (this.released) {
+				return;
+			} // end-if (this.released)
+			this.released = true;
+			timing = this.timingExecutor;
+			recovery = this.recoveryExecutor;
+		}
+
 		try {
-			Thread.sleep(millis);
-		} catch (Exception ignore) {
-			// ignore
+			long deadline = System.currentTimeMillis() + this.delayOfStoping;
+			this.shutdownExecutor(timing, deadline);
+			this.shutdownExecutor(recovery, deadline);
+		} finally {
+			this.stopped.countDown();
 		}
 	}
 
-	public void release() {
-		this.stopTimeMillis = System.currentTimeMillis() + this.delayOfStoping;
+	private void shutdownExecutor(ScheduledExecutorService executor, long deadline) {
+		if (executor == null) {
+			return;
+		} // end-if (executor == null)
+
+		executor.shutdown();
+		try {
+			long waitMillis = Math.max(0, deadline - System.currentTimeMillis());
+			if (executor.awaitTermination(waitMillis, TimeUnit.MILLISECONDS) == false) {
+				logger.warn("Transaction work did not stop in {} ms, interrupting it.", this.delayOfStoping);
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	protected boolean currentActive() {
-		return this.stopTimeMillis <= 0 || System.currentTimeMillis() < this.stopTimeMillis;
+	public TimedTaskMBean[] getTasks() {
+		return new TimedTaskMBean[] { this.timingTask, this.globalRecoveryTask, this.branchRecoveryTask };
 	}
 
-	public long getDelayOfStoping() {
-		return delayOfStoping;
+	public String[] getTaskSummaries() {
+		TimedTaskMBean[] tasks = this.getTasks();
+		String[] summaries = new String[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			summaries[i] = tasks[i].toString();
+		}
+		return summaries;
 	}
 
-	public void setDelayOfStoping(long delayOfStoping) {
-		this.delayOfStoping = delayOfStoping;
+	public void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		TimedTaskMBean[] tasks = this.getTasks();
+		for (int i = 0; i < tasks.length; i++) {
+			try {
+				ObjectName objectName = this.getObjectName(tasks[i].getName());
+				server.registerMBean(new StandardMBean(tasks[i], TimedTaskMBean.class), objectName);
+			} catch (InstanceAlreadyExistsException ex) {
+				logger.warn("MBean of the transaction work task {} has already been registered.", tasks[i].getName());
+			} catch (JMException ex) {
+				logger.error("Error occurred while registering transaction work mbeans.", ex);
+			}
+		}
+	}
+
+	public void unregisterMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		TimedTaskMBean[] tasks = this.getTasks();
+		for (int i = 0; i < tasks.length; i++) {
+			try {
+				ObjectName objectName = this.getObjectName(tasks[i].getName());
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+			} catch (JMException ex) {
+				logger.warn("Error occurred while unregistering transaction work mbeans.", ex);
+			}
+		}
+	}
+
+	private ObjectName getObjectName(String task) throws JMException {
+		return new ObjectName(String.format("%s:type=TransactionWork,task=%s", this.domain, task));
+	}
+
+	/**
+	 * Measures every run of a scheduled task; a run which takes longer than the interval of the task is an overrun, the
+	 * next run is then delayed accordingly.
+	 */
+	abstract class TimedTask implements Runnable, TimedTaskMBean {
+		private final String name;
+		private final LongAdder executedCount = new LongAdder();
+		private final LongAdder overrunCount = new LongAdder();
+		private final LongAdder totalMillis = new LongAdder();
+		private final AtomicLong maxMillis = new AtomicLong();
+		private volatile long lastMillis;
+
+		TimedTask(String name) {
+			this.name = name;
+		}
+
+		public void run() {
+			if (released) {
+				return;
+			} // end-if (released)
+
+			long startTime = System.nanoTime();
+			try {
+				this.execute();
+			} finally {
+				long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+				this.lastMillis = millis;
+				this.executedCount.increment();
+				this.totalMillis.add(millis);
+				long max = this.maxMillis.get();
+				while (millis > max && this.maxMillis.compareAndSet(max, millis) == false) {
+					max = this.maxMillis.get();
+				}
+
+				long interval = this.getInterval();
+				if (millis > interval) {
+					this.overrunCount.increment();
+					logger.warn("Task {} overran its interval: cost= {} ms, interval= {} ms.", this.name, millis, interval);
+				} // end-if (millis > interval)
+			}
+		}
+
+		protected abstract void execute();
+
+		public abstract long getInterval();
+
+		public String getName() {
+			return this.name;
+		}
+
+		public long getExecutedCount() {
+			return this.executedCount.sum();
+		}
+
+		public long getOverrunCount() {
+			return this.overrunCount.sum();
+		}
+
+		public long getTotalMillis() {
+			return this.totalMillis.sum();
+		}
+
+		public long getMaxMillis() {
+			return this.maxMillis.get();
+		}
+
+		public long getLastMillis() {
+			return this.lastMillis;
+		}
+
+		public String toString() {
+			return String.format("%s: executed= %s, overrun= %s, total= %s ms, max= %s ms, last= %s ms", this.name,
+					this.executedCount.sum(), this.overrunCount.sum(), this.totalMillis.sum(), this.maxMillis.get(),
+					this.lastMillis);
+		}
+	}
+
+	public long getTimingInterval() {
+		return timingInterval;
+	}
+
+	public void setTimingInterval(long timingInterval) {
+		this.timingInterval = timingInterval;
 	}
 
 	public long getRecoveryInterval() {
@@ -128,6 +346,22 @@ public class TransactionWork implements Work, TransactionBeanFactoryAware {
 		this.recoveryInterval = recoveryInterval;
 	}
 
+	public long getDelayOfStoping() {
+		return delayOfStoping;
+	}
+
+	public void setDelayOfStoping(long delayOfStoping) {
+		this.delayOfStoping = delayOfStoping;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public void setDomain(String domain) {
+		this.domain = domain;
+	}
+
 	public TransactionBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
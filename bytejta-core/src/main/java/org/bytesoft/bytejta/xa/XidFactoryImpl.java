@@ -15,30 +15,50 @@
  */
 package org.bytesoft.bytejta.xa;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.NetworkInterface;
 import java.util.Calendar;
 import java.util.Enumeration;
-import java.util.Random;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.xa.CompactTransactionXid;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The unique key(16 bytes) is composed of: time(5 bytes, precision of millisecond), node-id(6 bytes), sequence(high 8
+ * bits, 1 byte), thread-slot(2 bytes), sequence(low 16 bits, 2 bytes). The slot of a thread is reused once the thread
+ * has died and been collected, so keys are unique on one node as long as no more than 65,536 generating threads are
+ * alive at the same time, and each thread generates no more than 2^24 keys within one millisecond.
+ */
 public class XidFactoryImpl implements XidFactory {
 	static final Logger logger = LoggerFactory.getLogger(XidFactoryImpl.class);
 
 	static final int SIZE_OF_MAC = 6;
-	static final Random random = new Random();
-	static final byte[] hardwareAddress = new byte[SIZE_OF_MAC];
-	static final AtomicInteger atomic = new AtomicInteger();
+	static final int SEQUENCE_MASK = 0xFFFFFF;
+	static final int SLOT_MASK = 0xFFFF;
+	static final AtomicInteger slots = new AtomicInteger();
+	static final Queue<Integer> releasedSlots = new ConcurrentLinkedQueue<Integer>();
+	static final ReferenceQueue<Thread> collectedThreads = new ReferenceQueue<Thread>();
+	static final Set<SlotReference> slotReferences = ConcurrentHashMap.newKeySet(); // keeps the references enqueueable
+
+	private final ThreadLocal<UniqueKeyGenerator> generators = new ThreadLocal<UniqueKeyGenerator>() {
+		protected UniqueKeyGenerator initialValue() {
+			return new UniqueKeyGenerator();
+		}
+	};
 
-	static {
-		byte[] sourceByteArray = getHardwareAddress();
-		System.arraycopy(sourceByteArray, 0, hardwareAddress, 0, SIZE_OF_MAC);
-	}
+	private volatile byte[] nodeId;
 
 	private static byte[] getHardwareAddress() {
 		Enumeration<NetworkInterface> enumeration = null;
@@ -73,7 +93,25 @@ public class XidFactoryImpl implements XidFactory {
 			}
 		}
 
-		return byteArray != null ? byteArray : new byte[SIZE_OF_MAC];
+		if (byteArray == null) {
+			logger.warn("No hardware address is available, a random node-id is used instead.");
+			byteArray = new byte[SIZE_OF_MAC];
+			ThreadLocalRandom.current().nextBytes(byteArray);
+		}
+		return byteArray;
+	}
+
+	private byte[] getNodeIdentifier() {
+		byte[] identifier = this.nodeId;
+		if (identifier == null) {
+			synchronized (this) {
+				identifier = this.nodeId;
+				if (identifier == null) {
+					identifier = this.nodeId = getHardwareAddress();
+				}
+			}
+		}
+		return identifier;
 	}
 
 	public TransactionXid createGlobalXid() {
@@ -85,7 +123,7 @@ public class XidFactoryImpl implements XidFactory {
 		byte[] global = new byte[GLOBAL_TRANSACTION_LENGTH];
 		System.arraycopy(unique, 0, global, 0, global.length);
 
-		return new TransactionXid(XidFactory.JTA_FORMAT_ID, global);
+		return this.newTransactionXid(global, new byte[0]);
 	}
 
 	public TransactionXid createGlobalXid(byte[] globalTransactionId) {
@@ -96,7 +134,7 @@ public class XidFactoryImpl implements XidFactory {
 		}
 		byte[] global = new byte[globalTransactionId.length];
 		System.arraycopy(globalTransactionId, 0, global, 0, global.length);
-		return new TransactionXid(XidFactory.JTA_FORMAT_ID, global);
+		return this.newTransactionXid(global, new byte[0]);
 	}
 
 	public TransactionXid createBranchXid(TransactionXid globalXid) {
@@ -119,7 +157,7 @@ public class XidFactoryImpl implements XidFactory {
 		byte[] branch = new byte[BRANCH_QUALIFIER_LENGTH];
 		System.arraycopy(unique, 0, branch, 0, branch.length);
 
-		return new TransactionXid(XidFactory.JTA_FORMAT_ID, global, branch);
+		return this.newTransactionXid(global, branch);
 	}
 
 	public TransactionXid createBranchXid(TransactionXid globalXid, byte[] branchQualifier) {
@@ -140,48 +178,109 @@ public class XidFactoryImpl implements XidFactory {
 		byte[] global = new byte[globalXid.getGlobalTransactionId().length];
 		System.arraycopy(globalXid.getGlobalTransactionId(), 0, global, 0, global.length);
 
-		return new TransactionXid(XidFactory.JTA_FORMAT_ID, global, branchQualifier);
+		return this.newTransactionXid(global, branchQualifier);
+	}
+
+	private TransactionXid newTransactionXid(byte[] global, byte[] branch) {
+		if (CompactTransactionXid.isCompactable(global, branch)) {
+			return new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, global, branch);
+		}
+		return new TransactionXid(XidFactory.JTA_FORMAT_ID, global, branch);
 	}
 
 	public byte[] generateUniqueKey() {
 		byte[] byteArray = new byte[16];
+		this.generators.get().generate(byteArray, this.getNodeIdentifier());
+		return byteArray;
+	}
+
+	public String getNodeId() {
+		return ByteUtils.byteArrayToString(this.getNodeIdentifier());
+	}
+
+	/** node-id in hex, 12 characters, such as 0a1b2c3d4e5f. Derived from the hardware address if not specified. */
+	public void setNodeId(String nodeId) {
+		byte[] byteArray = nodeId == null || nodeId.trim().length() == 0 ? null : ByteUtils.stringToByteArray(nodeId.trim());
+		if (byteArray != null && byteArray.length != SIZE_OF_MAC) {
+			throw new IllegalArgumentException("The length of node-id must be 6 bytes(12 hex characters).");
+		}
+		this.nodeId = byteArray;
+	}
+
+	static int acquireSlot(Thread thread) {
+		for (Reference<? extends Thread> ref = collectedThreads.poll(); ref != null; ref = collectedThreads.poll()) {
+			SlotReference reference = (SlotReference) ref;
+			if (slotReferences.remove(reference)) {
+				releasedSlots.offer(reference.slot);
+			} // end-if (slotReferences.remove(reference))
+		}
 
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTimeInMillis(System.currentTimeMillis());
-		int year = calendar.get(Calendar.YEAR) - 2014;
-		int month = calendar.get(Calendar.MONTH) + 1;
-		int day = calendar.get(Calendar.DAY_OF_MONTH);
-		int hour = calendar.get(Calendar.HOUR_OF_DAY);
-		int minute = calendar.get(Calendar.MINUTE);
-		int second = calendar.get(Calendar.SECOND);
-		int millis = calendar.get(Calendar.MILLISECOND);
+		Integer released = releasedSlots.poll();
+		int slot = released == null ? slots.getAndIncrement() & SLOT_MASK : released;
+		slotReferences.add(new SlotReference(thread, slot));
+		return slot;
+	}
 
-		int value = (year << 29) >>> 1;
-		value = value | (month << 24);
-		value = value | (day << 19);
-		value = value | (hour << 14);
-		value = value | (minute << 8);
-		value = value | (second << 2);
-		value = value | (millis >>> 8);
+	static final class SlotReference extends WeakReference<Thread> {
+		private final int slot;
 
-		byte[] valueByteArray = ByteUtils.intToByteArray(value);
+		public SlotReference(Thread thread, int slot) {
+			super(thread, collectedThreads);
+			this.slot = slot;
+		}
+	}
 
-		byte[] timeByteArray = new byte[5];
-		System.arraycopy(valueByteArray, 0, timeByteArray, 0, 4);
-		timeByteArray[4] = (byte) (((millis << 24) >>> 24) + Byte.MIN_VALUE);
+	static final class UniqueKeyGenerator {
+		private final int slot = acquireSlot(Thread.currentThread());
+		private int sequence = ThreadLocalRandom.current().nextInt() & SEQUENCE_MASK;
+		private long second = -1;
+		private int secondValue;
+
+		public void generate(byte[] byteArray, byte[] nodeId) {
+			long current = System.currentTimeMillis();
+			long currentSecond = current / 1000L;
+			if (currentSecond != this.second) {
+				this.secondValue = this.getSecondValue(current);
+				this.second = currentSecond;
+			}
 
-		byte increment = (byte) atomic.incrementAndGet();
+			int millis = (int) (current % 1000L);
+			int value = this.secondValue | (millis >>> 8);
+			int seq = this.sequence = (this.sequence + 1) & SEQUENCE_MASK;
 
-		byte[] randomByteArray = new byte[4];
-		random.nextBytes(randomByteArray);
+			byteArray[0] = (byte) (value >>> 24);
+			byteArray[1] = (byte) (value >>> 16);
+			byteArray[2] = (byte) (value >>> 8);
+			byteArray[3] = (byte) value;
+			byteArray[4] = (byte) (((millis << 24) >>> 24) + Byte.MIN_VALUE);
 
-		System.arraycopy(timeByteArray, 0, byteArray, 0, timeByteArray.length);
-		System.arraycopy(hardwareAddress, 0, byteArray, timeByteArray.length, SIZE_OF_MAC);
+			System.arraycopy(nodeId, 0, byteArray, 5, SIZE_OF_MAC);
 
-		byteArray[SIZE_OF_MAC + 5] = increment;
-		System.arraycopy(randomByteArray, 0, byteArray, SIZE_OF_MAC + 5 + 1, randomByteArray.length);
+			byteArray[11] = (byte) (seq >>> 16);
+			byteArray[12] = (byte) (this.slot >>> 8);
+			byteArray[13] = (byte) this.slot;
+			byteArray[14] = (byte) (seq >>> 8);
+			byteArray[15] = (byte) seq;
+		}
 
-		return byteArray;
+		private int getSecondValue(long millis) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(millis);
+			int year = calendar.get(Calendar.YEAR) - 2014;
+			int month = calendar.get(Calendar.MONTH) + 1;
+			int day = calendar.get(Calendar.DAY_OF_MONTH);
+			int hour = calendar.get(Calendar.HOUR_OF_DAY);
+			int minute = calendar.get(Calendar.MINUTE);
+			int second = calendar.get(Calendar.SECOND);
+
+			int value = (year << 29) >>> 1;
+			value = value | (month << 24);
+			value = value | (day << 19);
+			value = value | (hour << 14);
+			value = value | (minute << 8);
+			value = value | (second << 2);
+			return value;
+		}
 	}
 
 }
@@ -28,6 +28,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.transaction.xa.CompactTransactionXid;
+import org.bytesoft.transaction.xa.TransactionXid;
 import org.objenesis.strategy.SerializingInstantiatorStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,11 +38,14 @@ import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Kryo.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.pool.KryoCallback;
 import com.esotericsoftware.kryo.pool.KryoFactory;
 import com.esotericsoftware.kryo.pool.KryoPool;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
 
 public class SerializeUtils {
 	static final Logger logger = LoggerFactory.getLogger(SerializeUtils.class);
@@ -67,12 +72,20 @@ public class SerializeUtils {
 
 	static KryoPool kryoPool = new KryoPool.Builder(new KryoFactory() {
 		public Kryo create() {
-			Kryo kryo = new Kryo();
+			Kryo kryo = new Kryo(new TransactionXidClassResolver(), new MapReferenceResolver());
 			kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new SerializingInstantiatorStrategy()));
 			return kryo;
 		}
 	}).softReferences().build();
 
+	/** writes a CompactTransactionXid as a plain TransactionXid, which carries the same fields. */
+	static class TransactionXidClassResolver extends DefaultClassResolver {
+		@SuppressWarnings("rawtypes")
+		public Registration writeClass(Output output, Class type) {
+			return super.writeClass(output, CompactTransactionXid.class.equals(type) ? TransactionXid.class : type);
+		}
+	}
+
 	public static byte[] serializeObject(Serializable obj, int serializerType) throws IOException {
 		int serializer = SERIALIZER_DEFAULT;
 		byte[] dataArray = null;
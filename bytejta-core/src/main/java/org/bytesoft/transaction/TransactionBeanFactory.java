@@ -15,9 +15,14 @@
  */
 package org.bytesoft.transaction;
 
+import org.bytesoft.transaction.internal.TransactionListenerDispatcher;
 import org.bytesoft.transaction.logging.ArchiveDeserializer;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
 import org.bytesoft.transaction.logging.TransactionLogger;
+import org.bytesoft.transaction.supports.TransactionAdmission;
+import org.bytesoft.transaction.supports.TransactionStatistic;
 import org.bytesoft.transaction.supports.TransactionTimer;
+import org.bytesoft.transaction.supports.resource.XAResourceStatistic;
 import org.bytesoft.transaction.supports.rpc.TransactionInterceptor;
 import org.bytesoft.transaction.supports.serialize.XAResourceDeserializer;
 import org.bytesoft.transaction.xa.XidFactory;
@@ -46,4 +51,25 @@ public interface TransactionBeanFactory {
 
 	public XAResourceDeserializer getResourceDeserializer();
 
+	// the beans below are optional, null if not supported
+	public default TransactionEventRecorder getTransactionEventRecorder() {
+		return null;
+	}
+
+	public default TransactionStatistic getTransactionStatistic() {
+		return null;
+	}
+
+	public default XAResourceStatistic getResourceStatistic() {
+		return null;
+	}
+
+	public default TransactionListenerDispatcher getTransactionListenerDispatcher() {
+		return null;
+	}
+
+	public default TransactionAdmission getTransactionAdmission() {
+		return null;
+	}
+
 }
@@ -92,6 +92,11 @@ public class TransactionContext implements Serializable, Cloneable {
 		this.expiredTime = expiredTime;
 	}
 
+	/** milliseconds left before the transaction times out, zero or negative if it has expired. */
+	public long getRemainingTime() {
+		return this.expiredTime - System.currentTimeMillis();
+	}
+
 	public long getConfigFlags() {
 		return configFlags;
 	}
@@ -15,7 +15,11 @@
  */
 package org.bytesoft.transaction;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.bytesoft.transaction.archive.TransactionArchive;
+import org.bytesoft.transaction.xa.TransactionXid;
 
 public interface TransactionRecovery {
 
@@ -29,4 +33,19 @@ public interface TransactionRecovery {
 
 	public boolean isInitialized();
 
+	/** the transactions in the tx-log are known, though they may not have been replayed yet. */
+	public default boolean isIndexed() {
+		return this.isInitialized();
+	}
+
+	/** makes sure the given transaction has been recovered from the tx-log, false if that is not possible now. */
+	public default boolean recoverIfNecessary(TransactionXid globalXid) {
+		return true;
+	}
+
+	/** the recovered transactions which have not been reconstructed yet, including the ones not replayed yet. */
+	public default List<TransactionXid> getRecoveredXidList() {
+		return new ArrayList<TransactionXid>();
+	}
+
 }
@@ -37,6 +37,14 @@ public interface TransactionRepository {
 
 	public List<Transaction> getErrorTransactionList();
 
+	// recovery schedule of error-transaction, a repository without schedule recovers every error-transaction each time
+	public default void scheduleErrorTransaction(TransactionXid xid, long recoverMillis) {
+	}
+
+	public default List<Transaction> getDueErrorTransactionList(long currentMillis) {
+		return this.getErrorTransactionList();
+	}
+
 	public List<Transaction> getActiveTransactionList();
 
 }
@@ -124,4 +124,27 @@ public class TransactionArchive {
 		this.transactionStrategyType = transactionStrategyType;
 	}
 
+	/** replaces the branch which has the same xid as the given one, false if there is none. */
+	public boolean replaceResource(XAResourceArchive resourceArchive) {
+		for (int i = 0; i < this.nativeResources.size(); i++) {
+			if (resourceArchive.getXid().equals(this.nativeResources.get(i).getXid())) {
+				this.nativeResources.set(i, resourceArchive);
+				return true;
+			}
+		}
+
+		if (this.optimizedResource != null && resourceArchive.getXid().equals(this.optimizedResource.getXid())) {
+			this.optimizedResource = resourceArchive;
+			return true;
+		} // end-if (this.optimizedResource != null && ...)
+
+		for (int i = 0; i < this.remoteResources.size(); i++) {
+			if (resourceArchive.getXid().equals(this.remoteResources.get(i).getXid())) {
+				this.remoteResources.set(i, resourceArchive);
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
@@ -15,11 +15,15 @@
  */
 package org.bytesoft.transaction.archive;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
 import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+import org.bytesoft.transaction.supports.resource.XAResourceStatistic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,31 +31,59 @@ public class XAResourceArchive implements XAResource {
 	static final Logger logger = LoggerFactory.getLogger(XAResourceArchive.class);
 	public static final int DEFAULT_VOTE = -1;
 
+	static final int BRANCH_IDLE = 0;
+	static final int BRANCH_PREPARING = 1;
+	static final int BRANCH_COMMITTING = 2;
+	static final int BRANCH_ROLLINGBACK = 3;
+	static final int BRANCH_FORGETTING = 4;
+
 	private boolean suspended;
 	private boolean delisted;
-	private boolean completed;
-	private boolean readonly;
-	private boolean committed;
-	private boolean rolledback;
-	private boolean heuristic;
+	private volatile boolean completed;
+	private volatile boolean readonly;
+	private volatile boolean committed;
+	private volatile boolean rolledback;
+	private volatile boolean heuristic;
 	private boolean identified;
 
 	private transient boolean recovered;
+	private transient volatile boolean failed; // the last commit/rollback was rejected by the resource
+	private final transient AtomicInteger branchState = new AtomicInteger(BRANCH_IDLE);
 
 	private Xid xid;
-	private int vote = DEFAULT_VOTE;
+	private volatile int vote = DEFAULT_VOTE;
 	private XAResourceDescriptor descriptor;
 	private XAResourceDescriptor stickiness;
+	private transient XAResourceStatistic resourceStatistic;
 
 	public void commit(Xid ignore, boolean onePhase) throws XAException {
-		if (this.readonly) {
-			// ignore
-		} else if (this.committed) {
-			// ignore
-		} else if (this.rolledback) {
-			throw new XAException(XAException.XA_HEURRB);
-		} else {
-			descriptor.commit(xid, onePhase);
+		this.beginBranchOperation(BRANCH_COMMITTING);
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_COMMIT);
+		try {
+			if (this.readonly) {
+				// ignore
+			} else if (this.committed) {
+				// ignore
+			} else if (this.rolledback) {
+				throw new XAException(XAException.XA_HEURRB);
+			} else {
+				this.failed = false;
+				long begin = this.fireOperationStart(XAResourceStatistic.OPERATION_COMMIT);
+				try {
+					descriptor.commit(xid, onePhase);
+				} catch (XAException ex) {
+					this.failed = true;
+					this.fireOperationFailure(XAResourceStatistic.OPERATION_COMMIT, begin, ex);
+					throw ex;
+				} catch (RuntimeException ex) {
+					this.fireOperationFailure(XAResourceStatistic.OPERATION_COMMIT, begin, ex);
+					throw ex;
+				}
+				this.fireOperationSuccess(XAResourceStatistic.OPERATION_COMMIT, begin);
+			}
+		} finally {
+			TransactionFlightRecorder.commit(event, this.xid, this.descriptor);
+			this.endBranchOperation(BRANCH_COMMITTING);
 		}
 	}
 
@@ -60,7 +92,22 @@ public class XAResourceArchive implements XAResource {
 	}
 
 	public void forget(Xid ignore) throws XAException {
-		descriptor.forget(xid);
+		this.beginBranchOperation(BRANCH_FORGETTING);
+		try {
+			long begin = this.fireOperationStart(XAResourceStatistic.OPERATION_FORGET);
+			try {
+				descriptor.forget(xid);
+			} catch (XAException ex) {
+				this.fireOperationFailure(XAResourceStatistic.OPERATION_FORGET, begin, ex);
+				throw ex;
+			} catch (RuntimeException ex) {
+				this.fireOperationFailure(XAResourceStatistic.OPERATION_FORGET, begin, ex);
+				throw ex;
+			}
+			this.fireOperationSuccess(XAResourceStatistic.OPERATION_FORGET, begin);
+		} finally {
+			this.endBranchOperation(BRANCH_FORGETTING);
+		}
 	}
 
 	public void forgetQuietly(Xid ignore) {
@@ -85,12 +132,28 @@ public class XAResourceArchive implements XAResource {
 	}
 
 	public int prepare(Xid ignore) throws XAException {
-		if (this.vote == -1) {
-			this.vote = this.descriptor.prepare(this.xid);
-			this.readonly = this.vote == XAResource.XA_RDONLY;
+		this.beginBranchOperation(BRANCH_PREPARING);
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_PREPARE);
+		try {
+			if (this.vote == -1) {
+				long begin = this.fireOperationStart(XAResourceStatistic.OPERATION_PREPARE);
+				try {
+					this.vote = this.descriptor.prepare(this.xid);
+				} catch (XAException ex) {
+					this.fireOperationFailure(XAResourceStatistic.OPERATION_PREPARE, begin, ex);
+					throw ex;
+				} catch (RuntimeException ex) {
+					this.fireOperationFailure(XAResourceStatistic.OPERATION_PREPARE, begin, ex);
+					throw ex;
+				}
+				this.fireOperationSuccess(XAResourceStatistic.OPERATION_PREPARE, begin);
+				this.readonly = this.vote == XAResource.XA_RDONLY;
+			}
+			return this.vote;
+		} finally {
+			TransactionFlightRecorder.commit(event, this.xid, this.descriptor);
+			this.endBranchOperation(BRANCH_PREPARING);
 		}
-		return this.vote;
-
 	}
 
 	public Xid[] recover(int flag) throws XAException {
@@ -98,17 +161,45 @@ public class XAResourceArchive implements XAResource {
 	}
 
 	public void rollback(Xid ignore) throws XAException {
+		this.beginBranchOperation(BRANCH_ROLLINGBACK);
+		Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_ROLLBACK);
+		try {
+			if (this.readonly) {
+				// ignore
+			} else if (this.committed) {
+				throw new XAException(XAException.XA_HEURCOM);
+			} else if (this.rolledback) {
+				// ignore
+			} else {
+				this.failed = false;
+				long begin = this.fireOperationStart(XAResourceStatistic.OPERATION_ROLLBACK);
+				try {
+					descriptor.rollback(xid);
+				} catch (XAException ex) {
+					this.failed = true;
+					this.fireOperationFailure(XAResourceStatistic.OPERATION_ROLLBACK, begin, ex);
+					throw ex;
+				} catch (RuntimeException ex) {
+					this.fireOperationFailure(XAResourceStatistic.OPERATION_ROLLBACK, begin, ex);
+					throw ex;
+				}
+				this.fireOperationSuccess(XAResourceStatistic.OPERATION_ROLLBACK, begin);
+			}
+		} finally {
+			TransactionFlightRecorder.commit(event, this.xid, this.descriptor);
+			this.endBranchOperation(BRANCH_ROLLINGBACK);
+		}
+	}
 
-		if (this.readonly) {
-			// ignore
-		} else if (this.committed) {
-			throw new XAException(XAException.XA_HEURCOM);
-		} else if (this.rolledback) {
-			// ignore
-		} else {
-			descriptor.rollback(xid);
+	private void beginBranchOperation(int operation) throws XAException {
+		if (this.branchState.compareAndSet(BRANCH_IDLE, operation) == false) {
+			logger.warn("Branch {} is busy(state= {}), operation {} is rejected.", this, this.branchState.get(), operation);
+			throw new XAException(XAException.XAER_PROTO);
 		}
+	}
 
+	private void endBranchOperation(int operation) {
+		this.branchState.compareAndSet(operation, BRANCH_IDLE);
 	}
 
 	public boolean setTransactionTimeout(int seconds) throws XAException {
@@ -116,13 +207,50 @@ public class XAResourceArchive implements XAResource {
 	}
 
 	public void start(Xid ignore, int flags) throws XAException {
-		descriptor.start(xid, flags);
+		long begin = this.fireOperationStart(XAResourceStatistic.OPERATION_START);
+		try {
+			descriptor.start(xid, flags);
+		} catch (XAException ex) {
+			this.fireOperationFailure(XAResourceStatistic.OPERATION_START, begin, ex);
+			throw ex;
+		} catch (RuntimeException ex) {
+			this.fireOperationFailure(XAResourceStatistic.OPERATION_START, begin, ex);
+			throw ex;
+		}
+		this.fireOperationSuccess(XAResourceStatistic.OPERATION_START, begin);
+	}
+
+	private long fireOperationStart(int operation) {
+		XAResourceStatistic statistic = this.resourceStatistic;
+		if (statistic == null) {
+			return 0L;
+		}
+		statistic.fireOperationStart(this.descriptor, operation);
+		return System.nanoTime();
+	}
+
+	private void fireOperationSuccess(int operation, long begin) {
+		XAResourceStatistic statistic = this.resourceStatistic;
+		if (statistic != null) {
+			statistic.fireOperationSuccess(this.descriptor, this.xid, operation, System.nanoTime() - begin);
+		}
+	}
+
+	private void fireOperationFailure(int operation, long begin, Throwable error) {
+		XAResourceStatistic statistic = this.resourceStatistic;
+		if (statistic != null) {
+			statistic.fireOperationFailure(this.descriptor, this.xid, operation, System.nanoTime() - begin, error);
+		}
 	}
 
 	public String toString() {
 		return String.format("xa-res-archive[descriptor: %s]", this.descriptor);
 	}
 
+	public boolean isFailed() {
+		return failed;
+	}
+
 	public XAResourceDescriptor getStickiness() {
 		return stickiness;
 	}
@@ -227,4 +355,12 @@ public class XAResourceArchive implements XAResource {
 		this.identified = identified;
 	}
 
+	public XAResourceStatistic getResourceStatistic() {
+		return resourceStatistic;
+	}
+
+	public void setResourceStatistic(XAResourceStatistic resourceStatistic) {
+		this.resourceStatistic = resourceStatistic;
+	}
+
 }
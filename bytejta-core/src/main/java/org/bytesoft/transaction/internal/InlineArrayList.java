@@ -0,0 +1,123 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Array list for the handful of elements a transaction usually holds: the backing array is allocated on the first
+ * insertion only, starts with two slots and grows by half of its length.
+ */
+public class InlineArrayList<E> extends AbstractList<E> implements RandomAccess {
+	static final int INITIAL_CAPACITY = 2;
+
+	private Object[] elements;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		this.checkElementIndex(index);
+		return (E) this.elements[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public E set(int index, E element) {
+		this.checkElementIndex(index);
+		E previous = (E) this.elements[index];
+		this.elements[index] = element;
+		return previous;
+	}
+
+	public void add(int index, E element) {
+		if (index < 0 || index > this.size) {
+			throw new IndexOutOfBoundsException(String.format("Index: %s, Size: %s", index, this.size));
+		}
+
+		this.ensureCapacity(this.size + 1);
+		System.arraycopy(this.elements, index, this.elements, index + 1, this.size - index);
+		this.elements[index] = element;
+		this.size++;
+		this.modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	public E remove(int index) {
+		this.checkElementIndex(index);
+		E previous = (E) this.elements[index];
+		int moved = this.size - index - 1;
+		if (moved > 0) {
+			System.arraycopy(this.elements, index + 1, this.elements, index, moved);
+		}
+		this.elements[--this.size] = null;
+		this.modCount++;
+		return previous;
+	}
+
+	public void clear() {
+		if (this.elements != null) {
+			Arrays.fill(this.elements, 0, this.size, null);
+		}
+		this.size = 0;
+		this.modCount++;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (this.elements == null) {
+			this.elements = new Object[Math.max(INITIAL_CAPACITY, minCapacity)];
+		} else if (this.elements.length < minCapacity) {
+			int length = this.elements.length;
+			this.elements = Arrays.copyOf(this.elements, Math.max(minCapacity, length + (length >> 1)));
+		}
+	}
+
+	private void checkElementIndex(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException(String.format("Index: %s, Size: %s", index, this.size));
+		}
+	}
+
+	/** read-only view of the two lists one after another, changes of them are visible through the view. */
+	public static <E> List<E> concat(final List<E> first, final List<E> second) {
+		return new ConcatenatedList<E>(first, second);
+	}
+
+	static class ConcatenatedList<E> extends AbstractList<E> implements RandomAccess {
+		private final List<E> first;
+		private final List<E> second;
+
+		public ConcatenatedList(List<E> first, List<E> second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		public E get(int index) {
+			int length = this.first.size();
+			return index < length ? this.first.get(index) : this.second.get(index - length);
+		}
+
+		public int size() {
+			return this.first.size() + this.second.size();
+		}
+	}
+
+}
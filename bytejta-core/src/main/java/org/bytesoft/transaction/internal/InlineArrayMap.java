@@ -0,0 +1,192 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map backed by parallel key/value arrays which are allocated on the first insertion. Keys are located by a linear scan
+ * while there are no more than {@link #INDEX_THRESHOLD} entries, a hash index is built above it. Iteration order is not
+ * defined.
+ */
+public class InlineArrayMap<K, V> extends AbstractMap<K, V> {
+	static final int INITIAL_CAPACITY = 2;
+	static final int INDEX_THRESHOLD = 8;
+
+	private Object[] keys;
+	private Object[] values;
+	private int size;
+	private Map<Object, Integer> index;
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean containsKey(Object key) {
+		return this.indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int i = this.indexOf(key);
+		return i < 0 ? null : (V) this.values[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int i = this.indexOf(key);
+		if (i >= 0) {
+			V previous = (V) this.values[i];
+			this.values[i] = value;
+			return previous;
+		}
+
+		this.ensureCapacity(this.size + 1);
+		this.keys[this.size] = key;
+		this.values[this.size] = value;
+		if (this.index != null) {
+			this.index.put(key, this.size);
+		}
+		this.size++;
+
+		if (this.index == null && this.size > INDEX_THRESHOLD) {
+			this.index = new HashMap<Object, Integer>();
+			for (int j = 0; j < this.size; j++) {
+				this.index.put(this.keys[j], j);
+			}
+		} // end-if (this.index == null && this.size > INDEX_THRESHOLD)
+
+		return null;
+	}
+
+	public V remove(Object key) {
+		int i = this.indexOf(key);
+		return i < 0 ? null : this.removeAt(i);
+	}
+
+	public void clear() {
+		if (this.keys != null) {
+			Arrays.fill(this.keys, 0, this.size, null);
+			Arrays.fill(this.values, 0, this.size, null);
+		}
+		this.size = 0;
+		this.index = null;
+	}
+
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private int indexOf(Object key) {
+		if (this.index != null) {
+			Integer i = this.index.get(key);
+			return i == null ? -1 : i;
+		}
+
+		for (int i = 0; i < this.size; i++) {
+			Object element = this.keys[i];
+			if (key == null ? element == null : key.equals(element)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** the last entry is moved into the freed slot. */
+	@SuppressWarnings("unchecked")
+	private V removeAt(int i) {
+		V previous = (V) this.values[i];
+		int last = this.size - 1;
+		if (this.index != null) {
+			this.index.remove(this.keys[i]);
+		}
+		if (i != last) {
+			this.keys[i] = this.keys[last];
+			this.values[i] = this.values[last];
+			if (this.index != null) {
+				this.index.put(this.keys[i], i);
+			}
+		}
+		this.keys[last] = null;
+		this.values[last] = null;
+		this.size = last;
+		return previous;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (this.keys == null) {
+			int capacity = Math.max(INITIAL_CAPACITY, minCapacity);
+			this.keys = new Object[capacity];
+			this.values = new Object[capacity];
+		} else if (this.keys.length < minCapacity) {
+			int length = this.keys.length;
+			int capacity = Math.max(minCapacity, length + (length >> 1));
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+	}
+
+	class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		private int cursor;
+		private int current = -1;
+
+		public boolean hasNext() {
+			return this.cursor < size;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<K, V> next() {
+			if (this.cursor >= size) {
+				throw new NoSuchElementException();
+			}
+			this.current = this.cursor++;
+			return new AbstractMap.SimpleEntry<K, V>((K) keys[this.current], (V) values[this.current]) {
+				private static final long serialVersionUID = 1L;
+				private final int position = current;
+
+				public V setValue(V value) {
+					values[this.position] = value;
+					return super.setValue(value);
+				}
+			};
+		}
+
+		public void remove() {
+			if (this.current < 0) {
+				throw new IllegalStateException();
+			}
+			removeAt(this.current);
+			this.cursor = this.current; // the last entry has been moved into current slot
+			this.current = -1;
+		}
+	}
+
+}
@@ -15,7 +15,6 @@
  */
 package org.bytesoft.transaction.internal;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.transaction.Synchronization;
@@ -25,7 +24,7 @@ import org.slf4j.LoggerFactory;
 
 public class SynchronizationList implements Synchronization {
 	private static final Logger logger = LoggerFactory.getLogger(SynchronizationList.class);
-	private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+	private final List<Synchronization> synchronizations = new InlineArrayList<Synchronization>();
 
 	private boolean beforeCompletionInvoked;
 	private boolean finishCompletionInvoked;
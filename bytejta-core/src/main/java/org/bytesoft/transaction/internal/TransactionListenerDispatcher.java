@@ -0,0 +1,176 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers listener notifications on background threads. Each transaction is mapped to one of the stripes by its xid,
+ * and every stripe is a bounded FIFO queue drained by a single thread, so the notifications of a transaction are
+ * delivered in order. When a queue is full the caller waits at most offerTimeoutMillis, then the notification is
+ * dropped and counted.
+ */
+public class TransactionListenerDispatcher {
+	static final Logger logger = LoggerFactory.getLogger(TransactionListenerDispatcher.class);
+
+	private int stripes = 1;
+	private int capacity = 4096;
+	private long offerTimeoutMillis = 10L;
+
+	private volatile BlockingQueue<Runnable>[] queues;
+	private Thread[] workers;
+	private volatile boolean released;
+
+	private final LongAdder dispatchedCount = new LongAdder();
+	private final LongAdder deliveredCount = new LongAdder();
+	private final LongAdder droppedCount = new LongAdder();
+
+	public boolean dispatch(TransactionXid xid, Runnable notification) {
+		BlockingQueue<Runnable>[] currentQueues = this.queues;
+		if (currentQueues == null) {
+			currentQueues = this.initializeIfNecessary();
+		}
+
+		if (this.released) {
+			this.droppedCount.increment();
+			return false;
+		} // end-if (this.released)
+
+		int index = xid == null ? 0 : (xid.hashCode() & Integer.MAX_VALUE) % currentQueues.length;
+		boolean offered = false;
+		try {
+			offered = currentQueues[index].offer(notification, this.offerTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (offered) {
+			this.dispatchedCount.increment();
+		} else {
+			this.droppedCount.increment();
+			logger.debug("Listener queue {} is full, notification is dropped.", index);
+		}
+		return offered;
+	}
+
+	@SuppressWarnings("unchecked")
+	private synchronized BlockingQueue<Runnable>[] initializeIfNecessary() {
+		if (this.queues != null) {
+			return this.queues;
+		}
+
+		int count = Math.max(1, this.stripes);
+		BlockingQueue<Runnable>[] created = new BlockingQueue[count];
+		this.workers = new Thread[count];
+		for (int i = 0; i < count; i++) {
+			final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(Math.max(1, this.capacity));
+			created[i] = queue;
+			this.workers[i] = new Thread(new Runnable() {
+				public void run() {
+					drainQueue(queue);
+				}
+			}, String.format("bytejta-listener-%s", i));
+			this.workers[i].setDaemon(true);
+			this.workers[i].start();
+		}
+		this.queues = created;
+		return created;
+	}
+
+	private void drainQueue(BlockingQueue<Runnable> queue) {
+		while (this.released == false || queue.isEmpty() == false) {
+			Runnable notification = null;
+			try {
+				notification = queue.poll(100L, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ex) {
+				continue; // released
+			}
+
+			if (notification == null) {
+				continue;
+			}
+
+			try {
+				notification.run();
+			} catch (RuntimeException rex) {
+				logger.error(rex.getMessage(), rex);
+			} finally {
+				this.deliveredCount.increment();
+			}
+		}
+	}
+
+	/** the queued notifications are still delivered, new ones are dropped. */
+	public synchronized void release() {
+		this.released = true;
+		for (int i = 0; this.workers != null && i < this.workers.length; i++) {
+			this.workers[i].interrupt();
+		}
+	}
+
+	public long getPendingCount() {
+		BlockingQueue<Runnable>[] currentQueues = this.queues;
+		long pending = 0;
+		for (int i = 0; currentQueues != null && i < currentQueues.length; i++) {
+			pending += currentQueues[i].size();
+		}
+		return pending;
+	}
+
+	public long getDispatchedCount() {
+		return this.dispatchedCount.sum();
+	}
+
+	public long getDeliveredCount() {
+		return this.deliveredCount.sum();
+	}
+
+	public long getDroppedCount() {
+		return this.droppedCount.sum();
+	}
+
+	public int getStripes() {
+		return stripes;
+	}
+
+	public void setStripes(int stripes) {
+		this.stripes = stripes;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public long getOfferTimeoutMillis() {
+		return offerTimeoutMillis;
+	}
+
+	public void setOfferTimeoutMillis(long offerTimeoutMillis) {
+		this.offerTimeoutMillis = offerTimeoutMillis;
+	}
+
+}
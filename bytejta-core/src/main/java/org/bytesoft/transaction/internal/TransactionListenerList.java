@@ -15,143 +15,173 @@
  */
 package org.bytesoft.transaction.internal;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import org.bytesoft.transaction.supports.SynchronousListener;
 import org.bytesoft.transaction.supports.TransactionListener;
 import org.bytesoft.transaction.supports.TransactionListenerAdapter;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Listeners are kept in copy-on-write arrays, so the notification works on a snapshot and never needs a lock. Listeners
+ * marked as SynchronousListener are always notified on the completing thread. The other ones are handed to the
+ * dispatcher, if there is one, which keeps the notifications of a transaction in order.
+ */
 public class TransactionListenerList extends TransactionListenerAdapter {
 	static final Logger logger = LoggerFactory.getLogger(TransactionListenerList.class);
+	static final TransactionListener[] EMPTY_LISTENERS = new TransactionListener[0];
+
+	static final int EVENT_PREPARE_START = 0;
+	static final int EVENT_PREPARE_SUCCESS = 1;
+	static final int EVENT_PREPARE_FAILURE = 2;
+	static final int EVENT_COMMIT_START = 3;
+	static final int EVENT_COMMIT_SUCCESS = 4;
+	static final int EVENT_COMMIT_FAILURE = 5;
+	static final int EVENT_COMMIT_HEURISTIC_MIXED = 6;
+	static final int EVENT_COMMIT_HEURISTIC_ROLLEDBACK = 7;
+	static final int EVENT_ROLLBACK_START = 8;
+	static final int EVENT_ROLLBACK_SUCCESS = 9;
+	static final int EVENT_ROLLBACK_FAILURE = 10;
+
+	private volatile TransactionListener[] synchronousListeners = EMPTY_LISTENERS;
+	private volatile TransactionListener[] asynchronousListeners = EMPTY_LISTENERS;
+	private volatile TransactionListenerDispatcher dispatcher;
+
+	public synchronized void registerTransactionListener(TransactionListener listener) {
+		if (SynchronousListener.class.isInstance(listener)) {
+			this.synchronousListeners = this.append(this.synchronousListeners, listener);
+		} else {
+			this.asynchronousListeners = this.append(this.asynchronousListeners, listener);
+		}
+	}
 
-	private final List<TransactionListener> listeners = new ArrayList<TransactionListener>();
-
-	public void registerTransactionListener(TransactionListener listener) {
-		this.listeners.add(listener);
+	private TransactionListener[] append(TransactionListener[] listeners, TransactionListener listener) {
+		TransactionListener[] result = new TransactionListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, result, 0, listeners.length);
+		result[listeners.length] = listener;
+		return result;
 	}
 
 	public void onPrepareStart(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onPrepareStart(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_PREPARE_START, xid);
 	}
 
 	public void onPrepareSuccess(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onPrepareSuccess(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_PREPARE_SUCCESS, xid);
 	}
 
 	public void onPrepareFailure(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onPrepareFailure(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_PREPARE_FAILURE, xid);
 	}
 
 	public void onCommitStart(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onCommitStart(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_COMMIT_START, xid);
 	}
 
 	public void onCommitSuccess(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onCommitSuccess(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_COMMIT_SUCCESS, xid);
 	}
 
 	public void onCommitFailure(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onCommitFailure(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_COMMIT_FAILURE, xid);
 	}
 
 	public void onCommitHeuristicMixed(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onCommitHeuristicMixed(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_COMMIT_HEURISTIC_MIXED, xid);
 	}
 
 	public void onCommitHeuristicRolledback(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onCommitHeuristicRolledback(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_COMMIT_HEURISTIC_ROLLEDBACK, xid);
 	}
 
 	public void onRollbackStart(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onRollbackStart(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
-			}
-		}
+		this.fireEvent(EVENT_ROLLBACK_START, xid);
 	}
 
 	public void onRollbackSuccess(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
-				listener.onRollbackSuccess(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
+		this.fireEvent(EVENT_ROLLBACK_SUCCESS, xid);
+	}
+
+	public void onRollbackFailure(TransactionXid xid) {
+		this.fireEvent(EVENT_ROLLBACK_FAILURE, xid);
+	}
+
+	private void fireEvent(final int event, final TransactionXid xid) {
+		TransactionListener[] listeners = this.synchronousListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			deliver(listeners[i], event, xid);
+		}
+
+		final TransactionListener[] snapshot = this.asynchronousListeners;
+		TransactionListenerDispatcher currentDispatcher = this.dispatcher;
+		if (snapshot.length == 0) {
+			return;
+		} else if (currentDispatcher == null) {
+			for (int i = 0; i < snapshot.length; i++) {
+				deliver(snapshot[i], event, xid);
 			}
+		} else {
+			// the start events are queued as well, otherwise they could overtake the completion of a former phase
+			currentDispatcher.dispatch(xid, new Runnable() {
+				public void run() {
+					for (int i = 0; i < snapshot.length; i++) {
+						deliver(snapshot[i], event, xid);
+					}
+				}
+			});
 		}
 	}
 
-	public void onRollbackFailure(TransactionXid xid) {
-		for (int i = 0; i < this.listeners.size(); i++) {
-			try {
-				TransactionListener listener = this.listeners.get(i);
+	static void deliver(TransactionListener listener, int event, TransactionXid xid) {
+		try {
+			switch (event) {
+			case EVENT_PREPARE_START:
+				listener.onPrepareStart(xid);
+				break;
+			case EVENT_PREPARE_SUCCESS:
+				listener.onPrepareSuccess(xid);
+				break;
+			case EVENT_PREPARE_FAILURE:
+				listener.onPrepareFailure(xid);
+				break;
+			case EVENT_COMMIT_START:
+				listener.onCommitStart(xid);
+				break;
+			case EVENT_COMMIT_SUCCESS:
+				listener.onCommitSuccess(xid);
+				break;
+			case EVENT_COMMIT_FAILURE:
+				listener.onCommitFailure(xid);
+				break;
+			case EVENT_COMMIT_HEURISTIC_MIXED:
+				listener.onCommitHeuristicMixed(xid);
+				break;
+			case EVENT_COMMIT_HEURISTIC_ROLLEDBACK:
+				listener.onCommitHeuristicRolledback(xid);
+				break;
+			case EVENT_ROLLBACK_START:
+				listener.onRollbackStart(xid);
+				break;
+			case EVENT_ROLLBACK_SUCCESS:
+				listener.onRollbackSuccess(xid);
+				break;
+			case EVENT_ROLLBACK_FAILURE:
 				listener.onRollbackFailure(xid);
-			} catch (RuntimeException rex) {
-				logger.error(rex.getMessage(), rex);
+				break;
+			default:
+				logger.warn("Unknown transaction event: {}", event);
 			}
+		} catch (RuntimeException rex) {
+			logger.error(rex.getMessage(), rex);
 		}
 	}
 
+	public TransactionListenerDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	public void setDispatcher(TransactionListenerDispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+	}
+
 }
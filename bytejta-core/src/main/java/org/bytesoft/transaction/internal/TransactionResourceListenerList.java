@@ -15,9 +15,6 @@
  */
 package org.bytesoft.transaction.internal;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
@@ -27,17 +24,23 @@ import org.slf4j.LoggerFactory;
 
 public class TransactionResourceListenerList implements TransactionResourceListener {
 	static final Logger logger = LoggerFactory.getLogger(TransactionResourceListenerList.class);
+	static final TransactionResourceListener[] EMPTY_LISTENERS = new TransactionResourceListener[0];
 
-	private final List<TransactionResourceListener> listeners = new ArrayList<TransactionResourceListener>();
+	// copy-on-write, the enlist/delist notifications stay synchronous
+	private volatile TransactionResourceListener[] listeners = EMPTY_LISTENERS;
 
-	public void registerTransactionResourceListener(TransactionResourceListener listener) {
-		this.listeners.add(listener);
+	public synchronized void registerTransactionResourceListener(TransactionResourceListener listener) {
+		TransactionResourceListener[] result = new TransactionResourceListener[this.listeners.length + 1];
+		System.arraycopy(this.listeners, 0, result, 0, this.listeners.length);
+		result[this.listeners.length] = listener;
+		this.listeners = result;
 	}
 
 	public void onEnlistResource(Xid xid, XAResource xares) {
-		for (int i = 0; i < this.listeners.size(); i++) {
+		TransactionResourceListener[] snapshot = this.listeners;
+		for (int i = 0; i < snapshot.length; i++) {
 			try {
-				TransactionResourceListener listener = this.listeners.get(i);
+				TransactionResourceListener listener = snapshot[i];
 				listener.onEnlistResource(xid, xares);
 			} catch (RuntimeException rex) {
 				logger.error(rex.getMessage(), rex);
@@ -46,9 +49,10 @@ public class TransactionResourceListenerList implements TransactionResourceListe
 	}
 
 	public void onDelistResource(Xid xid, XAResource xares) {
-		for (int i = 0; i < this.listeners.size(); i++) {
+		TransactionResourceListener[] snapshot = this.listeners;
+		for (int i = 0; i < snapshot.length; i++) {
 			try {
-				TransactionResourceListener listener = this.listeners.get(i);
+				TransactionResourceListener listener = snapshot[i];
 				listener.onDelistResource(xid, xares);
 			} catch (RuntimeException rex) {
 				logger.error(rex.getMessage(), rex);
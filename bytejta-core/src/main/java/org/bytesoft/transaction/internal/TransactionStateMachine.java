@@ -0,0 +1,157 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.transaction.Status;
+
+/**
+ * Lock-free transaction status holder. Status changes are validated against the JTA status graph and applied by CAS, and
+ * the completion of a transaction is owned by at most one thread at a time: competing threads are rejected with an
+ * IllegalStateException instead of being blocked. A rollback-only request from another thread is not rejected, it is
+ * recorded and honored by the completion owner at its commit decision.
+ */
+public class TransactionStateMachine {
+	static final int DECISION_NONE = 0;
+	static final int DECISION_COMMIT = 1;
+	static final int DECISION_ROLLBACK = 2;
+
+	private final AtomicInteger status = new AtomicInteger(Status.STATUS_ACTIVE);
+	private final AtomicInteger decision = new AtomicInteger(DECISION_NONE);
+	private final AtomicReference<Thread> completionOwner = new AtomicReference<Thread>();
+
+	public int getStatus() {
+		return this.status.get();
+	}
+
+	/** used while reconstructing a transaction from tx-log only. */
+	public void setStatus(int status) {
+		this.status.set(status);
+	}
+
+	public boolean compareAndSet(int expect, int update) {
+		if (isTransitionLegal(expect, update) == false) {
+			return false;
+		}
+		return this.status.compareAndSet(expect, update);
+	}
+
+	/** @return the status before the transition. */
+	public int transferTo(int update) throws IllegalStateException {
+		while (true) {
+			int current = this.status.get();
+			if (isTransitionLegal(current, update) == false) {
+				throw new IllegalStateException(String.format("Illegal status transition: %s -> %s", current, update));
+			} else if (current == update || this.status.compareAndSet(current, update)) {
+				return current;
+			}
+		}
+	}
+
+	/** @return true if the completion ownership is newly acquired by current thread, false if it is already owned. */
+	public boolean acquireCompletion() throws IllegalStateException {
+		Thread current = Thread.currentThread();
+		if (this.completionOwner.compareAndSet(null, current)) {
+			return true;
+		} else if (this.completionOwner.get() == current) {
+			return false;
+		}
+		throw new IllegalStateException("The transaction is being completed by another thread!");
+	}
+
+	public void releaseCompletion(boolean acquired) {
+		if (acquired) {
+			this.completionOwner.compareAndSet(Thread.currentThread(), null);
+		}
+	}
+
+	/**
+	 * Marks the transaction rollback-only. If the completion is owned by another thread, the status is left to the owner,
+	 * which observes the request at {@link #decideCommit()}.
+	 *
+	 * @return false if the transaction has already been decided to commit, or has been completed.
+	 */
+	public boolean markRollbackOnly() {
+		boolean decided = this.decision.compareAndSet(DECISION_NONE, DECISION_ROLLBACK);
+		if (decided == false && this.decision.get() != DECISION_ROLLBACK) {
+			return false;
+		}
+
+		boolean marked = false;
+		if (this.isCompletingByOtherThread()) {
+			int current = this.status.get();
+			marked = current != Status.STATUS_COMMITTED && current != Status.STATUS_ROLLEDBACK;
+		} else {
+			marked = this.compareAndSet(Status.STATUS_ACTIVE, Status.STATUS_MARKED_ROLLBACK)
+					|| this.status.get() == Status.STATUS_MARKED_ROLLBACK;
+		}
+
+		if (marked == false && decided) {
+			this.decision.compareAndSet(DECISION_ROLLBACK, DECISION_NONE); // the request is refused, undo it
+		} // end-if (marked == false && decided)
+		return marked;
+	}
+
+	/**
+	 * Called by the completion owner right before it commits.
+	 *
+	 * @return false if a rollback has been requested, in which case the owner must roll back instead.
+	 */
+	public boolean decideCommit() {
+		return this.decision.compareAndSet(DECISION_NONE, DECISION_COMMIT) || this.decision.get() == DECISION_COMMIT;
+	}
+
+	public boolean isRollbackRequested() {
+		return this.decision.get() == DECISION_ROLLBACK;
+	}
+
+	public boolean isCompletingByOtherThread() {
+		Thread owner = this.completionOwner.get();
+		return owner != null && owner != Thread.currentThread();
+	}
+
+	public static boolean isTransitionLegal(int from, int to) {
+		if (from == to) {
+			return from != Status.STATUS_NO_TRANSACTION;
+		}
+
+		switch (from) {
+		case Status.STATUS_ACTIVE:
+			return to == Status.STATUS_MARKED_ROLLBACK || to == Status.STATUS_PREPARING || to == Status.STATUS_PREPARED
+					|| to == Status.STATUS_COMMITTING || to == Status.STATUS_COMMITTED || to == Status.STATUS_ROLLING_BACK;
+		case Status.STATUS_MARKED_ROLLBACK:
+			return to == Status.STATUS_ROLLING_BACK;
+		case Status.STATUS_PREPARING:
+			return to == Status.STATUS_PREPARED || to == Status.STATUS_COMMITTING || to == Status.STATUS_ROLLING_BACK;
+		case Status.STATUS_PREPARED:
+			return to == Status.STATUS_COMMITTING || to == Status.STATUS_COMMITTED || to == Status.STATUS_ROLLING_BACK;
+		case Status.STATUS_COMMITTING:
+			return to == Status.STATUS_COMMITTED || to == Status.STATUS_ROLLING_BACK;
+		case Status.STATUS_ROLLING_BACK:
+			return to == Status.STATUS_ROLLEDBACK;
+		case Status.STATUS_UNKNOWN:
+			return to == Status.STATUS_COMMITTING || to == Status.STATUS_ROLLING_BACK;
+		case Status.STATUS_COMMITTED:
+		case Status.STATUS_ROLLEDBACK:
+		case Status.STATUS_NO_TRANSACTION:
+		default:
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.logging;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.transaction.xa.Xid;
+
+public interface TransactionEventRecorder {
+
+	public static final int EVENT_BEGIN = 1;
+	public static final int EVENT_BEGIN_PARTICIPANT = 2;
+	public static final int EVENT_ENLIST = 3;
+	public static final int EVENT_DELIST = 4;
+	public static final int EVENT_COMMIT_START = 5;
+	public static final int EVENT_COMMIT_DEFERRED = 6;
+	public static final int EVENT_COMMIT_SUCCESS = 7;
+	public static final int EVENT_ROLLBACK_START = 8;
+	public static final int EVENT_ROLLBACK_SUCCESS = 9;
+	public static final int EVENT_PREPARE_PARTICIPANT_START = 10;
+	public static final int EVENT_PREPARE_PARTICIPANT_SUCCESS = 11;
+	public static final int EVENT_PREPARE_PARTICIPANT_FAILURE = 12;
+	public static final int EVENT_COMMIT_PARTICIPANT_START = 13;
+	public static final int EVENT_COMMIT_PARTICIPANT_SUCCESS = 14;
+	public static final int EVENT_ROLLBACK_PARTICIPANT_START = 15;
+	public static final int EVENT_ROLLBACK_PARTICIPANT_SUCCESS = 16;
+	public static final int EVENT_BRANCH_PREPARE = 17;
+	public static final int EVENT_BRANCH_COMMIT = 18;
+	public static final int EVENT_BRANCH_ROLLBACK = 19;
+
+	/** value: vote, flags or error code of the event, zero if not applicable. */
+	public void recordEvent(int event, Xid xid, int value);
+
+	/** true if each recorded event should be written to the log at info level as well. */
+	public boolean isVerbose();
+
+	/** writes the recorded events of the given global transaction to the logger, all events if xid is null. */
+	public void dump(Xid globalXid);
+
+	public void dump(File file) throws IOException;
+
+}
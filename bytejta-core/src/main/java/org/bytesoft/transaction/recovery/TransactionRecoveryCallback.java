@@ -15,10 +15,17 @@
  */
 package org.bytesoft.transaction.recovery;
 
+import java.util.List;
+
 import org.bytesoft.transaction.archive.TransactionArchive;
 
 public interface TransactionRecoveryCallback {
 
 	public void recover(TransactionArchive archive);
 
+	/** records: the archive as read from the tx-log, i.e. its last archive record followed by its branch updates. */
+	public default void recover(TransactionArchive archive, List<byte[]> records) {
+		this.recover(archive);
+	}
+
 }
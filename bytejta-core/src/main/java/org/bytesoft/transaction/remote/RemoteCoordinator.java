@@ -15,6 +15,9 @@
  */
 package org.bytesoft.transaction.remote;
 
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
 import org.bytesoft.transaction.TransactionParticipant;
 
 public interface RemoteCoordinator extends TransactionParticipant {
@@ -27,4 +30,13 @@ public interface RemoteCoordinator extends TransactionParticipant {
 
 	public String getApplication();
 
+	/**
+	 * The outcome of each global transaction as decided by this coordinator: Status.STATUS_COMMITTED,
+	 * Status.STATUS_ROLLEDBACK, or Status.STATUS_UNKNOWN while it is undecided or unknown to this coordinator. A
+	 * coordinator which does not support the query throws XAException.XAER_RMERR.
+	 */
+	public default int[] getTransactionStatus(Xid[] xids) throws XAException {
+		throw new XAException(XAException.XAER_RMERR);
+	}
+
 }
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.supports;
+
+import java.util.List;
+import java.util.Map;
+
+public interface RecoveryAdmission {
+
+	/**
+	 * @param resourceKeys the resources and remote coordinators a recovery attempt is going to touch.
+	 * @param remoteKeys the ones of resourceKeys which are remote coordinators.
+	 * @return false if the attempt must be skipped in this cycle, nothing has been acquired then.
+	 */
+	public boolean admitRecovery(List<String> resourceKeys, List<String> remoteKeys);
+
+	/** @param failedKeys the ones of resourceKeys which failed in the attempt, the others succeeded. */
+	public void releaseRecovery(List<String> resourceKeys, List<String> failedKeys);
+
+	/** the due transactions of the last recovery cycle per resource. */
+	public void updateBacklog(Map<String, Integer> backlog);
+
+}
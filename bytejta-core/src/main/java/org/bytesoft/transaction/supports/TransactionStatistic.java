@@ -27,6 +27,7 @@ public interface TransactionStatistic {
 	public static final long FLAGS_ROLEDBACK = 0x40;
 	public static final long FLAGS_ERROR = 0x80;
 	public static final long FLAGS_ERROR_TOTAL = 0x100;
+	public static final long FLAGS_RECOVERING = 0x200;
 
 	public void fireBeginTransaction(TransactionImpl transaction);
 
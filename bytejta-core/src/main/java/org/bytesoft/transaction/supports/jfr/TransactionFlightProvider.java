@@ -0,0 +1,31 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.supports.jfr;
+
+import javax.transaction.xa.Xid;
+
+/**
+ * Creates and commits the flight recorder events, see {@link TransactionFlightRecorder}. It is implemented by the
+ * optional bytejta-jfr module, so that bytejta-core does not depend on jdk.jfr.
+ */
+public interface TransactionFlightProvider {
+
+	/** returns the started event, or null if it is not being recorded. */
+	public Object begin(int type);
+
+	public void commit(Object event, Xid xid, Object resource);
+
+}
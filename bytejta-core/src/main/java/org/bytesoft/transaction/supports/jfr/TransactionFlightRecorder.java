@@ -0,0 +1,77 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.supports.jfr;
+
+import javax.transaction.xa.Xid;
+
+/**
+ * Emits Java Flight Recorder events for the transaction phases. The events are defined by the optional bytejta-jfr
+ * module, which is looked up reflectively: without it, or when jdk.jfr is not present in the running JVM, nothing is
+ * recorded. {@link #begin(int)} returns null without allocating anything while the event type is not enabled in a
+ * recording, so a call site costs a static field read and a branch when JFR is off:
+ *
+ * <pre>
+ * Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_PREPARE);
+ * try {
+ * 	...
+ * } finally {
+ * 	TransactionFlightRecorder.commit(event, xid, resource);
+ * }
+ * </pre>
+ */
+public final class TransactionFlightRecorder {
+	public static final int EVENT_BEGIN = 0;
+	public static final int EVENT_ENLIST = 1;
+	public static final int EVENT_PREPARE = 2;
+	public static final int EVENT_DECISION = 3;
+	public static final int EVENT_COMMIT = 4;
+	public static final int EVENT_ROLLBACK = 5;
+	public static final int EVENT_RECOVERY = 6;
+	public static final int EVENT_COMPACTION = 7;
+
+	static final String PROVIDER_CLASS = "org.bytesoft.bytejta.jfr.TransactionFlightEvents";
+	static final TransactionFlightProvider PROVIDER = initialize();
+
+	private TransactionFlightRecorder() {
+	}
+
+	private static TransactionFlightProvider initialize() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			Class<?> clazz = Class.forName(PROVIDER_CLASS, true, TransactionFlightRecorder.class.getClassLoader());
+			return (TransactionFlightProvider) clazz.newInstance();
+		} catch (ClassNotFoundException ex) {
+			return null; // jdk.jfr or bytejta-jfr is not available
+		} catch (LinkageError error) {
+			return null;
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
+	/** returns the started event, or null if it is not being recorded. */
+	public static Object begin(int type) {
+		return PROVIDER == null ? null : PROVIDER.begin(type);
+	}
+
+	/** resource: the branch resource of the event, its class name is recorded as the resource type, may be null. */
+	public static void commit(Object event, Xid xid, Object resource) {
+		if (event != null) {
+			PROVIDER.commit(event, xid, resource);
+		}
+	}
+
+}
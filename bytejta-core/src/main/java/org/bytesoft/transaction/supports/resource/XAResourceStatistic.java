@@ -0,0 +1,35 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.supports.resource;
+
+import javax.transaction.xa.Xid;
+
+public interface XAResourceStatistic {
+	public static final int OPERATION_START = 0;
+	public static final int OPERATION_PREPARE = 1;
+	public static final int OPERATION_COMMIT = 2;
+	public static final int OPERATION_ROLLBACK = 3;
+	public static final int OPERATION_FORGET = 4;
+
+	public void fireOperationStart(XAResourceDescriptor descriptor, int operation);
+
+	/** nanos: elapsed time of the operation in nanoseconds. */
+	public void fireOperationSuccess(XAResourceDescriptor descriptor, Xid xid, int operation, long nanos);
+
+	/** error: XAException or RuntimeException thrown by the resource. */
+	public void fireOperationFailure(XAResourceDescriptor descriptor, Xid xid, int operation, long nanos, Throwable error);
+
+}
@@ -19,6 +19,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -28,6 +29,7 @@ import javax.resource.spi.work.WorkEvent;
 import javax.resource.spi.work.WorkException;
 import javax.resource.spi.work.WorkListener;
 import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,7 +39,6 @@ public class SimpleWorkManager implements WorkManager {
 
 	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(5, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
 			new LinkedBlockingQueue<Runnable>());
-	// private final ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(1);
 
 	public void doWork(Work work) throws WorkException {
 		this.doWork(work, 1800 * 1000L, null, null);
@@ -79,20 +80,25 @@ public class SimpleWorkManager implements WorkManager {
 	}
 
 	public void scheduleWork(Work work) throws WorkException {
-		throw new WorkException("not supported yet!");
+		this.scheduleWork(work, 1800 * 1000L, null, null);
 	}
 
+	/** accepts the work and returns at once, without waiting for it to start. */
 	public void scheduleWork(Work work, long startTimeout, ExecutionContext execContext, WorkListener workListener)
 			throws WorkException {
-		// SimpleWorkListener wrappedListener = new SimpleWorkListener(workListener);
-		// wrappedListener.workAccepted(new WorkEvent(this, WorkEvent.WORK_ACCEPTED, work, null));
-		// SimpleWork task = new SimpleWork();
-		// task.setSource(this);
-		// task.setWork(work);
-		// task.setWorkListener(wrappedListener);
-		// // ScheduledFuture<?> future =
-		// this.scheduled.scheduleAtFixedRate(task, 0, 1000, TimeUnit.MILLISECONDS);
-		throw new WorkException("not supported yet!");
+		SimpleWorkListener wrappedListener = new SimpleWorkListener(workListener);
+		wrappedListener.workAccepted(new WorkEvent(this, WorkEvent.WORK_ACCEPTED, work, null));
+		SimpleWork task = new SimpleWork();
+		task.setSource(this);
+		task.setWork(work);
+		task.setWorkListener(wrappedListener);
+		try {
+			this.executor.execute(task);
+		} catch (RejectedExecutionException ex) {
+			WorkRejectedException rejected = new WorkRejectedException(ex);
+			wrappedListener.workRejected(new WorkEvent(this, WorkEvent.WORK_REJECTED, work, rejected));
+			throw rejected;
+		}
 	}
 
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.xa;
+
+import java.io.ObjectStreamException;
+import java.util.Arrays;
+
+import org.bytesoft.common.utils.ByteUtils;
+
+/**
+ * Immutable xid for the 16-byte global transaction ids (and 16-byte branch qualifiers) generated by the xid factory.
+ * The ids are also held as longs, the hash code is computed once and the hex form is cached on first use. It equals,
+ * and hashes the same as, a {@link TransactionXid} carrying the same bytes, and is serialized as a plain TransactionXid
+ * (by writeReplace for java/hessian, by the class resolver of {@link org.bytesoft.common.utils.SerializeUtils} for kryo).
+ * As with TransactionXid, the arrays returned by the getters are shared and must not be modified.
+ */
+public final class CompactTransactionXid extends TransactionXid {
+	private static final long serialVersionUID = 1L;
+	static final int ID_LENGTH = 16;
+
+	private final int formatId;
+	private final long globalHigh;
+	private final long globalLow;
+	private final long branchHigh;
+	private final long branchLow;
+	private final boolean branch;
+	private final int hash;
+
+	private transient volatile String globalString;
+
+	public CompactTransactionXid(int formatId, byte[] global) {
+		this(formatId, global, new byte[0]);
+	}
+
+	public CompactTransactionXid(int formatId, byte[] global, byte[] branch) {
+		super(formatId, copyOfCompactable(global, branch), branch.clone());
+
+		this.formatId = formatId;
+		this.globalHigh = ByteUtils.byteArrayToLong(global, 0);
+		this.globalLow = ByteUtils.byteArrayToLong(global, 8);
+		this.branch = branch.length > 0;
+		this.branchHigh = this.branch ? ByteUtils.byteArrayToLong(branch, 0) : 0;
+		this.branchLow = this.branch ? ByteUtils.byteArrayToLong(branch, 8) : 0;
+		this.hash = 23 + 29 * formatId + 31 * Arrays.hashCode(branch) + 37 * Arrays.hashCode(global);
+	}
+
+	public static boolean isCompactable(byte[] global, byte[] branch) {
+		if (global == null || global.length != ID_LENGTH) {
+			return false;
+		}
+		return branch != null && (branch.length == 0 || branch.length == ID_LENGTH);
+	}
+
+	private static byte[] copyOfCompactable(byte[] global, byte[] branch) {
+		if (isCompactable(global, branch) == false) {
+			throw new IllegalArgumentException("globalTransactionId must be 16 bytes, branchQualifier 0 or 16 bytes.");
+		}
+		return global.clone();
+	}
+
+	public CompactTransactionXid clone() {
+		return this; // immutable
+	}
+
+	public int getFormatId() {
+		return this.formatId;
+	}
+
+	public String getGlobalTransactionIdString() {
+		String value = this.globalString;
+		if (value == null) {
+			value = ByteUtils.byteArrayToString(this.getGlobalTransactionId());
+			this.globalString = value;
+		}
+		return value;
+	}
+
+	public long getGlobalHighBits() {
+		return this.globalHigh;
+	}
+
+	public long getGlobalLowBits() {
+		return this.globalLow;
+	}
+
+	public long getBranchHighBits() {
+		return this.branchHigh;
+	}
+
+	public long getBranchLowBits() {
+		return this.branchLow;
+	}
+
+	public void setFormatId(int formatId) {
+		throw new UnsupportedOperationException("CompactTransactionXid is immutable!");
+	}
+
+	public void setGlobalTransactionId(byte[] globalTransactionId) {
+		throw new UnsupportedOperationException("CompactTransactionXid is immutable!");
+	}
+
+	public void setBranchQualifier(byte[] branchQualifier) {
+		throw new UnsupportedOperationException("CompactTransactionXid is immutable!");
+	}
+
+	public int hashCode() {
+		return this.hash;
+	}
+
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (CompactTransactionXid.class.isInstance(obj)) {
+			CompactTransactionXid that = (CompactTransactionXid) obj;
+			return this.hash == that.hash && this.formatId == that.formatId //
+					&& this.globalHigh == that.globalHigh && this.globalLow == that.globalLow //
+					&& this.branch == that.branch && this.branchHigh == that.branchHigh && this.branchLow == that.branchLow;
+		} else if (TransactionXid.class.isInstance(obj)) {
+			TransactionXid that = (TransactionXid) obj;
+			return this.formatId == that.getFormatId() && this.hash == that.hashCode()
+					&& Arrays.equals(this.getGlobalTransactionId(), that.getGlobalTransactionId())
+					&& Arrays.equals(this.getBranchQualifier(), that.getBranchQualifier());
+		}
+		return false;
+	}
+
+	public String toString() {
+		String branchString = this.branch ? ByteUtils.byteArrayToString(this.getBranchQualifier()) : "";
+		return String.format("%s-%s-%s", this.formatId, this.getGlobalTransactionIdString(), branchString);
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new TransactionXid(this.formatId, this.getGlobalTransactionId(), this.getBranchQualifier());
+	}
+
+}
@@ -92,6 +92,8 @@ public class TransactionXid implements Xid, Cloneable, Serializable {
 			return true;
 		} else if (obj == null) {
 			return false;
+		} else if (CompactTransactionXid.class.isInstance(obj)) {
+			return obj.equals(this);
 		} else if (getClass() != obj.getClass()) {
 			return false;
 		}
@@ -106,6 +108,10 @@ public class TransactionXid implements Xid, Cloneable, Serializable {
 		return true;
 	}
 
+	public String getGlobalTransactionIdString() {
+		return ByteUtils.byteArrayToString(this.getGlobalTransactionId());
+	}
+
 	public String toString() {
 		String global = this.globalTransactionId == null ? null : ByteUtils.byteArrayToString(this.globalTransactionId);
 		String branch = this.branchQualifier == null ? null : ByteUtils.byteArrayToString(this.branchQualifier);
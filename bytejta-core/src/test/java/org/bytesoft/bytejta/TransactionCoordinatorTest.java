@@ -0,0 +1,95 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.transaction.Status;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.TransactionRecovery;
+import org.bytesoft.transaction.TransactionRepository;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionCoordinatorTest {
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private final TransactionRepository transactionRepository = new TransactionRepositoryImpl();
+
+	@Test
+	public void testTransactionStatus() throws Exception {
+		TransactionCoordinator transactionCoordinator = new TransactionCoordinator();
+		transactionCoordinator.setBeanFactory(this.createBeanFactory());
+		transactionCoordinator.markParticipantReady();
+
+		int[] statusArray = new int[] { Status.STATUS_ACTIVE, Status.STATUS_MARKED_ROLLBACK, Status.STATUS_PREPARING,
+				Status.STATUS_PREPARED, Status.STATUS_COMMITTING, Status.STATUS_COMMITTED, Status.STATUS_ROLLING_BACK,
+				Status.STATUS_ROLLEDBACK };
+		Xid[] xids = new Xid[statusArray.length + 2];
+		for (int i = 0; i < statusArray.length; i++) {
+			xids[i] = this.createTransaction(true, statusArray[i]);
+		}
+		xids[statusArray.length] = this.createTransaction(false, Status.STATUS_COMMITTING);
+		xids[statusArray.length + 1] = this.xidFactory.createGlobalXid(); // unknown
+
+		int[] outcomes = transactionCoordinator.getTransactionStatus(xids);
+		Assert.assertArrayEquals(new int[] { Status.STATUS_UNKNOWN, Status.STATUS_UNKNOWN, Status.STATUS_UNKNOWN,
+				Status.STATUS_UNKNOWN, Status.STATUS_COMMITTED, Status.STATUS_COMMITTED, Status.STATUS_ROLLEDBACK,
+				Status.STATUS_ROLLEDBACK, Status.STATUS_UNKNOWN, Status.STATUS_UNKNOWN }, outcomes);
+	}
+
+	private TransactionXid createTransaction(boolean coordinator, int transactionStatus) {
+		TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setCoordinator(coordinator);
+		transactionContext.setXid(this.xidFactory.createGlobalXid());
+
+		TransactionImpl transaction = new TransactionImpl(transactionContext);
+		transaction.setTransactionStatus(transactionStatus);
+		this.transactionRepository.putTransaction(transactionContext.getXid(), transaction);
+		return transactionContext.getXid();
+	}
+
+	private TransactionBeanFactory createBeanFactory() {
+		final TransactionRecovery transactionRecovery = (TransactionRecovery) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionRecovery.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return boolean.class.equals(method.getReturnType()) ? true : null;
+					}
+				});
+		return (TransactionBeanFactory) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionRecovery".equals(method.getName())) {
+							return transactionRecovery;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						} else if ("getTransactionRepository".equals(method.getName())) {
+							return transactionRepository;
+						}
+						return null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytejta.supports.resource.CommonResourceDescriptor;
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.RollbackRequiredException;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.TransactionRepository;
+import org.bytesoft.transaction.internal.TransactionStateMachine;
+import org.bytesoft.transaction.logging.TransactionEventRecorder;
+import org.bytesoft.transaction.logging.TransactionLogger;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionImplTest {
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private final TransactionRepository transactionRepository = new TransactionRepositoryImpl();
+	private final AtomicReference<Boolean> rollbackOnlyMarked = new AtomicReference<Boolean>();
+	private final List<Runnable> deferredTasks = new ArrayList<Runnable>();
+	private final List<Integer> completionStatus = new ArrayList<Integer>();
+
+	@Test
+	public void testSetRollbackOnlyDuringCommit() throws Exception {
+		TransactionImpl transaction = this.createTransaction(TransactionEventRecorder.EVENT_COMMIT_START);
+
+		try {
+			transaction.commit();
+			Assert.fail();
+		} catch (HeuristicRollbackException ex) {
+			// expected
+		}
+
+		Assert.assertEquals(Boolean.TRUE, this.rollbackOnlyMarked.get());
+		Assert.assertTrue(transaction.isMarkedRollbackOnly());
+		Assert.assertEquals(Status.STATUS_ROLLEDBACK, transaction.getStatus());
+	}
+
+	@Test
+	public void testSetRollbackOnlyAfterCommitDecision() throws Exception {
+		TransactionImpl transaction = this.createTransaction(TransactionEventRecorder.EVENT_COMMIT_SUCCESS);
+
+		transaction.commit();
+
+		Assert.assertEquals(Boolean.FALSE, this.rollbackOnlyMarked.get());
+		Assert.assertFalse(transaction.isMarkedRollbackOnly());
+	}
+
+	@Test
+	public void testSetRollbackOnlyDuringPrepare() throws Exception {
+		TransactionImpl transaction = this.createTransaction(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_START);
+		transaction.enlistResource(this.createResource("resource-a", false));
+		transaction.enlistResource(this.createResource("resource-b", false));
+		transaction.fireBeforeTransactionCompletion();
+
+		try {
+			transaction.commit();
+			Assert.fail();
+		} catch (HeuristicRollbackException ex) {
+			// expected
+		}
+
+		Assert.assertEquals(Boolean.TRUE, this.rollbackOnlyMarked.get());
+		Assert.assertEquals(Status.STATUS_ROLLEDBACK, transaction.getStatus());
+	}
+
+	@Test
+	public void testSetRollbackOnlyBeforeParticipantPrepare() throws Exception {
+		TransactionImpl transaction = this.createTransaction(-1);
+		transaction.getTransactionContext().setCoordinator(false);
+		TransactionStateMachine stateMachine = this.getStateMachine(transaction);
+
+		boolean acquired = stateMachine.acquireCompletion(); // completing by the current thread
+		try {
+			this.setRollbackOnlyByOtherThread(transaction);
+			Assert.assertEquals(Boolean.TRUE, this.rollbackOnlyMarked.get());
+
+			transaction.participantPrepare();
+			Assert.fail();
+		} catch (RollbackRequiredException ex) {
+			Assert.assertEquals(Status.STATUS_MARKED_ROLLBACK, transaction.getStatus());
+		} finally {
+			stateMachine.releaseCompletion(acquired);
+		}
+	}
+
+	@Test
+	public void testSetRollbackOnlyBeforeParticipantCommit() throws Exception {
+		TransactionImpl transaction = this.createTransaction(-1);
+		transaction.getTransactionContext().setCoordinator(false);
+		TransactionStateMachine stateMachine = this.getStateMachine(transaction);
+
+		boolean acquired = stateMachine.acquireCompletion(); // completing by the current thread
+		try {
+			this.setRollbackOnlyByOtherThread(transaction);
+			Assert.assertEquals(Boolean.TRUE, this.rollbackOnlyMarked.get());
+
+			transaction.participantCommit(true);
+			Assert.fail();
+		} catch (HeuristicRollbackException ex) {
+			Assert.assertEquals(Status.STATUS_ROLLEDBACK, transaction.getStatus());
+		} finally {
+			stateMachine.releaseCompletion(acquired);
+		}
+	}
+
+	@Test
+	public void testSetRollbackOnlyAfterParticipantPrepare() throws Exception {
+		TransactionImpl transaction = this.createTransaction(TransactionEventRecorder.EVENT_PREPARE_PARTICIPANT_START);
+		transaction.getTransactionContext().setCoordinator(false);
+		transaction.enlistResource(this.createResource("resource-a", false));
+
+		Assert.assertEquals(XAResource.XA_OK, transaction.participantPrepare());
+
+		Assert.assertEquals(Boolean.FALSE, this.rollbackOnlyMarked.get()); // voted, too late to roll back
+		Assert.assertEquals(Status.STATUS_PREPARED, transaction.getStatus());
+	}
+
+	@Test
+	public void testDeferredCommitReportsOutcome() throws Exception {
+		TransactionImpl transaction = this.createTransaction(-1);
+		transaction.setCompletionExecutor(this.createExecutor());
+		transaction.registerSynchronization(this.createSynchronization());
+		transaction.enlistResource(this.createResource("resource-a", false));
+		transaction.enlistResource(this.createResource("resource-b", false));
+		transaction.fireBeforeTransactionCompletion();
+
+		transaction.commit();
+		transaction.fireAfterTransactionCompletion();
+
+		Assert.assertTrue(transaction.isCompletionDeferred());
+		Assert.assertEquals(Status.STATUS_COMMITTING, transaction.getStatus());
+		Assert.assertTrue(this.completionStatus.isEmpty()); // not reported before phase-two finishes
+		Assert.assertEquals(1, this.deferredTasks.size());
+
+		this.deferredTasks.get(0).run();
+
+		Assert.assertEquals(Status.STATUS_COMMITTED, transaction.getStatus());
+		Assert.assertEquals(1, this.completionStatus.size());
+		Assert.assertEquals(Status.STATUS_COMMITTED, this.completionStatus.get(0).intValue());
+	}
+
+	@Test
+	public void testDeferredCommitFailureReportsOutcome() throws Exception {
+		TransactionImpl transaction = this.createTransaction(-1);
+		transaction.setCompletionExecutor(this.createExecutor());
+		transaction.registerSynchronization(this.createSynchronization());
+		transaction.enlistResource(this.createResource("resource-a", false));
+		transaction.enlistResource(this.createResource("resource-b", true));
+		transaction.fireBeforeTransactionCompletion();
+
+		transaction.commit();
+		this.deferredTasks.get(0).run(); // finishes before the committing thread reports
+
+		Assert.assertTrue(this.completionStatus.isEmpty());
+		transaction.fireAfterTransactionCompletion();
+
+		Assert.assertEquals(1, this.completionStatus.size());
+		Assert.assertNotEquals(Status.STATUS_COMMITTED, this.completionStatus.get(0).intValue());
+		Assert.assertSame(transaction,
+				this.transactionRepository.getErrorTransaction(transaction.getTransactionContext().getXid()));
+	}
+
+	private TransactionStateMachine getStateMachine(TransactionImpl transaction) throws Exception {
+		Field field = TransactionImpl.class.getDeclaredField("stateMachine");
+		field.setAccessible(true);
+		return (TransactionStateMachine) field.get(transaction);
+	}
+
+	private void setRollbackOnlyByOtherThread(final TransactionImpl transaction) throws InterruptedException {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					transaction.setRollbackOnly();
+					rollbackOnlyMarked.set(true);
+				} catch (Exception ex) {
+					rollbackOnlyMarked.set(false);
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+	}
+
+	private Executor createExecutor() {
+		return new Executor() {
+			public void execute(Runnable command) {
+				deferredTasks.add(command);
+			}
+		};
+	}
+
+	private Synchronization createSynchronization() {
+		return new Synchronization() {
+			public void beforeCompletion() {
+			}
+
+			public void afterCompletion(int status) {
+				completionStatus.add(status);
+			}
+		};
+	}
+
+	private CommonResourceDescriptor createResource(String identifier, final boolean commitFailure) {
+		XAResource xaResource = (XAResource) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { XAResource.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("commit".equals(method.getName()) && commitFailure) {
+							throw new XAException(XAException.XAER_RMFAIL);
+						} else if ("prepare".equals(method.getName())) {
+							return XAResource.XA_OK;
+						} else if ("isSameRM".equals(method.getName())) {
+							return proxy == args[0];
+						} else if ("setTransactionTimeout".equals(method.getName())) {
+							return true;
+						} else if ("getTransactionTimeout".equals(method.getName())) {
+							return 0;
+						} else if ("recover".equals(method.getName())) {
+							return new Xid[0];
+						} else if ("hashCode".equals(method.getName())) {
+							return System.identityHashCode(proxy);
+						} else if ("equals".equals(method.getName())) {
+							return proxy == args[0];
+						} else if ("toString".equals(method.getName())) {
+							return "xa-resource";
+						}
+						return null;
+					}
+				});
+		CommonResourceDescriptor descriptor = new CommonResourceDescriptor();
+		descriptor.setIdentifier(identifier);
+		descriptor.setDelegate(xaResource);
+		return descriptor;
+	}
+
+	private TransactionImpl createTransaction(final int triggerEvent) {
+		TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setCoordinator(true);
+		transactionContext.setXid(this.xidFactory.createGlobalXid());
+
+		final TransactionImpl transaction = new TransactionImpl(transactionContext);
+		final TransactionEventRecorder recorder = new TransactionEventRecorder() {
+			public void recordEvent(int event, Xid xid, int value) {
+				if (event != triggerEvent) {
+					return;
+				} // end-if (event != triggerEvent)
+
+				try {
+					setRollbackOnlyByOtherThread(transaction);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			public boolean isVerbose() {
+				return false;
+			}
+
+			public void dump(Xid globalXid) {
+			}
+
+			public void dump(File file) {
+			}
+		};
+		final TransactionLogger logger = (TransactionLogger) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { TransactionLogger.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return null;
+					}
+				});
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getTransactionEventRecorder".equals(method.getName())) {
+							return recorder;
+						} else if ("getTransactionLogger".equals(method.getName())) {
+							return logger;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						} else if ("getTransactionRepository".equals(method.getName())) {
+							return transactionRepository;
+						}
+						return null;
+					}
+				});
+		transaction.setBeanFactory(beanFactory);
+		this.transactionRepository.putTransaction(transactionContext.getXid(), transaction);
+		return transaction;
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.transaction.SystemException;
+
+import org.bytesoft.bytejta.admission.TransactionAdmissionImpl;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.remote.RemoteCoordinator;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionManagerImplTest {
+
+	@Test
+	public void testCompletionExecutor() throws Exception {
+		TransactionManagerImpl transactionManager = new TransactionManagerImpl();
+		transactionManager.setCompletionThreads(2);
+		transactionManager.setCompletionQueueSize(16);
+
+		ExecutorService executor = transactionManager.getCompletionExecutor();
+		Assert.assertSame(executor, transactionManager.getCompletionExecutor());
+		Assert.assertEquals(16, ((ThreadPoolExecutor) executor).getQueue().remainingCapacity());
+
+		Thread thread = executor.submit(new Callable<Thread>() {
+			public Thread call() {
+				return Thread.currentThread();
+			}
+		}).get();
+		Assert.assertTrue(thread.isDaemon());
+		Assert.assertTrue(thread.getName().startsWith("bytejta-completion-"));
+
+		transactionManager.shutdown();
+		Assert.assertTrue(executor.isTerminated());
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+				}
+			});
+			Assert.fail();
+		} catch (RejectedExecutionException ex) {
+			// expected, deferred commits fall back to the completing thread
+		}
+	}
+
+	@Test
+	public void testSharedCompletionExecutorIsNotShutdown() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TransactionManagerImpl transactionManager = new TransactionManagerImpl();
+			transactionManager.setCompletionExecutor(executor);
+			transactionManager.shutdown();
+			Assert.assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAdmissionReleasedWhenBeginFails() throws Exception {
+		final TransactionAdmissionImpl admission = new TransactionAdmissionImpl();
+		admission.setMaxActiveTransactions(1);
+		final Object coordinator = Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { RemoteCoordinator.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return "getIdentifier".equals(method.getName()) ? "coordinator" : null;
+					}
+				});
+		final Object xidFactory = Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { XidFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						throw new IllegalStateException("xid factory is broken");
+					}
+				});
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getTransactionAdmission".equals(method.getName())) {
+							return admission;
+						} else if ("getNativeParticipant".equals(method.getName())) {
+							return coordinator;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						}
+						return null;
+					}
+				});
+
+		TransactionManagerImpl transactionManager = new TransactionManagerImpl();
+		transactionManager.setBeanFactory(beanFactory);
+		for (int i = 0; i < 2; i++) {
+			try {
+				transactionManager.begin();
+				Assert.fail();
+			} catch (IllegalStateException ex) {
+				// expected, not a rejection
+			}
+			Assert.assertEquals(0, admission.getActiveTransactions());
+			Assert.assertNull(transactionManager.getTransactionQuietly());
+		}
+		Assert.assertEquals(0, admission.getRejectedCount());
+
+		admission.setMaxActiveTransactions(0);
+		try {
+			transactionManager.begin();
+			Assert.fail();
+		} catch (SystemException ex) {
+			Assert.assertEquals(1, admission.getRejectedCount());
+		}
+	}
+
+	@Test
+	public void testInspectionDoesNotMaterialize() {
+		TransactionImpl transaction = new TransactionImpl(new TransactionContext());
+		transaction.setMaterialized(false);
+
+		TransactionManagerImpl transactionManager = new TransactionManagerImpl();
+		transactionManager.associateThread(transaction);
+		Assert.assertSame(transaction, transactionManager.getTransactionQuietly());
+		Assert.assertSame(transaction, transactionManager.desociateThread());
+
+		Assert.assertNull(transaction.getTransactionXid());
+		Assert.assertFalse(transaction.isMaterialized());
+	}
+
+}
@@ -0,0 +1,525 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.Status;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.TransactionParticipant;
+import org.bytesoft.transaction.TransactionRepository;
+import org.bytesoft.transaction.archive.TransactionArchive;
+import org.bytesoft.transaction.logging.ArchiveDeserializer;
+import org.bytesoft.transaction.logging.TransactionLogger;
+import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+import org.bytesoft.transaction.recovery.TransactionRecoveryIndexCallback;
+import org.bytesoft.transaction.remote.RemoteCoordinator;
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+import org.bytesoft.transaction.supports.serialize.XAResourceDeserializer;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionRecoveryImplTest {
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private final TransactionRepository transactionRepository = new TransactionRepositoryImpl();
+	private final TransactionCoordinator transactionCoordinator = new TransactionCoordinator();
+	private final AtomicInteger replayTimes = new AtomicInteger();
+	private final CountDownLatch failure = new CountDownLatch(1);
+	private final CountDownLatch resume = new CountDownLatch(1);
+	private final Map<Xid, Integer> outcomeMap = new HashMap<Xid, Integer>();
+	private final List<String> completedList = new ArrayList<String>();
+
+	@Test
+	public void testLazyReplayIsRetried() throws Exception {
+		TransactionXid globalXid = this.xidFactory.createGlobalXid();
+		TransactionArchive archive = new TransactionArchive();
+		archive.setXid(this.xidFactory.createBranchXid(globalXid));
+		archive.setCoordinator(true);
+
+		TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		transactionRecovery.setBeanFactory(this.createBeanFactory(archive));
+		transactionRecovery.setLazyRecovery(true);
+		transactionRecovery.setLazyRecoveryRetryMillis(10L);
+		transactionRecovery.setLazyRecoveryTimeoutMillis(100L);
+		transactionRecovery.startRecovery();
+
+		Assert.assertTrue(this.failure.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(transactionRecovery.recoverIfNecessary(globalXid)); // the tx-log is unavailable
+		Assert.assertFalse(transactionRecovery.isInitialized());
+		this.resume.countDown();
+
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (transactionRecovery.isInitialized() == false && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+
+		Assert.assertTrue(transactionRecovery.isInitialized());
+		Assert.assertEquals(2, this.replayTimes.get());
+		Assert.assertEquals(Collections.singletonList(globalXid), transactionRecovery.getRecoveredXidList());
+	}
+
+	@Test
+	public void testIndexAnswersWhileReplaying() throws Exception {
+		final TransactionXid globalXid = this.xidFactory.createGlobalXid();
+		final TransactionArchive archive = new TransactionArchive();
+		archive.setXid(this.xidFactory.createBranchXid(globalXid));
+		archive.setCoordinator(true);
+		archive.setStatus(Status.STATUS_COMMITTING);
+
+		final CountDownLatch indexed = new CountDownLatch(1);
+		final CountDownLatch replay = new CountDownLatch(1);
+		final TransactionLogger transactionLogger = (TransactionLogger) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionLogger.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("recover".equals(method.getName())) {
+							TransactionRecoveryIndexCallback callback = (TransactionRecoveryIndexCallback) args[0];
+							callback.index(Collections.singleton(globalXid));
+							indexed.countDown();
+							replay.await(5, TimeUnit.SECONDS);
+							callback.recover(archive);
+						}
+						return null;
+					}
+				});
+		final TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionLogger".equals(method.getName())) {
+							return transactionLogger;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						} else if ("getArchiveDeserializer".equals(method.getName())) {
+							return createArchiveDeserializer();
+						} else if ("getTransactionRepository".equals(method.getName())) {
+							return transactionRepository;
+						} else if ("getNativeParticipant".equals(method.getName())) {
+							return transactionCoordinator;
+						} else if ("getTransactionRecovery".equals(method.getName())) {
+							return transactionRecovery;
+						}
+						return null;
+					}
+				});
+		this.transactionCoordinator.setBeanFactory(beanFactory);
+		transactionRecovery.setBeanFactory(beanFactory);
+		transactionRecovery.setLazyRecovery(true);
+		transactionRecovery.startRecovery();
+
+		Assert.assertTrue(indexed.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse(transactionRecovery.isInitialized());
+		Assert.assertTrue(transactionRecovery.isIndexed());
+		Assert.assertEquals(Collections.singletonList(globalXid), transactionRecovery.getRecoveredXidList());
+		Xid[] xids = this.transactionCoordinator.recover(XAResource.TMSTARTRSCAN);
+		Assert.assertEquals(1, xids.length);
+		Assert.assertEquals(globalXid, xids[0]);
+
+		replay.countDown();
+		Assert.assertTrue(transactionRecovery.recoverIfNecessary(globalXid)); // waits for its archive
+		Assert.assertNotNull(this.transactionRepository.getTransaction(globalXid));
+		xids = this.transactionCoordinator.recover(XAResource.TMSTARTRSCAN);
+		Assert.assertEquals(1, xids.length);
+		Assert.assertEquals(globalXid, xids[0]);
+	}
+
+	@Test
+	public void testFailedPromotionIsRetried() {
+		final TransactionXid globalXid = this.xidFactory.createGlobalXid();
+		final AtomicInteger deserializedTimes = new AtomicInteger();
+		final ArchiveDeserializer deserializer = new ArchiveDeserializer() {
+			public byte[] serialize(TransactionXid xid, Object obj) {
+				throw new IllegalStateException("the records read from the tx-log are kept");
+			}
+
+			public Object deserialize(TransactionXid xid, byte[] array) {
+				if (deserializedTimes.incrementAndGet() == 1) {
+					throw new RuntimeException("resource is unavailable");
+				} // end-if (deserializedTimes.incrementAndGet() == 1)
+				TransactionArchive transactionArchive = new TransactionArchive();
+				transactionArchive.setXid(xid);
+				transactionArchive.setStatus(array[0]);
+				return transactionArchive;
+			}
+		};
+		final TransactionLogger transactionLogger = (TransactionLogger) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionLogger.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("recover".equals(method.getName())) {
+							TransactionArchive archive = new TransactionArchive();
+							archive.setXid(xidFactory.createBranchXid(globalXid));
+							archive.setStatus(Status.STATUS_PREPARING);
+							byte[] record = new byte[] { (byte) Status.STATUS_PREPARING };
+							((TransactionRecoveryCallback) args[0]).recover(archive, Collections.singletonList(record));
+						}
+						return null;
+					}
+				});
+		TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		transactionRecovery.setBeanFactory((TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionLogger".equals(method.getName())) {
+							return transactionLogger;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						} else if ("getArchiveDeserializer".equals(method.getName())) {
+							return deserializer;
+						} else if ("getTransactionRepository".equals(method.getName())) {
+							return transactionRepository;
+						} else if ("getNativeParticipant".equals(method.getName())) {
+							return transactionCoordinator;
+						}
+						return null;
+					}
+				}));
+		transactionRecovery.startRecovery();
+		Assert.assertEquals(Collections.singletonList(globalXid), transactionRecovery.getRecoveredXidList());
+
+		Assert.assertTrue(transactionRecovery.recoverIfNecessary(globalXid));
+		Assert.assertNull(this.transactionRepository.getTransaction(globalXid));
+		Assert.assertEquals(Collections.singletonList(globalXid), transactionRecovery.getRecoveredXidList());
+
+		Assert.assertTrue(transactionRecovery.recoverIfNecessary(globalXid));
+		Assert.assertNotNull(this.transactionRepository.getTransaction(globalXid));
+		Assert.assertTrue(transactionRecovery.getRecoveredXidList().isEmpty());
+	}
+
+	@Test
+	public void testBranchRecover() {
+		TransactionXid committed = this.createBranch("coordinator-a", Status.STATUS_PREPARED, Status.STATUS_COMMITTED);
+		TransactionXid rolledback = this.createBranch("coordinator-a", Status.STATUS_PREPARED, Status.STATUS_ROLLEDBACK);
+		this.createBranch("coordinator-a", Status.STATUS_PREPARED, Status.STATUS_UNKNOWN);
+		this.createBranch("coordinator-b", Status.STATUS_PREPARED, Status.STATUS_COMMITTED); // query not supported
+		TransactionXid committing = this.createBranch("coordinator-b", Status.STATUS_COMMITTING, Status.STATUS_UNKNOWN);
+
+		TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		transactionRecovery.setBeanFactory(this.createBranchBeanFactory());
+		transactionRecovery.setBranchRecoverBatchSize(2);
+		transactionRecovery.branchRecover();
+
+		Collections.sort(this.completedList);
+		List<String> expectedList = new ArrayList<String>();
+		expectedList.add("commit:" + committed.getGlobalTransactionIdString());
+		expectedList.add("rollback:" + rolledback.getGlobalTransactionIdString());
+		Collections.sort(expectedList);
+		Assert.assertEquals(expectedList, this.completedList); // the committing one waits until it is due
+		Assert.assertNotNull(this.transactionRepository.getErrorTransaction(committing));
+
+		TransactionImpl transaction = (TransactionImpl) this.transactionRepository.getErrorTransaction(committing);
+		transaction.setBeanFactory(this.createBranchBeanFactory());
+		transaction.recoverTransactionStrategy(0);
+		transactionRecovery.setBaseDelayMillis(0L);
+		transactionRecovery.setJitter(0D);
+		transactionRecovery.timingRecover();
+		Assert.assertEquals(Status.STATUS_COMMITTED, transaction.getTransactionStatus());
+	}
+
+	@Test
+	public void testOverlappingCycleIsSkipped() throws Exception {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger cycles = new AtomicInteger();
+		final TransactionRepository repository = (TransactionRepository) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionRepository.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getDueErrorTransactionList".equals(method.getName())) {
+							cycles.incrementAndGet();
+							entered.countDown();
+							release.await(5, TimeUnit.SECONDS);
+							return new ArrayList<Transaction>();
+						}
+						return null;
+					}
+				});
+		final TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		transactionRecovery.setBeanFactory(this.createRepositoryBeanFactory(repository));
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				transactionRecovery.timingRecover();
+			}
+		});
+		thread.start();
+		Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+		transactionRecovery.timingRecover(); // returns at once
+		release.countDown();
+		thread.join(5000L);
+		Assert.assertEquals(1, cycles.get());
+
+		transactionRecovery.timingRecover();
+		Assert.assertEquals(2, cycles.get());
+	}
+
+	@Test
+	public void testInlineDispatchRecoversEveryTransaction() {
+		final List<TransactionXid> forgottenList = Collections.synchronizedList(new ArrayList<TransactionXid>());
+		for (int i = 0; i < 5; i++) {
+			TransactionXid xid = this.xidFactory.createGlobalXid();
+			this.transactionRepository.putErrorTransaction(xid, this.createCompletedTransaction(xid, forgottenList));
+		}
+
+		final AtomicInteger depth = new AtomicInteger();
+		final AtomicInteger maxDepth = new AtomicInteger();
+		ExecutorService callerRuns = new AbstractExecutorService() {
+			public void execute(Runnable command) {
+				maxDepth.set(Math.max(maxDepth.get(), depth.incrementAndGet()));
+				try {
+					command.run();
+				} finally {
+					depth.decrementAndGet();
+				}
+			}
+
+			public void shutdown() {
+			}
+
+			public List<Runnable> shutdownNow() {
+				return new ArrayList<Runnable>();
+			}
+
+			public boolean isShutdown() {
+				return false;
+			}
+
+			public boolean isTerminated() {
+				return false;
+			}
+
+			public boolean awaitTermination(long timeout, TimeUnit unit) {
+				return true;
+			}
+		};
+
+		TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		transactionRecovery.setBeanFactory(this.createRepositoryBeanFactory(this.transactionRepository));
+		transactionRecovery.setBaseDelayMillis(0L);
+		transactionRecovery.setJitter(0D);
+		transactionRecovery.setRecoveryThreads(2);
+		transactionRecovery.setRecoveryExecutor(callerRuns);
+		transactionRecovery.timingRecover();
+
+		Assert.assertEquals(5, forgottenList.size());
+		Assert.assertEquals(1, maxDepth.get()); // a finishing task does not dispatch the next one recursively
+	}
+
+	@Test
+	public void testRecoveryExecutorShutdown() throws Exception {
+		TransactionRecoveryImpl transactionRecovery = new TransactionRecoveryImpl();
+		transactionRecovery.setBeanFactory(this.createRepositoryBeanFactory(this.transactionRepository));
+		transactionRecovery.setRecoveryThreads(2);
+		transactionRecovery.timingRecover();
+
+		ExecutorService executor = transactionRecovery.getRecoveryExecutor();
+		Assert.assertNotNull(executor);
+		transactionRecovery.shutdown();
+		Assert.assertTrue(executor.isTerminated());
+
+		ExecutorService shared = Executors.newSingleThreadExecutor();
+		try {
+			transactionRecovery.setRecoveryExecutor(shared);
+			transactionRecovery.shutdown();
+			Assert.assertFalse(shared.isShutdown());
+		} finally {
+			shared.shutdownNow();
+		}
+	}
+
+	private Transaction createCompletedTransaction(TransactionXid xid, final List<TransactionXid> forgottenList) {
+		final TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setXid(xid);
+		transactionContext.setCoordinator(true);
+		return (Transaction) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { Transaction.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionContext".equals(method.getName())) {
+							return transactionContext;
+						} else if ("getTransactionStatus".equals(method.getName())) {
+							return Status.STATUS_COMMITTED;
+						} else if ("forgetQuietly".equals(method.getName())) {
+							forgottenList.add(transactionContext.getXid());
+						}
+						return null;
+					}
+				});
+	}
+
+	private TransactionBeanFactory createRepositoryBeanFactory(final TransactionRepository repository) {
+		return (TransactionBeanFactory) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return "getTransactionRepository".equals(method.getName()) ? repository : null;
+					}
+				});
+	}
+
+	private TransactionXid createBranch(String coordinator, int transactionStatus, int outcome) {
+		TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setXid(this.xidFactory.createGlobalXid());
+		transactionContext.setPropagatedBy(coordinator);
+
+		TransactionImpl transaction = new TransactionImpl(transactionContext);
+		transaction.setTransactionStatus(transactionStatus);
+		this.transactionRepository.putTransaction(transactionContext.getXid(), transaction);
+		this.transactionRepository.putErrorTransaction(transactionContext.getXid(), transaction);
+		this.outcomeMap.put(transactionContext.getXid(), outcome);
+		return transactionContext.getXid();
+	}
+
+	private TransactionBeanFactory createBranchBeanFactory() {
+		final TransactionParticipant participant = (TransactionParticipant) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionParticipant.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						TransactionXid xid = (TransactionXid) args[0];
+						completedList.add(method.getName() + ":" + xid.getGlobalTransactionIdString());
+						return null;
+					}
+				});
+		final XAResourceDeserializer resourceDeserializer = new XAResourceDeserializer() {
+			public XAResourceDescriptor deserialize(String identifier) {
+				RemoteResourceDescriptor descriptor = new RemoteResourceDescriptor();
+				descriptor.setIdentifier(identifier);
+				descriptor.setDelegate(createRemoteCoordinator("coordinator-a".equals(identifier)));
+				return descriptor;
+			}
+		};
+		return (TransactionBeanFactory) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getNativeParticipant".equals(method.getName())) {
+							return participant;
+						} else if ("getResourceDeserializer".equals(method.getName())) {
+							return resourceDeserializer;
+						} else if ("getTransactionRepository".equals(method.getName())) {
+							return transactionRepository;
+						}
+						return null;
+					}
+				});
+	}
+
+	private RemoteCoordinator createRemoteCoordinator(final boolean supported) {
+		return (RemoteCoordinator) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { RemoteCoordinator.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionStatus".equals(method.getName()) == false) {
+							return null;
+						} else if (supported == false) {
+							throw new XAException(XAException.XAER_RMERR); // as the default method does
+						}
+
+						Xid[] xids = (Xid[]) args[0];
+						Assert.assertTrue(xids.length <= 2);
+						int[] statusArray = new int[xids.length];
+						for (int i = 0; i < xids.length; i++) {
+							statusArray[i] = outcomeMap.get(xids[i]);
+						}
+						return statusArray;
+					}
+				});
+	}
+
+	private ArchiveDeserializer createArchiveDeserializer() {
+		return new ArchiveDeserializer() {
+			public byte[] serialize(TransactionXid xid, Object obj) {
+				TransactionArchive archive = (TransactionArchive) obj;
+				return new byte[] { (byte) archive.getStatus(), (byte) (archive.isCoordinator() ? 1 : 0) };
+			}
+
+			public Object deserialize(TransactionXid xid, byte[] array) {
+				TransactionArchive transactionArchive = new TransactionArchive();
+				transactionArchive.setXid(xid);
+				transactionArchive.setStatus(array[0]);
+				transactionArchive.setCoordinator(array[1] == 1);
+				return transactionArchive;
+			}
+		};
+	}
+
+	private TransactionBeanFactory createBeanFactory(final TransactionArchive archive) {
+		final ArchiveDeserializer deserializer = new ArchiveDeserializer() {
+			public byte[] serialize(TransactionXid xid, Object obj) {
+				return new byte[] { (byte) ((TransactionArchive) obj).getStatus() };
+			}
+
+			public Object deserialize(TransactionXid xid, byte[] array) {
+				TransactionArchive transactionArchive = new TransactionArchive();
+				transactionArchive.setXid(xid);
+				transactionArchive.setStatus(array[0]);
+				return transactionArchive;
+			}
+		};
+		final TransactionLogger transactionLogger = (TransactionLogger) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionLogger.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("recover".equals(method.getName()) == false) {
+							return null;
+						} else if (replayTimes.incrementAndGet() == 1) {
+							failure.countDown();
+							resume.await(5, TimeUnit.SECONDS);
+							throw new IllegalStateException("tx-log is unavailable");
+						}
+
+						TransactionRecoveryIndexCallback callback = (TransactionRecoveryIndexCallback) args[0];
+						TransactionXid xid = (TransactionXid) archive.getXid();
+						callback.index(Collections.singleton(xidFactory.createGlobalXid(xid.getGlobalTransactionId())));
+						callback.recover(archive);
+						return null;
+					}
+				});
+		return (TransactionBeanFactory) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getTransactionLogger".equals(method.getName())) {
+							return transactionLogger;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						} else if ("getArchiveDeserializer".equals(method.getName())) {
+							return deserializer;
+						} else if ("getTransactionRepository".equals(method.getName())) {
+							return transactionRepository;
+						} else if ("getNativeParticipant".equals(method.getName())) {
+							return transactionCoordinator;
+						}
+						return null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta;
+
+import java.util.List;
+
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionRepositoryImplTest {
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+
+	@Test
+	public void testDueErrorTransactions() {
+		TransactionRepositoryImpl repository = new TransactionRepositoryImpl();
+		Transaction first = this.createTransaction(1000L);
+		Transaction second = this.createTransaction(2000L);
+		TransactionXid firstXid = first.getTransactionContext().getXid();
+		TransactionXid secondXid = second.getTransactionContext().getXid();
+
+		repository.putErrorTransaction(secondXid, second);
+		repository.putErrorTransaction(firstXid, first);
+
+		List<Transaction> due = repository.getDueErrorTransactionList(1500L);
+		Assert.assertEquals(1, due.size());
+		Assert.assertSame(first, due.get(0));
+
+		repository.scheduleErrorTransaction(firstXid, 3000L);
+		due = repository.getDueErrorTransactionList(2500L);
+		Assert.assertEquals(1, due.size());
+		Assert.assertSame(second, due.get(0));
+
+		repository.removeErrorTransaction(secondXid);
+		due = repository.getDueErrorTransactionList(5000L);
+		Assert.assertEquals(1, due.size());
+		Assert.assertSame(first, due.get(0));
+		Assert.assertEquals(1, repository.getErrorTransactionList().size());
+	}
+
+	@Test
+	public void testScheduleCompletedTransaction() {
+		TransactionRepositoryImpl repository = new TransactionRepositoryImpl();
+		Transaction transaction = this.createTransaction(1000L);
+		repository.scheduleErrorTransaction(transaction.getTransactionContext().getXid(), 1000L);
+		Assert.assertTrue(repository.getDueErrorTransactionList(5000L).isEmpty());
+	}
+
+	private Transaction createTransaction(long createdTime) {
+		TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setXid(this.xidFactory.createGlobalXid());
+		transactionContext.setCreatedTime(createdTime);
+		return new TransactionImpl(transactionContext);
+	}
+
+}
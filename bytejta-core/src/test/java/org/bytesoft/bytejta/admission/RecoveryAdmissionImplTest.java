@@ -0,0 +1,101 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.admission;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecoveryAdmissionImplTest {
+
+	private final List<String> resourceKeys = Collections.singletonList("resource-a");
+	private final List<String> noKeys = Collections.emptyList();
+
+	@Test
+	public void testBreakerOpensAndCloses() throws Exception {
+		RecoveryAdmissionImpl admission = new RecoveryAdmissionImpl();
+		admission.setFailureThreshold(2);
+		admission.setOpenMillis(50L);
+
+		for (int i = 0; i < 2; i++) {
+			Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys));
+			admission.releaseRecovery(this.resourceKeys, this.resourceKeys);
+		}
+		Assert.assertFalse(admission.admitRecovery(this.resourceKeys, this.noKeys)); // open
+
+		Thread.sleep(60L);
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys)); // half-open, the probe
+		Assert.assertFalse(admission.admitRecovery(this.resourceKeys, this.noKeys));
+		admission.releaseRecovery(this.resourceKeys, this.resourceKeys);
+		Assert.assertFalse(admission.admitRecovery(this.resourceKeys, this.noKeys)); // reopened
+
+		Thread.sleep(60L);
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys));
+		admission.releaseRecovery(this.resourceKeys, this.noKeys);
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys)); // closed
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys));
+		Assert.assertEquals(3, admission.getRejectedCount());
+	}
+
+	@Test
+	public void testOnlyFailedResourceIsSuspended() {
+		RecoveryAdmissionImpl admission = new RecoveryAdmissionImpl();
+		admission.setFailureThreshold(1);
+		List<String> bothKeys = Arrays.asList("resource-a", "resource-b");
+
+		Assert.assertTrue(admission.admitRecovery(bothKeys, this.noKeys));
+		admission.releaseRecovery(bothKeys, this.resourceKeys);
+
+		Assert.assertFalse(admission.admitRecovery(this.resourceKeys, this.noKeys));
+		Assert.assertTrue(admission.admitRecovery(Collections.singletonList("resource-b"), this.noKeys));
+		Assert.assertFalse(admission.admitRecovery(bothKeys, this.noKeys));
+	}
+
+	@Test
+	public void testTokenBucket() {
+		RecoveryAdmissionImpl admission = new RecoveryAdmissionImpl();
+		admission.setPermitsPerSecond(10);
+		admission.setBurstPermits(1);
+		admission.setThrottleTimeoutMillis(0L);
+
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys));
+		Assert.assertFalse(admission.admitRecovery(this.resourceKeys, this.noKeys)); // no token left
+		Assert.assertEquals(1, admission.getThrottledCount());
+
+		admission.setThrottleTimeoutMillis(1000L);
+		long begin = System.nanoTime();
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys)); // waits for the next token
+		Assert.assertTrue(System.nanoTime() - begin >= 50L * 1000L * 1000L);
+		Assert.assertEquals(2, admission.getAdmittedCount());
+	}
+
+	@Test
+	public void testRemoteRateIsSeparate() {
+		RecoveryAdmissionImpl admission = new RecoveryAdmissionImpl();
+		admission.setRemotePermitsPerSecond(1);
+		admission.setThrottleTimeoutMillis(0L);
+		List<String> remoteKeys = Collections.singletonList("coordinator-a");
+
+		Assert.assertTrue(admission.admitRecovery(remoteKeys, remoteKeys));
+		Assert.assertFalse(admission.admitRecovery(remoteKeys, remoteKeys));
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys)); // local rate is unlimited
+		Assert.assertTrue(admission.admitRecovery(this.resourceKeys, this.noKeys));
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.admission;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionAdmissionImplTest {
+
+	@Test
+	public void testRejectWithoutQueue() {
+		TransactionAdmissionImpl admission = new TransactionAdmissionImpl();
+		admission.setMaxActiveTransactions(2);
+
+		Assert.assertTrue(admission.admitTransaction("app"));
+		Assert.assertTrue(admission.admitTransaction("app"));
+		Assert.assertFalse(admission.admitTransaction("app"));
+		Assert.assertEquals(2, admission.getActiveTransactions());
+
+		admission.releaseTransaction();
+		Assert.assertTrue(admission.admitTransaction("app"));
+		Assert.assertEquals(3, admission.getAdmittedCount());
+		Assert.assertEquals(1, admission.getRejectedCount());
+	}
+
+	@Test
+	public void testQueuedUntilReleased() throws Exception {
+		final TransactionAdmissionImpl admission = new TransactionAdmissionImpl();
+		admission.setMaxActiveTransactions(1);
+		admission.setQueueTimeoutMillis(10000L);
+		Assert.assertTrue(admission.admitTransaction("app"));
+
+		final AtomicBoolean admitted = new AtomicBoolean();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				admitted.set(admission.admitTransaction("app"));
+			}
+		});
+		thread.start();
+		for (int i = 0; admission.getQueuedTransactions() == 0 && i < 1000; i++) {
+			Thread.sleep(5);
+		}
+		Assert.assertEquals(1, admission.getQueuedTransactions());
+
+		admission.releaseTransaction();
+		thread.join(5000L);
+		Assert.assertTrue(admitted.get());
+		Assert.assertEquals(0, admission.getQueuedTransactions());
+		Assert.assertEquals(1, admission.getActiveTransactions());
+	}
+
+	@Test
+	public void testQueueTimeoutAndLimit() {
+		TransactionAdmissionImpl admission = new TransactionAdmissionImpl();
+		admission.setMaxActiveTransactions(1);
+		admission.setQueueTimeoutMillis(20L);
+		Assert.assertTrue(admission.admitTransaction("app"));
+
+		long start = System.currentTimeMillis();
+		Assert.assertFalse(admission.admitTransaction("app")); // waited, then rejected
+		Assert.assertTrue(System.currentTimeMillis() - start >= 15L);
+
+		admission.setMaxQueuedTransactions(0);
+		start = System.currentTimeMillis();
+		Assert.assertFalse(admission.admitTransaction("app")); // the queue is full, rejected at once
+		Assert.assertTrue(System.currentTimeMillis() - start < 15L);
+		Assert.assertEquals(2, admission.getRejectedCount());
+		Assert.assertEquals(0, admission.getQueuedTransactions());
+	}
+
+	@Test
+	public void testReservedForPrioritizedApplications() {
+		TransactionAdmissionImpl admission = new TransactionAdmissionImpl();
+		admission.setMaxActiveTransactions(2);
+		admission.setReservedTransactions(1);
+		admission.setPrioritizedApplications(Collections.singleton("vip"));
+
+		Assert.assertTrue(admission.admitTransaction("app"));
+		Assert.assertFalse(admission.admitTransaction("app"));
+		Assert.assertTrue(admission.admitTransaction("vip"));
+		Assert.assertFalse(admission.admitTransaction("vip"));
+	}
+
+	@Test
+	public void testParticipantsPerRemote() {
+		TransactionAdmissionImpl admission = new TransactionAdmissionImpl();
+		admission.setMaxParticipantsPerRemote(1);
+
+		Assert.assertTrue(admission.admitParticipant("remote-a"));
+		Assert.assertFalse(admission.admitParticipant("remote-a"));
+		Assert.assertTrue(admission.admitParticipant("remote-b"));
+
+		admission.releaseParticipant("remote-a");
+		Assert.assertTrue(admission.admitParticipant("remote-a"));
+		Assert.assertEquals(1, admission.getRejectedParticipantCount());
+		Assert.assertEquals(2, admission.getParticipantSummaries().length);
+	}
+
+}
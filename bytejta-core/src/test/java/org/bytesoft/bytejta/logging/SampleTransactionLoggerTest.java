@@ -0,0 +1,252 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.logging;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.Status;
+
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.archive.TransactionArchive;
+import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.logging.ArchiveDeserializer;
+import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SampleTransactionLoggerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private final AtomicInteger serializedTimes = new AtomicInteger();
+
+	@Test
+	public void testRecordsAreKeptAsRead() throws Exception {
+		File directory = this.folder.newFolder();
+		TransactionXid globalXid = this.xidFactory.createGlobalXid();
+		TransactionArchive archive = this.createArchive(globalXid, Status.STATUS_COMMITTING);
+		XAResourceArchive resourceArchive = new XAResourceArchive();
+		resourceArchive.setXid(this.xidFactory.createBranchXid(globalXid));
+		archive.getNativeResources().add(resourceArchive);
+
+		SampleTransactionLogger transactionLogger = this.createLogger(directory);
+		transactionLogger.createTransaction(archive);
+		transactionLogger.checkpoint(transactionLogger.getMasterEndIndex());
+		resourceArchive.setCommitted(true);
+		transactionLogger.updateParticipant(resourceArchive);
+		transactionLogger.shutdown();
+
+		this.serializedTimes.set(0);
+		final List<TransactionArchive> archives = new ArrayList<TransactionArchive>();
+		final List<byte[]> records = new ArrayList<byte[]>();
+		transactionLogger = this.createLogger(directory);
+		try {
+			transactionLogger.recover(new TransactionRecoveryCallback() {
+				public void recover(TransactionArchive archive) {
+					Assert.fail("the records are provided");
+				}
+
+				public void recover(TransactionArchive archive, List<byte[]> recordList) {
+					archives.add(archive);
+					records.addAll(recordList);
+				}
+			});
+		} finally {
+			transactionLogger.shutdown();
+		}
+
+		Assert.assertEquals(0, this.serializedTimes.get());
+		Assert.assertEquals(1, archives.size());
+		Assert.assertTrue(archives.get(0).getNativeResources().get(0).isCommitted());
+		Assert.assertEquals(2, records.size()); // the checkpointed archive, then the update of its branch
+		ArchiveDeserializer deserializer = this.createDeserializer();
+		TransactionArchive replayed = (TransactionArchive) deserializer.deserialize(globalXid, records.get(0));
+		Assert.assertFalse(replayed.getNativeResources().get(0).isCommitted());
+		XAResourceArchive updated = (XAResourceArchive) deserializer.deserialize(globalXid, records.get(1));
+		Assert.assertTrue(replayed.replaceResource(updated));
+		Assert.assertTrue(replayed.getNativeResources().get(0).isCommitted());
+	}
+
+	@Test
+	public void testReplayFromCheckpoint() throws Exception {
+		File directory = this.folder.newFolder();
+		TransactionXid prepared = this.xidFactory.createGlobalXid();
+		TransactionXid deleted = this.xidFactory.createGlobalXid();
+		TransactionXid created = this.xidFactory.createGlobalXid();
+
+		SampleTransactionLogger transactionLogger = this.createLogger(directory);
+		transactionLogger.createTransaction(this.createArchive(prepared, Status.STATUS_ACTIVE));
+		transactionLogger.createTransaction(this.createArchive(deleted, Status.STATUS_ACTIVE));
+		transactionLogger.updateTransaction(this.createArchive(prepared, Status.STATUS_PREPARED));
+		transactionLogger.checkpoint(transactionLogger.getMasterEndIndex());
+
+		transactionLogger.deleteTransaction(this.createArchive(deleted, Status.STATUS_ACTIVE));
+		transactionLogger.createTransaction(this.createArchive(created, Status.STATUS_PREPARING));
+		transactionLogger.shutdown();
+
+		Assert.assertTrue(new File(directory, "bytejta-checkpoint.dat").exists());
+		Map<TransactionXid, Integer> statusMap = this.recover(this.createLogger(directory));
+		Assert.assertEquals(2, statusMap.size());
+		Assert.assertEquals(Status.STATUS_PREPARED, statusMap.get(prepared).intValue());
+		Assert.assertEquals(Status.STATUS_PREPARING, statusMap.get(created).intValue());
+	}
+
+	@Test
+	public void testCorruptedCheckpointIsIgnored() throws Exception {
+		File directory = this.folder.newFolder();
+		TransactionXid prepared = this.xidFactory.createGlobalXid();
+		TransactionXid deleted = this.xidFactory.createGlobalXid();
+
+		SampleTransactionLogger transactionLogger = this.createLogger(directory);
+		transactionLogger.createTransaction(this.createArchive(prepared, Status.STATUS_ACTIVE));
+		transactionLogger.createTransaction(this.createArchive(deleted, Status.STATUS_ACTIVE));
+		transactionLogger.checkpoint(transactionLogger.getMasterEndIndex());
+		transactionLogger.updateTransaction(this.createArchive(prepared, Status.STATUS_PREPARED));
+		transactionLogger.deleteTransaction(this.createArchive(deleted, Status.STATUS_ACTIVE));
+		transactionLogger.shutdown();
+
+		RandomAccessFile checkpoint = new RandomAccessFile(new File(directory, "bytejta-checkpoint.dat"), "rw");
+		try {
+			checkpoint.seek(checkpoint.length() / 2);
+			int value = checkpoint.read();
+			checkpoint.seek(checkpoint.length() / 2);
+			checkpoint.write(value ^ 0xFF);
+		} finally {
+			checkpoint.close();
+		}
+
+		Map<TransactionXid, Integer> statusMap = this.recover(this.createLogger(directory));
+		Assert.assertEquals(1, statusMap.size());
+		Assert.assertEquals(Status.STATUS_PREPARED, statusMap.get(prepared).intValue());
+	}
+
+	private Map<TransactionXid, Integer> recover(SampleTransactionLogger transactionLogger) {
+		final Map<TransactionXid, Integer> statusMap = new HashMap<TransactionXid, Integer>();
+		try {
+			transactionLogger.recover(new TransactionRecoveryCallback() {
+				public void recover(TransactionArchive archive) {
+					TransactionXid xid = (TransactionXid) archive.getXid();
+					statusMap.put(xidFactory.createGlobalXid(xid.getGlobalTransactionId()), archive.getStatus());
+				}
+			});
+		} finally {
+			transactionLogger.shutdown();
+		}
+		return statusMap;
+	}
+
+	private TransactionArchive createArchive(TransactionXid xid, int status) {
+		TransactionArchive archive = new TransactionArchive();
+		archive.setXid(xid);
+		archive.setStatus(status);
+		return archive;
+	}
+
+	/** [0][status][branch-qualifier, committed]* for an archive, [1][branch-qualifier, committed] for a branch. */
+	private ArchiveDeserializer createDeserializer() {
+		return new ArchiveDeserializer() {
+			public byte[] serialize(TransactionXid xid, Object obj) {
+				serializedTimes.incrementAndGet();
+				if (XAResourceArchive.class.isInstance(obj)) {
+					ByteBuffer buffer = ByteBuffer.allocate(1 + XidFactory.BRANCH_QUALIFIER_LENGTH + 1);
+					buffer.put((byte) 1);
+					this.putResource(buffer, (XAResourceArchive) obj);
+					return buffer.array();
+				} // end-if (XAResourceArchive.class.isInstance(obj))
+
+				TransactionArchive archive = (TransactionArchive) obj;
+				List<XAResourceArchive> resources = archive.getNativeResources();
+				int length = 1 + 4 + resources.size() * (XidFactory.BRANCH_QUALIFIER_LENGTH + 1);
+				ByteBuffer buffer = ByteBuffer.allocate(length);
+				buffer.put((byte) 0);
+				buffer.put(ByteUtils.intToByteArray(archive.getStatus()));
+				for (int i = 0; i < resources.size(); i++) {
+					this.putResource(buffer, resources.get(i));
+				}
+				return buffer.array();
+			}
+
+			private void putResource(ByteBuffer buffer, XAResourceArchive resourceArchive) {
+				buffer.put(resourceArchive.getXid().getBranchQualifier());
+				buffer.put((byte) (resourceArchive.isCommitted() ? 1 : 0));
+			}
+
+			public Object deserialize(TransactionXid xid, byte[] array) {
+				ByteBuffer buffer = ByteBuffer.wrap(array);
+				if (buffer.get() == 1) {
+					return this.getResource(xid, buffer);
+				} // end-if (buffer.get() == 1)
+
+				byte[] status = new byte[4];
+				buffer.get(status);
+				TransactionArchive archive = createArchive(xid, ByteUtils.byteArrayToInt(status));
+				while (buffer.hasRemaining()) {
+					archive.getNativeResources().add(this.getResource(xid, buffer));
+				}
+				return archive;
+			}
+
+			private XAResourceArchive getResource(TransactionXid xid, ByteBuffer buffer) {
+				byte[] branchQualifier = new byte[XidFactory.BRANCH_QUALIFIER_LENGTH];
+				buffer.get(branchQualifier);
+				XAResourceArchive resourceArchive = new XAResourceArchive();
+				resourceArchive.setXid(xidFactory.createBranchXid(xid, branchQualifier));
+				resourceArchive.setCommitted(buffer.get() == 1);
+				return resourceArchive;
+			}
+		};
+	}
+
+	private SampleTransactionLogger createLogger(File directory) {
+		final ArchiveDeserializer deserializer = this.createDeserializer();
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("getArchiveDeserializer".equals(method.getName())) {
+							return deserializer;
+						} else if ("getXidFactory".equals(method.getName())) {
+							return xidFactory;
+						}
+						return null;
+					}
+				});
+
+		SampleTransactionLogger transactionLogger = new SampleTransactionLogger();
+		transactionLogger.setBeanFactory(beanFactory);
+		transactionLogger.setDirectory(directory);
+		transactionLogger.setEndpoint("test");
+		return transactionLogger;
+	}
+
+}
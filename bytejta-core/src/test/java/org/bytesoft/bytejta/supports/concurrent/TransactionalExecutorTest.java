@@ -0,0 +1,166 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.concurrent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Status;
+
+import org.bytesoft.bytejta.TransactionImpl;
+import org.bytesoft.bytejta.TransactionManagerImpl;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionalExecutorTest {
+	private final TransactionManagerImpl transactionManager = new TransactionManagerImpl();
+	private ExecutorService workers;
+	private TransactionalExecutorService executor;
+
+	@Before
+	public void setUp() {
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return "getTransactionManager".equals(method.getName()) ? transactionManager : null;
+					}
+				});
+		this.workers = Executors.newSingleThreadExecutor();
+		this.executor = new TransactionalExecutorService(this.workers);
+		this.executor.setBeanFactory(beanFactory);
+	}
+
+	@After
+	public void tearDown() {
+		this.transactionManager.desociateThread();
+		this.workers.shutdownNow();
+	}
+
+	private TransactionImpl beginTransaction() {
+		TransactionImpl transaction = new TransactionImpl(new TransactionContext());
+		transaction.setMaterialized(false);
+		transaction.setTransactionStatus(Status.STATUS_ACTIVE);
+		this.transactionManager.associateThread(transaction);
+		return transaction;
+	}
+
+	@Test
+	public void testTaskRunsWithinTransaction() throws Exception {
+		TransactionImpl transaction = this.beginTransaction();
+		Future<Transaction> future = this.executor.submit(new Callable<Transaction>() {
+			public Transaction call() {
+				return transactionManager.getTransactionQuietly();
+			}
+		});
+		Assert.assertSame(transaction, future.get());
+		Assert.assertEquals(Status.STATUS_ACTIVE, transaction.getTransactionStatus());
+	}
+
+	@Test
+	public void testRefusedTaskMarksRollbackOnly() throws Exception {
+		final TransactionImpl transaction = this.beginTransaction();
+		final TransactionImpl other = new TransactionImpl(new TransactionContext());
+		this.workers.submit(new Runnable() {
+			public void run() {
+				transactionManager.associateThread(other); // leaked by a previous task
+			}
+		}).get();
+
+		this.executor.execute(new Runnable() {
+			public void run() {
+				Assert.fail("the task should be refused");
+			}
+		});
+		this.workers.submit(new Runnable() {
+			public void run() {
+				transactionManager.desociateThread();
+			}
+		}).get();
+		Assert.assertEquals(Status.STATUS_MARKED_ROLLBACK, transaction.getTransactionStatus());
+	}
+
+	@Test
+	public void testCompletionWaitsForRunningTasks() throws Exception {
+		TransactionImpl transaction = this.beginTransaction();
+		final CountDownLatch started = new CountDownLatch(1);
+		final long[] finishedAt = new long[1];
+		this.executor.execute(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				finishedAt[0] = System.nanoTime();
+			}
+		});
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		transaction.fireBeforeTransactionCompletion();
+		Assert.assertTrue(finishedAt[0] != 0);
+		Assert.assertEquals(Status.STATUS_ACTIVE, transaction.getTransactionStatus());
+
+		Future<Transaction> future = this.executor.submit(new Callable<Transaction>() {
+			public Transaction call() {
+				return transactionManager.getTransactionQuietly();
+			}
+		});
+		try {
+			future.get();
+			Assert.fail("the transaction is being completed, the task should be refused");
+		} catch (ExecutionException ex) {
+			Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void testCompletionTimeoutMarksRollbackOnly() throws Exception {
+		this.executor.setCompletionTimeoutMillis(100);
+		TransactionImpl transaction = this.beginTransaction();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch released = new CountDownLatch(1);
+		this.executor.execute(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		transaction.fireBeforeTransactionCompletion();
+		released.countDown();
+		Assert.assertEquals(Status.STATUS_MARKED_ROLLBACK, transaction.getTransactionStatus());
+	}
+
+}
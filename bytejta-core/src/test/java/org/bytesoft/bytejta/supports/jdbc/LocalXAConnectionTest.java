@@ -0,0 +1,130 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LocalXAConnectionTest {
+
+	@Test
+	public void testQueryDetectionDisabledByDefault() {
+		LocalXAConnection xacon = new LocalXAConnection(this.createConnection(false));
+		xacon.detectWriteActivity("select * from t_account");
+		Assert.assertTrue(xacon.isWriteActivityDetected());
+	}
+
+	@Test
+	public void testPlainQueries() {
+		String[] queries = new String[] { //
+				"select * from t_account where acct_id = ?", //
+				"  SELECT count(*) FROM t_account", //
+				"show tables", //
+				"explain select * from t_account" };
+		for (int i = 0; i < queries.length; i++) {
+			LocalXAConnection xacon = this.createQueryDetectingConnection();
+			xacon.detectWriteActivity(queries[i]);
+			Assert.assertFalse(queries[i], xacon.isWriteActivityDetected());
+		}
+	}
+
+	@Test
+	public void testWritingQueries() {
+		String[] queries = new String[] { //
+				"select * from t_account where acct_id = ? for update", //
+				"select * from t_account for update nowait", //
+				"select * from t_account for share", //
+				"select * from t_account for no key update", //
+				"select * from t_account FOR KEY SHARE", //
+				"select * from t_account lock in share mode", //
+				"select * from t_account with (updlock)", //
+				"select * into t_backup from t_account", //
+				"select nextval('seq_account')", //
+				"explain analyze delete from t_account", //
+				"with d as (delete from t_account returning *) select * from d", //
+				"update t_account set amount = 0", //
+				"call proc_transfer(?, ?)" };
+		for (int i = 0; i < queries.length; i++) {
+			LocalXAConnection xacon = this.createQueryDetectingConnection();
+			xacon.detectWriteActivity(queries[i]);
+			Assert.assertTrue(queries[i], xacon.isWriteActivityDetected());
+		}
+
+		LocalXAConnection xacon = this.createQueryDetectingConnection();
+		xacon.detectWriteActivity(null); // Statement, CallableStatement
+		Assert.assertTrue(xacon.isWriteActivityDetected());
+	}
+
+	@Test
+	public void testReadOnlyBranch() throws Exception {
+		LocalXAConnection writable = new LocalXAConnection(this.createConnection(false));
+		writable.detectWriteActivity("select * from t_account");
+		Assert.assertFalse(new LocalXAResource(writable).isReadOnly());
+
+		LocalXAConnection readOnly = new LocalXAConnection(this.createConnection(true));
+		readOnly.detectWriteActivity("select f_modify()");
+		Assert.assertTrue(new LocalXAResource(readOnly).isReadOnly());
+
+		LocalXAConnection detected = this.createQueryDetectingConnection();
+		detected.detectWriteActivity("select * from t_account");
+		Assert.assertTrue(new LocalXAResource(detected).isReadOnly());
+	}
+
+	@Test
+	public void testStatementReusedAfterLocalCommit() throws Exception {
+		LocalXAConnection xacon = this.createQueryDetectingConnection();
+		LogicalConnection connection = xacon.getConnection();
+		connection.prepareStatement("select * from t_account");
+		Assert.assertTrue(new LocalXAResource(xacon).isReadOnly());
+
+		xacon.commitLocalTransaction(); // the statement may be executed again, whatever it is
+		Assert.assertTrue(xacon.isWriteActivityDetected());
+		Assert.assertFalse(new LocalXAResource(xacon).isReadOnly());
+
+		connection.close();
+		xacon.rollbackLocalTransaction();
+		Assert.assertFalse(xacon.isWriteActivityDetected());
+
+		LogicalConnection unused = xacon.getConnection(); // no statement created
+		xacon.commitLocalTransaction();
+		Assert.assertFalse(xacon.isWriteActivityDetected());
+		unused.close();
+	}
+
+	private LocalXAConnection createQueryDetectingConnection() {
+		LocalXAConnection xacon = new LocalXAConnection(this.createConnection(false));
+		xacon.setQueryDetectionEnabled(true);
+		return xacon;
+	}
+
+	private Connection createConnection(final boolean readOnly) {
+		return (Connection) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("isReadOnly".equals(method.getName())) {
+							return readOnly;
+						}
+						return null;
+					}
+				});
+	}
+
+}
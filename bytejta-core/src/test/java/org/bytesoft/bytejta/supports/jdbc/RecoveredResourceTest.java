@@ -0,0 +1,215 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecoveredResourceTest {
+
+	private final TreeMap<String, String[]> table = new TreeMap<String, String[]>();
+	private final List<String> statements = new ArrayList<String>();
+	private final List<List<Object>> parameters = new ArrayList<List<Object>>();
+	private int connections;
+
+	@Test
+	public void testRecoverableInBatches() throws Exception {
+		RecoveredResource resource = this.createRecoveredResource();
+		resource.setRecoverBatchSize(2);
+
+		List<Xid> xids = new ArrayList<Xid>();
+		for (int i = 0; i < 5; i++) {
+			Xid xid = this.createXid(i);
+			xids.add(xid);
+			if (i % 2 == 0) {
+				this.insert(resource, xid);
+			} // end-if (i % 2 == 0)
+		}
+
+		List<Xid> xidList = resource.recoverable(xids);
+		Assert.assertEquals(3, xidList.size());
+		Assert.assertTrue(xidList.contains(xids.get(0)));
+		Assert.assertTrue(xidList.contains(xids.get(2)));
+		Assert.assertTrue(xidList.contains(xids.get(4)));
+
+		Assert.assertEquals(1, this.connections);
+		Assert.assertEquals(3, this.statements.size());
+		Assert.assertEquals("select xid from bytejta where xid in (?, ?)", this.statements.get(0));
+		Assert.assertEquals("select xid from bytejta where xid in (?, ?)", this.statements.get(1));
+		Assert.assertEquals("select xid from bytejta where xid in (?)", this.statements.get(2));
+		Assert.assertEquals(2, this.parameters.get(0).size());
+		Assert.assertEquals(1, this.parameters.get(2).size());
+
+		Assert.assertTrue(resource.recoverable(new ArrayList<Xid>()).isEmpty());
+		Assert.assertEquals(1, this.connections);
+	}
+
+	@Test
+	public void testRecoverPageByPage() throws Exception {
+		RecoveredResource resource = this.createRecoveredResource();
+		resource.setRecoverPageSize(2);
+		for (int i = 0; i < 5; i++) {
+			this.insert(resource, this.createXid(i));
+		}
+
+		Assert.assertEquals(2, resource.recover(XAResource.TMSTARTRSCAN).length);
+		Assert.assertEquals(2, resource.recover(XAResource.TMNOFLAGS).length);
+		Assert.assertEquals(1, resource.recover(XAResource.TMNOFLAGS).length);
+		Assert.assertEquals(0, resource.recover(XAResource.TMENDRSCAN).length);
+
+		Assert.assertEquals("select xid, gxid, bxid from bytejta order by xid", this.statements.get(0));
+		Assert.assertEquals("select xid, gxid, bxid from bytejta where xid > ? order by xid", this.statements.get(1));
+		List<String> keys = new ArrayList<String>(this.table.keySet());
+		Assert.assertEquals(keys.get(1), this.parameters.get(1).get(0));
+		Assert.assertEquals(keys.get(3), this.parameters.get(2).get(0));
+		Assert.assertEquals(keys.get(4), this.parameters.get(3).get(0));
+
+		try {
+			resource.recover(XAResource.TMNOFLAGS);
+			Assert.fail();
+		} catch (XAException ex) {
+			Assert.assertEquals(XAException.XAER_INVAL, ex.errorCode);
+		}
+
+		Xid[] xidArray = resource.recover(XAResource.TMSTARTRSCAN | XAResource.TMENDRSCAN);
+		Assert.assertEquals(2, xidArray.length);
+		Assert.assertEquals(this.table.firstEntry().getValue()[0], //
+				ByteUtils.byteArrayToString(xidArray[0].getGlobalTransactionId()));
+	}
+
+	private RecoveredResource createRecoveredResource() {
+		RecoveredResource resource = new RecoveredResource();
+		resource.setDataSource((DataSource) this.createProxy(DataSource.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getConnection".equals(method.getName())) {
+					connections++;
+					return createConnection();
+				}
+				return null;
+			}
+		}));
+		return resource;
+	}
+
+	private Connection createConnection() {
+		return (Connection) this.createProxy(Connection.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("prepareStatement".equals(method.getName())) {
+					return createStatement((String) args[0]);
+				}
+				return null;
+			}
+		});
+	}
+
+	private PreparedStatement createStatement(final String sql) {
+		final List<Object> values = new ArrayList<Object>();
+		final Map<String, Integer> options = new HashMap<String, Integer>();
+		this.statements.add(sql);
+		this.parameters.add(values);
+		return (PreparedStatement) this.createProxy(PreparedStatement.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("setString".equals(method.getName())) {
+					values.add(args[1]);
+				} else if ("setMaxRows".equals(method.getName())) {
+					options.put("maxRows", (Integer) args[0]);
+				} else if ("executeQuery".equals(method.getName())) {
+					return createResultSet(select(sql, values, options.get("maxRows")));
+				}
+				return null;
+			}
+		});
+	}
+
+	private List<String[]> select(String sql, List<Object> values, Integer maxRows) {
+		List<String[]> rows = new ArrayList<String[]>();
+		if (sql.contains(" in (")) {
+			for (int i = 0; i < values.size(); i++) {
+				if (this.table.containsKey(values.get(i))) {
+					rows.add(new String[] { (String) values.get(i) });
+				}
+			}
+			return rows;
+		}
+
+		Map<String, String[]> records = //
+				values.isEmpty() ? this.table : this.table.tailMap((String) values.get(0), false);
+		for (Map.Entry<String, String[]> entry : records.entrySet()) {
+			if (maxRows != null && rows.size() == maxRows) {
+				break;
+			}
+			String[] value = entry.getValue();
+			rows.add(new String[] { entry.getKey(), value[0], value[1] });
+		}
+		return rows;
+	}
+
+	private ResultSet createResultSet(final List<String[]> rows) {
+		return (ResultSet) this.createProxy(ResultSet.class, new InvocationHandler() {
+			private int index = -1;
+
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("next".equals(method.getName())) {
+					return ++this.index < rows.size();
+				} else if ("getString".equals(method.getName())) {
+					return rows.get(this.index)[(Integer) args[0] - 1];
+				}
+				return null;
+			}
+		});
+	}
+
+	private void insert(RecoveredResource resource, Xid xid) {
+		String identifier = resource.getIdentifier(xid.getGlobalTransactionId(), xid.getBranchQualifier());
+		String gxid = ByteUtils.byteArrayToString(xid.getGlobalTransactionId());
+		String bxid = ByteUtils.byteArrayToString(xid.getBranchQualifier());
+		this.table.put(identifier, new String[] { gxid, bxid });
+	}
+
+	private Xid createXid(int index) {
+		byte[] globalTransactionId = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH];
+		byte[] branchQualifier = new byte[XidFactory.BRANCH_QUALIFIER_LENGTH];
+		globalTransactionId[0] = (byte) index;
+		branchQualifier[0] = (byte) index;
+		branchQualifier[15] = 1;
+		return new TransactionXid(XidFactory.JTA_FORMAT_ID, globalTransactionId, branchQualifier);
+	}
+
+	private Object createProxy(Class<?> clazz, InvocationHandler handler) {
+		return Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { clazz }, handler);
+	}
+
+}
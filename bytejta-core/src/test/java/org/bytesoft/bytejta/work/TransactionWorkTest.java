@@ -0,0 +1,173 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.work;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionRecovery;
+import org.bytesoft.transaction.supports.TransactionTimer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionWorkTest {
+
+	@Test
+	public void testFirstTimingRunsImmediately() throws Exception {
+		final CountDownLatch executed = new CountDownLatch(1);
+		TransactionWork work = this.createWork(new Runnable() {
+			public void run() {
+				executed.countDown();
+			}
+		});
+		work.setTimingInterval(60000L);
+
+		Thread thread = this.start(work);
+		try {
+			Assert.assertTrue(executed.await(5, TimeUnit.SECONDS));
+		} finally {
+			work.release();
+			thread.join(5000L);
+		}
+		Assert.assertFalse(thread.isAlive());
+		Assert.assertEquals(1, work.getTasks()[0].getExecutedCount());
+		Assert.assertEquals(0, work.getTasks()[1].getExecutedCount()); // recovery waits one interval
+	}
+
+	@Test
+	public void testOverrunIsCounted() throws Exception {
+		final CountDownLatch executed = new CountDownLatch(2);
+		TransactionWork work = this.createWork(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(20L);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				executed.countDown();
+			}
+		});
+		work.setTimingInterval(5L);
+
+		Thread thread = this.start(work);
+		try {
+			Assert.assertTrue(executed.await(5, TimeUnit.SECONDS));
+		} finally {
+			work.release();
+			thread.join(5000L);
+		}
+		TimedTaskMBean timing = work.getTasks()[0];
+		Assert.assertEquals("timing-execution", timing.getName());
+		Assert.assertTrue(timing.getOverrunCount() >= 2);
+		Assert.assertTrue(timing.getMaxMillis() >= 20L);
+		Assert.assertTrue(timing.getTotalMillis() >= 40L);
+	}
+
+	@Test
+	public void testReleaseInterruptsAfterDelayOfStoping() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		TransactionWork work = this.createWork(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					Thread.sleep(60000L);
+				} catch (InterruptedException ex) {
+					interrupted.countDown();
+				}
+			}
+		});
+		work.setDelayOfStoping(50L);
+
+		Thread thread = this.start(work);
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		long start = System.currentTimeMillis();
+		work.release();
+		thread.join(5000L);
+
+		Assert.assertFalse(thread.isAlive());
+		Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+	}
+
+	@Test
+	public void testRegisterMBean() throws Exception {
+		TransactionWork work = new TransactionWork();
+		work.setDomain("org.bytesoft.bytejta.test");
+		ObjectName objectName = new ObjectName("org.bytesoft.bytejta.test:type=TransactionWork,task=timing-execution");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		work.registerMBean();
+		try {
+			Assert.assertTrue(server.isRegistered(objectName));
+			Assert.assertEquals(0L, server.getAttribute(objectName, "ExecutedCount"));
+			Assert.assertEquals(work.getTimingInterval(), server.getAttribute(objectName, "Interval"));
+		} finally {
+			work.unregisterMBean();
+		}
+		Assert.assertFalse(server.isRegistered(objectName));
+	}
+
+	private Thread start(TransactionWork work) {
+		Thread thread = new Thread(work);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private TransactionWork createWork(final Runnable timingExecution) {
+		final TransactionTimer transactionTimer = (TransactionTimer) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionTimer.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("timingExecution".equals(method.getName())) {
+							timingExecution.run();
+						}
+						return null;
+					}
+				});
+		final TransactionRecovery transactionRecovery = (TransactionRecovery) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionRecovery.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return null;
+					}
+				});
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) Proxy.newProxyInstance(
+				this.getClass().getClassLoader(), new Class<?>[] { TransactionBeanFactory.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getTransactionTimer".equals(method.getName())) {
+							return transactionTimer;
+						} else if ("getTransactionRecovery".equals(method.getName())) {
+							return transactionRecovery;
+						}
+						return null;
+					}
+				});
+
+		TransactionWork work = new TransactionWork();
+		work.setBeanFactory(beanFactory);
+		work.setRecoveryInterval(60000L);
+		return work;
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.xa;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of xid generation, single-threaded and contended. Run with main(), or through the JMH runner:
+ * <code>java -cp target/test-classes:&lt;test-classpath&gt; org.openjdk.jmh.Main XidFactoryBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XidFactoryBenchmark {
+
+	private final XidFactoryImpl xidFactory = new XidFactoryImpl();
+	private final TransactionXid globalXid = this.xidFactory.createGlobalXid();
+
+	@Benchmark
+	@Threads(1)
+	public byte[] generateUniqueKey() {
+		return this.xidFactory.generateUniqueKey();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public byte[] generateUniqueKeyContended() {
+		return this.xidFactory.generateUniqueKey();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public TransactionXid createGlobalXid() {
+		return this.xidFactory.createGlobalXid();
+	}
+
+	@Benchmark
+	@Threads(8)
+	public TransactionXid createBranchXidContended() {
+		return this.xidFactory.createBranchXid(this.globalXid);
+	}
+
+	public static void main(String... args) throws Exception {
+		new Runner(new OptionsBuilder().include(XidFactoryBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.xa;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bytesoft.common.utils.ByteUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XidFactoryImplTest {
+
+	@Test
+	public void testUniqueKeysAcrossThreads() throws Exception {
+		final XidFactoryImpl xidFactory = new XidFactoryImpl();
+		final Set<String> keys = ConcurrentHashMap.newKeySet();
+		final AtomicInteger duplicates = new AtomicInteger();
+		final int threads = 8;
+		final int keysPerThread = 50000;
+		final CountDownLatch startSignal = new CountDownLatch(1);
+
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						startSignal.await();
+					} catch (InterruptedException ex) {
+						return;
+					}
+					for (int j = 0; j < keysPerThread; j++) {
+						if (keys.add(ByteUtils.byteArrayToString(xidFactory.generateUniqueKey())) == false) {
+							duplicates.incrementAndGet();
+						}
+					}
+				}
+			});
+			thread.start();
+			workers.add(thread);
+		}
+
+		startSignal.countDown();
+		for (int i = 0; i < workers.size(); i++) {
+			workers.get(i).join();
+		}
+
+		Assert.assertEquals(0, duplicates.get());
+		Assert.assertEquals(threads * keysPerThread, keys.size());
+	}
+
+	@Test
+	public void testNodeId() {
+		XidFactoryImpl xidFactory = new XidFactoryImpl();
+		xidFactory.setNodeId("0a1b2c3d4e5f");
+		Assert.assertEquals("0a1b2c3d4e5f", xidFactory.getNodeId());
+
+		byte[] key = xidFactory.generateUniqueKey();
+		Assert.assertEquals(16, key.length);
+		byte[] nodeId = new byte[6];
+		System.arraycopy(key, 5, nodeId, 0, nodeId.length);
+		Assert.assertEquals("0a1b2c3d4e5f", ByteUtils.byteArrayToString(nodeId));
+
+		try {
+			xidFactory.setNodeId("0a1b");
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSlotOfCollectedThreadIsReused() throws Exception {
+		int slot = XidFactoryImpl.acquireSlot(new Thread()); // the thread is unreachable at once
+		Set<Integer> liveSlots = new HashSet<Integer>();
+		List<Thread> liveThreads = new ArrayList<Thread>();
+
+		boolean reused = false;
+		for (int i = 0; reused == false && i < 100; i++) {
+			System.gc();
+			Thread.sleep(10);
+
+			Thread thread = new Thread();
+			liveThreads.add(thread);
+			int acquired = XidFactoryImpl.acquireSlot(thread);
+			Assert.assertTrue(liveSlots.add(acquired)); // never shared by threads still alive
+			reused = acquired == slot;
+		}
+		Assert.assertTrue(reused);
+	}
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.archive;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+
+import org.bytesoft.bytejta.supports.resource.CommonResourceDescriptor;
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XAResourceArchiveTest {
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+	private int failures;
+
+	@Test
+	public void testFailedOnlyIfRejectedByResource() throws Exception {
+		XAResourceArchive archive = this.createArchive();
+		this.failures = 1;
+		try {
+			archive.commit(archive.getXid(), false);
+			Assert.fail();
+		} catch (XAException ex) {
+			Assert.assertEquals(XAException.XAER_RMFAIL, ex.errorCode);
+		}
+		Assert.assertTrue(archive.isFailed());
+
+		archive.commit(archive.getXid(), false);
+		Assert.assertFalse(archive.isFailed()); // cleared by the next attempt
+
+		archive.setCommitted(true);
+		try {
+			archive.rollback(archive.getXid());
+			Assert.fail();
+		} catch (XAException ex) {
+			Assert.assertEquals(XAException.XA_HEURCOM, ex.errorCode);
+		}
+		Assert.assertFalse(archive.isFailed()); // decided by the archive, the resource is fine
+	}
+
+	private XAResourceArchive createArchive() {
+		XAResource xaResource = (XAResource) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { XAResource.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String methodName = method.getName();
+						if ("commit".equals(methodName) == false && "rollback".equals(methodName) == false) {
+							return null;
+						} else if (failures-- > 0) {
+							throw new XAException(XAException.XAER_RMFAIL);
+						}
+						return null;
+					}
+				});
+		CommonResourceDescriptor descriptor = new CommonResourceDescriptor();
+		descriptor.setIdentifier("resource-a");
+		descriptor.setDelegate(xaResource);
+
+		XAResourceArchive archive = new XAResourceArchive();
+		archive.setXid(this.xidFactory.createBranchXid(this.xidFactory.createGlobalXid()));
+		archive.setDescriptor(descriptor);
+		return archive;
+	}
+
+}
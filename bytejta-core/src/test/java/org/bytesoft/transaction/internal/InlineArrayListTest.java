@@ -0,0 +1,74 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InlineArrayListTest {
+
+	@Test
+	public void testGrowAndRemove() {
+		InlineArrayList<Integer> list = new InlineArrayList<Integer>();
+		Assert.assertTrue(list.isEmpty());
+		for (int i = 0; i < 10; i++) {
+			list.add(i);
+		}
+		list.add(0, -1);
+		Assert.assertEquals(11, list.size());
+		Assert.assertEquals(Integer.valueOf(-1), list.get(0));
+		Assert.assertEquals(Integer.valueOf(9), list.get(10));
+
+		Iterator<Integer> itr = list.iterator();
+		while (itr.hasNext()) {
+			if (itr.next() % 2 == 0) {
+				itr.remove();
+			}
+		}
+		Assert.assertEquals(Arrays.asList(-1, 1, 3, 5, 7, 9), list);
+		Assert.assertEquals(Integer.valueOf(3), list.set(2, 30));
+		Assert.assertEquals(Integer.valueOf(-1), list.remove(0));
+		Assert.assertEquals(Arrays.asList(1, 30, 5, 7, 9), list);
+
+		try {
+			list.get(5);
+			Assert.fail();
+		} catch (IndexOutOfBoundsException ex) {
+			// expected
+		}
+
+		list.clear();
+		Assert.assertTrue(list.isEmpty());
+	}
+
+	@Test
+	public void testConcat() {
+		InlineArrayList<String> first = new InlineArrayList<String>();
+		InlineArrayList<String> second = new InlineArrayList<String>();
+		first.add("a");
+		second.add("b");
+
+		List<String> view = InlineArrayList.concat(first, second);
+		Assert.assertEquals(Arrays.asList("a", "b"), view);
+		second.add("c"); // changes are visible through the view
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), view);
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InlineArrayMapTest {
+
+	@Test
+	public void testIteratorRemove() {
+		InlineArrayMap<String, Integer> map = new InlineArrayMap<String, Integer>();
+		for (int i = 0; i < 5; i++) {
+			map.put("key-" + i, i);
+		}
+
+		Set<String> visited = new HashSet<String>();
+		Iterator<Map.Entry<String, Integer>> itr = map.entrySet().iterator();
+		while (itr.hasNext()) {
+			Map.Entry<String, Integer> entry = itr.next();
+			Assert.assertTrue(visited.add(entry.getKey())); // the swapped-in entry is visited exactly once
+			if (entry.getValue() % 2 == 0) {
+				itr.remove();
+			}
+		}
+
+		Assert.assertEquals(5, visited.size());
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals(Integer.valueOf(1), map.get("key-1"));
+		Assert.assertEquals(Integer.valueOf(3), map.get("key-3"));
+		Assert.assertFalse(map.containsKey("key-0"));
+		Assert.assertFalse(map.containsKey("key-4"));
+
+		try {
+			map.entrySet().iterator().remove();
+			Assert.fail();
+		} catch (IllegalStateException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testIndexThreshold() {
+		InlineArrayMap<String, Integer> map = new InlineArrayMap<String, Integer>();
+		Map<String, Integer> expected = new HashMap<String, Integer>();
+		for (int i = 0; i < InlineArrayMap.INDEX_THRESHOLD * 2; i++) {
+			map.put("key-" + i, i);
+			expected.put("key-" + i, i);
+			Assert.assertEquals(expected, map);
+		}
+
+		Assert.assertEquals(Integer.valueOf(3), map.put("key-3", 30)); // replaced through the index
+		expected.put("key-3", 30);
+		Assert.assertEquals(Integer.valueOf(0), map.remove("key-0")); // the last entry is moved into slot zero
+		expected.remove("key-0");
+		Assert.assertEquals(expected, map);
+		for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+
+		Iterator<Map.Entry<String, Integer>> itr = map.entrySet().iterator();
+		while (itr.hasNext()) {
+			if (itr.next().getValue() > InlineArrayMap.INDEX_THRESHOLD) {
+				itr.remove();
+			}
+		}
+		Assert.assertEquals(InlineArrayMap.INDEX_THRESHOLD - 1, map.size());
+		for (int i = 1; i <= InlineArrayMap.INDEX_THRESHOLD; i++) {
+			Assert.assertEquals(i != 3, map.containsKey("key-" + i));
+		}
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get("key-1"));
+		map.put(null, -1);
+		Assert.assertEquals(Integer.valueOf(-1), map.get(null));
+	}
+
+	@Test
+	public void testEntrySetValue() {
+		InlineArrayMap<String, Integer> map = new InlineArrayMap<String, Integer>();
+		map.put("key-a", 1);
+		map.put("key-b", 2);
+
+		for (Map.Entry<String, Integer> entry : map.entrySet()) {
+			Assert.assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+		}
+
+		Assert.assertEquals(Integer.valueOf(10), map.get("key-a"));
+		Assert.assertEquals(Integer.valueOf(20), map.get("key-b"));
+	}
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionListenerDispatcherTest {
+
+	private final XidFactory xidFactory = new XidFactoryImpl();
+
+	@Test
+	public void testOrderPerTransaction() throws Exception {
+		TransactionListenerDispatcher dispatcher = new TransactionListenerDispatcher();
+		dispatcher.setStripes(4);
+		dispatcher.setOfferTimeoutMillis(5000L);
+
+		int transactions = 8;
+		int notifications = 500;
+		List<List<Integer>> delivered = new ArrayList<List<Integer>>();
+		for (int i = 0; i < transactions; i++) {
+			final List<Integer> values = new ArrayList<Integer>(); // only touched by the worker of its stripe
+			delivered.add(values);
+			TransactionXid xid = this.xidFactory.createGlobalXid();
+			for (int j = 0; j < notifications; j++) {
+				final int value = j;
+				Assert.assertTrue(dispatcher.dispatch(xid, new Runnable() {
+					public void run() {
+						values.add(value);
+					}
+				}));
+			}
+		}
+
+		this.awaitDelivered(dispatcher, transactions * notifications);
+		dispatcher.release();
+		for (int i = 0; i < transactions; i++) {
+			List<Integer> values = delivered.get(i);
+			Assert.assertEquals(notifications, values.size());
+			for (int j = 0; j < notifications; j++) {
+				Assert.assertEquals(j, values.get(j).intValue());
+			}
+		}
+		Assert.assertEquals(0, dispatcher.getDroppedCount());
+	}
+
+	@Test
+	public void testBackpressureAndDrop() throws Exception {
+		TransactionListenerDispatcher dispatcher = new TransactionListenerDispatcher();
+		dispatcher.setCapacity(1);
+		dispatcher.setOfferTimeoutMillis(30L);
+		TransactionXid xid = this.xidFactory.createGlobalXid();
+
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		Assert.assertTrue(dispatcher.dispatch(xid, new Runnable() {
+			public void run() {
+				running.countDown();
+				try {
+					proceed.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}));
+		Assert.assertTrue(running.await(5, TimeUnit.SECONDS)); // the worker is blocked, the queue is empty
+		Assert.assertTrue(dispatcher.dispatch(xid, this.createNoop()));
+
+		long start = System.currentTimeMillis();
+		Assert.assertFalse(dispatcher.dispatch(xid, this.createNoop())); // the caller waits, then it is dropped
+		Assert.assertTrue(System.currentTimeMillis() - start >= 25L);
+		Assert.assertEquals(1, dispatcher.getDroppedCount());
+		Assert.assertEquals(1, dispatcher.getPendingCount());
+
+		proceed.countDown();
+		this.awaitDelivered(dispatcher, 2);
+		Assert.assertEquals(2, dispatcher.getDispatchedCount());
+	}
+
+	@Test
+	public void testReleaseDeliversQueued() throws Exception {
+		TransactionListenerDispatcher dispatcher = new TransactionListenerDispatcher();
+		TransactionXid xid = this.xidFactory.createGlobalXid();
+
+		final CountDownLatch proceed = new CountDownLatch(1);
+		dispatcher.dispatch(xid, new Runnable() {
+			public void run() {
+				try {
+					proceed.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		dispatcher.dispatch(xid, this.createNoop());
+
+		dispatcher.release();
+		Assert.assertFalse(dispatcher.dispatch(xid, this.createNoop()));
+		Assert.assertEquals(1, dispatcher.getDroppedCount());
+
+		proceed.countDown();
+		this.awaitDelivered(dispatcher, 2);
+	}
+
+	private Runnable createNoop() {
+		return new Runnable() {
+			public void run() {
+			}
+		};
+	}
+
+	private void awaitDelivered(TransactionListenerDispatcher dispatcher, long expected) throws InterruptedException {
+		for (int i = 0; dispatcher.getDeliveredCount() < expected && i < 500; i++) {
+			Thread.sleep(10L);
+		}
+		Assert.assertEquals(expected, dispatcher.getDeliveredCount());
+	}
+
+}
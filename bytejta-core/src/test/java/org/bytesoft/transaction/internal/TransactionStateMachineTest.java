@@ -0,0 +1,167 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.internal;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.transaction.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionStateMachineTest {
+
+	@Test
+	public void testTransitionTable() {
+		int[][] legal = new int[][] { //
+				{ Status.STATUS_ACTIVE, Status.STATUS_MARKED_ROLLBACK }, //
+				{ Status.STATUS_ACTIVE, Status.STATUS_PREPARING }, //
+				{ Status.STATUS_ACTIVE, Status.STATUS_COMMITTED }, //
+				{ Status.STATUS_ACTIVE, Status.STATUS_ROLLING_BACK }, //
+				{ Status.STATUS_MARKED_ROLLBACK, Status.STATUS_ROLLING_BACK }, //
+				{ Status.STATUS_PREPARING, Status.STATUS_PREPARED }, //
+				{ Status.STATUS_PREPARING, Status.STATUS_COMMITTING }, //
+				{ Status.STATUS_PREPARING, Status.STATUS_ROLLING_BACK }, //
+				{ Status.STATUS_PREPARED, Status.STATUS_COMMITTING }, //
+				{ Status.STATUS_PREPARED, Status.STATUS_ROLLING_BACK }, //
+				{ Status.STATUS_COMMITTING, Status.STATUS_COMMITTED }, //
+				{ Status.STATUS_COMMITTING, Status.STATUS_ROLLING_BACK }, //
+				{ Status.STATUS_ROLLING_BACK, Status.STATUS_ROLLEDBACK }, //
+				{ Status.STATUS_UNKNOWN, Status.STATUS_COMMITTING }, //
+				{ Status.STATUS_COMMITTED, Status.STATUS_COMMITTED } };
+		for (int i = 0; i < legal.length; i++) {
+			Assert.assertTrue(legal[i][0] + " -> " + legal[i][1],
+					TransactionStateMachine.isTransitionLegal(legal[i][0], legal[i][1]));
+		}
+
+		int[][] illegal = new int[][] { //
+				{ Status.STATUS_MARKED_ROLLBACK, Status.STATUS_PREPARING }, //
+				{ Status.STATUS_MARKED_ROLLBACK, Status.STATUS_COMMITTED }, //
+				{ Status.STATUS_PREPARED, Status.STATUS_PREPARING }, //
+				{ Status.STATUS_COMMITTING, Status.STATUS_PREPARED }, //
+				{ Status.STATUS_ROLLING_BACK, Status.STATUS_COMMITTED }, //
+				{ Status.STATUS_COMMITTED, Status.STATUS_ROLLING_BACK }, //
+				{ Status.STATUS_ROLLEDBACK, Status.STATUS_ACTIVE }, //
+				{ Status.STATUS_NO_TRANSACTION, Status.STATUS_NO_TRANSACTION }, //
+				{ Status.STATUS_NO_TRANSACTION, Status.STATUS_ACTIVE } };
+		for (int i = 0; i < illegal.length; i++) {
+			Assert.assertFalse(illegal[i][0] + " -> " + illegal[i][1],
+					TransactionStateMachine.isTransitionLegal(illegal[i][0], illegal[i][1]));
+		}
+	}
+
+	@Test
+	public void testTransferTo() {
+		TransactionStateMachine stateMachine = new TransactionStateMachine();
+		Assert.assertEquals(Status.STATUS_ACTIVE, stateMachine.transferTo(Status.STATUS_PREPARING));
+		Assert.assertEquals(Status.STATUS_PREPARING, stateMachine.transferTo(Status.STATUS_PREPARING));
+		Assert.assertFalse(stateMachine.compareAndSet(Status.STATUS_ACTIVE, Status.STATUS_MARKED_ROLLBACK));
+		Assert.assertEquals(Status.STATUS_PREPARING, stateMachine.transferTo(Status.STATUS_COMMITTING));
+		try {
+			stateMachine.transferTo(Status.STATUS_PREPARED);
+			Assert.fail();
+		} catch (IllegalStateException ex) {
+			Assert.assertEquals(Status.STATUS_COMMITTING, stateMachine.getStatus());
+		}
+	}
+
+	@Test
+	public void testCompletionOwnership() throws Exception {
+		final TransactionStateMachine stateMachine = new TransactionStateMachine();
+		Assert.assertTrue(stateMachine.acquireCompletion());
+		Assert.assertFalse(stateMachine.acquireCompletion()); // reentrant
+
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Assert.assertTrue(stateMachine.isCompletingByOtherThread());
+					stateMachine.acquireCompletion();
+					Assert.fail();
+				} catch (IllegalStateException ex) {
+					// expected
+				} catch (Throwable ex) {
+					error.set(ex);
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		Assert.assertNull(error.get());
+
+		stateMachine.releaseCompletion(false);
+		Assert.assertFalse(stateMachine.isCompletingByOtherThread());
+		stateMachine.releaseCompletion(true);
+
+		thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Assert.assertTrue(stateMachine.acquireCompletion());
+					stateMachine.releaseCompletion(true);
+				} catch (Throwable ex) {
+					error.set(ex);
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		Assert.assertNull(error.get());
+	}
+
+	@Test
+	public void testMarkRollbackOnly() {
+		TransactionStateMachine stateMachine = new TransactionStateMachine();
+		Assert.assertTrue(stateMachine.markRollbackOnly());
+		Assert.assertTrue(stateMachine.markRollbackOnly());
+		Assert.assertEquals(Status.STATUS_MARKED_ROLLBACK, stateMachine.getStatus());
+		Assert.assertFalse(stateMachine.decideCommit());
+
+		stateMachine = new TransactionStateMachine();
+		Assert.assertTrue(stateMachine.decideCommit());
+		Assert.assertFalse(stateMachine.markRollbackOnly());
+		Assert.assertEquals(Status.STATUS_ACTIVE, stateMachine.getStatus());
+
+		stateMachine = new TransactionStateMachine();
+		stateMachine.transferTo(Status.STATUS_PREPARING);
+		stateMachine.transferTo(Status.STATUS_PREPARED);
+		Assert.assertFalse(stateMachine.markRollbackOnly());
+		Assert.assertFalse(stateMachine.isRollbackRequested()); // the refused request is undone
+		Assert.assertTrue(stateMachine.decideCommit());
+	}
+
+	@Test
+	public void testMarkRollbackOnlyDuringCompletion() throws Exception {
+		final TransactionStateMachine stateMachine = new TransactionStateMachine();
+		Assert.assertTrue(stateMachine.acquireCompletion());
+		stateMachine.transferTo(Status.STATUS_PREPARING);
+
+		final AtomicReference<Boolean> marked = new AtomicReference<Boolean>();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				marked.set(stateMachine.markRollbackOnly());
+			}
+		});
+		thread.start();
+		thread.join();
+
+		Assert.assertEquals(Boolean.TRUE, marked.get());
+		Assert.assertEquals(Status.STATUS_PREPARING, stateMachine.getStatus()); // left to the completion owner
+		Assert.assertTrue(stateMachine.isRollbackRequested());
+		Assert.assertFalse(stateMachine.decideCommit());
+		stateMachine.releaseCompletion(true);
+	}
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.work;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkListener;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SimpleWorkManagerTest {
+
+	@Test
+	public void testScheduleWorkDoesNotWaitForStart() throws Exception {
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final CountDownLatch completed = new CountDownLatch(1);
+		final List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+		Work work = new Work() {
+			public void run() {
+				try {
+					proceed.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			public void release() {
+			}
+		};
+		WorkListener listener = new WorkListener() {
+			public void workAccepted(WorkEvent event) {
+				events.add(event.getType());
+			}
+
+			public void workRejected(WorkEvent event) {
+				events.add(event.getType());
+			}
+
+			public void workStarted(WorkEvent event) {
+				events.add(event.getType());
+			}
+
+			public void workCompleted(WorkEvent event) {
+				events.add(event.getType());
+				completed.countDown();
+			}
+		};
+
+		SimpleWorkManager workManager = new SimpleWorkManager();
+		workManager.scheduleWork(work, 0, null, listener); // returns while the work is blocked
+		Assert.assertEquals(1, completed.getCount());
+		Assert.assertEquals(WorkEvent.WORK_ACCEPTED, events.get(0).intValue());
+
+		proceed.countDown();
+		Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(3, events.size());
+		Assert.assertEquals(WorkEvent.WORK_STARTED, events.get(1).intValue());
+		Assert.assertEquals(WorkEvent.WORK_COMPLETED, events.get(2).intValue());
+	}
+
+}
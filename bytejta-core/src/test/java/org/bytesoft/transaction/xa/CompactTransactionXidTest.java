@@ -0,0 +1,98 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.transaction.xa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bytesoft.common.utils.SerializeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactTransactionXidTest {
+	static final int SERIALIZER_DEFAULT = 0x0;
+	static final int SERIALIZER_KRYO = 0x1;
+
+	private final byte[] global = this.createBytes(1);
+	private final byte[] branch = this.createBytes(17);
+
+	@Test
+	public void testEqualsAcrossTypes() {
+		CompactTransactionXid compact = new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, this.global, this.branch);
+		TransactionXid plain = new TransactionXid(XidFactory.JTA_FORMAT_ID, this.global.clone(), this.branch.clone());
+
+		Assert.assertEquals(compact, plain);
+		Assert.assertEquals(plain, compact);
+		Assert.assertEquals(plain.hashCode(), compact.hashCode());
+
+		Map<TransactionXid, String> map = new HashMap<TransactionXid, String>();
+		map.put(plain, "plain");
+		Assert.assertEquals("plain", map.get(compact));
+		map.put(compact, "compact");
+		Assert.assertEquals(1, map.size());
+
+		CompactTransactionXid globalXid = new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, this.global);
+		TransactionXid plainGlobalXid = new TransactionXid(XidFactory.JTA_FORMAT_ID, this.global.clone());
+		Assert.assertEquals(plainGlobalXid, globalXid);
+		Assert.assertEquals(globalXid, plainGlobalXid);
+		Assert.assertEquals(plainGlobalXid.hashCode(), globalXid.hashCode());
+		Assert.assertNotEquals(compact, globalXid);
+		Assert.assertNotEquals(plainGlobalXid, compact);
+
+		TransactionXid otherFormat = new TransactionXid(XidFactory.TCC_FORMAT_ID, this.global.clone());
+		Assert.assertNotEquals(globalXid, otherFormat);
+		Assert.assertNotEquals(otherFormat, globalXid);
+	}
+
+	@Test
+	public void testCachedArrays() {
+		byte[] source = this.global.clone();
+		CompactTransactionXid compact = new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, source, this.branch);
+		source[0] = -1; // the caller's array is copied
+
+		Assert.assertSame(compact.getGlobalTransactionId(), compact.getGlobalTransactionId());
+		Assert.assertArrayEquals(this.global, compact.getGlobalTransactionId());
+		Assert.assertArrayEquals(this.branch, compact.getBranchQualifier());
+		Assert.assertEquals(0, new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, this.global).getBranchQualifier().length);
+
+		try {
+			new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, new byte[8]);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSerializedAsTransactionXid() throws Exception {
+		CompactTransactionXid compact = new CompactTransactionXid(XidFactory.JTA_FORMAT_ID, this.global, this.branch);
+		int[] serializers = new int[] { SERIALIZER_DEFAULT, SERIALIZER_KRYO };
+		for (int i = 0; i < serializers.length; i++) {
+			Object value = SerializeUtils.deserializeObject(SerializeUtils.serializeObject(compact, serializers[i]));
+			Assert.assertEquals("serializer: " + serializers[i], TransactionXid.class, value.getClass());
+			Assert.assertEquals("serializer: " + serializers[i], compact, value);
+		}
+	}
+
+	private byte[] createBytes(int start) {
+		byte[] bytes = new byte[CompactTransactionXid.ID_LENGTH];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (start + i);
+		}
+		return bytes;
+	}
+
+}
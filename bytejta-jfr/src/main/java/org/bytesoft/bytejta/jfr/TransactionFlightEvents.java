@@ -0,0 +1,166 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.jfr;
+
+import javax.transaction.xa.Xid;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightProvider;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+
+/**
+ * The jdk.jfr based {@link TransactionFlightProvider}, it is looked up by {@link TransactionFlightRecorder} when this
+ * module is on the classpath and jdk.jfr is available.
+ */
+public final class TransactionFlightEvents implements TransactionFlightProvider {
+	static final String CATEGORY = "ByteJTA";
+
+	private final EventType[] eventTypes;
+
+	public TransactionFlightEvents() {
+		this.eventTypes = new EventType[] { EventType.getEventType(BeginEvent.class), //
+				EventType.getEventType(EnlistEvent.class), //
+				EventType.getEventType(PrepareEvent.class), //
+				EventType.getEventType(DecisionEvent.class), //
+				EventType.getEventType(CommitEvent.class), //
+				EventType.getEventType(RollbackEvent.class), //
+				EventType.getEventType(RecoveryEvent.class), //
+				EventType.getEventType(CompactionEvent.class) };
+	}
+
+	public Object begin(int type) {
+		if (type < 0 || type >= this.eventTypes.length || this.eventTypes[type].isEnabled() == false) {
+			return null;
+		}
+
+		TransactionEvent event = null;
+		switch (type) {
+		case TransactionFlightRecorder.EVENT_BEGIN:
+			event = new BeginEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_ENLIST:
+			event = new EnlistEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_PREPARE:
+			event = new PrepareEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_DECISION:
+			event = new DecisionEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_COMMIT:
+			event = new CommitEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_ROLLBACK:
+			event = new RollbackEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_RECOVERY:
+			event = new RecoveryEvent();
+			break;
+		case TransactionFlightRecorder.EVENT_COMPACTION:
+			event = new CompactionEvent();
+			break;
+		default:
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	public void commit(Object object, Xid xid, Object resource) {
+		TransactionEvent event = (TransactionEvent) object;
+		event.end();
+		if (event.shouldCommit() == false) {
+			return;
+		}
+
+		if (xid != null) {
+			event.globalTransactionId = ByteUtils.byteArrayToString(xid.getGlobalTransactionId());
+			byte[] branchQualifier = xid.getBranchQualifier();
+			event.branchQualifier = branchQualifier == null || branchQualifier.length == 0 ? null
+					: ByteUtils.byteArrayToString(branchQualifier);
+		} // end-if (xid != null)
+
+		if (XAResourceDescriptor.class.isInstance(resource)) {
+			XAResourceDescriptor descriptor = (XAResourceDescriptor) resource;
+			event.resourceType = descriptor.getClass().getSimpleName();
+			event.resource = descriptor.getIdentifier();
+		} else if (resource != null) {
+			event.resourceType = resource.getClass().getSimpleName();
+		}
+
+		event.commit();
+	}
+
+	@Category(CATEGORY)
+	static abstract class TransactionEvent extends Event {
+		@Label("Global Transaction Id")
+		String globalTransactionId;
+		@Label("Branch Qualifier")
+		String branchQualifier;
+		@Label("Resource Type")
+		String resourceType;
+		@Label("Resource")
+		String resource;
+	}
+
+	@Name("org.bytesoft.bytejta.Begin")
+	@Label("Transaction Begin")
+	static final class BeginEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Enlist")
+	@Label("Resource Enlist")
+	static final class EnlistEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Prepare")
+	@Label("Branch Prepare")
+	static final class PrepareEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Decision")
+	@Label("Commit Decision Logging")
+	static final class DecisionEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Commit")
+	@Label("Branch Commit")
+	static final class CommitEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Rollback")
+	@Label("Branch Rollback")
+	static final class RollbackEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Recovery")
+	@Label("Transaction Recovery")
+	static final class RecoveryEvent extends TransactionEvent {
+	}
+
+	@Name("org.bytesoft.bytejta.Compaction")
+	@Label("Transaction Log Compaction")
+	static final class CompactionEvent extends TransactionEvent {
+	}
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.jfr;
+
+import java.io.File;
+import java.util.List;
+
+import org.bytesoft.bytejta.xa.XidFactoryImpl;
+import org.bytesoft.transaction.supports.jfr.TransactionFlightRecorder;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TransactionFlightEventsTest {
+
+	@Test
+	public void testEventsAreRecorded() throws Exception {
+		Assert.assertNull(TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_PREPARE)); // not enabled
+
+		TransactionXid xid = new XidFactoryImpl().createGlobalXid();
+		File file = File.createTempFile("bytejta-", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				recording.enable("org.bytesoft.bytejta.Prepare");
+				recording.start();
+
+				Object event = TransactionFlightRecorder.begin(TransactionFlightRecorder.EVENT_PREPARE);
+				Assert.assertNotNull(event);
+				TransactionFlightRecorder.commit(event, xid, "resource");
+
+				recording.stop();
+				recording.dump(file.toPath());
+			} finally {
+				recording.close();
+			}
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+			Assert.assertEquals(1, events.size());
+			Assert.assertEquals("org.bytesoft.bytejta.Prepare", events.get(0).getEventType().getName());
+			Assert.assertEquals(xid.getGlobalTransactionIdString(), events.get(0).getString("globalTransactionId"));
+			Assert.assertEquals("String", events.get(0).getString("resourceType"));
+		} finally {
+			file.delete();
+		}
+	}
+
+}
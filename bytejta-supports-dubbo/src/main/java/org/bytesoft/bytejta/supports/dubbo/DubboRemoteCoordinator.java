@@ -67,6 +67,8 @@ public class DubboRemoteCoordinator implements InvocationHandler {
 				} else if ("getRemoteNode".equals(methodName) && RemoteNode.class.equals(returnType)) {
 					String identifier = this.getParticipantsIdentifier(proxy, method, args);
 					return identifier == null ? null : CommonUtils.getRemoteNode(identifier);
+				} else if ("getTransactionStatus".equals(methodName)) {
+					return this.invokeForGeneric(proxy, method, args);
 				} else {
 					throw new XAException(XAException.XAER_RMFAIL);
 				}
@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
@@ -60,13 +61,18 @@ import com.alibaba.dubbo.config.ApplicationConfig;
 import com.alibaba.dubbo.config.ProtocolConfig;
 import com.alibaba.dubbo.config.ReferenceConfig;
 import com.alibaba.dubbo.config.RegistryConfig;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 import com.caucho.hessian.io.HessianInput;
 import com.caucho.hessian.io.HessianOutput;
 
@@ -152,6 +158,16 @@ public class TransactionServiceFilter implements Filter {
 		Xid xid = (Xid) arguments[0];
 
 		TransactionXid globalXid = xidFactory.createGlobalXid(xid.getGlobalTransactionId());
+		if (beanFactory.getTransactionRecovery().recoverIfNecessary(globalXid) == false) {
+			InvocationResult wrapped = new InvocationResult();
+			wrapped.setError(new XAException(XAException.XAER_RMFAIL));
+			wrapped.setVariable(RemoteCoordinator.class.getName(), transactionCoordinator.getIdentifier());
+
+			result.setException(null);
+			result.setValue(wrapped);
+			return result;
+		} // end-if (beanFactory.getTransactionRecovery().recoverIfNecessary(globalXid) == false)
+
 		Transaction transaction = null;
 		try {
 			transaction = transactionRepository.getTransaction(globalXid);
@@ -497,7 +513,7 @@ public class TransactionServiceFilter implements Filter {
 		Throwable serverError = null;
 		try {
 			this.beforeConsumerInvokeForSVC(invocation, request, response);
-			result = (RpcResult) invoker.invoke(invocation);
+			result = this.invokeWithinDeadline(invoker, invocation, request.getTransactionContext());
 			Object value = result.getValue();
 			if (InvocationResult.class.isInstance(value)) {
 				InvocationResult wrapped = (InvocationResult) value;
@@ -558,6 +574,47 @@ public class TransactionServiceFilter implements Filter {
 
 	}
 
+	/**
+	 * dubbo takes the timeout from the url only, so a call whose timeout exceeds the time left of the transaction is
+	 * sent asynchronously and waited for no longer than the transaction lasts.
+	 */
+	private RpcResult invokeWithinDeadline(Invoker<?> invoker, Invocation invocation,
+			TransactionContext transactionContext) throws RpcException {
+		if (transactionContext == null) {
+			return (RpcResult) invoker.invoke(invocation);
+		}
+
+		URL url = invoker.getUrl();
+		long remains = transactionContext.getRemainingTime();
+		int timeout = url.getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+		if (remains >= timeout || RpcUtils.isAsync(url, invocation) || RpcUtils.isOneway(url, invocation)) {
+			return (RpcResult) invoker.invoke(invocation);
+		}
+
+		// the attachments of the caller's invocation are left untouched, the asynchronous call is sent by a copy
+		Map<String, String> attachments = new HashMap<String, String>(invocation.getAttachments());
+		attachments.put(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+		RpcInvocation asyncInvocation = new RpcInvocation(invocation.getMethodName(), invocation.getParameterTypes(),
+				invocation.getArguments(), attachments, invocation.getInvoker());
+		invoker.invoke(asyncInvocation);
+
+		Future<Object> future = RpcContext.getContext().getFuture();
+		RpcContext.getContext().setFuture(null);
+		if (FutureAdapter.class.isInstance(future) == false) {
+			throw new RpcException("Error occurred in remote call: no response future is available!");
+		}
+
+		ResponseFuture responseFuture = ((FutureAdapter<?>) future).getFuture();
+		try {
+			return (RpcResult) responseFuture.get((int) Math.max(1, remains));
+		} catch (com.alibaba.dubbo.remoting.TimeoutException ex) {
+			throw new RpcException(RpcException.TIMEOUT_EXCEPTION, String.format(
+					"Remote call timed out after %s ms, the time left of the transaction.", Math.max(1, remains)), ex);
+		} catch (RemotingException ex) {
+			throw new RpcException(RpcException.NETWORK_EXCEPTION, ex.getMessage(), ex);
+		}
+	}
+
 	private RemoteCoordinator getParticipantByRemoteAddr(Invoker<?> invoker, InvocationDef invocationDef) {
 		RemoteCoordinatorRegistry participantRegistry = RemoteCoordinatorRegistry.getInstance();
 
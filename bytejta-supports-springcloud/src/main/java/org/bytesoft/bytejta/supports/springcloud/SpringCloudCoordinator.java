@@ -69,6 +69,8 @@ public class SpringCloudCoordinator implements InvocationHandler {
 				return this.identifier == null ? null : CommonUtils.getRemoteAddr(this.identifier);
 			} else if ("getRemoteNode".equals(methodName) && RemoteNode.class.equals(returnType)) {
 				return this.identifier == null ? null : CommonUtils.getRemoteNode(this.identifier);
+			} else if ("getTransactionStatus".equals(methodName)) {
+				return this.invokeTransactionStatus(proxy, method, args);
 			} else {
 				throw new XAException(XAException.XAER_RMFAIL);
 			}
@@ -220,6 +222,64 @@ public class SpringCloudCoordinator implements InvocationHandler {
 
 	}
 
+	public Object invokeTransactionStatus(Object proxy, Method method, Object[] args) throws Throwable {
+
+		try {
+			RestTemplate transactionRestTemplate = SpringCloudBeanRegistry.getInstance().getRestTemplate();
+			RestTemplate restTemplate = transactionRestTemplate == null ? new RestTemplate() : transactionRestTemplate;
+
+			RemoteNode remoteNode = CommonUtils.getRemoteNode(this.identifier);
+			String contextPathKey = String.format("%s.%s", CONSTANT_CONTENT_PATH, remoteNode.getServiceKey());
+			String contextPath = StringUtils.isBlank(remoteNode.getServiceKey()) //
+					? null : StringUtils.trimToEmpty(this.environment.getProperty(contextPathKey));
+
+			StringBuilder ber = new StringBuilder();
+			ber.append("http://").append(remoteNode.getServerHost()).append(":").append(remoteNode.getServerPort());
+
+			if (StringUtils.isNotBlank(contextPath) || StringUtils.equals(contextPath, "/")) {
+				ber.append(contextPath.startsWith("/") ? "" : "/").append(contextPath);
+			} // end-if (StringUtils.isNotBlank(contextPath) || StringUtils.equals(contextPath, "/"))
+
+			ber.append("/org/bytesoft/bytejta/status");
+
+			// the identifiers travel in the body, a batch of them would overflow the request line of a GET
+			StringBuilder identifiers = new StringBuilder();
+			Xid[] xids = (Xid[]) args[0];
+			for (int i = 0; xids != null && i < xids.length; i++) {
+				identifiers.append(i == 0 ? "" : ",");
+				identifiers.append(ByteUtils.byteArrayToString(xids[i].getGlobalTransactionId()));
+			}
+
+			ResponseEntity<?> response = //
+					restTemplate.postForEntity(ber.toString(), identifiers.toString(), int[].class, new Object[0]);
+
+			return response.getBody();
+		} catch (HttpClientErrorException ex) {
+			XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+			xaEx.initCause(ex);
+			throw xaEx;
+		} catch (HttpServerErrorException ex) {
+			HttpHeaders headers = ex.getResponseHeaders();
+			String errorText = StringUtils.trimToNull(headers.getFirst("XA_XAER"));
+
+			Integer errorCode = null;
+			try {
+				errorCode = errorText == null ? null : Integer.parseInt(errorText);
+			} catch (Exception ignore) {
+				logger.debug(ignore.getMessage());
+			}
+
+			XAException xaEx = new XAException(errorCode == null ? XAException.XAER_RMERR : errorCode);
+			xaEx.initCause(ex);
+			throw xaEx;
+		} catch (Exception ex) {
+			XAException xaEx = new XAException(XAException.XAER_RMERR);
+			xaEx.initCause(ex);
+			throw xaEx;
+		}
+
+	}
+
 	private String serialize(Serializable arg) throws IOException {
 		if (Xid.class.isInstance(arg)) {
 			Xid xid = (Xid) arg;
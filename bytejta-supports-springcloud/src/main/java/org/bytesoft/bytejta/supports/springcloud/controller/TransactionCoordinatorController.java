@@ -21,6 +21,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
+import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.TransactionCoordinator;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.transaction.TransactionBeanFactory;
@@ -32,6 +33,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -139,6 +141,35 @@ public class TransactionCoordinatorController extends PropertyEditorSupport impl
 		}
 	}
 
+	@RequestMapping(value = "/org/bytesoft/bytejta/status", method = RequestMethod.POST)
+	@ResponseBody
+	public int[] getTransactionStatus(@RequestBody String identifiers, HttpServletResponse response) {
+		try {
+			XidFactory xidFactory = this.beanFactory.getXidFactory();
+			String[] identifierArray = StringUtils.split(identifiers, ",");
+			Xid[] xids = new Xid[identifierArray.length];
+			for (int i = 0; i < identifierArray.length; i++) {
+				byte[] byteArray = ByteUtils.stringToByteArray(identifierArray[i]);
+				xids[i] = xidFactory.createGlobalXid(byteArray);
+			}
+
+			return this.transactionCoordinator.getTransactionStatus(xids);
+		} catch (XAException ex) {
+			logger.error("Error occurred while querying transaction status: {}.", identifiers, ex);
+
+			response.addHeader("failure", "true");
+			response.addHeader("XA_XAER", String.valueOf(ex.errorCode));
+			response.setStatus(500);
+			return new int[0];
+		} catch (RuntimeException ex) {
+			logger.error("Error occurred while querying transaction status: {}.", identifiers, ex);
+
+			response.addHeader("failure", "true");
+			response.setStatus(500);
+			return new int[0];
+		}
+	}
+
 	@RequestMapping(value = "/org/bytesoft/bytejta/forget/{xid}", method = RequestMethod.POST)
 	@ResponseBody
 	public void forget(@PathVariable("xid") String identifier, HttpServletResponse response) {
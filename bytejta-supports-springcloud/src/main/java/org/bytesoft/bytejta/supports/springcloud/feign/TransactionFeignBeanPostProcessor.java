@@ -29,6 +29,7 @@ import org.springframework.cloud.openfeign.FeignClient;
 
 public class TransactionFeignBeanPostProcessor implements BeanPostProcessor, InitializingBean {
 	static final String FEIGN_CLAZZ_NAME = "feign.ReflectiveFeign$FeignInvocationHandler";
+	static final String FEIGN_DELEGATE_FIELD = "delegate";
 
 	private Field singletonTargetSourceTargetField = null;
 
@@ -43,7 +44,9 @@ public class TransactionFeignBeanPostProcessor implements BeanPostProcessor, Ini
 	}
 
 	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
-		if (Proxy.isProxyClass(bean.getClass()) == false) {
+		if (feign.Client.class.isInstance(bean)) {
+			return this.createTransactionClient((feign.Client) bean);
+		} else if (Proxy.isProxyClass(bean.getClass()) == false) {
 			return bean;
 		}
 
@@ -94,6 +97,43 @@ public class TransactionFeignBeanPostProcessor implements BeanPostProcessor, Ini
 		return bean;
 	}
 
+	/**
+	 * a load-balancing client is kept as it is (feign unwraps it for url clients), the http client it delegates to is
+	 * wrapped instead, so the timeouts chosen by the load balancer are capped as well.
+	 */
+	private feign.Client createTransactionClient(feign.Client client) {
+		if (TransactionFeignClient.class.isInstance(client)) {
+			return client;
+		}
+
+		for (Class<?> clazz = client.getClass(); clazz != null && Object.class.equals(clazz) == false; clazz = clazz
+				.getSuperclass()) {
+			Field field = null;
+			try {
+				field = clazz.getDeclaredField(FEIGN_DELEGATE_FIELD);
+			} catch (NoSuchFieldException error) {
+				continue;
+			}
+
+			if (feign.Client.class.equals(field.getType()) == false) {
+				break;
+			}
+
+			try {
+				field.setAccessible(true);
+				feign.Client delegate = (feign.Client) field.get(client);
+				if (delegate != null && TransactionFeignClient.class.isInstance(delegate) == false) {
+					field.set(client, new TransactionFeignClient(delegate));
+				} // end-if (delegate != null && ...)
+				return client;
+			} catch (IllegalAccessException error) {
+				throw new IllegalStateException("Error occurred!", error);
+			}
+		}
+
+		return new TransactionFeignClient(client);
+	}
+
 	private Object createProxiedObject(Object origin) {
 		InvocationHandler handler = Proxy.getInvocationHandler(origin);
 
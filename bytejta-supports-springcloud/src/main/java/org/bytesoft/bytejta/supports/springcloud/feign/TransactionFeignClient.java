@@ -0,0 +1,59 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.springcloud.feign;
+
+import java.io.IOException;
+
+import org.bytesoft.bytejta.supports.springcloud.SpringCloudBeanRegistry;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionManager;
+
+/**
+ * Caps the timeouts of a request propagating a transaction to the time the transaction has left.
+ */
+public class TransactionFeignClient implements feign.Client {
+
+	private final feign.Client delegate;
+
+	public TransactionFeignClient(feign.Client delegate) {
+		this.delegate = delegate;
+	}
+
+	public feign.Response execute(feign.Request request, feign.Request.Options options) throws IOException {
+		SpringCloudBeanRegistry beanRegistry = SpringCloudBeanRegistry.getInstance();
+		TransactionBeanFactory beanFactory = beanRegistry.getBeanFactory();
+		TransactionManager transactionManager = beanFactory == null ? null : beanFactory.getTransactionManager();
+		Transaction transaction = transactionManager == null ? null : transactionManager.getTransactionQuietly();
+		if (transaction == null || options == null) {
+			return this.delegate.execute(request, options);
+		}
+
+		long remains = Math.max(1, transaction.getTransactionContext().getRemainingTime());
+		if (remains >= options.readTimeoutMillis() && remains >= options.connectTimeoutMillis()) {
+			return this.delegate.execute(request, options);
+		}
+
+		int connectTimeout = (int) Math.min(options.connectTimeoutMillis(), remains);
+		int readTimeout = (int) Math.min(options.readTimeoutMillis(), remains);
+		return this.delegate.execute(request, new feign.Request.Options(connectTimeout, readTimeout));
+	}
+
+	public feign.Client getDelegate() {
+		return delegate;
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytejta.supports.springcloud.feign;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.bytesoft.bytejta.supports.springcloud.SpringCloudBeanRegistry;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionBeanFactory;
+import org.bytesoft.transaction.TransactionContext;
+import org.bytesoft.transaction.TransactionManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionFeignClientTest {
+
+	@After
+	public void tearDown() {
+		SpringCloudBeanRegistry.getInstance().setBeanFactory(null);
+	}
+
+	@Test
+	public void testOptionsKeptWithoutTransaction() throws Exception {
+		this.registerTransaction(null);
+
+		RecordingClient recorder = new RecordingClient();
+		feign.Request.Options options = new feign.Request.Options(10000, 60000);
+		new TransactionFeignClient(recorder).execute(null, options);
+		Assert.assertSame(options, recorder.options);
+	}
+
+	@Test
+	public void testOptionsKeptWhenTransactionLastsLonger() throws Exception {
+		this.registerTransaction(this.createTransaction(3600000L));
+
+		RecordingClient recorder = new RecordingClient();
+		feign.Request.Options options = new feign.Request.Options(10000, 60000);
+		new TransactionFeignClient(recorder).execute(null, options);
+		Assert.assertSame(options, recorder.options);
+	}
+
+	@Test
+	public void testTimeoutsCappedToRemainingTime() throws Exception {
+		this.registerTransaction(this.createTransaction(5000L));
+
+		RecordingClient recorder = new RecordingClient();
+		new TransactionFeignClient(recorder).execute(null, new feign.Request.Options(2000, 60000));
+		Assert.assertEquals(2000, recorder.options.connectTimeoutMillis());
+		Assert.assertTrue(recorder.options.readTimeoutMillis() <= 5000);
+		Assert.assertTrue(recorder.options.readTimeoutMillis() > 0);
+	}
+
+	@Test
+	public void testTimeoutsOfExpiredTransaction() throws Exception {
+		this.registerTransaction(this.createTransaction(-1000L));
+
+		RecordingClient recorder = new RecordingClient();
+		new TransactionFeignClient(recorder).execute(null, new feign.Request.Options(10000, 60000));
+		Assert.assertEquals(1, recorder.options.connectTimeoutMillis());
+		Assert.assertEquals(1, recorder.options.readTimeoutMillis());
+	}
+
+	@Test
+	public void testPlainClientWrapped() throws Exception {
+		TransactionFeignBeanPostProcessor processor = new TransactionFeignBeanPostProcessor();
+		processor.afterPropertiesSet();
+
+		RecordingClient client = new RecordingClient();
+		Object bean = processor.postProcessAfterInitialization(client, "feignClient");
+		Assert.assertTrue(TransactionFeignClient.class.isInstance(bean));
+		Assert.assertSame(client, ((TransactionFeignClient) bean).getDelegate());
+		Assert.assertSame(bean, processor.postProcessAfterInitialization(bean, "feignClient"));
+	}
+
+	@Test
+	public void testDelegateOfLoadBalancingClientWrapped() throws Exception {
+		TransactionFeignBeanPostProcessor processor = new TransactionFeignBeanPostProcessor();
+		processor.afterPropertiesSet();
+
+		RecordingClient delegate = new RecordingClient();
+		LoadBalancingClient client = new LoadBalancingClient(delegate);
+		Assert.assertSame(client, processor.postProcessAfterInitialization(client, "feignClient"));
+		Assert.assertTrue(TransactionFeignClient.class.isInstance(client.getDelegate()));
+		Assert.assertSame(delegate, ((TransactionFeignClient) client.getDelegate()).getDelegate());
+
+		feign.Client wrapped = client.getDelegate();
+		Assert.assertSame(client, processor.postProcessAfterInitialization(client, "feignClient"));
+		Assert.assertSame(wrapped, client.getDelegate());
+	}
+
+	private void registerTransaction(final Transaction transaction) {
+		final TransactionManager transactionManager = (TransactionManager) this.createProxy(TransactionManager.class,
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return "getTransactionQuietly".equals(method.getName()) ? transaction : null;
+					}
+				});
+		TransactionBeanFactory beanFactory = (TransactionBeanFactory) this.createProxy(TransactionBeanFactory.class,
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return "getTransactionManager".equals(method.getName()) ? transactionManager : null;
+					}
+				});
+		SpringCloudBeanRegistry.getInstance().setBeanFactory(beanFactory);
+	}
+
+	private Transaction createTransaction(long remainingMillis) {
+		final TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setExpiredTime(System.currentTimeMillis() + remainingMillis);
+		return (Transaction) this.createProxy(Transaction.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return "getTransactionContext".equals(method.getName()) ? transactionContext : null;
+			}
+		});
+	}
+
+	private Object createProxy(Class<?> clazz, InvocationHandler handler) {
+		return Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { clazz }, handler);
+	}
+
+	static class RecordingClient implements feign.Client {
+		private feign.Request.Options options;
+
+		public feign.Response execute(feign.Request request, feign.Request.Options options) throws IOException {
+			this.options = options;
+			return null;
+		}
+	}
+
+	/** shaped like the load-balancing client of spring-cloud-openfeign, which keeps the http client as 'delegate'. */
+	static class LoadBalancingClient implements feign.Client {
+		private final feign.Client delegate;
+
+		public LoadBalancingClient(feign.Client delegate) {
+			this.delegate = delegate;
+		}
+
+		public feign.Response execute(feign.Request request, feign.Request.Options options) throws IOException {
+			return this.delegate.execute(request, options);
+		}
+
+		public feign.Client getDelegate() {
+			return delegate;
+		}
+	}
+
+}
@@ -39,6 +39,7 @@ public class LocalXADataSource /* extends TransactionListenerAdapter */
 
 	private DataSource dataSource;
 	private String beanName;
+	private boolean queryDetectionEnabled;
 	@javax.annotation.Resource
 	private TransactionManager transactionManager;
 
@@ -151,6 +152,7 @@ public class LocalXADataSource /* extends TransactionListenerAdapter */
 		Connection connection = this.dataSource.getConnection();
 		LocalXAConnection xacon = new LocalXAConnection(connection);
 		xacon.setResourceId(this.beanName);
+		xacon.setQueryDetectionEnabled(this.queryDetectionEnabled);
 		return xacon;
 	}
 
@@ -158,6 +160,7 @@ public class LocalXADataSource /* extends TransactionListenerAdapter */
 		Connection connection = this.dataSource.getConnection(user, passwd);
 		LocalXAConnection xacon = new LocalXAConnection(connection);
 		xacon.setResourceId(this.beanName);
+		xacon.setQueryDetectionEnabled(this.queryDetectionEnabled);
 		return xacon;
 	}
 
@@ -198,6 +201,18 @@ public class LocalXADataSource /* extends TransactionListenerAdapter */
 		}
 	}
 
+	public boolean isQueryDetectionEnabled() {
+		return queryDetectionEnabled;
+	}
+
+	/**
+	 * see LocalXAConnection.detectWriteActivity(String), disabled by default. Must not be enabled if queries may call
+	 * functions that modify data, such modifications would be committed at prepare.
+	 */
+	public void setQueryDetectionEnabled(boolean queryDetectionEnabled) {
+		this.queryDetectionEnabled = queryDetectionEnabled;
+	}
+
 	public TransactionManager getTransactionManager() {
 		return transactionManager;
 	}
@@ -40,6 +40,9 @@ public class TransactionInterceptorImpl implements TransactionInterceptor, Trans
 
 	@javax.inject.Inject
 	protected TransactionBeanFactory beanFactory;
+	/** if enabled, calls are not propagated/accepted when the transaction has no more time left than the minimum. */
+	private boolean deadlineEnabled = false;
+	private long minimumRemainingMillis = 0L;
 
 	public void beforeSendRequest(TransactionRequest request) throws IllegalStateException {
 		TransactionManager transactionManager = this.beanFactory.getTransactionManager();
@@ -54,6 +57,14 @@ public class TransactionInterceptorImpl implements TransactionInterceptor, Trans
 		} // end-if (transaction.getTransactionStatus() == Status.STATUS_MARKED_ROLLBACK)
 
 		TransactionContext srcTransactionContext = transaction.getTransactionContext();
+		long remains = srcTransactionContext.getRemainingTime();
+		if (this.deadlineEnabled && remains <= this.minimumRemainingMillis) {
+			transaction.setRollbackOnlyQuietly();
+			throw new IllegalStateException(String.format(
+					"Transaction has %s ms left before it times out, can not propagate its context to remote branch.",
+					remains));
+		} // end-if (this.deadlineEnabled && remains <= this.minimumRemainingMillis)
+
 		TransactionContext transactionContext = srcTransactionContext.clone();
 		request.setTransactionContext(transactionContext);
 		try {
@@ -106,6 +117,14 @@ public class TransactionInterceptorImpl implements TransactionInterceptor, Trans
 			return;
 		}
 
+		long remains = srcTransactionContext.getRemainingTime();
+		if (this.deadlineEnabled && remains <= this.minimumRemainingMillis) {
+			logger.warn("{}> request is rejected, the transaction has {} ms left before it times out.",
+					srcTransactionContext.getXid().getGlobalTransactionIdString(), remains);
+			throw new IllegalStateException(
+					String.format("Transaction has %s ms left before it times out, request is rejected.", remains));
+		} // end-if (this.deadlineEnabled && remains <= this.minimumRemainingMillis)
+
 		TransactionParticipant coordinator = this.beanFactory.getNativeParticipant();
 
 		TransactionContext transactionContext = srcTransactionContext.clone();
@@ -160,4 +179,20 @@ public class TransactionInterceptorImpl implements TransactionInterceptor, Trans
 		this.beanFactory = tbf;
 	}
 
+	public boolean isDeadlineEnabled() {
+		return deadlineEnabled;
+	}
+
+	public void setDeadlineEnabled(boolean deadlineEnabled) {
+		this.deadlineEnabled = deadlineEnabled;
+	}
+
+	public long getMinimumRemainingMillis() {
+		return minimumRemainingMillis;
+	}
+
+	public void setMinimumRemainingMillis(long minimumRemainingMillis) {
+		this.minimumRemainingMillis = minimumRemainingMillis;
+	}
+
 }